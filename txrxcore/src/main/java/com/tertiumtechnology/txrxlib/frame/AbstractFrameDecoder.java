@@ -0,0 +1,118 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * Base class for {@link FrameDecoder} implementations, managing the buffer used for frames spanning several
+ * packets.
+ * <p>
+ * The buffer grows on demand up to the maximum frame length and is reused for every frame, so that in steady state
+ * no allocation is made while decoding.
+ */
+public abstract class AbstractFrameDecoder implements FrameDecoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 64;
+
+    /**
+     * Maximum length of a decoded frame
+     */
+    protected final int maxFrameLength;
+
+    private byte[] frameBuffer;
+    private int frameLength;
+    private long discardedFrames;
+
+    /**
+     * Create a new {@link AbstractFrameDecoder}.
+     *
+     * @param maxFrameLength int the maximum length of a decoded frame
+     */
+    protected AbstractFrameDecoder(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("Invalid maximum frame length: " + maxFrameLength);
+        }
+
+        this.maxFrameLength = maxFrameLength;
+        this.frameBuffer = new byte[Math.min(INITIAL_BUFFER_SIZE, maxFrameLength)];
+    }
+
+    @Override
+    public long getDiscardedFrames() {
+        return discardedFrames;
+    }
+
+    @Override
+    public int getPendingLength() {
+        return frameLength;
+    }
+
+    @Override
+    public void reset() {
+        frameLength = 0;
+    }
+
+    /**
+     * Append bytes to the current partial frame.
+     *
+     * @param data   the source buffer
+     * @param offset the offset of the first byte to append
+     * @param length the number of bytes to append
+     * @return true if the bytes have been appended, false if the maximum frame length would be exceeded
+     */
+    protected boolean append(byte[] data, int offset, int length) {
+        if (!ensureCapacity(frameLength + length)) {
+            return false;
+        }
+
+        System.arraycopy(data, offset, frameBuffer, frameLength, length);
+        frameLength += length;
+        return true;
+    }
+
+    /**
+     * Append a single byte to the current partial frame.
+     *
+     * @param value the byte to append
+     * @return true if the byte has been appended, false if the maximum frame length would be exceeded
+     */
+    protected boolean append(byte value) {
+        if (!ensureCapacity(frameLength + 1)) {
+            return false;
+        }
+
+        frameBuffer[frameLength++] = value;
+        return true;
+    }
+
+    /**
+     * Discard the current partial frame, counting it as discarded.
+     */
+    protected void discardFrame() {
+        frameLength = 0;
+        discardedFrames++;
+    }
+
+    /**
+     * Notify the buffered frame to the listener and clear the buffer.
+     *
+     * @param listener the {@link FrameListener} to notify
+     */
+    protected void emitFrame(FrameListener listener) {
+        int length = frameLength;
+        frameLength = 0;
+        listener.onFrame(frameBuffer, 0, length);
+    }
+
+    private boolean ensureCapacity(int capacity) {
+        if (capacity > maxFrameLength) {
+            return false;
+        }
+
+        if (capacity > frameBuffer.length) {
+            int newSize = Math.min(Math.max(capacity, frameBuffer.length * 2), maxFrameLength);
+            byte[] newBuffer = new byte[newSize];
+            System.arraycopy(frameBuffer, 0, newBuffer, 0, frameLength);
+            frameBuffer = newBuffer;
+        }
+
+        return true;
+    }
+}
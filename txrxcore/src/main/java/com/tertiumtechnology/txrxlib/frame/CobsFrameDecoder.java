@@ -0,0 +1,144 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * {@link FrameDecoder} for COBS (Consistent Overhead Byte Stuffing) encoded frames, delimited by a zero byte.
+ * <p>
+ * Empty frames, produced by consecutive delimiters, are ignored.
+ */
+public class CobsFrameDecoder extends AbstractFrameDecoder {
+
+    private static final int MAX_CODE = 0xFF;
+
+    // bytes still to be copied for the current block, -1 when the next byte is a code byte
+    private int blockRemaining;
+    private boolean pendingZero;
+    private boolean started;
+    private boolean discarding;
+
+    /**
+     * Create a new {@link CobsFrameDecoder}.
+     *
+     * @param maxFrameLength int the maximum decoded frame length, longer frames are discarded
+     */
+    public CobsFrameDecoder(int maxFrameLength) {
+        super(maxFrameLength);
+        this.blockRemaining = -1;
+    }
+
+    /**
+     * Returns a {@link FrameDecoder.Factory} creating {@link CobsFrameDecoder} instances.
+     *
+     * @param maxFrameLength int the maximum decoded frame length, longer frames are discarded
+     * @return a factory of {@link CobsFrameDecoder}
+     */
+    public static FrameDecoder.Factory factory(int maxFrameLength) {
+        return () -> new CobsFrameDecoder(maxFrameLength);
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, FrameListener listener) {
+        int position = offset;
+        int end = offset + length;
+
+        while (position < end) {
+            byte value = data[position];
+
+            if (value == 0) {
+                // frame delimiter
+                if (!discarding && started) {
+                    if (blockRemaining > 0) {
+                        // truncated block
+                        discardFrame();
+                    }
+                    else {
+                        emitFrame(listener);
+                    }
+                }
+
+                resetFrameState();
+                position++;
+            }
+            else if (blockRemaining < 0) {
+                // code byte
+                int code = value & 0xFF;
+                int dataStart = position + 1;
+                int dataEnd = dataStart + code - 1;
+
+                if (!started && code < MAX_CODE && dataEnd < end && data[dataEnd] == 0
+                        && isZeroFree(data, dataStart, dataEnd)) {
+                    // single block frame contained in this packet, notify it without copying
+                    if (code - 1 > maxFrameLength) {
+                        discardFrame();
+                    }
+                    else {
+                        listener.onFrame(data, dataStart, code - 1);
+                    }
+
+                    position = dataEnd + 1;
+                    continue;
+                }
+
+                if (pendingZero && !discarding && !append((byte) 0)) {
+                    discardFrame();
+                    discarding = true;
+                }
+
+                started = true;
+                blockRemaining = code - 1;
+                pendingZero = code < MAX_CODE;
+                position++;
+            }
+            else {
+                // data bytes of the current block, up to the block end or the next delimiter
+                int runEnd = Math.min(position + blockRemaining, end);
+                int count = 0;
+
+                while (position + count < runEnd && data[position + count] != 0) {
+                    count++;
+                }
+
+                appendOrDiscard(data, position, count);
+                blockRemaining -= count;
+                position += count;
+
+                if (blockRemaining == 0) {
+                    blockRemaining = -1;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        resetFrameState();
+    }
+
+    private void appendOrDiscard(byte[] data, int offset, int count) {
+        if (discarding) {
+            return;
+        }
+
+        if (!append(data, offset, count)) {
+            discardFrame();
+            discarding = true;
+        }
+    }
+
+    private static boolean isZeroFree(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resetFrameState() {
+        super.reset();
+        blockRemaining = -1;
+        pendingZero = false;
+        started = false;
+        discarding = false;
+    }
+}
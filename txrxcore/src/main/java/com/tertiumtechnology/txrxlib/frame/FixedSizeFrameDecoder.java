@@ -0,0 +1,55 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * {@link FrameDecoder} for fixed size binary records.
+ */
+public class FixedSizeFrameDecoder extends AbstractFrameDecoder {
+
+    private final int frameSize;
+
+    /**
+     * Create a new {@link FixedSizeFrameDecoder}.
+     *
+     * @param frameSize int the size of each record
+     */
+    public FixedSizeFrameDecoder(int frameSize) {
+        super(frameSize);
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * Returns a {@link FrameDecoder.Factory} creating {@link FixedSizeFrameDecoder} instances.
+     *
+     * @param frameSize int the size of each record
+     * @return a factory of {@link FixedSizeFrameDecoder}
+     */
+    public static FrameDecoder.Factory factory(int frameSize) {
+        return () -> new FixedSizeFrameDecoder(frameSize);
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, FrameListener listener) {
+        int position = offset;
+        int end = offset + length;
+
+        while (position < end) {
+            int missing = frameSize - getPendingLength();
+            int available = end - position;
+
+            if (getPendingLength() == 0 && available >= frameSize) {
+                // whole record contained in this packet, notify it without copying
+                listener.onFrame(data, position, frameSize);
+                position += frameSize;
+            }
+            else {
+                int count = Math.min(missing, available);
+                append(data, position, count);
+                position += count;
+
+                if (getPendingLength() == frameSize) {
+                    emitFrame(listener);
+                }
+            }
+        }
+    }
+}
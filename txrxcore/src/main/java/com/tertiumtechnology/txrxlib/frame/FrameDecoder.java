@@ -0,0 +1,74 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * Incremental decoder used to split the raw byte stream received from a device into frames.
+ * <p>
+ * Data is pushed packet by packet through {@link #decode(byte[], int, int, FrameListener)}; a frame may span
+ * any number of packets and a packet may contain any number of frames. Every complete frame is delivered to the
+ * given {@link FrameListener} as a view over an internal buffer or over the packet itself, so no intermediate copy
+ * is made when a frame is entirely contained in a single packet.
+ * <p>
+ * Decoders are stateful and not thread safe: a new instance must be used for each session, see {@link Factory}.
+ *
+ * @see com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile#getFrameDecoderFactory()
+ */
+public interface FrameDecoder {
+
+    /**
+     * Factory used to create a new {@link FrameDecoder} for each session.
+     */
+    interface Factory {
+        /**
+         * Create a new {@link FrameDecoder}, with empty state.
+         *
+         * @return a new {@link FrameDecoder}
+         */
+        FrameDecoder create();
+    }
+
+    /**
+     * Listener notified by a {@link FrameDecoder} when a frame is complete.
+     */
+    interface FrameListener {
+        /**
+         * Callback when a complete frame has been decoded.
+         * <p>
+         * <b>Note:</b> the buffer is owned by the decoder (or by the packet being decoded) and its content is only
+         * valid during this call. Copy the frame if it must be retained.
+         *
+         * @param buffer the buffer holding the frame
+         * @param offset the offset of the first frame byte
+         * @param length the frame length
+         */
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    /**
+     * Decode a packet, notifying every frame completed by this packet.
+     *
+     * @param data     the packet buffer
+     * @param offset   the offset of the first packet byte
+     * @param length   the packet length
+     * @param listener the {@link FrameListener} notified for each complete frame
+     */
+    void decode(byte[] data, int offset, int length, FrameListener listener);
+
+    /**
+     * Returns the number of frames discarded so far, because malformed or exceeding the maximum frame length.
+     *
+     * @return the number of discarded frames
+     */
+    long getDiscardedFrames();
+
+    /**
+     * Returns the number of bytes of the current partial frame, waiting for further packets.
+     *
+     * @return the number of pending bytes, 0 if no frame is partially decoded
+     */
+    int getPendingLength();
+
+    /**
+     * Discard any partial frame and bring the decoder back to its initial state.
+     */
+    void reset();
+}
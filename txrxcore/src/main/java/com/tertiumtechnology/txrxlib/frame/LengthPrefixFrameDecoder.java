@@ -0,0 +1,139 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+import java.nio.ByteOrder;
+
+/**
+ * {@link FrameDecoder} for frames preceded by a binary length field of 1, 2 or 4 bytes, in either byte order.
+ * <p>
+ * Notified frames contain the payload only, without the length field.
+ */
+public class LengthPrefixFrameDecoder extends AbstractFrameDecoder {
+
+    private final int prefixSize;
+    private final boolean bigEndian;
+    private final int lengthAdjustment;
+
+    private int prefixBytesRead;
+    private long prefixValue;
+    private int payloadLength;
+    private long skipRemaining;
+
+    /**
+     * Create a new {@link LengthPrefixFrameDecoder}, where the length field holds the payload length only.
+     *
+     * @param prefixSize     int the size of the length field, 1, 2 or 4 bytes
+     * @param byteOrder      {@link ByteOrder} the byte order of the length field
+     * @param maxFrameLength int the maximum payload length, longer frames are discarded
+     */
+    public LengthPrefixFrameDecoder(int prefixSize, ByteOrder byteOrder, int maxFrameLength) {
+        this(prefixSize, byteOrder, false, maxFrameLength);
+    }
+
+    /**
+     * Create a new {@link LengthPrefixFrameDecoder}.
+     *
+     * @param prefixSize           int the size of the length field, 1, 2 or 4 bytes
+     * @param byteOrder            {@link ByteOrder} the byte order of the length field
+     * @param lengthIncludesPrefix boolean true if the length field counts its own size too
+     * @param maxFrameLength       int the maximum payload length, longer frames are discarded
+     */
+    public LengthPrefixFrameDecoder(int prefixSize, ByteOrder byteOrder, boolean lengthIncludesPrefix,
+                                    int maxFrameLength) {
+        super(maxFrameLength);
+
+        if (prefixSize != 1 && prefixSize != 2 && prefixSize != 4) {
+            throw new IllegalArgumentException("Invalid length prefix size: " + prefixSize);
+        }
+
+        this.prefixSize = prefixSize;
+        this.bigEndian = byteOrder == ByteOrder.BIG_ENDIAN;
+        this.lengthAdjustment = lengthIncludesPrefix ? prefixSize : 0;
+        this.payloadLength = -1;
+    }
+
+    /**
+     * Returns a {@link FrameDecoder.Factory} creating {@link LengthPrefixFrameDecoder} instances.
+     *
+     * @param prefixSize     int the size of the length field, 1, 2 or 4 bytes
+     * @param byteOrder      {@link ByteOrder} the byte order of the length field
+     * @param maxFrameLength int the maximum payload length, longer frames are discarded
+     * @return a factory of {@link LengthPrefixFrameDecoder}
+     */
+    public static FrameDecoder.Factory factory(int prefixSize, ByteOrder byteOrder, int maxFrameLength) {
+        return () -> new LengthPrefixFrameDecoder(prefixSize, byteOrder, maxFrameLength);
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, FrameListener listener) {
+        int position = offset;
+        int end = offset + length;
+
+        while (position < end) {
+            if (skipRemaining > 0) {
+                // payload of a discarded frame, possibly spanning several packets
+                int count = (int) Math.min(skipRemaining, end - position);
+                skipRemaining -= count;
+                position += count;
+            }
+            else if (payloadLength < 0) {
+                int value = data[position++] & 0xFF;
+
+                if (bigEndian) {
+                    prefixValue = (prefixValue << 8) | value;
+                }
+                else {
+                    prefixValue |= ((long) value) << (8 * prefixBytesRead);
+                }
+
+                if (++prefixBytesRead == prefixSize) {
+                    long frameLength = prefixValue - lengthAdjustment;
+
+                    prefixBytesRead = 0;
+                    prefixValue = 0;
+
+                    if (frameLength < 0 || frameLength > maxFrameLength) {
+                        // the payload is skipped too, to stay aligned with the framing of the sender
+                        skipRemaining = Math.max(frameLength, 0);
+                        discardFrame();
+                    }
+                    else if (frameLength == 0) {
+                        listener.onFrame(data, position, 0);
+                    }
+                    else {
+                        payloadLength = (int) frameLength;
+                    }
+                }
+            }
+            else {
+                int missing = payloadLength - getPendingLength();
+                int available = end - position;
+
+                if (getPendingLength() == 0 && available >= missing) {
+                    // whole payload contained in this packet, notify it without copying
+                    payloadLength = -1;
+                    listener.onFrame(data, position, missing);
+                    position += missing;
+                }
+                else {
+                    int count = Math.min(missing, available);
+                    append(data, position, count);
+                    position += count;
+
+                    if (getPendingLength() == payloadLength) {
+                        payloadLength = -1;
+                        emitFrame(listener);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        prefixBytesRead = 0;
+        prefixValue = 0;
+        payloadLength = -1;
+        skipRemaining = 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * {@link FrameDecoder} for devices sending each message in a single packet, as the events of most devices: every
+ * notified packet is a frame, notified as is without buffering.
+ */
+public class PacketFrameDecoder implements FrameDecoder {
+
+    private static final FrameDecoder.Factory FACTORY = PacketFrameDecoder::new;
+
+    /**
+     * Returns a {@link FrameDecoder.Factory} creating {@link PacketFrameDecoder} instances.
+     *
+     * @return a factory of {@link PacketFrameDecoder}
+     */
+    public static FrameDecoder.Factory factory() {
+        return FACTORY;
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, FrameListener listener) {
+        if (length > 0) {
+            listener.onFrame(data, offset, length);
+        }
+    }
+
+    @Override
+    public long getDiscardedFrames() {
+        return 0;
+    }
+
+    @Override
+    public int getPendingLength() {
+        return 0;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
@@ -0,0 +1,120 @@
+package com.tertiumtechnology.txrxlib.frame;
+
+/**
+ * {@link FrameDecoder} for SLIP (RFC 1055) framed data.
+ * <p>
+ * Empty frames, produced by consecutive END bytes, are ignored.
+ */
+public class SlipFrameDecoder extends AbstractFrameDecoder {
+
+    static final byte END = (byte) 0xC0;
+    static final byte ESC = (byte) 0xDB;
+    static final byte ESC_END = (byte) 0xDC;
+    static final byte ESC_ESC = (byte) 0xDD;
+
+    private boolean escaping;
+    private boolean discarding;
+
+    /**
+     * Create a new {@link SlipFrameDecoder}.
+     *
+     * @param maxFrameLength int the maximum decoded frame length, longer frames are discarded
+     */
+    public SlipFrameDecoder(int maxFrameLength) {
+        super(maxFrameLength);
+    }
+
+    /**
+     * Returns a {@link FrameDecoder.Factory} creating {@link SlipFrameDecoder} instances.
+     *
+     * @param maxFrameLength int the maximum decoded frame length, longer frames are discarded
+     * @return a factory of {@link SlipFrameDecoder}
+     */
+    public static FrameDecoder.Factory factory(int maxFrameLength) {
+        return () -> new SlipFrameDecoder(maxFrameLength);
+    }
+
+    @Override
+    public void decode(byte[] data, int offset, int length, FrameListener listener) {
+        int end = offset + length;
+        // start of the bytes of this packet not yet copied into the frame buffer
+        int runStart = offset;
+
+        for (int position = offset; position < end; position++) {
+            byte value = data[position];
+
+            if (escaping) {
+                escaping = false;
+                runStart = position + 1;
+
+                if (value == ESC_END) {
+                    appendOrDiscard(END);
+                }
+                else if (value == ESC_ESC) {
+                    appendOrDiscard(ESC);
+                }
+                else {
+                    // protocol violation, keep the byte as is
+                    appendOrDiscard(value);
+                }
+            }
+            else if (value == END) {
+                if (discarding) {
+                    discarding = false;
+                }
+                else if (getPendingLength() == 0) {
+                    int frameLength = position - runStart;
+
+                    if (frameLength > maxFrameLength) {
+                        discardFrame();
+                    }
+                    else if (frameLength > 0) {
+                        // whole frame contained in this packet, notify it without copying
+                        listener.onFrame(data, runStart, frameLength);
+                    }
+                }
+                else {
+                    flush(data, runStart, position);
+
+                    if (!discarding) {
+                        emitFrame(listener);
+                    }
+                    else {
+                        discarding = false;
+                    }
+                }
+
+                runStart = position + 1;
+            }
+            else if (value == ESC) {
+                flush(data, runStart, position);
+                escaping = true;
+            }
+        }
+
+        if (!escaping) {
+            flush(data, runStart, end);
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        escaping = false;
+        discarding = false;
+    }
+
+    private void appendOrDiscard(byte value) {
+        if (!discarding && !append(value)) {
+            discardFrame();
+            discarding = true;
+        }
+    }
+
+    private void flush(byte[] data, int start, int end) {
+        if (!discarding && end > start && !append(data, start, end - start)) {
+            discardFrame();
+            discarding = true;
+        }
+    }
+}
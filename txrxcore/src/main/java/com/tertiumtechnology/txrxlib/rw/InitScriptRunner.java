@@ -0,0 +1,360 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Runs a {@link TxRxInitScript} on a {@link TxRxSession}, standing between the session and its callback.
+ * <p>
+ * While a script is running, the callbacks of its steps are consumed to chain the next step, posted on the
+ * scheduler right after the result of the previous one; every other callback is passed through. A write step is
+ * followed by the reply of the device, if any, which is drained so that it is not taken as the response of the next
+ * query.
+ */
+final class InitScriptRunner implements TxRxSessionCallback {
+
+    private static final Logger LOGGER = Logger.getLogger(InitScriptRunner.class.getSimpleName());
+
+    private final TxRxSession session;
+    private final TxRxScheduler scheduler;
+    private final TxRxSessionCallback callback;
+    private final Runnable nextStepRunnable;
+
+    private TxRxInitScript script;
+    private List<TxRxInitScript.StepResult> results;
+    private long scriptStartTime;
+
+    private int stepIndex;
+    private TxRxInitScript.Step step;
+    private long stepStartTime;
+    private boolean isStepStarting;
+    private boolean isStepDone;
+    private boolean isStepAnswered;
+    private String response;
+    private byte[] responseFrame;
+    private int stepErrorCode;
+
+    InitScriptRunner(TxRxSession session, TxRxScheduler scheduler, Object lock, TxRxSessionCallback callback) {
+        this.session = session;
+        this.scheduler = scheduler;
+        this.callback = callback;
+
+        nextStepRunnable = () -> {
+            synchronized (lock) {
+                runNextStep();
+            }
+        };
+    }
+
+    void cancel() {
+        if (script != null) {
+            LOGGER.fine("Init script cancelled at step " + stepIndex);
+        }
+
+        scheduler.remove(nextStepRunnable);
+        script = null;
+        step = null;
+        results = null;
+    }
+
+    boolean isRunning() {
+        return script != null;
+    }
+
+    void start(TxRxInitScript script) {
+        this.script = script;
+        this.results = new ArrayList<>(script.getSteps().size());
+        this.scriptStartTime = scheduler.now();
+        this.stepIndex = 0;
+
+        LOGGER.fine("Init script started, " + script.getSteps().size() + " steps");
+
+        scheduler.post(nextStepRunnable, 0);
+    }
+
+    @Override
+    public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+        callback.onBulkTransferComplete(transfer);
+    }
+
+    @Override
+    public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+        callback.onBulkTransferError(transfer, errorCode);
+    }
+
+    @Override
+    public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+        callback.onBulkTransferProgress(transfer);
+    }
+
+    @Override
+    public void onEventData(String data) {
+        callback.onEventData(data);
+    }
+
+    @Override
+    public void onEventFrame(byte[] buffer, int offset, int length) {
+        callback.onEventFrame(buffer, offset, length);
+    }
+
+    @Override
+    public void onInitScriptComplete(List<TxRxInitScript.StepResult> results) {
+        callback.onInitScriptComplete(results);
+    }
+
+    @Override
+    public void onInitScriptError(List<TxRxInitScript.StepResult> results, int errorCode) {
+        callback.onInitScriptError(results, errorCode);
+    }
+
+    @Override
+    public void onNotifyData(String data) {
+        if (isAwaitingResponse()) {
+            response = data;
+            isStepAnswered = true;
+            checkStep();
+            return;
+        }
+        if (isAwaitingReply()) {
+            drainReply();
+            return;
+        }
+        callback.onNotifyData(data);
+    }
+
+    @Override
+    public void onNotifyFrame(byte[] buffer, int offset, int length) {
+        if (isAwaitingResponse()) {
+            responseFrame = Arrays.copyOfRange(buffer, offset, offset + length);
+            isStepAnswered = true;
+            checkStep();
+            return;
+        }
+        if (isAwaitingReply()) {
+            drainReply();
+            return;
+        }
+        callback.onNotifyFrame(buffer, offset, length);
+    }
+
+    @Override
+    public void onReadData(String data) {
+        callback.onReadData(data);
+    }
+
+    @Override
+    public void onReadError(int errorCode) {
+        callback.onReadError(errorCode);
+    }
+
+    @Override
+    public void onReadNotifyTimeout() {
+        if (isAwaitingResponse()) {
+            failStep(TxRxSession.ERROR_READ);
+            return;
+        }
+        if (isAwaitingReply()) {
+            // the device did not reply to the write
+            drainReply();
+            return;
+        }
+        callback.onReadNotifyTimeout();
+    }
+
+    @Override
+    public void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime, long beginNotifyTime,
+                                                   long endNotifyTime) {
+        if (isRunning()) {
+            return;
+        }
+        callback.onReceiveTimestampsAfterNotifyData(beginWriteTime, endWriteTime, beginNotifyTime, endNotifyTime);
+    }
+
+    @Override
+    public void onSetMode(int mode) {
+        if (isStep(TxRxInitScript.STEP_SET_MODE)) {
+            isStepDone = true;
+            checkStep();
+            return;
+        }
+        callback.onSetMode(mode);
+    }
+
+    @Override
+    public void onSetModeError(int errorCode) {
+        if (isStep(TxRxInitScript.STEP_SET_MODE)) {
+            failStep(errorCode);
+            return;
+        }
+        callback.onSetModeError(errorCode);
+    }
+
+    @Override
+    public void onSetModeTimeout() {
+        if (isStep(TxRxInitScript.STEP_SET_MODE)) {
+            failStep(TxRxSession.ERROR_SET_MODE);
+            return;
+        }
+        callback.onSetModeTimeout();
+    }
+
+    @Override
+    public void onStreamInactive() {
+        callback.onStreamInactive();
+    }
+
+    @Override
+    public void onWorkload(boolean isNotify) {
+        callback.onWorkload(isNotify);
+    }
+
+    @Override
+    public void onWriteData(String data) {
+        if (isWriteStep()) {
+            return;
+        }
+        callback.onWriteData(data);
+    }
+
+    @Override
+    public void onWriteError(int errorCode) {
+        if (isWriteStep()) {
+            // the step ends with onWriteFinished, if the write has been initiated
+            stepErrorCode = errorCode;
+            return;
+        }
+        callback.onWriteError(errorCode);
+    }
+
+    @Override
+    public void onWriteFinished() {
+        if (isWriteStep()) {
+            isStepDone = true;
+            checkStep();
+            return;
+        }
+        callback.onWriteFinished();
+    }
+
+    @Override
+    public void onWriteTimeout() {
+        if (isWriteStep()) {
+            stepErrorCode = TxRxSession.ERROR_WRITE_TIMEOUT;
+            return;
+        }
+        callback.onWriteTimeout();
+    }
+
+    private void checkStep() {
+        // a result delivered while requesting the step is checked once the request returns
+        if (isStepStarting || step == null) {
+            return;
+        }
+
+        if (stepErrorCode != 0) {
+            finishStep(stepErrorCode);
+        }
+        else if (isStepDone && (step.getType() == TxRxInitScript.STEP_SET_MODE || isStepAnswered)) {
+            finishStep(0);
+        }
+    }
+
+    private void drainReply() {
+        LOGGER.fine("Init script write step " + stepIndex + " drained");
+
+        isStepAnswered = true;
+        checkStep();
+    }
+
+    private void failStep(int errorCode) {
+        stepErrorCode = errorCode;
+        checkStep();
+    }
+
+    private void finishStep(int errorCode) {
+        long now = scheduler.now();
+
+        results.add(new TxRxInitScript.StepResult(step, stepStartTime - scriptStartTime, now - stepStartTime,
+                response, responseFrame, errorCode));
+        step = null;
+
+        if (errorCode != 0) {
+            finishScript(errorCode);
+            return;
+        }
+
+        stepIndex++;
+
+        // back-to-back, but outside the callback of the previous step
+        scheduler.post(nextStepRunnable, 0);
+    }
+
+    private void finishScript(int errorCode) {
+        List<TxRxInitScript.StepResult> scriptResults = results;
+
+        script = null;
+        results = null;
+
+        if (errorCode != 0) {
+            LOGGER.warning("Init script failed at step " + stepIndex + ": " + errorCode);
+            callback.onInitScriptError(scriptResults, errorCode);
+        }
+        else {
+            LOGGER.fine("Init script complete in " + (scheduler.now() - scriptStartTime) + " ms");
+            callback.onInitScriptComplete(scriptResults);
+        }
+    }
+
+    private boolean isAwaitingReply() {
+        return isStep(TxRxInitScript.STEP_WRITE) && !isStepAnswered;
+    }
+
+    private boolean isAwaitingResponse() {
+        return isStep(TxRxInitScript.STEP_QUERY) && !isStepAnswered;
+    }
+
+    private boolean isStep(int type) {
+        return step != null && step.getType() == type;
+    }
+
+    private boolean isWriteStep() {
+        return isStep(TxRxInitScript.STEP_WRITE) || isStep(TxRxInitScript.STEP_QUERY);
+    }
+
+    private void runNextStep() {
+        if (script == null) {
+            return;
+        }
+
+        if (stepIndex >= script.getSteps().size()) {
+            finishScript(0);
+            return;
+        }
+
+        step = script.getSteps().get(stepIndex);
+        stepStartTime = scheduler.now();
+        isStepDone = false;
+        // in streaming mode, notifications are not replies to the writes, nor is their timeout armed
+        isStepAnswered = step.getType() == TxRxInitScript.STEP_WRITE && session.isStreaming();
+        response = null;
+        responseFrame = null;
+        stepErrorCode = 0;
+
+        isStepStarting = true;
+
+        boolean isInitiated = step.getType() == TxRxInitScript.STEP_SET_MODE
+                ? session.requestSetMode(step.getMode())
+                : session.requestWriteData(step.getCommand());
+
+        isStepStarting = false;
+
+        if (!isInitiated && stepErrorCode == 0) {
+            stepErrorCode = step.getType() == TxRxInitScript.STEP_SET_MODE
+                    ? TxRxSession.ERROR_SET_MODE : TxRxSession.ERROR_WRITE;
+        }
+
+        checkStep();
+    }
+}
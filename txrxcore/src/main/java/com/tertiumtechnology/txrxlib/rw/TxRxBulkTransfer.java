@@ -0,0 +1,247 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class represents a bulk transfer of data to a device, such as a firmware image or a configuration file.
+ * <p>
+ * Data is pulled lazily from the source and written to the Rx characteristic in chunks of the connected profile
+ * packet size, so that the payload is never held in memory as a whole. The transfer keeps track of the bytes
+ * acknowledged by the device: after an error or a reconnection, passing the same instance again to
+ * {@link TxRxSession#requestBulkTransfer(TxRxBulkTransfer)} resumes it from the last acknowledged chunk.
+ * <p>
+ * The source is not closed by the transfer, it is up to the application to close it when the transfer is
+ * complete.
+ *
+ * @see TxRxSessionCallback#onBulkTransferProgress(TxRxBulkTransfer)
+ */
+public final class TxRxBulkTransfer extends WriteOperation {
+
+    /**
+     * Default minimum interval between progress notifications, in milliseconds
+     */
+    public static final long PROGRESS_INTERVAL_DEFAULT_VALUE = 250;
+
+    private interface Source {
+        int read(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    private final Source source;
+    private final long totalBytes;
+
+    private byte[] chunkBuffer;
+    private long readBytes;
+    private boolean endOfSource;
+
+    private long progressInterval;
+    private long lastProgressTime;
+
+    private long startTime;
+    private long startBytes;
+    private long acknowledgeTime;
+
+    private TxRxBulkTransfer(Source source, long totalBytes) {
+        this.source = source;
+        this.totalBytes = totalBytes;
+        this.progressInterval = PROGRESS_INTERVAL_DEFAULT_VALUE;
+    }
+
+    /**
+     * Create a new {@link TxRxBulkTransfer} reading from a {@link ByteBuffer}, such as a
+     * {@link java.nio.MappedByteBuffer}. Data is read from the current buffer position up to its limit.
+     *
+     * @param buffer the {@link ByteBuffer} to transfer
+     * @return a new {@link TxRxBulkTransfer}
+     */
+    public static TxRxBulkTransfer fromByteBuffer(ByteBuffer buffer) {
+        final ByteBuffer data = buffer.duplicate();
+
+        return new TxRxBulkTransfer((destination, offset, length) -> {
+            int count = Math.min(length, data.remaining());
+            data.get(destination, offset, count);
+            return count == 0 ? -1 : count;
+        }, data.remaining());
+    }
+
+    /**
+     * Create a new {@link TxRxBulkTransfer} reading from a {@link FileChannel}. Data is read from the current
+     * channel position up to the end of the file.
+     *
+     * @param channel the {@link FileChannel} to transfer
+     * @return a new {@link TxRxBulkTransfer}
+     * @throws IOException if the channel size or position can not be read
+     */
+    public static TxRxBulkTransfer fromFileChannel(final FileChannel channel) throws IOException {
+        return new TxRxBulkTransfer(new Source() {
+            private ByteBuffer wrapper;
+
+            @Override
+            public int read(byte[] destination, int offset, int length) throws IOException {
+                if (wrapper == null || wrapper.array() != destination) {
+                    wrapper = ByteBuffer.wrap(destination);
+                }
+
+                wrapper.limit(offset + length).position(offset);
+                return channel.read(wrapper);
+            }
+        }, channel.size() - channel.position());
+    }
+
+    /**
+     * Create a new {@link TxRxBulkTransfer} reading from an {@link InputStream}.
+     *
+     * @param inputStream the {@link InputStream} to transfer
+     * @param totalBytes  long the number of bytes available from the stream, or -1 if unknown
+     * @return a new {@link TxRxBulkTransfer}
+     */
+    public static TxRxBulkTransfer fromInputStream(InputStream inputStream, long totalBytes) {
+        return new TxRxBulkTransfer(inputStream::read, totalBytes);
+    }
+
+    /**
+     * Create a new {@link TxRxBulkTransfer} reading from a file mapped in memory. The file is mapped read-only
+     * from the current channel position up to the end of the file.
+     *
+     * @param channel the {@link FileChannel} of the file to map
+     * @return a new {@link TxRxBulkTransfer}
+     * @throws IOException if the file can not be mapped
+     */
+    public static TxRxBulkTransfer fromMappedFile(FileChannel channel) throws IOException {
+        long position = channel.position();
+        return fromByteBuffer(channel.map(FileChannel.MapMode.READ_ONLY, position, channel.size() - position));
+    }
+
+    /**
+     * Returns the number of bytes acknowledged by the device so far.
+     *
+     * @return the number of acknowledged bytes
+     */
+    @Override
+    public long getAcknowledgedBytes() {
+        return super.getAcknowledgedBytes();
+    }
+
+    /**
+     * Returns the throughput of the transfer since it was last started or resumed, up to the last acknowledged
+     * chunk, in bytes per second.
+     *
+     * @return the throughput in bytes per second, 0 if not available yet
+     */
+    public long getBytesPerSecond() {
+        long elapsed = acknowledgeTime - startTime;
+
+        if (startTime == 0L || elapsed <= 0) {
+            return 0;
+        }
+
+        return (getAcknowledgedBytes() - startBytes) * 1000 / elapsed;
+    }
+
+    /**
+     * Returns the progress of the transfer, as a value between 0 and 1.
+     *
+     * @return the transfer progress, or -1 if the total number of bytes is unknown
+     */
+    public float getProgress() {
+        if (totalBytes < 0) {
+            return isComplete() ? 1f : -1f;
+        }
+
+        return totalBytes == 0 ? 1f : (float) getAcknowledgedBytes() / totalBytes;
+    }
+
+    /**
+     * Returns the minimum interval between two progress notifications, in milliseconds.
+     *
+     * @return the progress notification interval
+     */
+    public long getProgressInterval() {
+        return progressInterval;
+    }
+
+    /**
+     * Set the minimum interval between two progress notifications, in milliseconds. An interval of zero notifies
+     * the progress on every acknowledged chunk.
+     *
+     * @param progressInterval the progress notification interval
+     */
+    public void setProgressInterval(long progressInterval) {
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Returns the total number of bytes of the transfer.
+     *
+     * @return the total number of bytes, or -1 if unknown
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Returns whether every byte of the source has been acknowledged by the device.
+     *
+     * @return true if the transfer is complete, false otherwise.
+     */
+    public boolean isComplete() {
+        return endOfSource && getAcknowledgedBytes() == readBytes;
+    }
+
+    boolean isProgressDue(long now) {
+        acknowledgeTime = now;
+
+        if (now - lastProgressTime >= progressInterval) {
+            lastProgressTime = now;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    byte[] readChunk(int maxChunkSize) throws IOException {
+        if (endOfSource) {
+            return null;
+        }
+
+        if (chunkBuffer == null || chunkBuffer.length != maxChunkSize) {
+            chunkBuffer = new byte[maxChunkSize];
+        }
+
+        int count = 0;
+
+        while (count < maxChunkSize) {
+            int read = source.read(chunkBuffer, count, maxChunkSize - count);
+
+            if (read < 0) {
+                endOfSource = true;
+                break;
+            }
+
+            count += read;
+        }
+
+        readBytes += count;
+
+        if (count == 0) {
+            return null;
+        }
+
+        if (count < maxChunkSize) {
+            byte[] lastChunk = new byte[count];
+            System.arraycopy(chunkBuffer, 0, lastChunk, 0, count);
+            return lastChunk;
+        }
+
+        return chunkBuffer;
+    }
+
+    void start(long now) {
+        startTime = now;
+        startBytes = getAcknowledgedBytes();
+        lastProgressTime = now;
+        acknowledgeTime = now;
+    }
+}
@@ -0,0 +1,380 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import com.tertiumtechnology.txrxlib.frame.FrameDecoder;
+
+/**
+ * This class represents a BLE device profile, used to manage different devices properties.
+ */
+public class TxRxDeviceProfile {
+
+    /**
+     * Terminator appended at the end of a message
+     */
+    public enum TerminatorType {
+        NONE(""), CR("\r"), LF("\n"), CRLF("\r\n"), ZERO("\0");
+
+        private final String value;
+
+        TerminatorType(String value) {
+            this.value = value;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final String txRxServiceUuid;
+    // read characteristic
+    private final String txCharacteristicUUID;
+    // write characteristic
+    private final String rxCharacteristicUUID;
+    // setMode characteristic
+    private final String setModeCharacteristicUUID;
+    // event characteristic
+    private final String eventCharacteristicUUID;
+    // read terminator
+    private final TerminatorType txTerminatorType;
+    // write terminator
+    private final TerminatorType rxTerminatorType;
+    // read packet maximum size
+    private final int txPacketSize;
+    // write packet maximum size
+    private final int rxPacketSize;
+    // read/notified frames decoder, null for terminator based messages
+    private final FrameDecoder.Factory frameDecoderFactory;
+    // advertised manufacturer identifier, -1 if not used to recognize the device
+    private final int manufacturerId;
+    // preferred PHY mask, 0 to keep the LE 1M default
+    private final int preferredPhy;
+    // preferred coding for LE Coded PHY
+    private final int phyOptions;
+    // event frame decoder
+    private final FrameDecoder.Factory eventFrameDecoderFactory;
+
+    private final TxRxInitScript initScript;
+
+    /**
+     * Create a new {@link TxRxDeviceProfile} in order to manage device properties.
+     *
+     * @param txRxServiceUuid           String the device Service UUID
+     * @param rxCharacteristicUUID      String the Rx characteristic UUID
+     * @param txCharacteristicUUID      String the Tx characteristic UUID
+     * @param setModeCharacteristicUUID String the SetMode characteristic UUID
+     * @param eventCharacteristicUUID   String the Event characteristic UUID
+     * @param rxTerminatorType          {@link TerminatorType} represents the terminator type appended at the end of
+     *                                  the write request
+     * @param txTerminatorType          {@link TerminatorType} represents the terminator type appended at the end of
+     *                                  the read/notified message
+     * @param rxPacketSize              int the maximum rx packet size, used in write operation
+     * @param txPacketSize              int the maximum tx packet size, used in read operation
+     */
+    public TxRxDeviceProfile(String txRxServiceUuid, String rxCharacteristicUUID, String txCharacteristicUUID,
+                             String setModeCharacteristicUUID, String eventCharacteristicUUID,
+                             TerminatorType rxTerminatorType,
+                             TerminatorType txTerminatorType, int rxPacketSize,
+                             int txPacketSize) {
+        this(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID, setModeCharacteristicUUID,
+                eventCharacteristicUUID, rxTerminatorType, txTerminatorType, rxPacketSize, txPacketSize, null);
+    }
+
+    /**
+     * Create a new {@link TxRxDeviceProfile} in order to manage device properties, for devices sending binary
+     * frames.
+     *
+     * @param txRxServiceUuid           String the device Service UUID
+     * @param rxCharacteristicUUID      String the Rx characteristic UUID
+     * @param txCharacteristicUUID      String the Tx characteristic UUID
+     * @param setModeCharacteristicUUID String the SetMode characteristic UUID
+     * @param eventCharacteristicUUID   String the Event characteristic UUID
+     * @param rxTerminatorType          {@link TerminatorType} represents the terminator type appended at the end of
+     *                                  the write request
+     * @param txTerminatorType          {@link TerminatorType} represents the terminator type appended at the end of
+     *                                  the read/notified message
+     * @param rxPacketSize              int the maximum rx packet size, used in write operation
+     * @param txPacketSize              int the maximum tx packet size, used in read operation
+     * @param frameDecoderFactory       {@link FrameDecoder.Factory} creating the decoder used to split notified
+     *                                  data into frames, null to use terminator based messages
+     */
+    public TxRxDeviceProfile(String txRxServiceUuid, String rxCharacteristicUUID, String txCharacteristicUUID,
+                             String setModeCharacteristicUUID, String eventCharacteristicUUID,
+                             TerminatorType rxTerminatorType,
+                             TerminatorType txTerminatorType, int rxPacketSize,
+                             int txPacketSize, FrameDecoder.Factory frameDecoderFactory) {
+        this(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID, setModeCharacteristicUUID,
+                eventCharacteristicUUID, rxTerminatorType, txTerminatorType, rxPacketSize, txPacketSize,
+                frameDecoderFactory, -1, 0, 0, null, null);
+    }
+
+    private TxRxDeviceProfile(String txRxServiceUuid, String rxCharacteristicUUID, String txCharacteristicUUID,
+                              String setModeCharacteristicUUID, String eventCharacteristicUUID,
+                              TerminatorType rxTerminatorType,
+                              TerminatorType txTerminatorType, int rxPacketSize,
+                              int txPacketSize, FrameDecoder.Factory frameDecoderFactory, int manufacturerId,
+                              int preferredPhy, int phyOptions, FrameDecoder.Factory eventFrameDecoderFactory,
+                              TxRxInitScript initScript) {
+        this.txRxServiceUuid = txRxServiceUuid;
+        this.txCharacteristicUUID = txCharacteristicUUID;
+        this.rxCharacteristicUUID = rxCharacteristicUUID;
+        this.setModeCharacteristicUUID = setModeCharacteristicUUID;
+        this.eventCharacteristicUUID = eventCharacteristicUUID;
+        this.txTerminatorType = txTerminatorType;
+        this.rxTerminatorType = rxTerminatorType;
+        this.txPacketSize = txPacketSize;
+        this.rxPacketSize = rxPacketSize;
+        this.frameDecoderFactory = frameDecoderFactory;
+        this.manufacturerId = manufacturerId;
+        this.preferredPhy = preferredPhy;
+        this.phyOptions = phyOptions;
+        this.eventFrameDecoderFactory = eventFrameDecoderFactory;
+        this.initScript = initScript;
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, using the specified {@link FrameDecoder.Factory} to split the
+     * values of the Event characteristic into frames. Event frames are dispatched as soon as they are complete,
+     * instead of waiting for the later read timeout, so that alarms and button events are not delayed by the notify
+     * traffic.
+     *
+     * @param eventFrameDecoderFactory {@link FrameDecoder.Factory} creating the event frame decoder, e.g.
+     *                                 {@link com.tertiumtechnology.txrxlib.frame.PacketFrameDecoder#factory()} for
+     *                                 events sent in a single packet, null to use terminator based event messages
+     * @return a new {@link TxRxDeviceProfile} with the specified event frame decoder
+     */
+    public TxRxDeviceProfile withEventFrameDecoderFactory(FrameDecoder.Factory eventFrameDecoderFactory) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, using the specified {@link FrameDecoder.Factory} to split
+     * notified data into frames.
+     *
+     * @param frameDecoderFactory {@link FrameDecoder.Factory} creating the frame decoder, null to use terminator
+     *                            based messages
+     * @return a new {@link TxRxDeviceProfile} with the specified frame decoder
+     */
+    public TxRxDeviceProfile withFrameDecoderFactory(FrameDecoder.Factory frameDecoderFactory) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, with the specified initialization script, run at the start
+     * of every session with a device of the profile as soon as its notifications are enabled.
+     *
+     * @param initScript {@link TxRxInitScript} the script initializing the device, null for none
+     * @return a new {@link TxRxDeviceProfile} with the specified init script
+     */
+    public TxRxDeviceProfile withInitScript(TxRxInitScript initScript) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, recognized during scan by the specified manufacturer
+     * identifier in the advertised manufacturer specific data.
+     *
+     * @param manufacturerId int the company identifier assigned by Bluetooth SIG, -1 if not advertised
+     * @return a new {@link TxRxDeviceProfile} with the specified manufacturer identifier
+     */
+    public TxRxDeviceProfile withManufacturerId(int manufacturerId) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, with the specified preferred PHY. The preference is applied
+     * when connecting to the device, if the profile is already known from scan, and otherwise just after service
+     * discovery. Requires Android O or later; ignored on earlier versions.
+     *
+     * @param preferredPhy int a combination of {@code BluetoothDevice.PHY_LE_1M_MASK},
+     *                     {@code BluetoothDevice.PHY_LE_2M_MASK} and
+     *                     {@code BluetoothDevice.PHY_LE_CODED_MASK}, 0 for the default LE 1M PHY
+     * @param phyOptions   int the coding preferred when using LE Coded PHY, one of
+     *                     {@code BluetoothDevice.PHY_OPTION_NO_PREFERRED},
+     *                     {@code BluetoothDevice.PHY_OPTION_S2} or
+     *                     {@code BluetoothDevice.PHY_OPTION_S8}
+     * @return a new {@link TxRxDeviceProfile} with the specified preferred PHY
+     */
+    public TxRxDeviceProfile withPreferredPhy(int preferredPhy, int phyOptions) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, with the specified maximum rx packet size, i.e. the size of
+     * the chunks written to the device.
+     *
+     * @param rxPacketSize int the maximum rx packet size, used in write operation
+     * @return a new {@link TxRxDeviceProfile} with the specified rx packet size
+     */
+    public TxRxDeviceProfile withRxPacketSize(int rxPacketSize) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxDeviceProfile}, with the specified terminators.
+     *
+     * @param rxTerminatorType {@link TerminatorType} the terminator type used in write operation
+     * @param txTerminatorType {@link TerminatorType} the terminator type used in read operation
+     * @return a new {@link TxRxDeviceProfile} with the specified terminators
+     */
+    public TxRxDeviceProfile withTerminatorTypes(TerminatorType rxTerminatorType, TerminatorType txTerminatorType) {
+        return new TxRxDeviceProfile(txRxServiceUuid, rxCharacteristicUUID, txCharacteristicUUID,
+                setModeCharacteristicUUID, eventCharacteristicUUID, rxTerminatorType, txTerminatorType,
+                rxPacketSize, txPacketSize, frameDecoderFactory, manufacturerId, preferredPhy, phyOptions,
+                eventFrameDecoderFactory, initScript);
+    }
+
+    /**
+     * Returns the Event characteristic UUID
+     *
+     * @return a String representing the Event characteristic UUID
+     */
+    public String getEventCharacteristicUUID() {
+        return eventCharacteristicUUID;
+    }
+
+    /**
+     * Returns the {@link FrameDecoder.Factory} used to split the values of the Event characteristic into frames
+     *
+     * @return the event frame decoder factory, or null if event values are terminator based
+     */
+    public FrameDecoder.Factory getEventFrameDecoderFactory() {
+        return eventFrameDecoderFactory;
+    }
+
+    /**
+     * Returns the {@link FrameDecoder.Factory} used to split notified data into frames
+     *
+     * @return the frame decoder factory, or null if notified data is terminator based
+     */
+    public FrameDecoder.Factory getFrameDecoderFactory() {
+        return frameDecoderFactory;
+    }
+
+    /**
+     * Returns the {@link TxRxInitScript} run at the start of every session
+     *
+     * @return the init script, or null if the devices of the profile need no initialization
+     */
+    public TxRxInitScript getInitScript() {
+        return initScript;
+    }
+
+    /**
+     * Returns the manufacturer identifier advertised by the device, used to recognize it during scan
+     *
+     * @return the company identifier assigned by Bluetooth SIG, or -1 if not advertised
+     */
+    public int getManufacturerId() {
+        return manufacturerId;
+    }
+
+    /**
+     * Returns the coding preferred when using LE Coded PHY
+     *
+     * @return one of {@code BluetoothDevice.PHY_OPTION_NO_PREFERRED},
+     * {@code BluetoothDevice.PHY_OPTION_S2} or {@code BluetoothDevice.PHY_OPTION_S8}
+     */
+    public int getPhyOptions() {
+        return phyOptions;
+    }
+
+    /**
+     * Returns the PHY preferred by the device
+     *
+     * @return a combination of {@code BluetoothDevice.PHY_LE_1M_MASK},
+     * {@code BluetoothDevice.PHY_LE_2M_MASK} and
+     * {@code BluetoothDevice.PHY_LE_CODED_MASK}, or 0 if the default LE 1M PHY is used
+     */
+    public int getPreferredPhy() {
+        return preferredPhy;
+    }
+
+    /**
+     * Returns the Rx characteristic UUID, used in write operations
+     *
+     * @return a String representing the Rx characteristic UUID
+     */
+    public String getRxCharacteristicUUID() {
+        return rxCharacteristicUUID;
+    }
+
+    /**
+     * Returns the maximum Rx packet size, used in write operation
+     *
+     * @return an int representing the maximum Tx packet size
+     */
+    public int getRxPacketSize() {
+        return rxPacketSize;
+    }
+
+    /**
+     * Returns a {@link TerminatorType}, appended at the end of the write request before sending it to the device
+     *
+     * @return the terminator type appended at the end of the write request
+     */
+    public TerminatorType getRxTerminatorType() {
+        return rxTerminatorType;
+    }
+
+    /**
+     * Returns the SetMode characteristic UUID, used for set the operation mode
+     *
+     * @return a String representing the SetMode characteristic UUID
+     */
+    public String getSetModeCharacteristicUUID() {
+        return setModeCharacteristicUUID;
+    }
+
+    /**
+     * Returns the Tx characteristic UUID, used in read operations
+     *
+     * @return a String representing the Tx characteristic UUID
+     */
+    public String getTxCharacteristicUUID() {
+        return txCharacteristicUUID;
+    }
+
+    /**
+     * Returns the maximum Tx packet size, used in read operation
+     *
+     * @return an int representing the maximum Rx packet size
+     */
+    public int getTxPacketSize() {
+        return txPacketSize;
+    }
+
+    /**
+     * Returns the device Service UUID
+     *
+     * @return a String representing the device Service UUID
+     */
+    public String getTxRxServiceUuid() {
+        return txRxServiceUuid;
+    }
+
+    /**
+     * Returns a {@link TerminatorType}, appended at the end of the read/notified message received from the device
+     *
+     * @return the terminator type appended at the end of the read/notified message
+     */
+    public TerminatorType getTxTerminatorType() {
+        return txTerminatorType;
+    }
+}
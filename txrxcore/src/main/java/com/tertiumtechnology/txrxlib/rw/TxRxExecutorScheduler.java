@@ -0,0 +1,119 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class provides a {@link TxRxScheduler} running the tasks on a dedicated daemon thread, timed on
+ * {@link System#currentTimeMillis()}, to run a {@link TxRxSession} on a plain JVM.
+ * <p>
+ * As for an Android handler, a task removed before it starts is never run. Tasks can be posted and removed from
+ * any thread.
+ */
+public class TxRxExecutorScheduler implements TxRxScheduler {
+
+    private final class ScheduledTask implements Runnable {
+
+        private final Runnable task;
+        private ScheduledFuture<?> future;
+
+        private ScheduledTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (scheduledTasks) {
+                if (!scheduledTasks.remove(this)) {
+                    // removed after being started by the executor
+                    return;
+                }
+            }
+
+            task.run();
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ArrayList<ScheduledTask> scheduledTasks;
+
+    /**
+     * Create a new {@link TxRxExecutorScheduler}, running the tasks on a new thread with the specified name.
+     *
+     * @param threadName the name of the thread running the tasks
+     */
+    public TxRxExecutorScheduler(String threadName) {
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.scheduledTasks = new ArrayList<>();
+    }
+
+    /**
+     * Returns the current time of the system clock.
+     *
+     * @return the current time in milliseconds
+     */
+    @Override
+    public long now() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Run the specified task after the specified delay. Tasks posted with the same delay are run in order of
+     * posting.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     */
+    @Override
+    public void post(Runnable task, long delay) {
+        ScheduledTask scheduledTask = new ScheduledTask(task);
+
+        synchronized (scheduledTasks) {
+            if (executor.isShutdown()) {
+                return;
+            }
+
+            scheduledTasks.add(scheduledTask);
+            scheduledTask.future = executor.schedule(scheduledTask, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Remove every pending run of the specified task.
+     *
+     * @param task the task to remove
+     */
+    @Override
+    public void remove(Runnable task) {
+        synchronized (scheduledTasks) {
+            Iterator<ScheduledTask> iterator = scheduledTasks.iterator();
+
+            while (iterator.hasNext()) {
+                ScheduledTask scheduledTask = iterator.next();
+
+                if (scheduledTask.task == task) {
+                    iterator.remove();
+                    scheduledTask.future.cancel(false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the scheduler thread, discarding every pending task.
+     */
+    public void shutdown() {
+        synchronized (scheduledTasks) {
+            scheduledTasks.clear();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds the initialization script of a device: the setMode operations, configuration writes and queries
+ * sent at the start of every session, such as the mode of the reader, its settings and the read-back of its firmware
+ * version.
+ * <p>
+ * The script is run by the {@link TxRxSession} as soon as the notifications of the device are enabled, step after
+ * step and back-to-back, without a round trip through the application for each step. The callbacks of its steps are
+ * not delivered to the application: the script reports the timing and the response of each step at its end, through
+ * {@link TxRxSessionCallback#onInitScriptComplete(List)} or {@link TxRxSessionCallback#onInitScriptError(List, int)}.
+ * The script stops at the first failed step.
+ * <p>
+ * A script is immutable: each {@code with} method returns a new script with one more step.
+ *
+ * @see TxRxDeviceProfile#withInitScript(TxRxInitScript)
+ */
+public class TxRxInitScript {
+
+    /**
+     * Step setting the operation mode of the device
+     */
+    public static final int STEP_SET_MODE = 1;
+
+    /**
+     * Step writing a command without a response: the reply of the device, if any, is discarded, waiting for the
+     * read/notify timeout when there is none, so that it is not taken as the response of a following query
+     */
+    public static final int STEP_WRITE = 2;
+
+    /**
+     * Step writing a command and waiting for its response
+     */
+    public static final int STEP_QUERY = 3;
+
+    /**
+     * A step of an initialization script.
+     */
+    public static class Step {
+
+        private final int type;
+        private final String command;
+        private final int mode;
+
+        Step(int type, String command, int mode) {
+            this.type = type;
+            this.command = command;
+            this.mode = mode;
+        }
+
+        /**
+         * Returns the command written by the step.
+         *
+         * @return the command, without terminator, or null for a {@link #STEP_SET_MODE} step
+         */
+        public String getCommand() {
+            return command;
+        }
+
+        /**
+         * Returns the operation mode set by the step.
+         *
+         * @return the mode, meaningful only for a {@link #STEP_SET_MODE} step
+         */
+        public int getMode() {
+            return mode;
+        }
+
+        /**
+         * Returns the type of the step.
+         *
+         * @return one of {@link #STEP_SET_MODE}, {@link #STEP_WRITE} or {@link #STEP_QUERY}
+         */
+        public int getType() {
+            return type;
+        }
+    }
+
+    /**
+     * The result of a step of an initialization script.
+     */
+    public static class StepResult {
+
+        private final Step step;
+        private final long startOffset;
+        private final long duration;
+        private final String response;
+        private final byte[] responseFrame;
+        private final int errorCode;
+
+        StepResult(Step step, long startOffset, long duration, String response, byte[] responseFrame,
+                   int errorCode) {
+            this.step = step;
+            this.startOffset = startOffset;
+            this.duration = duration;
+            this.response = response;
+            this.responseFrame = responseFrame;
+            this.errorCode = errorCode;
+        }
+
+        /**
+         * Returns the time taken by the step, from its request to its result or response.
+         *
+         * @return the duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Returns the error code of the step.
+         *
+         * @return 0 if the step succeeded, otherwise one of the {@code ERROR_} codes of {@link TxRxSession}:
+         * {@link TxRxSession#ERROR_SET_MODE} on setMode timeout and {@link TxRxSession#ERROR_READ} when the
+         * response of a query is not received
+         */
+        public int getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Returns the response of a {@link #STEP_QUERY} step, as delivered by
+         * {@link TxRxSessionCallback#onNotifyData(String)}.
+         *
+         * @return the response, or null for other steps, for a failed step or with a frame decoder
+         */
+        public String getResponse() {
+            return response;
+        }
+
+        /**
+         * Returns the response of a {@link #STEP_QUERY} step, as delivered by
+         * {@link TxRxSessionCallback#onNotifyFrame(byte[], int, int)} when the profile has a frame decoder.
+         *
+         * @return the response frame, or null for other steps, for a failed step or without a frame decoder
+         */
+        public byte[] getResponseFrame() {
+            return responseFrame;
+        }
+
+        /**
+         * Returns the time the step started, since the start of the script.
+         *
+         * @return the start offset in milliseconds
+         */
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * Returns the step.
+         *
+         * @return the step of the script
+         */
+        public Step getStep() {
+            return step;
+        }
+    }
+
+    private final List<Step> steps;
+
+    /**
+     * Create a new empty {@link TxRxInitScript}, to be completed through its {@code with} methods.
+     */
+    public TxRxInitScript() {
+        this(Collections.<Step>emptyList());
+    }
+
+    private TxRxInitScript(List<Step> steps) {
+        this.steps = Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * Returns the steps of the script, in order.
+     *
+     * @return the unmodifiable list of the steps
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxInitScript}, with a query step appended: the command is written and its
+     * response awaited, as delivered after the later read timeout or by the frame decoder of the profile. Commands
+     * answered by the device should be queries even if their response is not needed, so that it is not mistaken
+     * for the response of a later step.
+     *
+     * @param command String the command to write, without terminator
+     * @return a new {@link TxRxInitScript} with the query step
+     */
+    public TxRxInitScript withQuery(String command) {
+        return withStep(new Step(STEP_QUERY, command, 0));
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxInitScript}, with a setMode step appended.
+     *
+     * @param mode int the operation mode to set
+     * @return a new {@link TxRxInitScript} with the setMode step
+     */
+    public TxRxInitScript withSetMode(int mode) {
+        return withStep(new Step(STEP_SET_MODE, null, mode));
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxInitScript}, with a write step appended: the command is written, and the
+     * next step starts as soon as the device replies, its reply being discarded, or else at the read/notify timeout,
+     * for commands whose answer is not needed.
+     *
+     * @param command String the command to write, without terminator
+     * @return a new {@link TxRxInitScript} with the write step
+     */
+    public TxRxInitScript withWrite(String command) {
+        return withStep(new Step(STEP_WRITE, command, 0));
+    }
+
+    private TxRxInitScript withStep(Step step) {
+        List<Step> newSteps = new ArrayList<>(steps.size() + 1);
+        newSteps.addAll(steps);
+        newSteps.add(step);
+
+        return new TxRxInitScript(newSteps);
+    }
+}
@@ -0,0 +1,134 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+/**
+ * This class estimates the quality of the link with a device, updated live by the {@link TxRxSession} of the
+ * connection.
+ * <p>
+ * The estimation combines the last RSSI read from the device with the moving averages of the write acknowledgement
+ * latency and of the write failure rate into a score from 0 (lost link) to 100 (perfect link), according to the
+ * thresholds of a {@link TxRxLinkQualityPolicy}. Measurements are kept across reconnections to the same device, so
+ * that the previous session drives the choice of the PHY.
+ *
+ * @see TxRxSession#getLinkQuality()
+ */
+public class TxRxLinkQuality {
+
+    /**
+     * Weight of the newest sample in the moving averages
+     */
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private static final double RSSI_WEIGHT = 0.4;
+    private static final double ACK_LATENCY_WEIGHT = 0.3;
+    private static final double FAILURE_RATE_WEIGHT = 0.3;
+
+    private TxRxLinkQualityPolicy policy;
+
+    private boolean hasRssi;
+    private int rssi;
+    private boolean hasAckLatency;
+    private double ackLatency;
+    private boolean hasFailureRate;
+    private double failureRate;
+
+    TxRxLinkQuality(TxRxLinkQualityPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the moving average of the write acknowledgement latency
+     *
+     * @return the acknowledgement latency in milliseconds, -1 if no write has been acknowledged yet
+     */
+    public synchronized long getAckLatency() {
+        return hasAckLatency ? Math.round(ackLatency) : -1;
+    }
+
+    /**
+     * Returns the moving average of the fraction of failed writes
+     *
+     * @return the failure rate, from 0 to 1
+     */
+    public synchronized double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * Returns the last RSSI read from the device, or found during scan
+     *
+     * @return the RSSI in dBm, 0 if unknown
+     */
+    public synchronized int getRssi() {
+        return hasRssi ? rssi : 0;
+    }
+
+    /**
+     * Returns the link quality score, the weighted average of the RSSI, acknowledgement latency and failure rate
+     * scores available.
+     *
+     * @return the score from 0 to 100, -1 if nothing has been measured yet
+     */
+    public synchronized int getScore() {
+        double total = 0;
+        double weights = 0;
+
+        if (hasRssi) {
+            double range = policy.getGoodRssi() - policy.getBadRssi();
+            total += RSSI_WEIGHT * clamp((rssi - policy.getBadRssi()) / range);
+            weights += RSSI_WEIGHT;
+        }
+
+        if (hasAckLatency) {
+            // full score up to the target, no score from four times the target
+            double target = policy.getAckLatencyTarget();
+            total += ACK_LATENCY_WEIGHT * clamp((4 * target - ackLatency) / (3 * target));
+            weights += ACK_LATENCY_WEIGHT;
+        }
+
+        if (hasFailureRate) {
+            // no score when half of the writes fail
+            total += FAILURE_RATE_WEIGHT * clamp(1 - 2 * failureRate);
+            weights += FAILURE_RATE_WEIGHT;
+        }
+
+        return weights > 0 ? (int) Math.round(100 * total / weights) : -1;
+    }
+
+    synchronized void onChunkAcknowledged(long latency) {
+        ackLatency = hasAckLatency ? average(ackLatency, latency) : latency;
+        hasAckLatency = true;
+        failureRate = average(failureRate, 0);
+        hasFailureRate = true;
+    }
+
+    synchronized void onChunkFailed() {
+        failureRate = average(failureRate, 1);
+        hasFailureRate = true;
+    }
+
+    synchronized void onRssi(int rssi) {
+        this.rssi = rssi;
+        hasRssi = true;
+    }
+
+    synchronized void reset() {
+        hasRssi = false;
+        rssi = 0;
+        hasAckLatency = false;
+        ackLatency = 0;
+        hasFailureRate = false;
+        failureRate = 0;
+    }
+
+    synchronized void setPolicy(TxRxLinkQualityPolicy policy) {
+        this.policy = policy;
+    }
+
+    private static double average(double average, double sample) {
+        return average + SMOOTHING_FACTOR * (sample - average);
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
@@ -0,0 +1,236 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+/**
+ * This is an utility class for adapting the write path to the quality of the link with the device.
+ * <p>
+ * The link quality is a score from 0 to 100, combining the RSSI periodically read from the device, the latency of
+ * the write acknowledgements and the rate of failed writes (see {@link TxRxLinkQuality}). As the score decreases, the
+ * chunks of a bulk transfer are shrunk from the profile packet size down to {@link #getMinChunkSize()}, and a
+ * pacing delay up to {@link #getMaxPacingDelay()} is inserted between the chunks, so that a degrading link produces
+ * short and spaced writes instead of long runs of failures.
+ * <p>
+ * When neither the {@link TxRxDeviceProfile} nor {@code TxRxDeviceManager.setPreferredPhy(int, int)} declare a
+ * preferred PHY, the 2M PHY is requested while the score is at least {@link #getHighSpeedPhyScore()}, and the 1M
+ * PHY is restored when the link degrades.
+ */
+public class TxRxLinkQualityPolicy {
+
+    /**
+     * Default value for the interval between two RSSI reads
+     */
+    public static final long RSSI_POLL_INTERVAL_DEFAULT_VALUE = 2000;
+
+    /**
+     * Default value for the RSSI considered a perfect link
+     */
+    public static final int GOOD_RSSI_DEFAULT_VALUE = -60;
+
+    /**
+     * Default value for the RSSI considered a lost link
+     */
+    public static final int BAD_RSSI_DEFAULT_VALUE = -90;
+
+    /**
+     * Default value for the acknowledgement latency of a healthy link
+     */
+    public static final long ACK_LATENCY_TARGET_DEFAULT_VALUE = 50;
+
+    /**
+     * Default value for the minimum size of a chunk
+     */
+    public static final int MIN_CHUNK_SIZE_DEFAULT_VALUE = 20;
+
+    /**
+     * Default value for the maximum delay between two chunks
+     */
+    public static final long MAX_PACING_DELAY_DEFAULT_VALUE = 50;
+
+    /**
+     * Default value for the minimum score needed to request the 2M PHY
+     */
+    public static final int HIGH_SPEED_PHY_SCORE_DEFAULT_VALUE = 70;
+
+    /**
+     * Score decrease below {@link #getHighSpeedPhyScore()} needed to restore the 1M PHY, so that a link on the
+     * threshold does not switch PHY back and forth
+     */
+    private static final int HIGH_SPEED_PHY_HYSTERESIS = 10;
+
+    /**
+     * Score above which the chunk size is not reduced and no pacing delay is inserted
+     */
+    private static final int FULL_SPEED_SCORE = 80;
+
+    private static final TxRxLinkQualityPolicy defaultLinkQualityPolicy = new TxRxLinkQualityPolicy(
+            RSSI_POLL_INTERVAL_DEFAULT_VALUE,
+            GOOD_RSSI_DEFAULT_VALUE,
+            BAD_RSSI_DEFAULT_VALUE,
+            ACK_LATENCY_TARGET_DEFAULT_VALUE,
+            MIN_CHUNK_SIZE_DEFAULT_VALUE,
+            MAX_PACING_DELAY_DEFAULT_VALUE,
+            HIGH_SPEED_PHY_SCORE_DEFAULT_VALUE
+    );
+
+    private static final TxRxLinkQualityPolicy noLinkQualityPolicy = new TxRxLinkQualityPolicy(0,
+            GOOD_RSSI_DEFAULT_VALUE, BAD_RSSI_DEFAULT_VALUE, ACK_LATENCY_TARGET_DEFAULT_VALUE, 0, 0, 0);
+
+    /**
+     * Returns a {@link TxRxLinkQualityPolicy}, configured with default values
+     *
+     * @return a TxRxLinkQualityPolicy with default values
+     */
+    public static TxRxLinkQualityPolicy getDefaultLinkQualityPolicy() {
+        return defaultLinkQualityPolicy;
+    }
+
+    /**
+     * Returns a {@link TxRxLinkQualityPolicy} which never adapts the write path nor the PHY, and never reads the
+     * RSSI. The link quality is still estimated from the write acknowledgements. This is the default used by
+     * {@link TxRxSession}.
+     *
+     * @return a TxRxLinkQualityPolicy without adaptation
+     */
+    public static TxRxLinkQualityPolicy getNoLinkQualityPolicy() {
+        return noLinkQualityPolicy;
+    }
+
+    private final long rssiPollInterval;
+    private final int goodRssi;
+    private final int badRssi;
+    private final long ackLatencyTarget;
+    private final int minChunkSize;
+    private final long maxPacingDelay;
+    private final int highSpeedPhyScore;
+
+    /**
+     * Create a new {@link TxRxLinkQualityPolicy} in order to adapt the write path to the link quality.
+     *
+     * @param rssiPollInterval  long the interval between two RSSI reads, 0 to never read the RSSI
+     * @param goodRssi          int the RSSI considered a perfect link
+     * @param badRssi           int the RSSI considered a lost link, lower than goodRssi
+     * @param ackLatencyTarget  long the acknowledgement latency of a healthy link
+     * @param minChunkSize      int the minimum size of a chunk, 0 to never adapt the chunk size
+     * @param maxPacingDelay    long the maximum delay between two chunks, 0 to never pace the chunks
+     * @param highSpeedPhyScore int the minimum score needed to request the 2M PHY, 0 to never request it
+     */
+    public TxRxLinkQualityPolicy(long rssiPollInterval, int goodRssi, int badRssi, long ackLatencyTarget,
+                                 int minChunkSize, long maxPacingDelay, int highSpeedPhyScore) {
+        this.rssiPollInterval = rssiPollInterval;
+        this.goodRssi = goodRssi;
+        this.badRssi = badRssi;
+        this.ackLatencyTarget = ackLatencyTarget;
+        this.minChunkSize = minChunkSize;
+        this.maxPacingDelay = maxPacingDelay;
+        this.highSpeedPhyScore = highSpeedPhyScore;
+    }
+
+    /**
+     * Returns the acknowledgement latency of a healthy link
+     *
+     * @return a long representing the acknowledgement latency target, in milliseconds
+     */
+    public long getAckLatencyTarget() {
+        return ackLatencyTarget;
+    }
+
+    /**
+     * Returns the RSSI considered a lost link
+     *
+     * @return an int representing the bad RSSI, in dBm
+     */
+    public int getBadRssi() {
+        return badRssi;
+    }
+
+    /**
+     * Returns the size of the next chunk for the specified score: the maximum size above a score of 80, then
+     * decreasing linearly down to the minimum chunk size.
+     *
+     * @param score        int the link quality score, negative if unknown
+     * @param maxChunkSize int the maximum chunk size, i.e. the profile packet size
+     * @return the chunk size
+     */
+    public int getChunkSize(int score, int maxChunkSize) {
+        if (minChunkSize <= 0 || score < 0 || score >= FULL_SPEED_SCORE || minChunkSize >= maxChunkSize) {
+            return maxChunkSize;
+        }
+
+        return minChunkSize + (maxChunkSize - minChunkSize) * score / FULL_SPEED_SCORE;
+    }
+
+    /**
+     * Returns the RSSI considered a perfect link
+     *
+     * @return an int representing the good RSSI, in dBm
+     */
+    public int getGoodRssi() {
+        return goodRssi;
+    }
+
+    /**
+     * Returns the minimum score needed to request the 2M PHY
+     *
+     * @return an int representing the high speed PHY score
+     */
+    public int getHighSpeedPhyScore() {
+        return highSpeedPhyScore;
+    }
+
+    /**
+     * Returns the maximum delay between two chunks
+     *
+     * @return a long representing the maximum pacing delay, in milliseconds
+     */
+    public long getMaxPacingDelay() {
+        return maxPacingDelay;
+    }
+
+    /**
+     * Returns the minimum size of a chunk
+     *
+     * @return an int representing the minimum chunk size
+     */
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    /**
+     * Returns the delay before writing the next chunk for the specified score: none above a score of 80, then
+     * increasing linearly up to the maximum pacing delay.
+     *
+     * @param score int the link quality score, negative if unknown
+     * @return the pacing delay, in milliseconds
+     */
+    public long getPacingDelay(int score) {
+        if (maxPacingDelay <= 0 || score < 0 || score >= FULL_SPEED_SCORE) {
+            return 0;
+        }
+
+        return maxPacingDelay * (FULL_SPEED_SCORE - score) / FULL_SPEED_SCORE;
+    }
+
+    /**
+     * Returns the interval between two RSSI reads
+     *
+     * @return a long representing the RSSI poll interval, in milliseconds
+     */
+    public long getRssiPollInterval() {
+        return rssiPollInterval;
+    }
+
+    /**
+     * Returns whether the 2M PHY should be used for the specified score. A link already on the 2M PHY keeps it
+     * until the score decreases noticeably below the high speed PHY score.
+     *
+     * @param score          int the link quality score, negative if unknown
+     * @param isHighSpeedPhy boolean true if the link is currently on the 2M PHY
+     * @return true if the 2M PHY should be used, false otherwise.
+     */
+    public boolean isHighSpeedPhy(int score, boolean isHighSpeedPhy) {
+        if (highSpeedPhyScore <= 0 || score < 0) {
+            return false;
+        }
+
+        return score >= (isHighSpeedPhy ? highSpeedPhyScore - HIGH_SPEED_PHY_HYSTERESIS : highSpeedPhyScore);
+    }
+}
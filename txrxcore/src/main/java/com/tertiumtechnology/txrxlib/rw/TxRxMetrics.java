@@ -0,0 +1,228 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects counters about the communication with a device, updated live by
+ * {@link TxRxSession} of the connection.
+ *
+ * @see TxRxSession#getMetrics()
+ */
+public class TxRxMetrics {
+
+    private final AtomicLong chunksWritten = new AtomicLong();
+    private final AtomicLong chunkRetries = new AtomicLong();
+    private final AtomicLong recoveredChunks = new AtomicLong();
+    private final AtomicLong writeResumes = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong connectionDrops = new AtomicLong();
+    private final AtomicLong reconnectAttempts = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong reconnectTime = new AtomicLong();
+    private final AtomicLong lastReconnectTime = new AtomicLong();
+    private final AtomicLong connectionPriorityChanges = new AtomicLong();
+    private final AtomicLong highPriorityTime = new AtomicLong();
+    private final AtomicLong readPolls = new AtomicLong();
+    private final AtomicLong skippedReadPolls = new AtomicLong();
+
+    /**
+     * Returns the average time needed to reconnect to the device, from the disconnection to the discovery of the
+     * TxRx services
+     *
+     * @return the average reconnection time in milliseconds, zero if the device has never been reconnected
+     */
+    public long getAverageReconnectTime() {
+        long count = reconnects.get();
+        return count > 0 ? reconnectTime.get() / count : 0;
+    }
+
+    /**
+     * Returns the number of chunk retries, after a transient write failure
+     *
+     * @return the number of chunk retries
+     */
+    public long getChunkRetries() {
+        return chunkRetries.get();
+    }
+
+    /**
+     * Returns the number of chunks successfully written to the device
+     *
+     * @return the number of chunks written
+     */
+    public long getChunksWritten() {
+        return chunksWritten.get();
+    }
+
+    /**
+     * Returns the number of connection priority changes requested according to the workload
+     *
+     * @return the number of connection priority changes
+     */
+    public long getConnectionPriorityChanges() {
+        return connectionPriorityChanges.get();
+    }
+
+    /**
+     * Returns the number of unexpected disconnections from the device, followed by a reconnection
+     *
+     * @return the number of connection drops
+     */
+    public long getConnectionDrops() {
+        return connectionDrops.get();
+    }
+
+    /**
+     * Returns the time spent with {@code BluetoothGatt.CONNECTION_PRIORITY_HIGH}, up to the last
+     * connection priority change
+     *
+     * @return the high priority time, in milliseconds
+     */
+    public long getHighPriorityTime() {
+        return highPriorityTime.get();
+    }
+
+    /**
+     * Returns the time needed by the last reconnection to the device
+     *
+     * @return the last reconnection time in milliseconds, zero if the device has never been reconnected
+     */
+    public long getLastReconnectTime() {
+        return lastReconnectTime.get();
+    }
+
+    /**
+     * Returns the number of writes resumed, after the chunk retries have been exhausted or a write timeout
+     *
+     * @return the number of write resumes
+     */
+    public long getWriteResumes() {
+        return writeResumes.get();
+    }
+
+    /**
+     * Returns the number of reads of the Tx characteristic initiated by the read polling, including the reads
+     * continuing a value longer than the Tx packet size
+     *
+     * @return the number of poll reads
+     */
+    public long getReadPolls() {
+        return readPolls.get();
+    }
+
+    /**
+     * Returns the number of chunks successfully written after at least one retry
+     *
+     * @return the number of recovered chunks
+     */
+    public long getRecoveredChunks() {
+        return recoveredChunks.get();
+    }
+
+    /**
+     * Returns the number of reconnection attempts
+     *
+     * @return the number of reconnection attempts
+     */
+    public long getReconnectAttempts() {
+        return reconnectAttempts.get();
+    }
+
+    /**
+     * Returns the number of successful reconnections
+     *
+     * @return the number of reconnections
+     */
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Returns the number of read polling ticks skipped, since the previous poll read was still outstanding or the
+     * link was busy
+     *
+     * @return the number of skipped poll ticks
+     */
+    public long getSkippedReadPolls() {
+        return skippedReadPolls.get();
+    }
+
+    /**
+     * Returns the number of write operations failed after every retry
+     *
+     * @return the number of write failures
+     */
+    public long getWriteFailures() {
+        return writeFailures.get();
+    }
+
+    /**
+     * Reset every counter to zero.
+     */
+    public void reset() {
+        chunksWritten.set(0);
+        chunkRetries.set(0);
+        recoveredChunks.set(0);
+        writeResumes.set(0);
+        writeFailures.set(0);
+        connectionDrops.set(0);
+        reconnectAttempts.set(0);
+        reconnects.set(0);
+        reconnectTime.set(0);
+        lastReconnectTime.set(0);
+        connectionPriorityChanges.set(0);
+        highPriorityTime.set(0);
+        readPolls.set(0);
+        skippedReadPolls.set(0);
+    }
+
+    void onChunkRetry() {
+        chunkRetries.incrementAndGet();
+    }
+
+    void onChunkWritten(boolean recovered) {
+        chunksWritten.incrementAndGet();
+
+        if (recovered) {
+            recoveredChunks.incrementAndGet();
+        }
+    }
+
+    void onConnectionPriorityChanged(boolean wasHighPriority, long time) {
+        connectionPriorityChanges.incrementAndGet();
+
+        if (wasHighPriority) {
+            highPriorityTime.addAndGet(time);
+        }
+    }
+
+    void onConnectionDrop() {
+        connectionDrops.incrementAndGet();
+    }
+
+    void onWriteResume() {
+        writeResumes.incrementAndGet();
+    }
+
+    void onReadPoll() {
+        readPolls.incrementAndGet();
+    }
+
+    void onReadPollSkipped() {
+        skippedReadPolls.incrementAndGet();
+    }
+
+    void onReconnectAttempt() {
+        reconnectAttempts.incrementAndGet();
+    }
+
+    void onReconnected(long time) {
+        reconnects.incrementAndGet();
+        reconnectTime.addAndGet(time);
+        lastReconnectTime.set(time);
+    }
+
+    void onWriteFailure() {
+        writeFailures.incrementAndGet();
+    }
+}
@@ -0,0 +1,125 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This class holds the {@link TxRxDeviceProfile} known by the library, used to recognize TxRx devices during
+ * service discovery.
+ * <p>
+ * Built-in profiles are always registered; applications can register further profiles, or replace a built-in
+ * one, through {@link #registerProfile(TxRxDeviceProfile)}.
+ */
+public final class TxRxProfileRegistry {
+
+    static final String SENSOR_TERTIUM_SERVICEUUID = "f3770001-1164-49bc-8f22-0ac34292c217";
+    static final String TX_RX_ACKME_SERVICEUUID = "175f8f23-a570-49bd-9627-815a6a27de2a";
+    static final String ZHAGA_SERVICEUUID = "3cc30001-cb91-4947-bd12-80d2f0535a30";
+    static final String TX_RX_TERTIUM_SERVICEUUID = "d7080001-052c-46c4-9978-c0977bebf328";
+    static final String ZEBRA_TERTIUM_SERVICEUUID = "c1ff0001-c47e-424d-9495-fb504404b8f5";
+
+    private static final List<TxRxDeviceProfile> txRxProfiles = new CopyOnWriteArrayList<>();
+
+    static {
+        // Tertium sensor
+        txRxProfiles.add(new TxRxDeviceProfile(
+                SENSOR_TERTIUM_SERVICEUUID,
+                "f3770002-1164-49bc-8f22-0ac34292c217",
+                "f3770003-1164-49bc-8f22-0ac34292c217",
+                "",
+                "",
+                TxRxDeviceProfile.TerminatorType.CRLF,
+                TxRxDeviceProfile.TerminatorType.NONE,
+                240, 240));
+
+        // Zentri Ackme
+        txRxProfiles.add(new TxRxDeviceProfile(
+                TX_RX_ACKME_SERVICEUUID,
+                "1cce1ea8-bd34-4813-a00a-c76e028fadcb",
+                "cacc07ff-ffff-4c48-8fae-a9ef71b75e26",
+                "20b9794f-da1a-4d14-8014-a0fb9cefb2f7",
+                "",
+                TxRxDeviceProfile.TerminatorType.CRLF,
+                TxRxDeviceProfile.TerminatorType.NONE,
+                15, 20));
+
+        // Zhaga TxRx
+        txRxProfiles.add(new TxRxDeviceProfile(
+                ZHAGA_SERVICEUUID,
+                "3cc30002-cb91-4947-bd12-80d2f0535a30",
+                "3cc30003-cb91-4947-bd12-80d2f0535a30",
+                "",
+                "3cc30004-cb91-4947-bd12-80d2f0535a30",
+                TxRxDeviceProfile.TerminatorType.CR,
+                TxRxDeviceProfile.TerminatorType.NONE,
+                240, 240));
+
+        // Tertium TxRx
+        txRxProfiles.add(new TxRxDeviceProfile(
+                TX_RX_TERTIUM_SERVICEUUID,
+                "d7080002-052c-46c4-9978-c0977bebf328",
+                "d7080003-052c-46c4-9978-c0977bebf328",
+                "",
+                "",
+                TxRxDeviceProfile.TerminatorType.CRLF,
+                TxRxDeviceProfile.TerminatorType.NONE,
+                240, 240));
+
+        // Tertium-Zebra TxRx
+        txRxProfiles.add(new TxRxDeviceProfile(
+                ZEBRA_TERTIUM_SERVICEUUID,
+                "c1ff0002-c47e-424d-9495-fb504404b8f5",
+                "c1ff0003-c47e-424d-9495-fb504404b8f5",
+                "",
+                "",
+                TxRxDeviceProfile.TerminatorType.CRLF,
+                TxRxDeviceProfile.TerminatorType.NONE,
+                240, 240));
+    }
+
+    private TxRxProfileRegistry() {
+    }
+
+    /**
+     * Returns the {@link TxRxDeviceProfile} registered for the specified service UUID.
+     *
+     * @param txRxServiceUuid String the device Service UUID
+     * @return the registered profile, or null if no profile is registered for the service UUID
+     */
+    public static TxRxDeviceProfile findByServiceUuid(String txRxServiceUuid) {
+        for (TxRxDeviceProfile profile : txRxProfiles) {
+            if (profile.getTxRxServiceUuid().equalsIgnoreCase(txRxServiceUuid)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the registered {@link TxRxDeviceProfile}, in the order used during service discovery.
+     *
+     * @return an unmodifiable list of the registered profiles
+     */
+    public static List<TxRxDeviceProfile> getProfiles() {
+        return Collections.unmodifiableList(txRxProfiles);
+    }
+
+    /**
+     * Register a {@link TxRxDeviceProfile}, replacing any profile previously registered for the same service UUID.
+     * <p>
+     * The profile is used by every {@code TxRxDeviceManager} on the next service discovery.
+     *
+     * @param profile the {@link TxRxDeviceProfile} to register
+     */
+    public static synchronized void registerProfile(TxRxDeviceProfile profile) {
+        for (int i = 0; i < txRxProfiles.size(); i++) {
+            if (txRxProfiles.get(i).getTxRxServiceUuid().equalsIgnoreCase(profile.getTxRxServiceUuid())) {
+                txRxProfiles.set(i, profile);
+                return;
+            }
+        }
+
+        txRxProfiles.add(profile);
+    }
+}
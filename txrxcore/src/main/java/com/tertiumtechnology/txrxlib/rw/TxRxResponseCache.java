@@ -0,0 +1,183 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class caches the responses of idempotent query commands, such as firmware version, serial number or
+ * configuration read-back, so that the commands sent after every connection are answered without a write and notify
+ * round trip.
+ * <p>
+ * The cache is opt-in: only the commands registered through {@link #addQueryCommand(String)} are cached, keyed by
+ * device and command. A cached response is served by the {@link TxRxSession} without touching the link, through the
+ * same callbacks of a response from the device, until its time to live expires.
+ * <p>
+ * The responses of a device are invalidated when its mode is set, when a command registered through
+ * {@link #addInvalidatingCommand(String)} is written, e.g. a configuration write, and when the device is reconnected
+ * after an unexpected disconnection.
+ *
+ * @see TxRxSession#setResponseCache(TxRxResponseCache, String)
+ */
+public class TxRxResponseCache {
+
+    /**
+     * Default value for the time to live of the cached responses
+     */
+    public static final long TIME_TO_LIVE_DEFAULT_VALUE = 10 * 60 * 1000;
+
+    static class Response {
+
+        final String data;
+        final byte[] frame;
+        final long time;
+
+        Response(String data, byte[] frame, long time) {
+            this.data = data;
+            this.frame = frame;
+            this.time = time;
+        }
+    }
+
+    private final long timeToLive;
+    private final Set<String> queryCommands;
+    private final Set<String> invalidatingCommands;
+    private final Map<String, Map<String, Response>> responses;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a new {@link TxRxResponseCache}, with the default time to live.
+     */
+    public TxRxResponseCache() {
+        this(TIME_TO_LIVE_DEFAULT_VALUE);
+    }
+
+    /**
+     * Create a new {@link TxRxResponseCache}.
+     *
+     * @param timeToLive long the time in milliseconds a response is served from the cache, 0 to keep it until
+     *                   invalidated
+     */
+    public TxRxResponseCache(long timeToLive) {
+        this.timeToLive = timeToLive;
+        this.queryCommands = new HashSet<>();
+        this.invalidatingCommands = new HashSet<>();
+        this.responses = new HashMap<>();
+    }
+
+    /**
+     * Register a command invalidating the cached responses of the device it is written to. Commands are matched by
+     * prefix, so that e.g. a configuration write is matched whatever its arguments.
+     *
+     * @param commandPrefix String the prefix of the invalidating commands, without terminator
+     */
+    public synchronized void addInvalidatingCommand(String commandPrefix) {
+        invalidatingCommands.add(commandPrefix);
+    }
+
+    /**
+     * Register an idempotent query command, whose response is cached. Commands are matched exactly.
+     *
+     * @param command String the query command, without terminator
+     */
+    public synchronized void addQueryCommand(String command) {
+        queryCommands.add(command);
+    }
+
+    /**
+     * Remove every cached response, keeping the registered commands and the counters.
+     */
+    public synchronized void clear() {
+        responses.clear();
+    }
+
+    /**
+     * Returns the number of query commands served from the cache
+     *
+     * @return the number of cache hits
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of query commands written to the device, since not cached or expired
+     *
+     * @return the number of cache misses
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the time a response is served from the cache
+     *
+     * @return the time to live in milliseconds, 0 if responses are kept until invalidated
+     */
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Remove the cached responses of the specified device.
+     *
+     * @param device String the device, e.g. its Bluetooth address, null for a session without device
+     */
+    public synchronized void invalidate(String device) {
+        responses.remove(key(device));
+    }
+
+    synchronized Response get(String device, String command, long now) {
+        if (!queryCommands.contains(command)) {
+            return null;
+        }
+
+        Map<String, Response> deviceResponses = responses.get(key(device));
+        Response response = deviceResponses != null ? deviceResponses.get(command) : null;
+
+        if (response != null && timeToLive > 0 && now - response.time >= timeToLive) {
+            deviceResponses.remove(command);
+            response = null;
+        }
+
+        if (response != null) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return response;
+    }
+
+    synchronized boolean isInvalidating(String command) {
+        for (String commandPrefix : invalidatingCommands) {
+            if (command.startsWith(commandPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean isQuery(String command) {
+        return queryCommands.contains(command);
+    }
+
+    synchronized void put(String device, String command, String data, byte[] frame, long now) {
+        Map<String, Response> deviceResponses = responses.get(key(device));
+
+        if (deviceResponses == null) {
+            deviceResponses = new HashMap<>();
+            responses.put(key(device), deviceResponses);
+        }
+
+        deviceResponses.put(command, new Response(data, frame, now));
+    }
+
+    private static String key(String device) {
+        return device != null ? device : "";
+    }
+}
@@ -0,0 +1,164 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+/**
+ * This is an utility class for managing the retries of failed write operations.
+ * <p>
+ * A failed chunk is written again, after an exponential backoff delay, up to {@link #getMaxChunkRetries()} times.
+ * When the chunk retries are exhausted, or the write times out, the write is resumed after a longer delay, up to
+ * {@link #getMaxWriteResumes()} times, from the first chunk not acknowledged by the device and with a new budget of
+ * chunk retries. The acknowledged chunks of a command are never sent twice, since the device can not tell a command
+ * written again from the continuation of the previous one.
+ * <p>
+ * By default, a session does not retry: see {@link #getNoRetryPolicy()}.
+ */
+public class TxRxRetryPolicy {
+
+    /**
+     * Default value for the maximum number of retries of a single chunk
+     */
+    public static final int MAX_CHUNK_RETRIES_DEFAULT_VALUE = 3;
+
+    /**
+     * Default value for the delay before the first retry of a chunk
+     */
+    public static final long CHUNK_RETRY_DELAY_DEFAULT_VALUE = 30;
+
+    /**
+     * Default value for the maximum delay between two retries of a chunk
+     */
+    public static final long MAX_CHUNK_RETRY_DELAY_DEFAULT_VALUE = 500;
+
+    /**
+     * Default value for the maximum number of resumes of a write
+     */
+    public static final int MAX_WRITE_RESUMES_DEFAULT_VALUE = 1;
+
+    /**
+     * Default value for the delay before a write is resumed
+     */
+    public static final long WRITE_RESUME_DELAY_DEFAULT_VALUE = 300;
+
+    /**
+     * Status used when a write operation can not be initiated, for instance because the stack is busy
+     */
+    static final int STATUS_NOT_INITIATED = -1;
+
+    // GATT status codes which will not change retrying the same request
+    private static final int GATT_READ_NOT_PERMITTED = 0x02;
+    private static final int GATT_WRITE_NOT_PERMITTED = 0x03;
+    private static final int GATT_INSUFFICIENT_AUTHENTICATION = 0x05;
+    private static final int GATT_REQUEST_NOT_SUPPORTED = 0x06;
+    private static final int GATT_INVALID_ATTRIBUTE_LENGTH = 0x0d;
+    private static final int GATT_INSUFFICIENT_ENCRYPTION = 0x0f;
+
+    private static final TxRxRetryPolicy defaultRetryPolicy = new TxRxRetryPolicy(
+            MAX_CHUNK_RETRIES_DEFAULT_VALUE,
+            CHUNK_RETRY_DELAY_DEFAULT_VALUE,
+            MAX_CHUNK_RETRY_DELAY_DEFAULT_VALUE,
+            MAX_WRITE_RESUMES_DEFAULT_VALUE,
+            WRITE_RESUME_DELAY_DEFAULT_VALUE
+    );
+
+    private static final TxRxRetryPolicy noRetryPolicy = new TxRxRetryPolicy(0, 0, 0, 0, 0);
+
+    /**
+     * Returns a {@link TxRxRetryPolicy}, configured with default values
+     *
+     * @return a TxRxRetryPolicy with default values
+     */
+    public static TxRxRetryPolicy getDefaultRetryPolicy() {
+        return defaultRetryPolicy;
+    }
+
+    /**
+     * Returns a {@link TxRxRetryPolicy} which never retries, reporting the first failure as a write error
+     *
+     * @return a TxRxRetryPolicy without retries
+     */
+    public static TxRxRetryPolicy getNoRetryPolicy() {
+        return noRetryPolicy;
+    }
+
+    private final int maxChunkRetries;
+    private final long chunkRetryDelay;
+    private final long maxChunkRetryDelay;
+    private final int maxWriteResumes;
+    private final long writeResumeDelay;
+
+    /**
+     * Create a new {@link TxRxRetryPolicy} in order to manage write retries.
+     *
+     * @param maxChunkRetries    int the maximum number of retries of a single chunk
+     * @param chunkRetryDelay    long the delay before the first retry of a chunk, doubled on each further retry
+     * @param maxChunkRetryDelay long the maximum delay between two retries of a chunk
+     * @param maxWriteResumes    int the maximum number of resumes of a write, once the chunk retries are exhausted
+     * @param writeResumeDelay   long the delay before a write is resumed
+     */
+    public TxRxRetryPolicy(int maxChunkRetries, long chunkRetryDelay, long maxChunkRetryDelay,
+                           int maxWriteResumes, long writeResumeDelay) {
+        this.maxChunkRetries = maxChunkRetries;
+        this.chunkRetryDelay = chunkRetryDelay;
+        this.maxChunkRetryDelay = maxChunkRetryDelay;
+        this.maxWriteResumes = maxWriteResumes;
+        this.writeResumeDelay = writeResumeDelay;
+    }
+
+    /**
+     * Returns the delay before the specified retry of a chunk
+     *
+     * @param retry int the retry number, starting from 0
+     * @return a long representing the delay before the retry
+     */
+    public long getChunkRetryDelay(int retry) {
+        long delay = chunkRetryDelay << Math.min(retry, 16);
+        return Math.min(delay, maxChunkRetryDelay);
+    }
+
+    /**
+     * Returns the maximum number of retries of a single chunk
+     *
+     * @return an int representing the maximum number of retries of a single chunk
+     */
+    public int getMaxChunkRetries() {
+        return maxChunkRetries;
+    }
+
+    /**
+     * Returns the maximum number of resumes of a write, once the chunk retries are exhausted
+     *
+     * @return an int representing the maximum number of resumes of a write
+     */
+    public int getMaxWriteResumes() {
+        return maxWriteResumes;
+    }
+
+    /**
+     * Returns the delay before a write is resumed
+     *
+     * @return a long representing the delay before a write is resumed
+     */
+    public long getWriteResumeDelay() {
+        return writeResumeDelay;
+    }
+
+    /**
+     * Returns whether a write failed with the specified status can succeed if retried. Transient failures, such as
+     * GATT error 133 or a busy stack, are retryable, while permission and attribute errors are not.
+     *
+     * @param status int the GATT status of the failed write, or -1 if the write could not be initiated
+     * @return true if the write can be retried, false otherwise.
+     */
+    public boolean isRetryable(int status) {
+        switch (status) {
+            case GATT_READ_NOT_PERMITTED:
+            case GATT_WRITE_NOT_PERMITTED:
+            case GATT_INSUFFICIENT_AUTHENTICATION:
+            case GATT_REQUEST_NOT_SUPPORTED:
+            case GATT_INVALID_ATTRIBUTE_LENGTH:
+            case GATT_INSUFFICIENT_ENCRYPTION:
+                return false;
+            default:
+                return true;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+/**
+ * Scheduler running the timeouts and the delayed tasks of a {@link TxRxSession}, such as the Android adapter
+ * handler thread.
+ * <p>
+ * Tasks must be run one at a time, in order of due time. Every time measured by the session is read from the
+ * scheduler clock, so that a {@link TxRxVirtualScheduler} controls timeouts and measures alike.
+ */
+public interface TxRxScheduler {
+
+    /**
+     * Returns the current time of the scheduler clock.
+     *
+     * @return the current time in milliseconds
+     */
+    long now();
+
+    /**
+     * Run the specified task after the specified delay.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     */
+    void post(Runnable task, long delay);
+
+    /**
+     * Remove every pending run of the specified task.
+     *
+     * @param task the task to remove
+     */
+    void remove(Runnable task);
+}
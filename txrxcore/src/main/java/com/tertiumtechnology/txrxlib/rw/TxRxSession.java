@@ -0,0 +1,1754 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import com.tertiumtechnology.txrxlib.frame.FrameDecoder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is the protocol engine of a connection to a device which offers TxRx services, independent of the
+ * Android Bluetooth stack.
+ * <p>
+ * The session splits the written data into chunks and retries them according to the {@link TxRxRetryPolicy},
+ * accumulates or decodes the read, notified and event values, and runs the write, read and setMode timeouts. The
+ * characteristics are reached through a {@link TxRxTransport} and the timeouts are run by a {@link TxRxScheduler},
+ * so that the same engine drives a GATT connection on Android and a simulated device on a plain JVM.
+ * <p>
+ * Requests, transport results and timeouts can come from different threads: every method runs under the lock of
+ * the session, which is also held while invoking the {@link TxRxSessionCallback}. An adapter guarding its own
+ * state with a lock can share it with the session, so that a single lock orders both.
+ *
+ * @see TxRxSessionCallback
+ */
+public class TxRxSession {
+
+    /**
+     * An Error occurred on read request
+     */
+    public static final int ERROR_READ = 2;
+
+    /**
+     * Unable to initiate read operation
+     */
+    public static final int ERROR_READ_BLE_DEVICE_ERROR = 21;
+
+    /**
+     * Invalid Tx characteristic for reading
+     */
+    public static final int ERROR_READ_INVALID_TX_CHARACTERISTIC = 22;
+
+    /**
+     * An Error occurred on write request
+     */
+    public static final int ERROR_WRITE = 3;
+
+    /**
+     * Unable to initiate write operation
+     */
+    public static final int ERROR_WRITE_BLE_DEVICE_ERROR = 31;
+
+    /**
+     * Invalid Rx characteristic for writing
+     */
+    public static final int ERROR_WRITE_INVALID_RX_CHARACTERISTIC = 32;
+
+    /**
+     * Invalid request, write operation already in progress
+     */
+    public static final int ERROR_WRITE_OPERATION_IN_PROGRESS = 33;
+
+    /**
+     * Unable to read the data to write from the bulk transfer source
+     */
+    public static final int ERROR_WRITE_SOURCE = 34;
+
+    /**
+     * Write operation failed: timeout
+     */
+    public static final int ERROR_WRITE_TIMEOUT = 35;
+
+    /**
+     * An Error occurred on setMode request
+     */
+    public static final int ERROR_SET_MODE = 4;
+
+    /**
+     * Unable to initiate setMode operation
+     */
+    public static final int ERROR_SET_MODE_BLE_DEVICE_ERROR = 41;
+
+    /**
+     * Invalid setMode characteristic
+     */
+    public static final int ERROR_SET_MODE_INVALID_CHARACTERISTIC = 42;
+
+    /**
+     * Invalid request, setMode operation already in progress
+     */
+    public static final int ERROR_SET_MODE_OPERATION_IN_PROGRESS = 43;
+
+    private static final Logger LOGGER = Logger.getLogger(TxRxSession.class.getSimpleName());
+
+    // bound to the continuation reads of a single poll, should the device keep a full value without terminator
+    private static final int MAX_READ_POLL_CONTINUATIONS = 64;
+
+    private final TxRxTransport transport;
+    private final TxRxScheduler scheduler;
+    private final TxRxSessionCallback callback;
+    private final Object lock;
+    private final InitScriptRunner initScriptRunner;
+
+    private final Runnable readTimeoutRunnable;
+    private final Runnable successfulNotifyTimeoutRunnable;
+    private final Runnable successfulReadTimeoutRunnable;
+    private final Runnable successfulEventTimeoutRunnable;
+    private final Runnable writeTimeoutRunnable;
+    private final Runnable chunkRetryRunnable;
+    private final Runnable writeResumeRunnable;
+    private final Runnable setModeTimeoutRunnable;
+    private final Runnable streamWatchdogRunnable;
+    private final Runnable readPollRunnable;
+    private final Runnable readPollTimeoutRunnable;
+    private final Runnable cachedResponseRunnable;
+
+    private TxRxTimeouts txRxTimeouts;
+    private TxRxRetryPolicy retryPolicy;
+    private TxRxLinkQualityPolicy linkQualityPolicy;
+    private final TxRxLinkQuality linkQuality;
+    private final TxRxMetrics metrics;
+
+    private TxRxDeviceProfile profile;
+
+    private final StringBuilder notifyAccumulator;
+    private FrameDecoder notifyFrameDecoder;
+    private final FrameDecoder.FrameListener notifyFrameListener;
+
+    private String readTerminator;
+    private final StringBuilder readAccumulator;
+
+    private String writeTerminator;
+    private WriteOperation writeOperation;
+    private int writePacketSize;
+    private boolean isWriting;
+    private byte[] currentWriteChunk;
+    private String writingData;
+    private int chunkRetries;
+    private int writeResumes;
+    private int lateWriteResults;
+    private long chunkWriteTime;
+
+    private boolean isSettingMode;
+    private int settingModeValue;
+
+    private boolean isStreaming;
+    private long streamInactivityTimeout;
+    private long lastStreamActivityTime;
+    private boolean isStreamWatchdogPending;
+
+    private boolean isReadPolling;
+    private long readPollInterval;
+    private boolean isReadPollPending;
+    private int readPollContinuations;
+    private final StringBuilder readPollAccumulator;
+    private String lastReadPollValue;
+
+    private boolean isTiming;
+    private long beginWriteTime;
+    private long endWriteTime;
+    private long beginNotifyTime;
+    private long endNotifyTime;
+
+    private final StringBuilder eventAccumulator;
+    private FrameDecoder eventFrameDecoder;
+    private final FrameDecoder.FrameListener eventFrameListener;
+    private Executor eventExecutor;
+
+    private TxRxTraceRecorder traceRecorder;
+
+    private TxRxResponseCache responseCache;
+    private String responseCacheDevice;
+    private String cachingCommand;
+    private boolean isServingCachedResponse;
+    private String cachedCommand;
+    private TxRxResponseCache.Response cachedResponse;
+
+    /**
+     * Create a new {@link TxRxSession}, with default {@link TxRxTimeouts} and without retrying failed writes.
+     *
+     * @param transport {@link TxRxTransport} used to reach the characteristics of the device
+     * @param scheduler {@link TxRxScheduler} used to run timeouts and delayed tasks
+     * @param callback  {@link TxRxSessionCallback} callback used to notify data and request results
+     */
+    public TxRxSession(TxRxTransport transport, TxRxScheduler scheduler, TxRxSessionCallback callback) {
+        this(transport, scheduler, callback, null);
+    }
+
+    /**
+     * Create a new {@link TxRxSession}, with default {@link TxRxTimeouts} and without retrying failed writes,
+     * synchronized on the specified lock.
+     *
+     * @param transport {@link TxRxTransport} used to reach the characteristics of the device
+     * @param scheduler {@link TxRxScheduler} used to run timeouts and delayed tasks
+     * @param callback  {@link TxRxSessionCallback} callback used to notify data and request results
+     * @param lock      the object whose monitor guards the session, null to use the session itself
+     */
+    public TxRxSession(TxRxTransport transport, TxRxScheduler scheduler, TxRxSessionCallback callback,
+                       Object lock) {
+        this.transport = transport;
+        this.scheduler = scheduler;
+        this.lock = lock != null ? lock : this;
+
+        // the init script runner consumes the callbacks of its steps
+        this.initScriptRunner = new InitScriptRunner(this, scheduler, this.lock, callback);
+        this.callback = initScriptRunner;
+
+        this.readAccumulator = new StringBuilder();
+        this.notifyAccumulator = new StringBuilder();
+        this.eventAccumulator = new StringBuilder();
+        this.readPollAccumulator = new StringBuilder();
+        this.metrics = new TxRxMetrics();
+        this.txRxTimeouts = TxRxTimeouts.getDefaultTimeouts();
+        this.retryPolicy = TxRxRetryPolicy.getNoRetryPolicy();
+        this.linkQualityPolicy = TxRxLinkQualityPolicy.getNoLinkQualityPolicy();
+        this.linkQuality = new TxRxLinkQuality(linkQualityPolicy);
+
+        notifyFrameListener = (buffer, offset, length) -> {
+            if (cachingCommand != null) {
+                cacheResponse(null, Arrays.copyOfRange(buffer, offset, offset + length));
+            }
+
+            TxRxSession.this.callback.onNotifyFrame(buffer, offset, length);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Notify frame complete, length is: " + length);
+            }
+
+            // TIME RECORDING - SEND TIMESTAMPS CALLBACK
+            if (isTiming) {
+                endNotifyTime = scheduler.now();
+                notifyTimestamps();
+            }
+        };
+
+        eventFrameListener = (buffer, offset, length) -> {
+            if (eventExecutor == null) {
+                TxRxSession.this.callback.onEventFrame(buffer, offset, length);
+                return;
+            }
+
+            // the buffer is only valid during decoding
+            byte[] frame = Arrays.copyOfRange(buffer, offset, offset + length);
+            eventExecutor.execute(() -> TxRxSession.this.callback.onEventFrame(frame, 0, frame.length));
+        };
+
+        writeTimeoutRunnable = locked(() -> {
+            LOGGER.warning("Write timeout");
+
+            // a late result of the timed out chunk must not be taken for the result of the next one
+            currentWriteChunk = null;
+            lateWriteResults++;
+            linkQuality.onChunkFailed();
+
+            if (scheduleWriteResume()) {
+                return;
+            }
+
+            isWriting = false;
+            isTiming = false;
+            cachingCommand = null;
+            metrics.onWriteFailure();
+
+            if (writeOperation instanceof TxRxBulkTransfer) {
+                TxRxSession.this.callback.onBulkTransferError((TxRxBulkTransfer) writeOperation,
+                        ERROR_WRITE_TIMEOUT);
+            }
+            else {
+                TxRxSession.this.callback.onWriteTimeout();
+            }
+            LOGGER.warning("Write failed: timeout!");
+
+            record(TxRxTrace.EVENT_WRITE_END, ERROR_WRITE_TIMEOUT, null);
+            TxRxSession.this.callback.onWriteFinished();
+        });
+
+        chunkRetryRunnable = locked(this::writeCurrentChunk);
+
+        cachedResponseRunnable = locked(this::deliverCachedResponse);
+
+        writeResumeRunnable = locked(() -> {
+            try {
+                currentWriteChunk = writeOperation.nextChunk(getWriteChunkSize());
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read bulk transfer source", e);
+                isWriting = false;
+                notifyWriteError(ERROR_WRITE_SOURCE);
+                return;
+            }
+
+            if (currentWriteChunk != null) {
+                writeCurrentChunk();
+            }
+            else {
+                isWriting = false;
+                notifyWriteComplete();
+            }
+        });
+
+        readTimeoutRunnable = locked(() -> {
+            isTiming = false;
+            cachingCommand = null;
+            TxRxSession.this.callback.onReadNotifyTimeout();
+            LOGGER.warning("Read/Notify failed: timeout!");
+        });
+
+        setModeTimeoutRunnable = locked(() -> {
+            isSettingMode = false;
+            TxRxSession.this.callback.onSetModeTimeout();
+            LOGGER.warning("SetMode failed: timeout!");
+        });
+
+        streamWatchdogRunnable = locked(this::checkStreamActivity);
+
+        readPollRunnable = locked(this::pollRead);
+
+        readPollTimeoutRunnable = locked(() -> {
+            isReadPollPending = false;
+            readPollAccumulator.setLength(0);
+            LOGGER.warning("Poll read failed: timeout!");
+
+            if (isReadPolling) {
+                TxRxSession.this.callback.onReadNotifyTimeout();
+                scheduleNextReadPoll(0);
+            }
+        });
+
+        successfulReadTimeoutRunnable = locked(() -> {
+            String completeReadValue = readAccumulator.toString();
+            TxRxSession.this.readAccumulator.setLength(0);
+
+            TxRxSession.this.callback.onReadData(completeReadValue + readTerminator);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Read complete, characteristic value is: " + completeReadValue);
+            }
+        });
+
+        successfulNotifyTimeoutRunnable = locked(() -> {
+            String completeNotifyValue = notifyAccumulator.toString();
+            TxRxSession.this.notifyAccumulator.setLength(0);
+
+            if (cachingCommand != null) {
+                cacheResponse(completeNotifyValue + readTerminator, null);
+            }
+
+            TxRxSession.this.callback.onNotifyData(completeNotifyValue + readTerminator);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Notify complete, characteristic value is: " + completeNotifyValue);
+            }
+
+            // TIME RECORDING - SEND TIMESTAMPS CALLBACK
+            if (isTiming) {
+                notifyTimestamps();
+            }
+        });
+
+        successfulEventTimeoutRunnable = locked(() -> {
+            String completeEventValue = eventAccumulator.toString();
+            TxRxSession.this.eventAccumulator.setLength(0);
+
+            String eventData = completeEventValue + readTerminator;
+
+            if (eventExecutor != null) {
+                eventExecutor.execute(() -> TxRxSession.this.callback.onEventData(eventData));
+            }
+            else {
+                TxRxSession.this.callback.onEventData(eventData);
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("event complete, characteristic value is: " + completeEventValue);
+            }
+        });
+    }
+
+    /**
+     * Fail the write operation in progress, if any, with the specified error, for instance when the device can not
+     * be reconnected.
+     *
+     * @param errorCode int the error code notified for the write operation
+     */
+    public void cancelWrite(int errorCode) {
+        synchronized (lock) {
+            scheduler.remove(writeTimeoutRunnable);
+            scheduler.remove(chunkRetryRunnable);
+            scheduler.remove(writeResumeRunnable);
+            scheduler.remove(cachedResponseRunnable);
+
+            if (isServingCachedResponse) {
+                // a cached response never touches the link, nor the trace replayed on it
+                clearCachedResponse();
+                callback.onWriteError(errorCode);
+                callback.onWriteFinished();
+            }
+
+            if (isWriting) {
+                isWriting = false;
+                metrics.onWriteFailure();
+                notifyWriteError(errorCode);
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link TxRxLinkQuality} of the link with the device, estimated from the write acknowledgements and
+     * from the RSSI reported by the transport.
+     *
+     * @return the link quality, updated live
+     */
+    public TxRxLinkQuality getLinkQuality() {
+        return linkQuality;
+    }
+
+    /**
+     * Returns the {@link TxRxLinkQualityPolicy} used to adapt the write path to the link quality.
+     *
+     * @return the current link quality policy
+     */
+    public TxRxLinkQualityPolicy getLinkQualityPolicy() {
+        synchronized (lock) {
+            return linkQualityPolicy;
+        }
+    }
+
+    /**
+     * Set the {@link TxRxLinkQualityPolicy} used to adapt the chunk size and pacing of bulk transfers to the quality
+     * of the link. By default, the write path is not adapted.
+     *
+     * @param linkQualityPolicy used to adapt the write path to the link quality
+     */
+    public void setLinkQualityPolicy(TxRxLinkQualityPolicy linkQualityPolicy) {
+        synchronized (lock) {
+            this.linkQualityPolicy = linkQualityPolicy;
+            linkQuality.setPolicy(linkQualityPolicy);
+        }
+    }
+
+    /**
+     * Returns the {@link TxRxMetrics} collected by this {@link TxRxSession}. The returned instance is updated live.
+     *
+     * @return the metrics of this session
+     */
+    public TxRxMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the {@link TxRxDeviceProfile} of the device, if the session has been started.
+     *
+     * @return the profile of the device, or null if the session is not started
+     */
+    public TxRxDeviceProfile getProfile() {
+        synchronized (lock) {
+            return profile;
+        }
+    }
+
+    /**
+     * Returns the {@link TxRxTimeouts} used during device communication.
+     *
+     * @return the current timeouts
+     */
+    public TxRxTimeouts getTxRxTimeouts() {
+        synchronized (lock) {
+            return txRxTimeouts;
+        }
+    }
+
+    /**
+     * Set the {@link TxRxTimeouts} used during device communication
+     *
+     * @param txRxTimeouts used during device communication
+     */
+    public void setTxRxTimeouts(TxRxTimeouts txRxTimeouts) {
+        synchronized (lock) {
+            this.txRxTimeouts = txRxTimeouts;
+        }
+    }
+
+    /**
+     * Returns whether the Tx characteristic is polled.
+     *
+     * @return true if polling, false otherwise.
+     * @see #startReadPolling(long)
+     */
+    public boolean isReadPolling() {
+        synchronized (lock) {
+            return isReadPolling;
+        }
+    }
+
+    /**
+     * Returns whether an initialization script is running.
+     *
+     * @return true if an init script is running, false otherwise.
+     */
+    public boolean isRunningInitScript() {
+        synchronized (lock) {
+            return initScriptRunner.isRunning();
+        }
+    }
+
+    /**
+     * Returns whether the response of a write request is being delivered from the {@link TxRxResponseCache}, so
+     * that no other write can be requested until {@link TxRxSessionCallback#onWriteFinished()}, while the link is
+     * idle.
+     *
+     * @return true if a cached response is pending, false otherwise.
+     */
+    public boolean isServingCachedResponse() {
+        synchronized (lock) {
+            return isServingCachedResponse;
+        }
+    }
+
+    /**
+     * Returns whether a setMode operation is in progress.
+     *
+     * @return true if setting the mode, false otherwise.
+     */
+    public boolean isSettingMode() {
+        synchronized (lock) {
+            return isSettingMode;
+        }
+    }
+
+    /**
+     * Returns whether the session has been started with the profile of the device.
+     *
+     * @return true if started, false otherwise.
+     */
+    public boolean isStarted() {
+        synchronized (lock) {
+            return profile != null;
+        }
+    }
+
+    /**
+     * Returns whether the session is in streaming mode.
+     *
+     * @return true if streaming, false otherwise.
+     * @see #startStreaming(long)
+     */
+    public boolean isStreaming() {
+        synchronized (lock) {
+            return isStreaming;
+        }
+    }
+
+    /**
+     * Returns whether a write operation or bulk transfer is in progress, including a write suspended by
+     * {@link #suspendWrite()}.
+     *
+     * @return true if writing, false otherwise.
+     */
+    public boolean isWriting() {
+        synchronized (lock) {
+            return isWriting;
+        }
+    }
+
+    /**
+     * Deliver a value of the event characteristic, notified by the device.
+     *
+     * @param value the notified value
+     */
+    public void onEvent(byte[] value) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_EVENT, 0, value);
+            onStreamActivity();
+
+            if (eventFrameDecoder != null) {
+                // priority lane: dispatched at once, without accumulation nor logging
+                eventFrameDecoder.decode(value, 0, value.length, eventFrameListener);
+                return;
+            }
+
+            scheduler.remove(successfulEventTimeoutRunnable);
+
+            String currentValue = new String(value);
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Accumulating characteristic values for event, current is: " + currentValue);
+            }
+
+            eventAccumulator.append(currentValue);
+
+            scheduler.post(successfulEventTimeoutRunnable, txRxTimeouts.getLaterReadTimeout());
+        }
+    }
+
+    /**
+     * Deliver a value of the Tx characteristic, notified by the device.
+     *
+     * @param value the notified value
+     */
+    public void onNotify(byte[] value) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_NOTIFY, 0, value);
+            onStreamActivity();
+
+            callback.onWorkload(true);
+
+            // TIME RECORDING - START NOTIFY (ONLY THE FIRST TIME)
+            if (isTiming && beginNotifyTime == 0L) {
+                beginNotifyTime = scheduler.now();
+            }
+
+            if (notifyFrameDecoder != null) {
+                scheduler.remove(readTimeoutRunnable);
+                notifyFrameDecoder.decode(value, 0, value.length, notifyFrameListener);
+            }
+            else if (isStreaming && !readTerminator.isEmpty()) {
+                splitStreamValues(new String(value));
+            }
+            else {
+                accumulateValues(new String(value), notifyAccumulator, successfulNotifyTimeoutRunnable);
+            }
+
+            // TIME RECORDING - END NOTIFY (UPDATES EVERY TIME)
+            if (isTiming) {
+                endNotifyTime = scheduler.now();
+            }
+        }
+    }
+
+    /**
+     * Deliver the result of a read of the Tx characteristic, initiated through {@link TxRxTransport#read()}.
+     *
+     * @param value  the value read
+     * @param status int the status of the read, {@link TxRxTransport#STATUS_SUCCESS} on success
+     */
+    public void onRead(byte[] value, int status) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_READ_RESULT, status, value);
+            onStreamActivity();
+
+            if (isReadPollPending) {
+                onReadPollResult(value, status);
+                return;
+            }
+
+            if (status == TxRxTransport.STATUS_SUCCESS) {
+                String readValue = new String(value);
+
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Characteristic value read: " + readValue + ", accumulating");
+                }
+
+                accumulateValues(readValue, readAccumulator, successfulReadTimeoutRunnable);
+            }
+            else {
+                LOGGER.warning("Unable to read: " + status);
+                readAccumulator.setLength(0);
+                scheduler.remove(successfulReadTimeoutRunnable);
+                callback.onReadError(ERROR_READ);
+            }
+        }
+    }
+
+    /**
+     * Deliver the RSSI of the link, read by the transport or found during scan.
+     *
+     * @param rssi int the RSSI in dBm
+     */
+    public void onRssi(int rssi) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_RSSI, rssi, null);
+
+            linkQuality.onRssi(rssi);
+        }
+    }
+
+    /**
+     * Deliver the result of a write of the setMode characteristic, initiated through
+     * {@link TxRxTransport#writeSetMode(byte[])}.
+     *
+     * @param status int the status of the write, {@link TxRxTransport#STATUS_SUCCESS} on success
+     */
+    public void onSetModeWrite(int status) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_SET_MODE_RESULT, status, null);
+
+            scheduler.remove(setModeTimeoutRunnable);
+
+            if (!isSettingMode) {
+                LOGGER.warning("Unexpected setMode result: " + status);
+                return;
+            }
+
+            if (status == TxRxTransport.STATUS_SUCCESS) {
+                LOGGER.fine("SetMode characteristic value written: " + settingModeValue);
+                isSettingMode = false;
+                callback.onSetMode(settingModeValue);
+            }
+            else {
+                LOGGER.warning("Unable to setMode: " + status);
+                isSettingMode = false;
+                callback.onSetModeError(ERROR_SET_MODE);
+            }
+        }
+    }
+
+    /**
+     * Deliver the result of a write of the Rx characteristic, initiated through
+     * {@link TxRxTransport#write(byte[])}.
+     *
+     * @param status int the status of the write, {@link TxRxTransport#STATUS_SUCCESS} on success
+     */
+    public void onWrite(int status) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_WRITE_RESULT, status, null);
+
+            if (lateWriteResults > 0) {
+                // the result of a timed out chunk: the timeout of the chunk written since, if any, keeps running
+                lateWriteResults--;
+                LOGGER.warning("Late write result ignored: " + status);
+                return;
+            }
+
+            scheduler.remove(writeTimeoutRunnable);
+
+            if (!isWriting || writeOperation == null || currentWriteChunk == null) {
+                LOGGER.warning("Unexpected write result: " + status);
+                return;
+            }
+
+            if (status == TxRxTransport.STATUS_SUCCESS) {
+                // the messages of the hot path are only built when logged
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine(writeOperation instanceof TxRxBulkTransfer
+                            ? "Characteristic value written: " + currentWriteChunk.length + " bytes"
+                            : "Characteristic value written: " + new String(currentWriteChunk));
+                }
+
+                writeOperation.acknowledgeChunk();
+                linkQuality.onChunkAcknowledged(scheduler.now() - chunkWriteTime);
+                metrics.onChunkWritten(chunkRetries > 0);
+                callback.onWorkload(false);
+                chunkRetries = 0;
+
+                if (writeOperation instanceof TxRxBulkTransfer) {
+                    TxRxBulkTransfer transfer = (TxRxBulkTransfer) writeOperation;
+
+                    if (transfer.isProgressDue(scheduler.now())) {
+                        callback.onBulkTransferProgress(transfer);
+                    }
+                }
+
+                writeNextChunk();
+            }
+            else {
+                LOGGER.warning("Unable to write: " + status);
+                handleWriteFailure(status);
+            }
+        }
+    }
+
+    /**
+     * Send a bulk transfer request to device, writing the data of the transfer source in chunks.
+     * <p>
+     * If the transfer has already been partially acknowledged by the device, it is resumed from the last
+     * acknowledged chunk.
+     *
+     * @param transfer {@link TxRxBulkTransfer} the transfer to start or resume
+     * @return true if the transfer was initiated successfully, false otherwise.
+     */
+    public boolean requestBulkTransfer(TxRxBulkTransfer transfer) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_REQUEST_BULK_TRANSFER, transfer.getTotalBytes(), null);
+
+            LOGGER.fine("Start bulk transfer request from byte: " + transfer.getAcknowledgedBytes());
+
+            if (profile == null) {
+                LOGGER.warning("Invalid write characteristic");
+                callback.onBulkTransferError(transfer, ERROR_WRITE_INVALID_RX_CHARACTERISTIC);
+                return false;
+            }
+
+            if (isWriting || isServingCachedResponse) {
+                LOGGER.warning("Write operation already initiated, currently in progress");
+                callback.onBulkTransferError(transfer, ERROR_WRITE_OPERATION_IN_PROGRESS);
+                return false;
+            }
+
+            writingData = null;
+            writeOperation = transfer;
+            chunkRetries = 0;
+            writeResumes = 0;
+
+            transfer.start(scheduler.now());
+
+            try {
+                currentWriteChunk = transfer.nextChunk(getWriteChunkSize());
+            }
+            catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to read bulk transfer source", e);
+                callback.onBulkTransferError(transfer, ERROR_WRITE_SOURCE);
+                return false;
+            }
+
+            if (currentWriteChunk == null) {
+                LOGGER.fine("Bulk transfer complete, no data to write");
+                callback.onBulkTransferComplete(transfer);
+                return true;
+            }
+
+            callback.onWorkload(false);
+
+            // the state is set before writing, since the transport can deliver the result at once
+            chunkWriteTime = scheduler.now();
+            isWriting = true;
+            scheduler.post(writeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
+
+            boolean writeInitiated = writeToTransport(currentWriteChunk);
+
+            if (!writeInitiated) {
+                LOGGER.warning("Unable to initiate bulk transfer");
+
+                isWriting = false;
+                scheduler.remove(writeTimeoutRunnable);
+                callback.onBulkTransferError(transfer, ERROR_WRITE_BLE_DEVICE_ERROR);
+            }
+
+            return writeInitiated;
+        }
+    }
+
+    /**
+     * Send a read request to device.
+     *
+     * @return true if the read operation was initiated successfully, false otherwise.
+     */
+    public boolean requestReadData() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_REQUEST_READ, 0, null);
+
+            LOGGER.fine("Start read request");
+
+            if (profile == null) {
+                LOGGER.warning("Invalid read characteristic");
+                callback.onReadError(ERROR_READ_INVALID_TX_CHARACTERISTIC);
+                return false;
+            }
+
+            record(TxRxTrace.EVENT_READ, 0, null);
+
+            boolean readInitiated = transport.read();
+
+            if (!readInitiated) {
+                LOGGER.warning("Unable to initiate read operation");
+                record(TxRxTrace.EVENT_READ_RESULT, TxRxTrace.STATUS_NOT_INITIATED, null);
+                callback.onReadError(ERROR_READ_BLE_DEVICE_ERROR);
+            }
+
+            return readInitiated;
+        }
+    }
+
+    /**
+     * Set the operation mode to use during the communication with the device.
+     *
+     * @param mode int the operation mode to apply
+     * @return true if the SetMode operation was initiated successfully, false otherwise.
+     */
+    public boolean requestSetMode(int mode) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_REQUEST_SET_MODE, mode, null);
+
+            LOGGER.fine("Start setMode request for operation: " + mode);
+
+            if (profile == null || isEmpty(profile.getSetModeCharacteristicUUID())) {
+                LOGGER.warning("Invalid setMode characteristic");
+                callback.onSetModeError(ERROR_SET_MODE_INVALID_CHARACTERISTIC);
+                return false;
+            }
+
+            if (isSettingMode) {
+                LOGGER.warning("SetMode operation already initiated, currently in progress");
+                callback.onSetModeError(ERROR_SET_MODE_OPERATION_IN_PROGRESS);
+                return false;
+            }
+
+            // the responses of the device may change with its mode
+            if (responseCache != null) {
+                responseCache.invalidate(responseCacheDevice);
+            }
+
+            settingModeValue = mode;
+
+            byte[] modeByte = {(byte) mode};
+
+            isSettingMode = true;
+            scheduler.post(setModeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
+
+            record(TxRxTrace.EVENT_SET_MODE_WRITE, 0, modeByte);
+
+            boolean setModeInitiated = transport.writeSetMode(modeByte);
+
+            if (!setModeInitiated) {
+                LOGGER.warning("Unable to initiate setMode operation");
+                record(TxRxTrace.EVENT_SET_MODE_RESULT, TxRxTrace.STATUS_NOT_INITIATED, null);
+
+                isSettingMode = false;
+                scheduler.remove(setModeTimeoutRunnable);
+                callback.onSetModeError(ERROR_SET_MODE_BLE_DEVICE_ERROR);
+            }
+
+            return setModeInitiated;
+        }
+    }
+
+    /**
+     * Send a write request to device, followed by the terminator of the profile.
+     * <p>
+     * A query command whose response is held by the {@link TxRxResponseCache}, if any, is not written: the cached
+     * response is delivered as soon as possible, after this method has returned, through
+     * {@link TxRxSessionCallback#onWriteData(String)}, {@link TxRxSessionCallback#onNotifyData(String)} or
+     * {@link TxRxSessionCallback#onNotifyFrame} and then {@link TxRxSessionCallback#onWriteFinished()}, without
+     * timestamps. Meanwhile, see {@link #isServingCachedResponse()}, other writes are refused as with a write in
+     * progress, while the link is left idle. The cache is bypassed while setting the mode or streaming, since the
+     * device would not answer as cached.
+     *
+     * @param data String data to write
+     * @return true if the write operation was initiated successfully, false otherwise.
+     */
+    public boolean requestWriteData(String data) {
+        synchronized (lock) {
+            // a cached response never touches the link, nor the trace replayed on it
+            if (profile != null && !isWriting && !isServingCachedResponse && !isSettingMode && !isStreaming
+                    && serveCachedResponse(data)) {
+                return true;
+            }
+
+            record(TxRxTrace.EVENT_REQUEST_WRITE, 0, data.getBytes());
+
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Start write request for data: " + data);
+            }
+
+            if (profile == null) {
+                LOGGER.warning("Invalid write characteristic");
+                callback.onWriteError(ERROR_WRITE_INVALID_RX_CHARACTERISTIC);
+                return false;
+            }
+
+            if (isWriting || isServingCachedResponse) {
+                LOGGER.warning("Write operation already initiated, currently in progress");
+                callback.onWriteError(ERROR_WRITE_OPERATION_IN_PROGRESS);
+                return false;
+            }
+
+            cachingCommand = null;
+
+            if (responseCache != null) {
+                if (responseCache.isInvalidating(data)) {
+                    responseCache.invalidate(responseCacheDevice);
+                }
+                else if (!isStreaming && responseCache.isQuery(data)) {
+                    // in streaming mode, notifications are not responses to the writes
+                    cachingCommand = data;
+                }
+            }
+
+            if (!startDataWrite(data)) {
+                cachingCommand = null;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Resume the write operation suspended by {@link #suspendWrite()}, if any, from its first chunk not
+     * acknowledged by the device, or the delivery of its cached response.
+     *
+     * @return true if a suspended write has been resumed, false otherwise.
+     */
+    public boolean resumeWrite() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_RESUME, 0, null);
+
+            if (isServingCachedResponse) {
+                scheduler.post(cachedResponseRunnable, 0);
+                return true;
+            }
+
+            if (isWriting && writeOperation != null && currentWriteChunk == null) {
+                LOGGER.fine("Resuming write operation suspended by disconnection");
+
+                scheduler.post(writeResumeRunnable, 0);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Run the specified {@link TxRxInitScript}, e.g. as soon as the notifications of the device are enabled. Its
+     * steps are requested back-to-back, each one as soon as the previous one has succeeded; their callbacks are
+     * consumed by the script, which ends with {@link TxRxSessionCallback#onInitScriptComplete(java.util.List)} or
+     * {@link TxRxSessionCallback#onInitScriptError(java.util.List, int)}. Other requests should wait for its end.
+     *
+     * @param initScript {@link TxRxInitScript} the script to run
+     * @return true if the script has been started, false if the session is not started or busy
+     */
+    public boolean runInitScript(TxRxInitScript initScript) {
+        synchronized (lock) {
+            if (profile == null || isWriting || isServingCachedResponse || isSettingMode
+                    || initScriptRunner.isRunning()) {
+                LOGGER.warning("Unable to run init script, session not started or busy");
+                return false;
+            }
+
+            initScriptRunner.start(initScript);
+            return true;
+        }
+    }
+
+    /**
+     * Set the {@link Executor} dispatching the event callbacks, {@link TxRxSessionCallback#onEventFrame} and
+     * {@link TxRxSessionCallback#onEventData}, e.g. a dedicated high priority thread, so that events are not queued
+     * behind the notify traffic handled by the callback. Event callbacks dispatched by an executor run outside the
+     * lock of the session, and receive a copy of the frame.
+     *
+     * @param eventExecutor the executor of the event callbacks, null to invoke them on the thread delivering the event
+     */
+    public void setEventExecutor(Executor eventExecutor) {
+        synchronized (lock) {
+            this.eventExecutor = eventExecutor;
+        }
+    }
+
+    /**
+     * Set the {@link TxRxResponseCache} answering the query commands of the device without touching the link. The
+     * same cache can be shared by the sessions of several devices.
+     *
+     * @param responseCache the cache of the responses, null to write every command
+     * @param device        String the key of the device in the cache, e.g. its Bluetooth address
+     */
+    public void setResponseCache(TxRxResponseCache responseCache, String device) {
+        synchronized (lock) {
+            this.responseCache = responseCache;
+            this.responseCacheDevice = device;
+            this.cachingCommand = null;
+        }
+    }
+
+    /**
+     * Set the {@link TxRxRetryPolicy} used to retry failed write operations, e.g.
+     * {@link TxRxRetryPolicy#getDefaultRetryPolicy()}. By default, a failed write is not retried and reported at
+     * once.
+     *
+     * @param retryPolicy used to retry failed write operations
+     */
+    public void setRetryPolicy(TxRxRetryPolicy retryPolicy) {
+        synchronized (lock) {
+            this.retryPolicy = retryPolicy;
+        }
+    }
+
+    /**
+     * Set the {@link TxRxTraceRecorder} recording the requests, transport operations and results of this session.
+     *
+     * @param traceRecorder the recorder, null to stop recording
+     */
+    public void setTraceRecorder(TxRxTraceRecorder traceRecorder) {
+        synchronized (lock) {
+            this.traceRecorder = traceRecorder;
+        }
+    }
+
+    /**
+     * Start the session with the profile of the device, once the TxRx services have been discovered. A write
+     * suspended by {@link #suspendWrite()} is kept, to be resumed through {@link #resumeWrite()}.
+     *
+     * @param profile {@link TxRxDeviceProfile} the profile of the device
+     */
+    public void start(TxRxDeviceProfile profile) {
+        synchronized (lock) {
+            readTerminator = profile.getTxTerminatorType().getValue();
+            writeTerminator = profile.getRxTerminatorType().getValue();
+
+            writePacketSize = profile.getRxPacketSize();
+
+            FrameDecoder.Factory frameDecoderFactory = profile.getFrameDecoderFactory();
+            notifyFrameDecoder = frameDecoderFactory != null ? frameDecoderFactory.create() : null;
+
+            FrameDecoder.Factory eventFrameDecoderFactory = profile.getEventFrameDecoderFactory();
+            eventFrameDecoder = eventFrameDecoderFactory != null ? eventFrameDecoderFactory.create() : null;
+
+            this.profile = profile;
+            lateWriteResults = 0;
+
+            record(TxRxTrace.EVENT_START, writePacketSize, new byte[]{
+                    (byte) profile.getRxTerminatorType().ordinal(), (byte) profile.getTxTerminatorType().ordinal()});
+
+            if (isStreaming) {
+                restartStreamWatchdog();
+            }
+
+            if (isReadPolling) {
+                scheduler.remove(readPollRunnable);
+                scheduler.post(readPollRunnable, 0);
+            }
+        }
+    }
+
+    /**
+     * Start polling the Tx characteristic, for sensors exposing their value to reads rather than notifying it. The
+     * characteristic is read every interval, or as fast as possible with a 0 interval, i.e. as soon as the previous
+     * poll is complete. A tick is skipped, not queued, while the previous poll read is still outstanding or a write,
+     * setMode or init script is in progress, so that a slow device is never flooded with reads; skipped ticks are
+     * counted by {@link TxRxMetrics#getSkippedReadPolls()}.
+     * <p>
+     * A value longer than the Tx packet size of the profile is read through as many reads as needed: a read returning
+     * a full packet not ending with the Tx terminator is followed at once by the next one, and the whole value is
+     * delivered when a shorter or terminated packet completes it. Values are delivered through
+     * {@link TxRxSessionCallback#onReadData(String)} only when changed since the previous poll. A poll read not
+     * answered within the first read timeout is reported through {@link TxRxSessionCallback#onReadNotifyTimeout()},
+     * a failed one through {@link TxRxSessionCallback#onReadError(int)}, and polling goes on.
+     * <p>
+     * {@link #requestReadData()} should not be used while polling. Polling is kept across {@link #stop()} and
+     * {@link #start(TxRxDeviceProfile)}, as on a reconnection, the first value after a start being always delivered.
+     *
+     * @param interval long the polling interval in milliseconds, 0 to poll as fast as possible
+     */
+    public void startReadPolling(long interval) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_READ_POLLING, interval, null);
+
+            LOGGER.fine("Read polling started, interval: " + interval);
+
+            isReadPolling = true;
+            readPollInterval = interval;
+            lastReadPollValue = null;
+
+            // a poll read still outstanding is completed, and skips the ticks meanwhile
+            scheduler.remove(readPollRunnable);
+
+            if (profile != null) {
+                scheduler.post(readPollRunnable, 0);
+            }
+        }
+    }
+
+    /**
+     * Start the streaming mode, for devices streaming values on their own, such as continuous inventories or sensor
+     * streams. Writes and notifications flow independently: a write no longer arms the read timeout nor resets the
+     * timestamps of its response, so that {@link TxRxSessionCallback#onReadNotifyTimeout()} and
+     * {@link TxRxSessionCallback#onReceiveTimestampsAfterNotifyData(long, long, long, long)} are not invoked.
+     * <p>
+     * Notified values are delivered as soon as they end with the Tx terminator of the profile, rather than after the
+     * later read timeout, since a stream may never pause. The liveness of the stream is tracked by an inactivity
+     * watchdog instead: {@link TxRxSessionCallback#onStreamInactive()} is invoked when no value has been notified or
+     * read for the inactivity timeout while the session is started. The mode is kept across {@link #stop()} and
+     * {@link #start(TxRxDeviceProfile)}, as on a reconnection.
+     *
+     * @param inactivityTimeout long the inactivity timeout in milliseconds, 0 to disable the watchdog
+     */
+    public void startStreaming(long inactivityTimeout) {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_STREAMING, inactivityTimeout, null);
+
+            LOGGER.fine("Streaming mode started, inactivity timeout: " + inactivityTimeout);
+
+            isStreaming = true;
+            streamInactivityTimeout = inactivityTimeout;
+
+            // the response of a write in progress is no longer awaited
+            scheduler.remove(readTimeoutRunnable);
+            isTiming = false;
+
+            restartStreamWatchdog();
+        }
+    }
+
+    /**
+     * Stop the session, discarding any pending operation, accumulated value and link quality measurement.
+     */
+    public void stop() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_STOP, 0, null);
+
+            scheduler.remove(readTimeoutRunnable);
+            scheduler.remove(successfulNotifyTimeoutRunnable);
+            scheduler.remove(successfulReadTimeoutRunnable);
+            scheduler.remove(successfulEventTimeoutRunnable);
+            scheduler.remove(writeTimeoutRunnable);
+            scheduler.remove(chunkRetryRunnable);
+            scheduler.remove(writeResumeRunnable);
+            scheduler.remove(setModeTimeoutRunnable);
+            scheduler.remove(streamWatchdogRunnable);
+            isStreamWatchdogPending = false;
+            scheduler.remove(readPollRunnable);
+            scheduler.remove(readPollTimeoutRunnable);
+            isReadPollPending = false;
+            scheduler.remove(cachedResponseRunnable);
+            clearCachedResponse();
+            initScriptRunner.cancel();
+
+            isWriting = false;
+            lateWriteResults = 0;
+            isSettingMode = false;
+            cachingCommand = null;
+            readAccumulator.setLength(0);
+            notifyAccumulator.setLength(0);
+            eventAccumulator.setLength(0);
+            readPollAccumulator.setLength(0);
+            lastReadPollValue = null;
+            notifyFrameDecoder = null;
+            eventFrameDecoder = null;
+
+            isTiming = false;
+
+            profile = null;
+
+            linkQuality.reset();
+        }
+    }
+
+    /**
+     * Stop polling the Tx characteristic, as started by {@link #startReadPolling(long)}. The result of a poll read
+     * still outstanding is discarded.
+     */
+    public void stopReadPolling() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_READ_POLLING, -1, null);
+
+            LOGGER.fine("Read polling stopped");
+
+            isReadPolling = false;
+            scheduler.remove(readPollRunnable);
+            readPollAccumulator.setLength(0);
+        }
+    }
+
+    /**
+     * Stop the streaming mode started by {@link #startStreaming(long)}, back to request/response timers.
+     */
+    public void stopStreaming() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_STREAMING, -1, null);
+
+            LOGGER.fine("Streaming mode stopped");
+
+            isStreaming = false;
+            scheduler.remove(streamWatchdogRunnable);
+            isStreamWatchdogPending = false;
+        }
+    }
+
+    /**
+     * Suspend the write operation in progress, if any, for instance when the connection is lost. The operation, or
+     * the delivery of its cached response, is kept, to be resumed through {@link #resumeWrite()}.
+     */
+    public void suspendWrite() {
+        synchronized (lock) {
+            record(TxRxTrace.EVENT_SUSPEND, 0, null);
+
+            scheduler.remove(writeTimeoutRunnable);
+            scheduler.remove(chunkRetryRunnable);
+            scheduler.remove(writeResumeRunnable);
+            // a cached response is delivered in order with the writes, once resumed
+            scheduler.remove(cachedResponseRunnable);
+
+            if (isWriting && writeOperation != null) {
+                LOGGER.fine("Suspending write operation until reconnection");
+
+                chunkRetries = 0;
+                currentWriteChunk = null;
+            }
+
+            // the results of the lost link are not delivered
+            lateWriteResults = 0;
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+
+    private void accumulateValues(String currentValue, StringBuilder accumulator, Runnable successfulCallback) {
+        scheduler.remove(readTimeoutRunnable);
+        scheduler.remove(successfulCallback);
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Accumulating characteristic values, current is: " + currentValue);
+        }
+
+        accumulator.append(currentValue);
+
+        scheduler.post(successfulCallback, txRxTimeouts.getLaterReadTimeout());
+    }
+
+    private void cacheResponse(String data, byte[] frame) {
+        if (responseCache != null) {
+            LOGGER.fine("Caching response of: " + cachingCommand);
+
+            responseCache.put(responseCacheDevice, cachingCommand, data, frame, scheduler.now());
+        }
+        cachingCommand = null;
+    }
+
+    private void checkStreamActivity() {
+        isStreamWatchdogPending = false;
+
+        if (!isStreaming || profile == null) {
+            return;
+        }
+
+        long inactiveTime = scheduler.now() - lastStreamActivityTime;
+
+        if (inactiveTime < streamInactivityTimeout) {
+            // values came meanwhile: the watchdog is moved once per timeout, not at every value
+            scheduler.post(streamWatchdogRunnable, streamInactivityTimeout - inactiveTime);
+            isStreamWatchdogPending = true;
+            return;
+        }
+
+        LOGGER.warning("Stream inactive for " + inactiveTime + " ms");
+
+        // not armed again until the next value
+        callback.onStreamInactive();
+    }
+
+    private void clearCachedResponse() {
+        isServingCachedResponse = false;
+        cachedCommand = null;
+        cachedResponse = null;
+    }
+
+    private void deliverCachedResponse() {
+        if (!isServingCachedResponse) {
+            return;
+        }
+
+        String data = cachedCommand;
+        TxRxResponseCache.Response response = cachedResponse;
+        clearCachedResponse();
+
+        callback.onWriteData(data);
+
+        if (response.frame != null) {
+            callback.onNotifyFrame(response.frame, 0, response.frame.length);
+        }
+        else {
+            callback.onNotifyData(response.data);
+        }
+
+        // last, since the next command may be requested from it
+        callback.onWriteFinished();
+    }
+
+    private int getWriteChunkSize() {
+        // data writes are sent whole whenever they fit the packet, as the device may expect each command in a
+        // single write
+        if (!(writeOperation instanceof TxRxBulkTransfer)) {
+            return writePacketSize;
+        }
+
+        return linkQualityPolicy.getChunkSize(linkQuality.getScore(), writePacketSize);
+    }
+
+    private void handleWriteFailure(int status) {
+        linkQuality.onChunkFailed();
+
+        if (retryPolicy.isRetryable(status) && chunkRetries < retryPolicy.getMaxChunkRetries()) {
+            long delay = retryPolicy.getChunkRetryDelay(chunkRetries);
+            chunkRetries++;
+            metrics.onChunkRetry();
+
+            LOGGER.warning("Retrying chunk in " + delay + " ms, retry " + chunkRetries);
+
+            scheduler.post(chunkRetryRunnable, delay);
+            return;
+        }
+
+        if (scheduleWriteResume()) {
+            return;
+        }
+
+        isWriting = false;
+        metrics.onWriteFailure();
+        notifyWriteError(ERROR_WRITE);
+    }
+
+    private Runnable locked(Runnable task) {
+        return () -> {
+            synchronized (lock) {
+                task.run();
+            }
+        };
+    }
+
+    private void notifyTimestamps() {
+        isTiming = false;
+        callback.onReceiveTimestampsAfterNotifyData(beginWriteTime, endWriteTime, beginNotifyTime, endNotifyTime);
+    }
+
+    private void notifyWriteComplete() {
+        if (writeOperation instanceof TxRxBulkTransfer) {
+            TxRxBulkTransfer transfer = (TxRxBulkTransfer) writeOperation;
+
+            LOGGER.fine("Bulk transfer complete: " + transfer.getAcknowledgedBytes() + " bytes");
+
+            callback.onBulkTransferProgress(transfer);
+            callback.onBulkTransferComplete(transfer);
+        }
+        else {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Characteristic value write complete: " + writingData);
+            }
+
+            callback.onWriteData(writingData);
+        }
+
+        // back-to-back, in the write callback
+        record(TxRxTrace.EVENT_WRITE_END, 0, null);
+        callback.onWriteFinished();
+    }
+
+    private void notifyWriteError(int errorCode) {
+        cachingCommand = null;
+
+        if (writeOperation instanceof TxRxBulkTransfer) {
+            callback.onBulkTransferError((TxRxBulkTransfer) writeOperation, errorCode);
+        }
+        else {
+            callback.onWriteError(errorCode);
+        }
+
+        record(TxRxTrace.EVENT_WRITE_END, errorCode, null);
+        callback.onWriteFinished();
+    }
+
+    private void onReadPollResult(byte[] value, int status) {
+        scheduler.remove(readPollTimeoutRunnable);
+        isReadPollPending = false;
+
+        if (!isReadPolling || profile == null) {
+            readPollAccumulator.setLength(0);
+            return;
+        }
+
+        if (status != TxRxTransport.STATUS_SUCCESS) {
+            LOGGER.warning("Unable to poll read: " + status);
+            readPollAccumulator.setLength(0);
+            callback.onReadError(ERROR_READ);
+            scheduleNextReadPoll(0);
+            return;
+        }
+
+        readPollAccumulator.append(new String(value));
+
+        int terminatorStart = readPollAccumulator.length() - readTerminator.length();
+        boolean isTerminated = !readTerminator.isEmpty() && terminatorStart >= 0
+                && readPollAccumulator.indexOf(readTerminator, terminatorStart) == terminatorStart;
+
+        // a full packet is followed by the rest of the value, read at once whatever the interval
+        if (value.length >= profile.getTxPacketSize() && !isTerminated
+                && readPollContinuations < MAX_READ_POLL_CONTINUATIONS) {
+            readPollContinuations++;
+            requestReadPoll();
+            return;
+        }
+
+        String completeReadValue = readPollAccumulator.toString();
+        readPollAccumulator.setLength(0);
+
+        if (!isTerminated) {
+            completeReadValue += readTerminator;
+        }
+
+        if (!completeReadValue.equals(lastReadPollValue)) {
+            lastReadPollValue = completeReadValue;
+
+            callback.onReadData(completeReadValue);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Poll read complete, characteristic value is: " + completeReadValue);
+            }
+        }
+
+        scheduleNextReadPoll(0);
+    }
+
+    private void onStreamActivity() {
+        if (!isStreaming) {
+            return;
+        }
+
+        lastStreamActivityTime = scheduler.now();
+
+        if (!isStreamWatchdogPending && profile != null && streamInactivityTimeout > 0) {
+            scheduler.post(streamWatchdogRunnable, streamInactivityTimeout);
+            isStreamWatchdogPending = true;
+        }
+    }
+
+    private void pollRead() {
+        if (!isReadPolling || profile == null) {
+            return;
+        }
+
+        // ticks at a fixed rate, whatever the outcome of this one
+        if (readPollInterval > 0) {
+            scheduler.post(readPollRunnable, readPollInterval);
+        }
+
+        if (isReadPollPending) {
+            // the tick of an outstanding poll is posted when it completes
+            LOGGER.fine("Poll read outstanding, skipping tick");
+            metrics.onReadPollSkipped();
+            return;
+        }
+
+        if (isWriting || isSettingMode || initScriptRunner.isRunning()) {
+            LOGGER.fine("Link busy, skipping poll tick");
+            metrics.onReadPollSkipped();
+            scheduleNextReadPoll(txRxTimeouts.getLaterReadTimeout());
+            return;
+        }
+
+        readPollAccumulator.setLength(0);
+        readPollContinuations = 0;
+
+        requestReadPoll();
+    }
+
+    private void record(int type, long argument, byte[] value) {
+        if (traceRecorder != null) {
+            traceRecorder.record(type, argument, value);
+        }
+    }
+
+    private void requestReadPoll() {
+        record(TxRxTrace.EVENT_READ, 0, null);
+
+        if (!transport.read()) {
+            LOGGER.warning("Unable to initiate poll read");
+            record(TxRxTrace.EVENT_READ_RESULT, TxRxTrace.STATUS_NOT_INITIATED, null);
+            readPollAccumulator.setLength(0);
+            metrics.onReadPollSkipped();
+            scheduleNextReadPoll(txRxTimeouts.getLaterReadTimeout());
+            return;
+        }
+
+        isReadPollPending = true;
+        metrics.onReadPoll();
+
+        scheduler.post(readPollTimeoutRunnable, txRxTimeouts.getFirstReadTimeout());
+    }
+
+    private void restartStreamWatchdog() {
+        scheduler.remove(streamWatchdogRunnable);
+        isStreamWatchdogPending = false;
+        lastStreamActivityTime = scheduler.now();
+
+        if (profile != null && streamInactivityTimeout > 0) {
+            scheduler.post(streamWatchdogRunnable, streamInactivityTimeout);
+            isStreamWatchdogPending = true;
+        }
+    }
+
+    private boolean scheduleWriteResume() {
+        if (writeResumes >= retryPolicy.getMaxWriteResumes()) {
+            return false;
+        }
+
+        writeResumes++;
+        chunkRetries = 0;
+        metrics.onWriteResume();
+
+        LOGGER.warning("Resuming write operation in " + retryPolicy.getWriteResumeDelay() + " ms, resume "
+                + writeResumes);
+
+        scheduler.post(writeResumeRunnable, retryPolicy.getWriteResumeDelay());
+        return true;
+    }
+
+    private void scheduleNextReadPoll(long delay) {
+        // with an interval, the ticks are already posted by the previous ones
+        if (isReadPolling && readPollInterval <= 0) {
+            scheduler.remove(readPollRunnable);
+            scheduler.post(readPollRunnable, delay);
+        }
+    }
+
+    private boolean serveCachedResponse(String data) {
+        if (responseCache == null) {
+            return false;
+        }
+
+        TxRxResponseCache.Response response = responseCache.get(responseCacheDevice, data, scheduler.now());
+
+        if (response == null) {
+            return false;
+        }
+
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Response served from cache for: " + data);
+        }
+
+        // delivered from the scheduler, as a written response, never from within the request of the caller
+        isServingCachedResponse = true;
+        cachedCommand = data;
+        cachedResponse = response;
+        scheduler.post(cachedResponseRunnable, 0);
+        return true;
+    }
+
+    private void splitStreamValues(String currentValue) {
+        scheduler.remove(successfulNotifyTimeoutRunnable);
+
+        notifyAccumulator.append(currentValue);
+
+        // a stream never pauses for the later read timeout: each value is delivered once terminated
+        int end;
+
+        while ((end = notifyAccumulator.indexOf(readTerminator)) >= 0) {
+            int length = end + readTerminator.length();
+            String completeNotifyValue = notifyAccumulator.substring(0, length);
+            notifyAccumulator.delete(0, length);
+
+            callback.onNotifyData(completeNotifyValue);
+        }
+
+        if (notifyAccumulator.length() > 0) {
+            scheduler.post(successfulNotifyTimeoutRunnable, txRxTimeouts.getLaterReadTimeout());
+        }
+    }
+
+    private boolean startDataWrite(String data) {
+        writingData = data;
+
+        data += writeTerminator;
+
+        writeOperation = new WriteOperation.DataWriteOperation(data.getBytes());
+        chunkRetries = 0;
+        writeResumes = 0;
+
+        try {
+            currentWriteChunk = writeOperation.nextChunk(getWriteChunkSize());
+        }
+        catch (IOException e) {
+            // never thrown by in-memory data
+            LOGGER.log(Level.WARNING, "Unable to read data to write", e);
+            callback.onWriteError(ERROR_WRITE_SOURCE);
+            return false;
+        }
+
+        if (currentWriteChunk == null) {
+            LOGGER.fine("Characteristic value write complete, no data to write");
+            notifyWriteComplete();
+            return true;
+        }
+
+        callback.onWorkload(false);
+
+        // the state is set before writing, since the transport can deliver the result at once
+        chunkWriteTime = scheduler.now();
+
+        // in streaming mode, notifications are not responses to the writes
+        if (!isStreaming) {
+            // TIME RECORDING - RESET TIMESTAMPS
+            isTiming = true;
+            beginNotifyTime = 0L;
+            endWriteTime = 0L;
+            endNotifyTime = 0L;
+            // TIME RECORDING - START WRITE COMMAND
+            beginWriteTime = chunkWriteTime;
+
+            scheduler.post(readTimeoutRunnable, txRxTimeouts.getFirstReadTimeout());
+        }
+
+        isWriting = true;
+        scheduler.post(writeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
+
+        boolean writeInitiated = writeToTransport(currentWriteChunk);
+
+        if (!writeInitiated) {
+            LOGGER.warning("Unable to initiate write operation");
+
+            isWriting = false;
+            isTiming = false;
+            scheduler.remove(writeTimeoutRunnable);
+            scheduler.remove(readTimeoutRunnable);
+            callback.onWriteError(ERROR_WRITE_BLE_DEVICE_ERROR);
+        }
+
+        return writeInitiated;
+    }
+
+    private boolean writeToTransport(byte[] chunk) {
+        record(TxRxTrace.EVENT_WRITE, 0, chunk);
+
+        if (!transport.write(chunk)) {
+            record(TxRxTrace.EVENT_WRITE_RESULT, TxRxTrace.STATUS_NOT_INITIATED, null);
+            return false;
+        }
+        return true;
+    }
+
+    private void writeCurrentChunk() {
+        chunkWriteTime = scheduler.now();
+        scheduler.post(writeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
+
+        if (!writeToTransport(currentWriteChunk)) {
+            LOGGER.warning("Unable to continue write operation");
+
+            scheduler.remove(writeTimeoutRunnable);
+            handleWriteFailure(TxRxRetryPolicy.STATUS_NOT_INITIATED);
+        }
+    }
+
+    private void writeNextChunk() {
+        try {
+            currentWriteChunk = writeOperation.nextChunk(getWriteChunkSize());
+        }
+        catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read bulk transfer source", e);
+            isWriting = false;
+            notifyWriteError(ERROR_WRITE_SOURCE);
+            return;
+        }
+
+        if (currentWriteChunk != null) {
+            long pacingDelay = linkQualityPolicy.getPacingDelay(linkQuality.getScore());
+
+            if (pacingDelay > 0) {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Characteristic value written, writing next chunk in " + pacingDelay + " ms");
+                }
+
+                scheduler.post(chunkRetryRunnable, pacingDelay);
+            }
+            else {
+                LOGGER.fine("Characteristic value written, writing next chunk");
+
+                writeCurrentChunk();
+            }
+        }
+        else {
+            if (!(writeOperation instanceof TxRxBulkTransfer)) {
+                // TIME RECORDING - END WRITE COMMAND
+                if (isTiming) {
+                    endWriteTime = scheduler.now();
+                }
+            }
+
+            isWriting = false;
+            notifyWriteComplete();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.List;
+
+/**
+ * Callback interface used by a {@link TxRxSession} to asynchronously notify the results of each request to the
+ * device.
+ * <p>
+ * The methods match the data callbacks of {@code TxRxDeviceCallback}, to which the Android adapter forwards them.
+ *
+ * @see TxRxSession#TxRxSession(TxRxTransport, TxRxScheduler, TxRxSessionCallback)
+ */
+public interface TxRxSessionCallback {
+
+    /**
+     * Callback when a bulk transfer has been completely acknowledged by the device.
+     *
+     * @param transfer The completed transfer
+     */
+    void onBulkTransferComplete(TxRxBulkTransfer transfer);
+
+    /**
+     * Callback when a bulk transfer error occurs.
+     *
+     * @param transfer  The interrupted transfer
+     * @param errorCode Error code for write error
+     */
+    void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode);
+
+    /**
+     * Callback reporting the progress of a bulk transfer.
+     *
+     * @param transfer The transfer in progress
+     */
+    void onBulkTransferProgress(TxRxBulkTransfer transfer);
+
+    /**
+     * Callback when a device send event data.
+     *
+     * @param data The data sent
+     */
+    void onEventData(String data);
+
+    /**
+     * Callback when a device send an event frame, for profiles declaring an event
+     * {@link com.tertiumtechnology.txrxlib.frame.FrameDecoder}. The frame is dispatched as soon as it is complete.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param buffer the buffer holding the frame
+     * @param offset the offset of the first frame byte
+     * @param length the frame length
+     * @see TxRxDeviceProfile#withEventFrameDecoderFactory(com.tertiumtechnology.txrxlib.frame.FrameDecoder.Factory)
+     */
+    default void onEventFrame(byte[] buffer, int offset, int length) {
+    }
+
+    /**
+     * Callback when every step of the {@link TxRxInitScript} run by {@link TxRxSession#runInitScript(TxRxInitScript)}
+     * has succeeded.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param results the result of each step, in order
+     */
+    default void onInitScriptComplete(List<TxRxInitScript.StepResult> results) {
+    }
+
+    /**
+     * Callback when a step of the {@link TxRxInitScript} run by {@link TxRxSession#runInitScript(TxRxInitScript)}
+     * has failed. The following steps are not run.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param results   the result of each step run, in order, the failed one being the last
+     * @param errorCode Error code of the failed step
+     */
+    default void onInitScriptError(List<TxRxInitScript.StepResult> results, int errorCode) {
+    }
+
+    /**
+     * Callback when a device send notification data.
+     *
+     * @param data The data notified
+     */
+    void onNotifyData(String data);
+
+    /**
+     * Callback when a device send a notification frame, for profiles declaring a
+     * {@link com.tertiumtechnology.txrxlib.frame.FrameDecoder}.
+     *
+     * @param buffer the buffer holding the frame
+     * @param offset the offset of the first frame byte
+     * @param length the frame length
+     */
+    void onNotifyFrame(byte[] buffer, int offset, int length);
+
+    /**
+     * Callback on a successful read request.
+     *
+     * @param data The data read
+     */
+    void onReadData(String data);
+
+    /**
+     * Callback when a read error occurs.
+     *
+     * @param errorCode Error code for read error
+     */
+    void onReadError(int errorCode);
+
+    /**
+     * Callback on read or notify timeout.
+     */
+    void onReadNotifyTimeout();
+
+    /**
+     * Callback on receiving the timestamps of a write command and of its notification data.
+     *
+     * @param beginWriteTime  long the time the write started
+     * @param endWriteTime    long the time the write ended
+     * @param beginNotifyTime long the time of the first notification
+     * @param endNotifyTime   long the time of the last notification
+     */
+    void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime, long beginNotifyTime,
+                                            long endNotifyTime);
+
+    /**
+     * Callback on a successful setMode request.
+     *
+     * @param mode The current setMode value
+     */
+    void onSetMode(int mode);
+
+    /**
+     * Callback when a setMode error occurs.
+     *
+     * @param errorCode Error code for setMode error
+     */
+    void onSetModeError(int errorCode);
+
+    /**
+     * Callback on setMode timeout.
+     */
+    void onSetModeTimeout();
+
+    /**
+     * Callback when, in streaming mode, no value has been received from the device for the inactivity timeout set
+     * through {@link TxRxSession#startStreaming(long)}. Invoked once for each period of inactivity.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void onStreamInactive() {
+    }
+
+    /**
+     * Callback on traffic with the device: a chunk written or a notification received.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param isNotify boolean true for a notification, false for a write
+     */
+    default void onWorkload(boolean isNotify) {
+    }
+
+    /**
+     * Callback on a successful write request.
+     *
+     * @param data The data written
+     */
+    void onWriteData(String data);
+
+    /**
+     * Callback when a write error occurs.
+     *
+     * @param errorCode Error code for write error
+     */
+    void onWriteError(int errorCode);
+
+    /**
+     * Callback after a write operation or bulk transfer has ended, successfully or not, once its result has been
+     * notified. A new write can be requested from here.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void onWriteFinished() {
+    }
+
+    /**
+     * Callback on write timeout.
+     */
+    void onWriteTimeout();
+}
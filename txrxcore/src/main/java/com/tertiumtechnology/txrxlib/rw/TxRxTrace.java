@@ -0,0 +1,300 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class holds a trace of a {@link TxRxSession}, recorded by a {@link TxRxTraceRecorder}: the requests of the
+ * application, the values written to and notified by the device, the results of the transport and the connection
+ * events, each with the time it happened.
+ * <p>
+ * A trace file starts with the {@link #MAGIC} bytes, the format {@link #VERSION} and the recording start time, in
+ * milliseconds since the epoch. Each event follows as its type byte, the microseconds elapsed since the previous
+ * event, its argument and its value, the numbers being written as variable length integers.
+ *
+ * @see TxRxTraceRecorder
+ */
+public class TxRxTrace {
+
+    /**
+     * The session has been started: argument is the Rx packet size, value holds the Rx and Tx terminator ordinals
+     */
+    public static final int EVENT_START = 1;
+
+    /**
+     * The session has been stopped, as on a disconnection
+     */
+    public static final int EVENT_STOP = 2;
+
+    /**
+     * The write in progress has been suspended, as when the connection is lost before a reconnection
+     */
+    public static final int EVENT_SUSPEND = 3;
+
+    /**
+     * Resume of a suspended write requested, as when the connection has been restored
+     */
+    public static final int EVENT_RESUME = 4;
+
+    /**
+     * Streaming mode started or stopped: argument is the inactivity timeout, -1 when stopped
+     */
+    public static final int EVENT_STREAMING = 5;
+
+    /**
+     * Read polling started or stopped: argument is the polling interval, -1 when stopped
+     */
+    public static final int EVENT_READ_POLLING = 6;
+
+    /**
+     * Data write requested by the application: value holds the data, without terminator
+     */
+    public static final int EVENT_REQUEST_WRITE = 10;
+
+    /**
+     * Bulk transfer requested by the application: argument is the total number of bytes, -1 if unknown
+     */
+    public static final int EVENT_REQUEST_BULK_TRANSFER = 11;
+
+    /**
+     * Read requested by the application
+     */
+    public static final int EVENT_REQUEST_READ = 12;
+
+    /**
+     * SetMode requested by the application: argument is the mode
+     */
+    public static final int EVENT_REQUEST_SET_MODE = 13;
+
+    /**
+     * Chunk written to the Rx characteristic: value holds the chunk
+     */
+    public static final int EVENT_WRITE = 20;
+
+    /**
+     * Result of a chunk write: argument is the status
+     */
+    public static final int EVENT_WRITE_RESULT = 21;
+
+    /**
+     * Read of the Tx characteristic initiated
+     */
+    public static final int EVENT_READ = 22;
+
+    /**
+     * Result of a read: argument is the status, value holds the value read
+     */
+    public static final int EVENT_READ_RESULT = 23;
+
+    /**
+     * Write of the setMode characteristic: value holds the mode byte
+     */
+    public static final int EVENT_SET_MODE_WRITE = 24;
+
+    /**
+     * Result of a setMode write: argument is the status
+     */
+    public static final int EVENT_SET_MODE_RESULT = 25;
+
+    /**
+     * End of a write operation or bulk transfer: argument is the error code, 0 if completed
+     */
+    public static final int EVENT_WRITE_END = 26;
+
+    /**
+     * Value notified on the Tx characteristic: value holds the notified bytes
+     */
+    public static final int EVENT_NOTIFY = 30;
+
+    /**
+     * Value notified on the event characteristic: value holds the notified bytes
+     */
+    public static final int EVENT_EVENT = 31;
+
+    /**
+     * RSSI of the link: argument is the RSSI in dBm
+     */
+    public static final int EVENT_RSSI = 32;
+
+    /**
+     * Status recorded as the result of an operation the transport refused to initiate
+     */
+    public static final int STATUS_NOT_INITIATED = -1;
+
+    /**
+     * Bytes starting every trace file
+     */
+    public static final byte[] MAGIC = {'T', 'X', 'R', 'T'};
+
+    /**
+     * Version of the trace file format
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * An event of a trace.
+     */
+    public static class Event {
+
+        private final int type;
+        private final long time;
+        private final long argument;
+        private final byte[] value;
+
+        Event(int type, long time, long argument, byte[] value) {
+            this.type = type;
+            this.time = time;
+            this.argument = argument;
+            this.value = value;
+        }
+
+        /**
+         * Returns the argument of the event, whose meaning depends on its type.
+         *
+         * @return the argument, 0 if not used
+         */
+        public long getArgument() {
+            return argument;
+        }
+
+        /**
+         * Returns the time of the event, since the start of the recording.
+         *
+         * @return the time in microseconds
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * Returns the type of the event, one of the {@code EVENT_} constants of {@link TxRxTrace}.
+         *
+         * @return the type of the event
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * Returns the value of the event, whose meaning depends on its type.
+         *
+         * @return the value, empty if not used
+         */
+        public byte[] getValue() {
+            return value;
+        }
+    }
+
+    private final long startTime;
+    private final List<Event> events;
+
+    private TxRxTrace(long startTime, List<Event> events) {
+        this.startTime = startTime;
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Read a trace written by a {@link TxRxTraceRecorder}. A trace whose last event has been cut, e.g. by a crash
+     * of the application, is read up to its last whole event.
+     *
+     * @param inputStream the stream to read the trace from, not closed by this method
+     * @return the trace
+     * @throws IOException if the stream can not be read or does not hold a trace
+     */
+    public static TxRxTrace read(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(inputStream));
+
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("Not a TxRx trace");
+            }
+        }
+
+        int version = input.readUnsignedByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported TxRx trace version: " + version);
+        }
+
+        long startTime = input.readLong();
+        List<Event> events = new ArrayList<>();
+        long time = 0;
+
+        while (true) {
+            int type = input.read();
+
+            if (type < 0) {
+                break;
+            }
+
+            try {
+                time += readVarLong(input);
+                long argument = decodeZigZag(readVarLong(input));
+                byte[] value = new byte[(int) readVarLong(input)];
+                input.readFully(value);
+
+                events.add(new Event(type, time, argument, value));
+            }
+            catch (EOFException e) {
+                break;
+            }
+        }
+
+        return new TxRxTrace(startTime, events);
+    }
+
+    /**
+     * Returns the duration of the trace, up to its last event.
+     *
+     * @return the duration in microseconds
+     */
+    public long getDuration() {
+        return events.isEmpty() ? 0 : events.get(events.size() - 1).getTime();
+    }
+
+    /**
+     * Returns the events of the trace, in order of time.
+     *
+     * @return the unmodifiable list of events
+     */
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the time the recording started.
+     *
+     * @return the start time in milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long readVarLong(DataInputStream input) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int current = input.readUnsignedByte();
+            value |= (long) (current & 0x7F) << shift;
+
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IOException("Malformed variable length integer");
+    }
+}
@@ -0,0 +1,115 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class records a {@link TxRxTrace} of a session, e.g. of a field session showing a slow path, to be replayed
+ * later on a simulated device without hardware.
+ * <p>
+ * Once set on a {@link TxRxSession} or a {@code TxRxDeviceManager}, the recorder captures every request, written
+ * chunk, transport result, notification and connection event, timed on {@link System#nanoTime()} with microsecond
+ * resolution. Events are buffered and written in a compact binary format, a few bytes each besides their values.
+ * <p>
+ * Recording never fails the session: if the stream can not be written, the recorder stops recording and logs the
+ * error.
+ *
+ * @see TxRxSession#setTraceRecorder(TxRxTraceRecorder)
+ */
+public class TxRxTraceRecorder implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(TxRxTraceRecorder.class.getSimpleName());
+
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final DataOutputStream output;
+    private final long startNanos;
+    private long lastTime;
+    private long eventCount;
+    private boolean isFailed;
+
+    /**
+     * Create a new {@link TxRxTraceRecorder}, writing the trace to the specified stream.
+     *
+     * @param outputStream the stream to write the trace to, closed by {@link #close()}
+     * @throws IOException if the trace header can not be written
+     */
+    public TxRxTraceRecorder(OutputStream outputStream) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(outputStream));
+        this.startNanos = System.nanoTime();
+
+        output.write(TxRxTrace.MAGIC);
+        output.writeByte(TxRxTrace.VERSION);
+        output.writeLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Flush the events recorded so far and close the stream. Events recorded afterwards are ignored.
+     *
+     * @throws IOException if the stream can not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        isFailed = true;
+        output.close();
+    }
+
+    /**
+     * Write the buffered events to the stream.
+     *
+     * @throws IOException if the stream can not be written
+     */
+    public synchronized void flush() throws IOException {
+        output.flush();
+    }
+
+    /**
+     * Returns the number of events recorded so far.
+     *
+     * @return the number of events
+     */
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    synchronized void record(int type, long argument, byte[] value) {
+        if (isFailed) {
+            return;
+        }
+
+        long time = (System.nanoTime() - startNanos) / 1000;
+
+        if (value == null) {
+            value = NO_VALUE;
+        }
+
+        try {
+            output.writeByte(type);
+            writeVarLong(time - lastTime);
+            writeVarLong((argument << 1) ^ (argument >> 63));
+            writeVarLong(value.length);
+            output.write(value);
+        }
+        catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to record trace, recording stopped", e);
+            isFailed = true;
+            return;
+        }
+
+        lastTime = time;
+        eventCount++;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+/**
+ * Transport used by a {@link TxRxSession} to reach the characteristics of a device, such as the GATT connection of
+ * the Android adapter or a simulated device.
+ * <p>
+ * Every operation is asynchronous: the transport reports its result to the session through
+ * {@link TxRxSession#onRead(byte[], int)}, {@link TxRxSession#onWrite(int)} and
+ * {@link TxRxSession#onSetModeWrite(int)}, while the values notified by the device are delivered through
+ * {@link TxRxSession#onNotify(byte[])} and {@link TxRxSession#onEvent(byte[])}.
+ */
+public interface TxRxTransport {
+
+    /**
+     * Status of a successful operation
+     */
+    int STATUS_SUCCESS = 0;
+
+    /**
+     * Initiate a read of the Tx characteristic.
+     *
+     * @return true if the read operation was initiated successfully, false otherwise.
+     */
+    boolean read();
+
+    /**
+     * Initiate a write of the specified value to the Rx characteristic.
+     *
+     * @param value the value to write
+     * @return true if the write operation was initiated successfully, false otherwise.
+     */
+    boolean write(byte[] value);
+
+    /**
+     * Initiate a write of the specified value to the setMode characteristic.
+     *
+     * @param value the value to write
+     * @return true if the write operation was initiated successfully, false otherwise.
+     */
+    boolean writeSetMode(byte[] value);
+}
@@ -0,0 +1,155 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.PriorityQueue;
+
+/**
+ * This class provides a {@link TxRxScheduler} running on a virtual clock, which only moves when advanced through
+ * {@link #advance(long)} or {@link #advanceTo(long)}.
+ * <p>
+ * Tasks are run on the thread advancing the clock, in order of due time and, for the same due time, in order of
+ * posting; the clock is set to the due time of each task before running it. Since no real time passes, timeouts
+ * and delays are reproduced exactly from run to run, and hours of traffic are simulated in a few seconds.
+ * <p>
+ * Tasks can be posted and removed from any thread.
+ *
+ * @see TxRxSession#TxRxSession(TxRxTransport, TxRxScheduler, TxRxSessionCallback)
+ */
+public class TxRxVirtualScheduler implements TxRxScheduler {
+
+    private static class Task {
+
+        private final Runnable runnable;
+        private final long time;
+        private final long sequence;
+
+        private Task(Runnable runnable, long time, long sequence) {
+            this.runnable = runnable;
+            this.time = time;
+            this.sequence = sequence;
+        }
+    }
+
+    private final PriorityQueue<Task> tasks;
+    private long now;
+    private long sequence;
+
+    /**
+     * Create a new {@link TxRxVirtualScheduler}, with the clock starting at 0.
+     */
+    public TxRxVirtualScheduler() {
+        this(0);
+    }
+
+    /**
+     * Create a new {@link TxRxVirtualScheduler}, with the clock starting at the specified time.
+     *
+     * @param startTime the initial time of the clock, in milliseconds
+     */
+    public TxRxVirtualScheduler(long startTime) {
+        this.tasks = new PriorityQueue<>((first, second) -> first.time != second.time
+                ? Long.compare(first.time, second.time) : Long.compare(first.sequence, second.sequence));
+        this.now = startTime;
+    }
+
+    /**
+     * Advance the clock by the specified delay, running every task due meanwhile, including the tasks they post.
+     *
+     * @param delay the delay in milliseconds, 0 to run only the tasks already due
+     * @return the number of tasks run
+     */
+    public int advance(long delay) {
+        long time;
+
+        synchronized (this) {
+            time = now + delay;
+        }
+
+        return advanceTo(time);
+    }
+
+    /**
+     * Advance the clock to the specified time, running every task due meanwhile, including the tasks they post.
+     * The clock is never moved backwards.
+     *
+     * @param time the time to reach, in milliseconds
+     * @return the number of tasks run
+     */
+    public int advanceTo(long time) {
+        int count = 0;
+        Task task;
+
+        while ((task = pollTask(time)) != null) {
+            task.runnable.run();
+            count++;
+        }
+
+        synchronized (this) {
+            if (time > now) {
+                now = time;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the due time of the next pending task.
+     *
+     * @return the due time in milliseconds, or -1 if no task is pending
+     */
+    public synchronized long getNextTaskTime() {
+        Task task = tasks.peek();
+        return task != null ? task.time : -1;
+    }
+
+    /**
+     * Returns the number of pending tasks.
+     *
+     * @return the number of tasks not run yet
+     */
+    public synchronized int getPendingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * Returns the current time of the virtual clock.
+     *
+     * @return the current time in milliseconds
+     */
+    @Override
+    public synchronized long now() {
+        return now;
+    }
+
+    /**
+     * Run the specified task once the clock has been advanced by the specified delay.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     */
+    @Override
+    public synchronized void post(Runnable task, long delay) {
+        tasks.add(new Task(task, now + Math.max(delay, 0), sequence++));
+    }
+
+    /**
+     * Remove every pending run of the specified task.
+     *
+     * @param task the task to remove
+     */
+    @Override
+    public synchronized void remove(Runnable task) {
+        tasks.removeIf(pending -> pending.runnable == task);
+    }
+
+    private synchronized Task pollTask(long time) {
+        Task task = tasks.peek();
+
+        if (task == null || task.time > time) {
+            return null;
+        }
+
+        now = Math.max(now, task.time);
+        return tasks.poll();
+    }
+}
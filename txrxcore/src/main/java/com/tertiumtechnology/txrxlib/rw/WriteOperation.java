@@ -0,0 +1,92 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Base class for the data written to the Rx characteristic, split lazily into chunks.
+ * <p>
+ * A chunk remains pending until it is acknowledged by the device: requesting the next chunk before the
+ * acknowledgement returns the pending chunk again, so that a failed chunk can be sent again and an interrupted
+ * operation can be resumed from the last acknowledged chunk.
+ */
+abstract class WriteOperation {
+
+    private long acknowledgedBytes;
+    private byte[] pendingChunk;
+
+    /**
+     * Acknowledge the pending chunk, successfully written to the device.
+     */
+    void acknowledgeChunk() {
+        if (pendingChunk != null) {
+            acknowledgedBytes += pendingChunk.length;
+            pendingChunk = null;
+        }
+    }
+
+    /**
+     * Returns the number of bytes acknowledged by the device.
+     *
+     * @return the number of acknowledged bytes
+     */
+    long getAcknowledgedBytes() {
+        return acknowledgedBytes;
+    }
+
+    /**
+     * Returns the chunk to write: the pending chunk, if not acknowledged yet, otherwise the next one.
+     *
+     * @param maxChunkSize int the maximum chunk size
+     * @return the chunk to write, or null if every chunk has been acknowledged
+     * @throws IOException if the data can not be read
+     */
+    byte[] nextChunk(int maxChunkSize) throws IOException {
+        if (pendingChunk == null) {
+            pendingChunk = readChunk(maxChunkSize);
+        }
+        return pendingChunk;
+    }
+
+    /**
+     * Read the next chunk of data.
+     *
+     * @param maxChunkSize int the maximum chunk size
+     * @return the next chunk, or null if there is no more data
+     * @throws IOException if the data can not be read
+     */
+    abstract byte[] readChunk(int maxChunkSize) throws IOException;
+
+    /**
+     * {@link WriteOperation} writing an in-memory byte array.
+     */
+    static class DataWriteOperation extends WriteOperation {
+
+        private final byte[] data;
+        private int position;
+
+        DataWriteOperation(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        byte[] readChunk(int maxChunkSize) {
+            if (position >= data.length) {
+                return null;
+            }
+
+            byte[] chunk;
+
+            if (position == 0 && data.length <= maxChunkSize) {
+                chunk = data;
+            }
+            else {
+                int limit = position + Math.min(maxChunkSize, data.length - position);
+                chunk = Arrays.copyOfRange(data, position, limit);
+            }
+
+            position += chunk.length;
+            return chunk;
+        }
+    }
+}
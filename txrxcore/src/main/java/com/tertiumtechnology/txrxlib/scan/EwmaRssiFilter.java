@@ -0,0 +1,52 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+/**
+ * {@link TxRxRssiFilter} computing an exponentially weighted moving average of the RSSI values.
+ */
+public class EwmaRssiFilter implements TxRxRssiFilter {
+
+    /**
+     * Default weight of a new measurement
+     */
+    public static final double ALPHA_DEFAULT_VALUE = 0.3;
+
+    private final double alpha;
+    private double value;
+    private boolean initialized;
+
+    /**
+     * Create a new {@link EwmaRssiFilter}.
+     *
+     * @param alpha double the weight of a new measurement, between 0 (no update) and 1 (no smoothing)
+     */
+    public EwmaRssiFilter(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("Invalid alpha: " + alpha);
+        }
+
+        this.alpha = alpha;
+    }
+
+    /**
+     * Returns a {@link TxRxRssiFilter.Factory} creating {@link EwmaRssiFilter} instances.
+     *
+     * @param alpha double the weight of a new measurement, between 0 (no update) and 1 (no smoothing)
+     * @return a factory of {@link EwmaRssiFilter}
+     */
+    public static TxRxRssiFilter.Factory factory(double alpha) {
+        return () -> new EwmaRssiFilter(alpha);
+    }
+
+    @Override
+    public double update(int rssi, long timestamp) {
+        if (!initialized) {
+            value = rssi;
+            initialized = true;
+        }
+        else {
+            value += alpha * (rssi - value);
+        }
+
+        return value;
+    }
+}
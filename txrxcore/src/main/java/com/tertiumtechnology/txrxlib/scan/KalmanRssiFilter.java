@@ -0,0 +1,74 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+/**
+ * {@link TxRxRssiFilter} estimating the RSSI through a one-dimensional Kalman filter, assuming a constant signal
+ * disturbed by gaussian noise.
+ * <p>
+ * The process noise grows with the time elapsed since the previous measurement, so that a device not heard for a
+ * while converges faster to its new RSSI.
+ */
+public class KalmanRssiFilter implements TxRxRssiFilter {
+
+    /**
+     * Default process noise, per second
+     */
+    public static final double PROCESS_NOISE_DEFAULT_VALUE = 1.0;
+
+    /**
+     * Default measurement noise
+     */
+    public static final double MEASUREMENT_NOISE_DEFAULT_VALUE = 16.0;
+
+    private final double processNoise;
+    private final double measurementNoise;
+
+    private double estimate;
+    private double errorCovariance;
+    private long lastTimestamp;
+    private boolean initialized;
+
+    /**
+     * Create a new {@link KalmanRssiFilter}.
+     *
+     * @param processNoise     double the variance of the RSSI change per second
+     * @param measurementNoise double the variance of the RSSI measurement noise
+     */
+    public KalmanRssiFilter(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Returns a {@link TxRxRssiFilter.Factory} creating {@link KalmanRssiFilter} instances.
+     *
+     * @param processNoise     double the variance of the RSSI change per second
+     * @param measurementNoise double the variance of the RSSI measurement noise
+     * @return a factory of {@link KalmanRssiFilter}
+     */
+    public static TxRxRssiFilter.Factory factory(double processNoise, double measurementNoise) {
+        return () -> new KalmanRssiFilter(processNoise, measurementNoise);
+    }
+
+    @Override
+    public double update(int rssi, long timestamp) {
+        if (!initialized) {
+            estimate = rssi;
+            errorCovariance = measurementNoise;
+            lastTimestamp = timestamp;
+            initialized = true;
+            return estimate;
+        }
+
+        // predict
+        double elapsedSeconds = Math.max(0, timestamp - lastTimestamp) / 1000.0;
+        errorCovariance += processNoise * Math.max(elapsedSeconds, 0.001);
+        lastTimestamp = timestamp;
+
+        // correct
+        double gain = errorCovariance / (errorCovariance + measurementNoise);
+        estimate += gain * (rssi - estimate);
+        errorCovariance *= (1 - gain);
+
+        return estimate;
+    }
+}
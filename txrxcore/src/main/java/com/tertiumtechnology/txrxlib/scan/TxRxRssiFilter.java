@@ -0,0 +1,31 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+/**
+ * Filter used to smooth the RSSI values of the advertisements received from a device.
+ * <p>
+ * Filters are stateful: a new instance is used for each tracked device, see {@link Factory}, set through
+ * {@code TxRxDeviceTable.setRssiFilterFactory(Factory)}.
+ */
+public interface TxRxRssiFilter {
+
+    /**
+     * Factory used to create a new {@link TxRxRssiFilter} for each tracked device.
+     */
+    interface Factory {
+        /**
+         * Create a new {@link TxRxRssiFilter}, with empty state.
+         *
+         * @return a new {@link TxRxRssiFilter}
+         */
+        TxRxRssiFilter create();
+    }
+
+    /**
+     * Update the filter with a new RSSI measurement.
+     *
+     * @param rssi      int the measured RSSI, in dBm
+     * @param timestamp long the measurement time, in milliseconds
+     * @return the smoothed RSSI, in dBm
+     */
+    double update(int rssi, long timestamp);
+}
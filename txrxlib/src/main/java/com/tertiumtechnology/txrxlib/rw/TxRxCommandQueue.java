@@ -0,0 +1,309 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * This class keeps the commands written to a device while it is not available, in order.
+ * <p>
+ * A {@link TxRxDeviceManager} with a command queue accepts commands through
+ * {@link TxRxDeviceManager#requestQueuedWriteData(String)} even when disconnected, and writes them back-to-back as
+ * soon as the TxRx services are ready. A command is removed from the queue only once written, so commands survive a
+ * disconnection; with a file, they also survive the application process.
+ * <p>
+ * The file is written behind, {@link #WRITE_BEHIND_DELAY} after the first change, so that a burst of offered or
+ * written commands costs a single write, off the write path of the device; {@link #flush()} writes it at once, e.g.
+ * before the application is stopped.
+ * <p>
+ * Commands with a key replace the queued command with the same key, keeping its position: this fits idempotent
+ * configuration commands, of which only the last value matters. Without a key, a command equal to a queued one can
+ * be optionally dropped.
+ */
+public class TxRxCommandQueue {
+
+    /**
+     * Default value for the maximum number of queued commands
+     */
+    public static final int MAX_SIZE_DEFAULT_VALUE = 256;
+
+    /**
+     * Delay in milliseconds after which the changes of the queue are written to its file
+     */
+    public static final long WRITE_BEHIND_DELAY = 1000;
+
+    private static final String TAG = TxRxCommandQueue.class.getSimpleName();
+
+    private static final int FILE_VERSION = 1;
+
+    private final LinkedList<Command> commands;
+    private final File file;
+    private final int maxSize;
+    private final TxRxScheduler scheduler;
+    private final Runnable flushRunnable;
+    private boolean deduplicate;
+    private boolean isPersistPending;
+
+    /**
+     * Create a new in-memory {@link TxRxCommandQueue}, with the default maximum size.
+     */
+    public TxRxCommandQueue() {
+        this(null, MAX_SIZE_DEFAULT_VALUE);
+    }
+
+    /**
+     * Create a new {@link TxRxCommandQueue}, persisted in the specified file by a dedicated background thread.
+     * Commands previously persisted in the file are loaded.
+     *
+     * @param file    File the file persisting the commands, null to keep the commands in memory only
+     * @param maxSize int the maximum number of queued commands
+     */
+    public TxRxCommandQueue(File file, int maxSize) {
+        this(file, maxSize, file != null ? new TxRxExecutorScheduler(TAG) : null);
+    }
+
+    /**
+     * Create a new {@link TxRxCommandQueue}, persisted in the specified file by the specified
+     * {@link TxRxScheduler}. Commands previously persisted in the file are loaded.
+     *
+     * @param file      File the file persisting the commands, null to keep the commands in memory only
+     * @param maxSize   int the maximum number of queued commands
+     * @param scheduler {@link TxRxScheduler} running the deferred writes of the file, may be null without file
+     */
+    public TxRxCommandQueue(File file, int maxSize, TxRxScheduler scheduler) {
+        this.commands = new LinkedList<>();
+        this.file = file;
+        this.maxSize = maxSize;
+        this.scheduler = scheduler;
+        this.flushRunnable = this::flush;
+
+        if (file != null && file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Remove every queued command.
+     */
+    public synchronized void clear() {
+        commands.clear();
+        persist();
+    }
+
+    /**
+     * Write the pending changes of the queue to its file at once, e.g. before the application is stopped.
+     */
+    public synchronized void flush() {
+        if (!isPersistPending) {
+            return;
+        }
+
+        scheduler.remove(flushRunnable);
+        isPersistPending = false;
+
+        write();
+    }
+
+    /**
+     * Returns the queued commands data, in order.
+     *
+     * @return a new list with the queued commands data
+     */
+    public synchronized List<String> getCommands() {
+        ArrayList<String> data = new ArrayList<>(commands.size());
+
+        for (Command command : commands) {
+            data.add(command.data);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the maximum number of queued commands.
+     *
+     * @return the maximum size of the queue
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns whether a command without key equal to a queued one is dropped.
+     *
+     * @return true if duplicated commands are dropped, false otherwise.
+     */
+    public synchronized boolean isDeduplicate() {
+        return deduplicate;
+    }
+
+    /**
+     * Set whether a command without key equal to a queued one is dropped.
+     *
+     * @param deduplicate true to drop duplicated commands
+     */
+    public synchronized void setDeduplicate(boolean deduplicate) {
+        this.deduplicate = deduplicate;
+    }
+
+    /**
+     * Returns whether the queue is empty.
+     *
+     * @return true if there are no queued commands, false otherwise.
+     */
+    public synchronized boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Add a command at the end of the queue.
+     *
+     * @param data String the command data
+     * @return true if the command has been queued or is already queued, false if the queue is full
+     */
+    public boolean offer(String data) {
+        return offer(null, data);
+    }
+
+    /**
+     * Add a command at the end of the queue, or replace the data of the queued command with the same key.
+     *
+     * @param key  String the command key, null if the command has no key
+     * @param data String the command data
+     * @return true if the command has been queued, false if the queue is full
+     */
+    public synchronized boolean offer(String key, String data) {
+        for (Command command : commands) {
+            if (key != null ? key.equals(command.key) : deduplicate && command.key == null && data.equals(
+                    command.data)) {
+                if (command.isWriting) {
+                    // the data being written can not change, the new value is queued after it
+                    continue;
+                }
+
+                command.data = data;
+                persist();
+                return true;
+            }
+        }
+
+        if (commands.size() >= maxSize) {
+            Log.w(TAG, "Command queue full, command dropped: " + data);
+            return false;
+        }
+
+        commands.addLast(new Command(key, data));
+        persist();
+        return true;
+    }
+
+    /**
+     * Returns the number of queued commands.
+     *
+     * @return the size of the queue
+     */
+    public synchronized int size() {
+        return commands.size();
+    }
+
+    synchronized Command beginWrite() {
+        Command command = commands.peekFirst();
+
+        if (command != null) {
+            command.isWriting = true;
+        }
+        return command;
+    }
+
+    synchronized void endWrite(Command command, boolean remove) {
+        command.isWriting = false;
+
+        if (remove && commands.remove(command)) {
+            persist();
+        }
+    }
+
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Log.w(TAG, "Unknown command queue file version, queue discarded");
+                return;
+            }
+
+            int count = in.readInt();
+
+            for (int i = 0; i < count && commands.size() < maxSize; i++) {
+                boolean hasKey = in.readBoolean();
+                String key = hasKey ? in.readUTF() : null;
+                commands.addLast(new Command(key, in.readUTF()));
+            }
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Unable to load command queue", e);
+        }
+    }
+
+    private void persist() {
+        if (file == null || isPersistPending) {
+            return;
+        }
+
+        isPersistPending = true;
+        scheduler.post(flushRunnable, WRITE_BEHIND_DELAY);
+    }
+
+    private void write() {
+        // the queue is written to a temporary file and renamed, so that a crash never leaves a truncated queue
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(commands.size());
+
+            for (Command command : commands) {
+                out.writeBoolean(command.key != null);
+
+                if (command.key != null) {
+                    out.writeUTF(command.key);
+                }
+                out.writeUTF(command.data);
+            }
+        }
+        catch (IOException e) {
+            Log.w(TAG, "Unable to persist command queue", e);
+            return;
+        }
+
+        if (!tempFile.renameTo(file)) {
+            Log.w(TAG, "Unable to replace command queue file");
+        }
+    }
+
+    /**
+     * A queued command.
+     */
+    static class Command {
+
+        private final String key;
+        private String data;
+        private boolean isWriting;
+
+        Command(String key, String data) {
+            this.key = key;
+            this.data = data;
+        }
+
+        String getData() {
+            return data;
+        }
+    }
+}
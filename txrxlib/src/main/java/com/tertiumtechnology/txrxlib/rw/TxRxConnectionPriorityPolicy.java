@@ -0,0 +1,98 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import android.bluetooth.BluetoothGatt;
+
+/**
+ * This is an utility class for managing the connection priority, i.e. the connection interval, according to the
+ * workload.
+ * <p>
+ * The connection is switched to {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH} as soon as a write operation starts
+ * or the notifications exceed {@link #getHeavyNotifyRate()} per second, and back to {@link #getIdlePriority()}
+ * after {@link #getQuietPeriod()} without any write or heavy notify traffic.
+ */
+public class TxRxConnectionPriorityPolicy {
+
+    /**
+     * Default value for the period without workload after which the idle priority is restored
+     */
+    public static final long QUIET_PERIOD_DEFAULT_VALUE = 2000;
+
+    /**
+     * Default value for the number of notifications per second considered heavy traffic
+     */
+    public static final int HEAVY_NOTIFY_RATE_DEFAULT_VALUE = 10;
+
+    private static final TxRxConnectionPriorityPolicy defaultConnectionPriorityPolicy =
+            new TxRxConnectionPriorityPolicy(BluetoothGatt.CONNECTION_PRIORITY_BALANCED, QUIET_PERIOD_DEFAULT_VALUE,
+                    HEAVY_NOTIFY_RATE_DEFAULT_VALUE);
+
+    private static final TxRxConnectionPriorityPolicy lowPowerConnectionPriorityPolicy =
+            new TxRxConnectionPriorityPolicy(BluetoothGatt.CONNECTION_PRIORITY_LOW_POWER,
+                    QUIET_PERIOD_DEFAULT_VALUE, HEAVY_NOTIFY_RATE_DEFAULT_VALUE);
+
+    /**
+     * Returns a {@link TxRxConnectionPriorityPolicy}, configured with default values, restoring
+     * {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED} when idle. This is the default used by
+     * {@link TxRxDeviceManager}.
+     *
+     * @return a TxRxConnectionPriorityPolicy with default values
+     */
+    public static TxRxConnectionPriorityPolicy getDefaultConnectionPriorityPolicy() {
+        return defaultConnectionPriorityPolicy;
+    }
+
+    /**
+     * Returns a {@link TxRxConnectionPriorityPolicy}, configured with default values, switching to
+     * {@link BluetoothGatt#CONNECTION_PRIORITY_LOW_POWER} when idle.
+     *
+     * @return a TxRxConnectionPriorityPolicy saving power when idle
+     */
+    public static TxRxConnectionPriorityPolicy getLowPowerConnectionPriorityPolicy() {
+        return lowPowerConnectionPriorityPolicy;
+    }
+
+    private final int idlePriority;
+    private final long quietPeriod;
+    private final int heavyNotifyRate;
+
+    /**
+     * Create a new {@link TxRxConnectionPriorityPolicy} in order to manage the connection priority.
+     *
+     * @param idlePriority    int the priority used without workload, {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED}
+     *                        or {@link BluetoothGatt#CONNECTION_PRIORITY_LOW_POWER}
+     * @param quietPeriod     long the period without workload after which the idle priority is restored
+     * @param heavyNotifyRate int the number of notifications per second considered heavy traffic
+     */
+    public TxRxConnectionPriorityPolicy(int idlePriority, long quietPeriod, int heavyNotifyRate) {
+        this.idlePriority = idlePriority;
+        this.quietPeriod = quietPeriod;
+        this.heavyNotifyRate = heavyNotifyRate;
+    }
+
+    /**
+     * Returns the number of notifications per second considered heavy traffic
+     *
+     * @return an int representing the heavy notify rate
+     */
+    public int getHeavyNotifyRate() {
+        return heavyNotifyRate;
+    }
+
+    /**
+     * Returns the priority used without workload
+     *
+     * @return an int representing the idle priority
+     */
+    public int getIdlePriority() {
+        return idlePriority;
+    }
+
+    /**
+     * Returns the period without workload after which the idle priority is restored
+     *
+     * @return a long representing the quiet period
+     */
+    public long getQuietPeriod() {
+        return quietPeriod;
+    }
+}
@@ -2,12 +2,54 @@ package com.tertiumtechnology.txrxlib.rw;
 
 import android.bluetooth.BluetoothAdapter;
 
+import java.util.List;
+
 /**
  * Callback interface used to asynchronously notify results on each request to device.
+ * <p>
+ * The callbacks are invoked on the Bluetooth binder threads or on the timeout thread of the
+ * {@link TxRxDeviceManager}, while holding the lock of the manager, the manager itself: the next request can be made
+ * from within a callback, but a callback must not wait for another thread calling a synchronized method of the same
+ * manager, which would deadlock. Long or blocking work should be handed to another thread, e.g. posted to the main
+ * thread. Only the event callbacks dispatched by an executor, see
+ * {@link TxRxDeviceManager#setEventExecutor(java.util.concurrent.Executor)}, run outside the lock.
  *
  * @see TxRxDeviceManager#TxRxDeviceManager(BluetoothAdapter, TxRxDeviceCallback, TxRxTimeouts)
  */
 public interface TxRxDeviceCallback {
+    /**
+     * Callback when a bulk transfer has been completely acknowledged by the device.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param transfer The completed transfer
+     */
+    default void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+    }
+
+    /**
+     * Callback when a bulk transfer error occurs. The transfer can be resumed from the last acknowledged chunk
+     * through {@link TxRxDeviceManager#requestBulkTransfer(TxRxBulkTransfer)}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param transfer  The interrupted transfer
+     * @param errorCode Error code for write error
+     */
+    default void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+    }
+
+    /**
+     * Callback reporting the progress of a bulk transfer, at most once every
+     * {@link TxRxBulkTransfer#getProgressInterval()} milliseconds.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param transfer The transfer in progress, reporting acknowledged bytes and throughput
+     */
+    default void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+    }
+
     /**
      * Callback when a connection error occurs.
      *
@@ -37,6 +79,49 @@ public interface TxRxDeviceCallback {
      */
     void onEventData(String data);
 
+    /**
+     * Callback when a device send an event frame, for devices whose {@link TxRxDeviceProfile} declares an event
+     * {@link com.tertiumtechnology.txrxlib.frame.FrameDecoder}. The frame is dispatched as soon as it is complete,
+     * without waiting for the later read timeout, on the executor set through
+     * {@link TxRxDeviceManager#setEventExecutor(java.util.concurrent.Executor)} if any.
+     * <p>
+     * <b>Note:</b> when not dispatched by an executor, the buffer content is only valid during this call, copy the
+     * frame if it must be retained.
+     * <p>
+     * The default implementation invokes {@link #onEventData(String)} with the frame.
+     *
+     * @param buffer the buffer holding the frame
+     * @param offset the offset of the first frame byte
+     * @param length the frame length
+     */
+    default void onEventFrame(byte[] buffer, int offset, int length) {
+        onEventData(new String(buffer, offset, length));
+    }
+
+    /**
+     * Callback when every step of the {@link TxRxInitScript} of the connection has succeeded. Requests can be sent
+     * to the device from here on.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param results the result of each step, in order, with its timing and, for queries, the response
+     * @see TxRxDeviceManager#connect(String, android.content.Context, TxRxInitScript)
+     */
+    default void onInitScriptComplete(List<TxRxInitScript.StepResult> results) {
+    }
+
+    /**
+     * Callback when a step of the {@link TxRxInitScript} of the connection has failed. The following steps are not
+     * run, and requests can be sent to the device from here on.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param results   the result of each step run, in order, the failed one being the last
+     * @param errorCode Error code of the failed step
+     */
+    default void onInitScriptError(List<TxRxInitScript.StepResult> results, int errorCode) {
+    }
+
     /**
      * Callback when a device send notification data.
      *
@@ -44,6 +129,37 @@ public interface TxRxDeviceCallback {
      */
     void onNotifyData(String data);
 
+    /**
+     * Callback when a device send a notification frame, for devices whose {@link TxRxDeviceProfile} declares a
+     * {@link com.tertiumtechnology.txrxlib.frame.FrameDecoder}. The frame is notified as soon as it is complete,
+     * without waiting for the later read timeout.
+     * <p>
+     * <b>Note:</b> the buffer content is only valid during this call, copy the frame if it must be retained.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param buffer the buffer holding the frame
+     * @param offset the offset of the first frame byte
+     * @param length the frame length
+     */
+    default void onNotifyFrame(byte[] buffer, int offset, int length) {
+    }
+
+    /**
+     * Callback when the PHY of the connection has been updated, after a request of the preferred PHY of the
+     * {@link TxRxDeviceProfile} or of {@link TxRxDeviceManager#setPreferredPhy(int, int)}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param txPhy  int the transmitter PHY, one of {@link android.bluetooth.BluetoothDevice#PHY_LE_1M},
+     *               {@link android.bluetooth.BluetoothDevice#PHY_LE_2M} or
+     *               {@link android.bluetooth.BluetoothDevice#PHY_LE_CODED}
+     * @param rxPhy  int the receiver PHY
+     * @param status int the GATT status of the update, {@link android.bluetooth.BluetoothGatt#GATT_SUCCESS} on success
+     */
+    default void onPhyUpdate(int txPhy, int rxPhy, int status) {
+    }
+
     /**
      * Callback on a successful read request.
      *
@@ -68,6 +184,20 @@ public interface TxRxDeviceCallback {
      */
     void onReceiveTxRxTimestampsAfterNotifyData(TxRxTimestamps txRxTimestamps);
 
+    /**
+     * Callback when a reconnection attempt is scheduled, after an unexpected disconnection, according to the
+     * {@link TxRxReconnectPolicy}. On success, {@link #onDeviceConnected()} and {@link #onTxRxServiceDiscovered()}
+     * will be invoked again; when every attempt fails, {@link #onConnectionError(int)} will be invoked with
+     * {@link TxRxDeviceManager#ERROR_CONNECT_RECONNECT_FAILED}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param attempt int the number of the reconnection attempt, starting from 1
+     * @param delay   long the delay before the attempt, in milliseconds
+     */
+    default void onReconnecting(int attempt, long delay) {
+    }
+
     /**
      * Callback on a successful setMode request.
      *
@@ -87,6 +217,15 @@ public interface TxRxDeviceCallback {
      */
     void onSetModeTimeout();
 
+    /**
+     * Callback when, in streaming mode, the device has not notified any value for the inactivity timeout set
+     * through {@link TxRxDeviceManager#startStreaming(long)}. Invoked once for each period of inactivity.
+     * <p>
+     * The default implementation does nothing.
+     */
+    default void onStreamInactive() {
+    }
+
     /**
      * Callback when a TxRx service has been discovered.
      */
@@ -18,19 +18,24 @@ import android.os.HandlerThread;
 import android.text.TextUtils;
 import android.util.Log;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
+import com.tertiumtechnology.txrxlib.scan.TxRxScanResult;
+import com.tertiumtechnology.txrxlib.util.TxRxLogcatHandler;
+import com.tertiumtechnology.txrxlib.util.TxRxTuningStore;
+
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
 
 /**
  * This class provides methods to perform request and receive data from devices which offer TxRx
  * services.
  * Needs an implementation of {@link TxRxDeviceCallback} to manage communication between
- * application and device.
+ * application and device. The callbacks are invoked while holding the lock of the manager, see
+ * {@link TxRxDeviceCallback}.
  * <p>
  * <b>Note:</b> Most of the request methods here require
  * {@link android.Manifest.permission#BLUETOOTH} permission.
@@ -39,12 +44,31 @@ import java.util.UUID;
  */
 public class TxRxDeviceManager {
 
-    static class HandlerWrapper {
+    static class HandlerWrapper implements TxRxScheduler {
 
         Handler handler;
         HandlerThread handlerThread;
 
-        public void clean() {
+        // when set, replaces the handler thread, e.g. with a TxRxVirtualScheduler
+        private final TxRxScheduler scheduler;
+        private final HashMap<Runnable, ScheduledTask> scheduledTasks;
+        private boolean isPrepared;
+
+        HandlerWrapper(TxRxScheduler scheduler) {
+            this.scheduler = scheduler;
+            this.scheduledTasks = new HashMap<>();
+        }
+
+        public synchronized void clean() {
+            isPrepared = false;
+
+            if (scheduler != null) {
+                for (ScheduledTask scheduledTask : scheduledTasks.values()) {
+                    scheduler.remove(scheduledTask);
+                }
+                scheduledTasks.clear();
+            }
+
             if (handler != null) {
                 handler.removeCallbacksAndMessages(null);
                 handler = null;
@@ -56,23 +80,87 @@ public class TxRxDeviceManager {
             }
         }
 
-        public void prepare() {
-            handlerThread = new HandlerThread("TimeoutHandlerThread");
-            handlerThread.start();
-            handler = new Handler(handlerThread.getLooper());
+        public synchronized boolean isPrepared() {
+            return isPrepared;
         }
 
-        public void safePostDelayed(Runnable r, long delayMillis) {
-            if (handler != null) {
+        @Override
+        public long now() {
+            return scheduler != null ? scheduler.now() : System.currentTimeMillis();
+        }
+
+        @Override
+        public void post(Runnable task, long delay) {
+            safePostDelayed(task, delay);
+        }
+
+        public synchronized void prepare() {
+            isPrepared = true;
+
+            if (scheduler == null) {
+                handlerThread = new HandlerThread("TimeoutHandlerThread");
+                handlerThread.start();
+                handler = new Handler(handlerThread.getLooper());
+            }
+        }
+
+        @Override
+        public void remove(Runnable task) {
+            safeRemoveCallbacks(task);
+        }
+
+        public synchronized void safePostDelayed(Runnable r, long delayMillis) {
+            if (!isPrepared) {
+                return;
+            }
+
+            if (scheduler != null) {
+                ScheduledTask scheduledTask = scheduledTasks.computeIfAbsent(r, ScheduledTask::new);
+                scheduledTask.pendingRuns++;
+                scheduler.post(scheduledTask, delayMillis);
+            }
+            else if (handler != null) {
                 handler.postDelayed(r, delayMillis);
             }
         }
 
-        public void safeRemoveCallbacks(Runnable r) {
-            if (handler != null) {
+        public synchronized void safeRemoveCallbacks(Runnable r) {
+            if (scheduler != null) {
+                ScheduledTask scheduledTask = scheduledTasks.remove(r);
+
+                if (scheduledTask != null) {
+                    scheduler.remove(scheduledTask);
+                }
+            }
+            else if (handler != null) {
                 handler.removeCallbacks(r);
             }
         }
+
+        /**
+         * A task posted on the scheduler, tracked until its last pending run, so that it can be removed by
+         * {@link #clean()}.
+         */
+        private class ScheduledTask implements Runnable {
+
+            private final Runnable task;
+            private int pendingRuns;
+
+            ScheduledTask(Runnable task) {
+                this.task = task;
+            }
+
+            @Override
+            public void run() {
+                synchronized (HandlerWrapper.this) {
+                    if (--pendingRuns == 0) {
+                        scheduledTasks.remove(task, this);
+                    }
+                }
+
+                task.run();
+            }
+        }
     }
 
     /**
@@ -105,405 +193,346 @@ public class TxRxDeviceManager {
      */
     public static final int ERROR_DISCONNECT_INVALID_BLUETOOTH_ADAPTER = 15;
 
+    /**
+     * Every reconnection attempt allowed by the {@link TxRxReconnectPolicy} has failed
+     */
+    public static final int ERROR_CONNECT_RECONNECT_FAILED = 16;
+
     /**
      * An Error occurred on read request
      */
-    public static final int ERROR_READ = 2;
+    public static final int ERROR_READ = TxRxSession.ERROR_READ;
 
     /**
      * Unable to initiate read operation
      */
-    public static final int ERROR_READ_BLE_DEVICE_ERROR = 21;
+    public static final int ERROR_READ_BLE_DEVICE_ERROR = TxRxSession.ERROR_READ_BLE_DEVICE_ERROR;
 
     /**
      * Invalid Tx characteristic for reading
      */
-    public static final int ERROR_READ_INVALID_TX_CHARACTERISTIC = 22;
+    public static final int ERROR_READ_INVALID_TX_CHARACTERISTIC = TxRxSession.ERROR_READ_INVALID_TX_CHARACTERISTIC;
 
     /**
      * An Error occurred on write request
      */
-    public static final int ERROR_WRITE = 3;
+    public static final int ERROR_WRITE = TxRxSession.ERROR_WRITE;
 
     /**
      * Unable to initiate write operation
      */
-    public static final int ERROR_WRITE_BLE_DEVICE_ERROR = 31;
+    public static final int ERROR_WRITE_BLE_DEVICE_ERROR = TxRxSession.ERROR_WRITE_BLE_DEVICE_ERROR;
 
     /**
      * Invalid Rx characteristic for writing
      */
-    public static final int ERROR_WRITE_INVALID_RX_CHARACTERISTIC = 32;
+    public static final int ERROR_WRITE_INVALID_RX_CHARACTERISTIC = TxRxSession.ERROR_WRITE_INVALID_RX_CHARACTERISTIC;
 
     /**
      * Invalid request, write operation already in progress
      */
-    public static final int ERROR_WRITE_OPERATION_IN_PROGRESS = 33;
+    public static final int ERROR_WRITE_OPERATION_IN_PROGRESS = TxRxSession.ERROR_WRITE_OPERATION_IN_PROGRESS;
+
+    /**
+     * Unable to read the data to write from the bulk transfer source
+     */
+    public static final int ERROR_WRITE_SOURCE = TxRxSession.ERROR_WRITE_SOURCE;
+
+    /**
+     * Write operation failed: timeout
+     */
+    public static final int ERROR_WRITE_TIMEOUT = TxRxSession.ERROR_WRITE_TIMEOUT;
 
     /**
      * An Error occurred on setMode request
      */
-    public static final int ERROR_SET_MODE = 4;
+    public static final int ERROR_SET_MODE = TxRxSession.ERROR_SET_MODE;
 
     /**
      * Unable to initiate setMode operation
      */
-    public static final int ERROR_SET_MODE_BLE_DEVICE_ERROR = 41;
+    public static final int ERROR_SET_MODE_BLE_DEVICE_ERROR = TxRxSession.ERROR_SET_MODE_BLE_DEVICE_ERROR;
 
     /**
      * Invalid setMode characteristic
      */
-    public static final int ERROR_SET_MODE_INVALID_CHARACTERISTIC = 42;
+    public static final int ERROR_SET_MODE_INVALID_CHARACTERISTIC = TxRxSession.ERROR_SET_MODE_INVALID_CHARACTERISTIC;
 
     /**
      * Invalid request, setMode operation already in progress
      */
-    public static final int ERROR_SET_MODE_OPERATION_IN_PROGRESS = 43;
+    public static final int ERROR_SET_MODE_OPERATION_IN_PROGRESS = TxRxSession.ERROR_SET_MODE_OPERATION_IN_PROGRESS;
 
     private static final String TAG = TxRxDeviceManager.class.getSimpleName();
 
-    private static final String SENSOR_TERTIUM_SERVICEUUID = "f3770001-1164-49bc-8f22-0ac34292c217";
-    private static final String TX_RX_ACKME_SERVICEUUID = "175f8f23-a570-49bd-9627-815a6a27de2a";
-    private static final String ZHAGA_SERVICEUUID = "3cc30001-cb91-4947-bd12-80d2f0535a30";
-    private static final String TX_RX_TERTIUM_SERVICEUUID = "d7080001-052c-46c4-9978-c0977bebf328";
-    private static final String ZEBRA_TERTIUM_SERVICEUUID = "c1ff0001-c47e-424d-9495-fb504404b8f5";
-
-    private static final ArrayList<TxRxDeviceProfile> txRxProfiles = new ArrayList<>();
-
     static {
-        // Tertium sensor
-        txRxProfiles.add(new TxRxDeviceProfile(
-                SENSOR_TERTIUM_SERVICEUUID,
-                "f3770002-1164-49bc-8f22-0ac34292c217",
-                "f3770003-1164-49bc-8f22-0ac34292c217",
-                "",
-                "",
-                TxRxDeviceProfile.TerminatorType.CRLF,
-                TxRxDeviceProfile.TerminatorType.NONE,
-                240, 240));
-
-        // Zentri Ackme
-        txRxProfiles.add(new TxRxDeviceProfile(
-                TX_RX_ACKME_SERVICEUUID,
-                "1cce1ea8-bd34-4813-a00a-c76e028fadcb",
-                "cacc07ff-ffff-4c48-8fae-a9ef71b75e26",
-                "20b9794f-da1a-4d14-8014-a0fb9cefb2f7",
-                "",
-                TxRxDeviceProfile.TerminatorType.CRLF,
-                TxRxDeviceProfile.TerminatorType.NONE,
-                15, 20));
-
-        // Zhaga TxRx
-        txRxProfiles.add(new TxRxDeviceProfile(
-                ZHAGA_SERVICEUUID,
-                "3cc30002-cb91-4947-bd12-80d2f0535a30",
-                "3cc30003-cb91-4947-bd12-80d2f0535a30",
-                "",
-                "3cc30004-cb91-4947-bd12-80d2f0535a30",
-                TxRxDeviceProfile.TerminatorType.CR,
-                TxRxDeviceProfile.TerminatorType.NONE,
-                240, 240));
-
-        // Tertium TxRx
-        txRxProfiles.add(new TxRxDeviceProfile(
-                TX_RX_TERTIUM_SERVICEUUID,
-                "d7080002-052c-46c4-9978-c0977bebf328",
-                "d7080003-052c-46c4-9978-c0977bebf328",
-                "",
-                "",
-                TxRxDeviceProfile.TerminatorType.CRLF,
-                TxRxDeviceProfile.TerminatorType.NONE,
-                240, 240));
-
-        // Tertium-Zebra TxRx
-        txRxProfiles.add(new TxRxDeviceProfile(
-                ZEBRA_TERTIUM_SERVICEUUID,
-                "c1ff0002-c47e-424d-9495-fb504404b8f5",
-                "c1ff0003-c47e-424d-9495-fb504404b8f5",
-                "",
-                "",
-                TxRxDeviceProfile.TerminatorType.CRLF,
-                TxRxDeviceProfile.TerminatorType.NONE,
-                240, 240));
+        // the engine logs the values written and notified at FINE level, which logcat would drop
+        TxRxLogcatHandler.install(Level.FINE);
     }
 
     private final Runnable connectionTimeoutRunnable;
-    private final Runnable readTimeoutRunnable;
-    private final Runnable successfulNotifyTimeoutRunnable;
-    private final Runnable successfulReadTimeoutRunnable;
-    private final Runnable successfulEventTimeoutRunnable;
-    private final Runnable writeTimeoutRunnable;
-    private final Runnable setModeTimeoutRunnable;
+    private final Runnable reconnectRunnable;
+    private final Runnable connectionPriorityQuietRunnable;
+    private final Runnable rssiPollRunnable;
+    private final Runnable drainCommandQueueRunnable;
 
     private TxRxDeviceProfile connectedProfile;
-    private TxRxTimeouts txRxTimeouts;
+    private TxRxDeviceProfile expectedProfile;
     private final BluetoothAdapter bluetoothAdapter;
     private BluetoothGatt bluetoothGatt;
     private final TxRxDeviceCallback deviceCallback;
     private final HandlerWrapper handlerWrapper;
+    private final TxRxSession session;
+    private final TxRxMetrics metrics;
+
+    private TxRxReconnectPolicy reconnectPolicy;
+    private BluetoothDevice reconnectDevice;
+    private Context reconnectContext;
+    private boolean isConnectionRequested;
+    private boolean isSessionEstablished;
+    private boolean isReconnecting;
+    private int reconnectAttempts;
+    private long disconnectionTime;
+    private boolean isSessionReady;
+
+    private TxRxConnectionPriorityPolicy connectionPriorityPolicy;
+    private int connectionPriority;
+    private long connectionPriorityTime;
+    private long notifyRateWindowStart;
+    private int notifyRateWindowCount;
+
+    private int preferredPhy;
+    private int phyOptions;
+    private int txPhy;
+    private int rxPhy;
+    private int requestedPhy;
+
+    private TxRxCommandQueue commandQueue;
+
+    private TxRxTimeouts txRxTimeouts;
+    private TxRxTuningStore tuningStore;
+    private TxRxTuning tuning;
+
+    private TxRxResponseCache responseCache;
 
-    private final StringBuilder notifyAccumulator;
+    private TxRxInitScript initScript;
+    private TxRxCommandQueue.Command queuedCommand;
 
     private BluetoothGattCharacteristic readCharacteristic;
-    private String readTerminator;
-    private final StringBuilder readAccumulator;
 
     private BluetoothGattCharacteristic writeCharacteristic;
-    private String writeTerminator;
-    private Iterator<byte[]> chunksIterator;
-    private int writePacketSize;
-    private boolean isWriting;
-    private byte[] currentWriteChunk;
-    private String writingData;
 
     private BluetoothGattCharacteristic setModeCharacteristic;
-    private boolean isSettingMode;
-    private int settingModeValue;
-
-    private TxRxTimestamps txRxTimestamps;
 
     private BluetoothGattCharacteristic eventCharacteristic;
 
-    private final StringBuilder eventAccumulator;
-
     private final Queue<BluetoothGattDescriptor> descriptorsToEnable;
 
     private final BluetoothGattCallback gattCallback = new BluetoothGattCallback() {
 
+        // the callbacks run on binder threads: each one holds the manager lock, and the callbacks of a GATT client
+        // closed meanwhile, e.g. by a reconnection, a disconnection or close(), are dropped
+
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic) {
-            characteristicChanged(characteristic, characteristic.getValue());
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt) {
+                    characteristicChanged(characteristic, characteristic.getValue());
+                }
+            }
         }
 
         @Override
         public void onCharacteristicChanged(BluetoothGatt gatt,
                                             BluetoothGattCharacteristic characteristic,
                                             byte [] value) {
-            characteristicChanged(characteristic, value);
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt) {
+                    characteristicChanged(characteristic, value);
+                }
+            }
         }
 
         @Override
         public void onCharacteristicRead(BluetoothGatt gatt,
                                          BluetoothGattCharacteristic characteristic, int status) {
-            characteristicRead(characteristic, status, characteristic.getValue());
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt) {
+                    characteristicRead(characteristic, status, characteristic.getValue());
+                }
+            }
         }
 
         @Override
         public void onCharacteristicRead(BluetoothGatt gatt,
                                          BluetoothGattCharacteristic characteristic, byte [] value, int status) {
-            characteristicRead(characteristic, status, value);
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt) {
+                    characteristicRead(characteristic, status, value);
+                }
+            }
         }
 
-        @SuppressLint("MissingPermission")
         @Override
         public void onCharacteristicWrite(BluetoothGatt gatt,
                                           BluetoothGattCharacteristic characteristic, int status) {
-            String uuid = characteristic.getUuid().toString();
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt != bluetoothGatt || connectedProfile == null) {
+                    return;
+                }
 
-            Log.i(TAG, "Characteristic wrote: " + uuid);
+                String uuid = characteristic.getUuid().toString();
 
-            if (connectedProfile.getSetModeCharacteristicUUID().equals(uuid)) {
-                // is setMode
-                handlerWrapper.safeRemoveCallbacks(setModeTimeoutRunnable);
+                Log.i(TAG, "Characteristic wrote: " + uuid);
 
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    Log.i(TAG,
-                            "SetMode characteristic value written: " + settingModeValue);
-                    isSettingMode = false;
-                    deviceCallback.onSetMode(settingModeValue);
+                if (connectedProfile.getSetModeCharacteristicUUID().equals(uuid)) {
+                    // is setMode
+                    session.onSetModeWrite(status);
                 }
-                else {
-                    Log.w(TAG, "Unable to setMode: " + status);
-                    isSettingMode = false;
-                    deviceCallback.onSetModeError(TxRxDeviceManager.ERROR_SET_MODE);
+                else {// is write
+                    session.onWrite(status);
                 }
             }
-            else {// is write
-                handlerWrapper.safeRemoveCallbacks(writeTimeoutRunnable);
+        }
 
-                if (status == BluetoothGatt.GATT_SUCCESS) {
-                    Log.i(TAG, "Characteristic value written: " + new String(currentWriteChunk));
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt != bluetoothGatt) {
+                    return;
+                }
 
-                    if (chunksIterator.hasNext()) {
-                        Log.i(TAG, "Characteristic value written, writing next chunk");
+                handlerWrapper.safeRemoveCallbacks(connectionTimeoutRunnable);
 
-                        currentWriteChunk = chunksIterator.next();
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    if (newState == BluetoothProfile.STATE_CONNECTED) {
+                        Log.i(TAG, "Connected to GATT server");
+
+                        Log.i(TAG, "Attempting to start service discovery");
+                        bluetoothGatt.discoverServices();
 
-                        boolean writeDone = writeCharacteristic(writeCharacteristic, currentWriteChunk);
+                        deviceCallback.onDeviceConnected();
+                    }
+                    else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                        Log.i(TAG, "Disconnected from GATT server");
 
-                        if (writeDone) {
-                            handlerWrapper.safePostDelayed(writeTimeoutRunnable,
-                                    txRxTimeouts.getWriteTimeout());
+                        if (!isReconnecting) {
+                            deviceCallback.onDeviceDisconnected();
                         }
-                        else {
-                            Log.w(TAG, "Unable to continue write operation");
-                            isWriting = false;
-                            deviceCallback.onWriteError(TxRxDeviceManager.ERROR_WRITE);
+
+                        if (canReconnect(status)) {
+                            scheduleReconnect(status);
                         }
                     }
                     else {
-                        // TIME RECORDING - END WRITE COMMAND
-                        if (txRxTimestamps != null) {
-                            txRxTimestamps.setEndWriteTime(System.currentTimeMillis());
-                        }
+                        Log.i(TAG, "Other connection state found: " + newState);
 
-                        Log.i(TAG, "Characteristic value write complete: " + writingData);
+                        if (newState != BluetoothProfile.STATE_CONNECTING && newState != BluetoothProfile
+                                .STATE_DISCONNECTING) {
+                            deviceCallback.onConnectionError(TxRxDeviceManager.ERROR_CONNECT);
+                        }
+                    }
+                }
+                else if (canReconnect(status)) {
+                    Log.w(TAG, "Connection lost: " + status);
 
-                        isWriting = false;
-                        deviceCallback.onWriteData(writingData);
+                    if (isSessionEstablished) {
+                        deviceCallback.onDeviceDisconnected();
                     }
+
+                    scheduleReconnect(status);
                 }
                 else {
-                    Log.w(TAG, "Unable to write: " + status);
-                    isWriting = false;
-                    deviceCallback.onWriteError(TxRxDeviceManager.ERROR_WRITE);
+                    deviceCallback.onConnectionError(TxRxDeviceManager.ERROR_CONNECT);
                 }
             }
         }
 
-        @SuppressLint("MissingPermission")
         @Override
-        public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
-            handlerWrapper.safeRemoveCallbacks(connectionTimeoutRunnable);
-
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                if (newState == BluetoothProfile.STATE_CONNECTED) {
-                    Log.i(TAG, "Connected to GATT server");
-
-                    Log.i(TAG, "Attempting to start service discovery");
-                    bluetoothGatt.discoverServices();
+        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+            super.onDescriptorWrite(gatt, descriptor, status);
 
-                    deviceCallback.onDeviceConnected();
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt && connectedProfile != null) {
+                    enableIndicationNotificationOnNextDescriptor();
                 }
-                else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
-                    Log.i(TAG, "Disconnected from GATT server");
+            }
+        }
 
-                    deviceCallback.onDeviceDisconnected();
+        @Override
+        public void onPhyUpdate(BluetoothGatt gatt, int txPhy, int rxPhy, int status) {
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt != bluetoothGatt) {
+                    return;
                 }
-                else {
-                    Log.i(TAG, "Other connection state found: " + newState);
 
-                    if (newState != BluetoothProfile.STATE_CONNECTING && newState != BluetoothProfile
-                            .STATE_DISCONNECTING) {
-                        deviceCallback.onConnectionError(TxRxDeviceManager.ERROR_CONNECT);
-                    }
+                Log.i(TAG, "PHY updated, tx: " + txPhy + ", rx: " + rxPhy + ", status: " + status);
+
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    TxRxDeviceManager.this.txPhy = txPhy;
+                    TxRxDeviceManager.this.rxPhy = rxPhy;
                 }
-            }
-            else {
-                deviceCallback.onConnectionError(TxRxDeviceManager.ERROR_CONNECT);
+
+                deviceCallback.onPhyUpdate(txPhy, rxPhy, status);
             }
         }
 
         @Override
-        public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
-            super.onDescriptorWrite(gatt, descriptor, status);
-
-            enableIndicationNotificationOnNextDescriptor();
+        public void onReadRemoteRssi(BluetoothGatt gatt, int rssi, int status) {
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt == bluetoothGatt && status == BluetoothGatt.GATT_SUCCESS) {
+                    session.onRssi(rssi);
+                    updateAdaptivePhy();
+                }
+            }
         }
 
         @Override
         public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                for (TxRxDeviceProfile profile : txRxProfiles) {
-                    //TxRxService
-                    BluetoothGattService service =
-                            gatt.getService(UUID.fromString(profile.getTxRxServiceUuid()));
-                    if (service != null) {
-                        // TxCharacteristic - read
-                        readCharacteristic = service.getCharacteristic(UUID.fromString(profile
-                                .getTxCharacteristicUUID()));
-                        // RxCharacteristic - write
-                        writeCharacteristic = service.getCharacteristic(UUID.fromString(profile
-                                .getRxCharacteristicUUID()));
-
-                        boolean validSetMode = true;
-                        String setModeCharacteristicUUID = profile.getSetModeCharacteristicUUID();
-
-                        if (!TextUtils.isEmpty(setModeCharacteristicUUID)) {
-                            // setModeCharacteristic
-                            setModeCharacteristic =
-                                    service.getCharacteristic(UUID.fromString(setModeCharacteristicUUID));
-                            validSetMode = setModeCharacteristic != null;
-                        }
-
-                        boolean validEvent = true;
-                        String eventCharacteristicUUID = profile.getEventCharacteristicUUID();
-
-                        if (!TextUtils.isEmpty(eventCharacteristicUUID)) {
-                            // setModeCharacteristic
-                            eventCharacteristic =
-                                    service.getCharacteristic(UUID.fromString(eventCharacteristicUUID));
-                            validEvent = eventCharacteristic != null;
-                        }
-
-                        if (readCharacteristic != null && writeCharacteristic != null && validSetMode && validEvent) {
-
-                            for (BluetoothGattDescriptor descriptor : readCharacteristic.getDescriptors()) {
-                                descriptorsToEnable.offer(descriptor);
-                            }
-
-                            enableCharacteristicNotification(readCharacteristic);
-
-                            enableCharacteristicNotification(writeCharacteristic);
-
-                            if (eventCharacteristic != null) {
-                                for (BluetoothGattDescriptor descriptorEvent :
-                                        eventCharacteristic.getDescriptors()) {
-                                    descriptorsToEnable.offer(descriptorEvent);
-                                }
-
-                                enableCharacteristicNotification(eventCharacteristic);
-                            }
-
-                            enableIndicationNotificationOnNextDescriptor();
-
-                            readTerminator = profile.getTxTerminatorType().getValue();
-                            writeTerminator = profile.getRxTerminatorType().getValue();
-
-                            writePacketSize = profile.getRxPacketSize();
-
-                            connectedProfile = profile;
+            synchronized (TxRxDeviceManager.this) {
+                if (gatt != bluetoothGatt) {
+                    return;
+                }
 
-                            deviceCallback.onTxRxServiceDiscovered();
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    // the profile matched during scan, if any, is tried first
+                    if (expectedProfile != null && setupProfile(gatt, expectedProfile)) {
+                        return;
+                    }
 
+                    for (TxRxDeviceProfile profile : TxRxProfileRegistry.getProfiles()) {
+                        if (profile != expectedProfile && setupProfile(gatt, profile)) {
                             return;
                         }
                     }
                 }
-            }
-            else {
-                Log.w(TAG, "No services discovered");
-            }
+                else {
+                    Log.w(TAG, "No services discovered");
+                }
 
-            deviceCallback.onTxRxServiceNotFound();
+                deviceCallback.onTxRxServiceNotFound();
+            }
         }
 
         private void characteristicChanged(BluetoothGattCharacteristic characteristic, byte[] value) {
+            if (connectedProfile == null) {
+                return;
+            }
+
             String uuid = characteristic.getUuid().toString();
 
+            // events first, without logging: they must not wait behind the notify traffic
+            if (connectedProfile.getEventCharacteristicUUID().equals(uuid)) {
+                session.onEvent(value);
+                return;
+            }
+
             Log.i(TAG, "Characteristic changed: " + uuid);
 
             if (!connectedProfile.getSetModeCharacteristicUUID().equals(uuid)) {
-
-                if (connectedProfile.getEventCharacteristicUUID().equals(uuid)) {
-                    accumulateValuesForEvent(new String(value), eventAccumulator,
-                            successfulEventTimeoutRunnable);
-                }
-                else {
-                    // TIME RECORDING - START NOTIFY (ONLY THE FIRST TIME)
-                    if (txRxTimestamps != null && txRxTimestamps.getBeginNotifyTime() == 0L) {
-                        txRxTimestamps.setBeginNotifyTime(System.currentTimeMillis());
-                    }
-
-                    accumulateValues(new String(value), notifyAccumulator,
-                            successfulNotifyTimeoutRunnable);
-
-                    // TIME RECORDING - END NOTIFY (UPDATES EVERY TIME)
-                    if (txRxTimestamps != null) {
-                        txRxTimestamps.setEndNotifyTime(System.currentTimeMillis());
-                    }
-                }
+                session.onNotify(value);
             }
         }
 
@@ -512,19 +541,7 @@ public class TxRxDeviceManager {
 
             Log.i(TAG, "Characteristic read: " + uuid);
 
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                String readValue = new String(value);
-
-                Log.i(TAG, "Characteristic value read: " + readValue + ", accumulating");
-
-                accumulateValues(readValue, readAccumulator, successfulReadTimeoutRunnable);
-            }
-            else {
-                Log.w(TAG, "Unable to read: " + status);
-                readAccumulator.setLength(0);
-                handlerWrapper.safeRemoveCallbacks(successfulReadTimeoutRunnable);
-                deviceCallback.onReadError(ERROR_READ);
-            }
+            session.onRead(value, status);
         }
 
         @SuppressLint("MissingPermission")
@@ -550,171 +567,429 @@ public class TxRxDeviceManager {
 
 
             }
+            else {
+                onSessionReady();
+            }
         }
-    };
-
-    /**
-     * Create a new {@link TxRxDeviceManager} to handle communication with a device.
-     * <br>
-     * Use default {@link TxRxTimeouts} during device communication
-     *
-     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
-     * @param deviceCallback   {@link TxRxDeviceCallback} callback used to notify data and
-     *                         request results
-     */
-    public TxRxDeviceManager(BluetoothAdapter bluetoothAdapter, TxRxDeviceCallback deviceCallback) {
-        this.bluetoothAdapter = bluetoothAdapter;
-        this.deviceCallback = deviceCallback;
-
-        handlerWrapper = new HandlerWrapper();
-
-        this.isWriting = false;
-        this.readAccumulator = new StringBuilder();
-        this.notifyAccumulator = new StringBuilder();
-        this.eventAccumulator = new StringBuilder();
 
-        connectionTimeoutRunnable = () -> {
-            disconnect();
-            TxRxDeviceManager.this.deviceCallback.onConnectionTimeout();
-            Log.w(TAG, "Connection failed: timeout!");
-        };
+        private boolean setupProfile(BluetoothGatt gatt, TxRxDeviceProfile profile) {
+            //TxRxService
+            BluetoothGattService service =
+                    gatt.getService(UUID.fromString(profile.getTxRxServiceUuid()));
+            if (service != null) {
+                // TxCharacteristic - read
+                readCharacteristic = service.getCharacteristic(UUID.fromString(profile
+                        .getTxCharacteristicUUID()));
+                // RxCharacteristic - write
+                writeCharacteristic = service.getCharacteristic(UUID.fromString(profile
+                        .getRxCharacteristicUUID()));
+
+                boolean validSetMode = true;
+                String setModeCharacteristicUUID = profile.getSetModeCharacteristicUUID();
+
+                if (!TextUtils.isEmpty(setModeCharacteristicUUID)) {
+                    // setModeCharacteristic
+                    setModeCharacteristic =
+                            service.getCharacteristic(UUID.fromString(setModeCharacteristicUUID));
+                    validSetMode = setModeCharacteristic != null;
+                }
 
-        writeTimeoutRunnable = () -> {
-            isWriting = false;
-            txRxTimestamps = null;
-            TxRxDeviceManager.this.deviceCallback.onWriteTimeout();
-            Log.w(TAG, "Write failed: timeout!");
-        };
+                boolean validEvent = true;
+                String eventCharacteristicUUID = profile.getEventCharacteristicUUID();
 
-        readTimeoutRunnable = () -> {
-            txRxTimestamps = null;
-            TxRxDeviceManager.this.deviceCallback.onReadNotifyTimeout();
-            Log.w(TAG, "Read/Notify failed: timeout!");
-        };
+                if (!TextUtils.isEmpty(eventCharacteristicUUID)) {
+                    // setModeCharacteristic
+                    eventCharacteristic =
+                            service.getCharacteristic(UUID.fromString(eventCharacteristicUUID));
+                    validEvent = eventCharacteristic != null;
+                }
 
-        setModeTimeoutRunnable = () -> {
-            isSettingMode = false;
-            TxRxDeviceManager.this.deviceCallback.onSetModeTimeout();
-            Log.w(TAG, "SetMode failed: timeout!");
-        };
+                if (readCharacteristic != null && writeCharacteristic != null && validSetMode && validEvent) {
+                    descriptorsToEnable.clear();
 
-        successfulReadTimeoutRunnable = () -> {
-            String completeReadValue = readAccumulator.toString();
-            TxRxDeviceManager.this.readAccumulator.setLength(0);
+                    for (BluetoothGattDescriptor descriptor : readCharacteristic.getDescriptors()) {
+                        descriptorsToEnable.offer(descriptor);
+                    }
 
-            TxRxDeviceManager.this.deviceCallback.onReadData(completeReadValue + readTerminator);
-            Log.i(TAG, "Read complete, characteristic value is: " + completeReadValue);
-        };
+                    enableCharacteristicNotification(readCharacteristic);
 
-        successfulNotifyTimeoutRunnable = () -> {
-            String completeNotifyValue = notifyAccumulator.toString();
-            TxRxDeviceManager.this.notifyAccumulator.setLength(0);
+                    enableCharacteristicNotification(writeCharacteristic);
 
-            TxRxDeviceManager.this.deviceCallback.onNotifyData(completeNotifyValue + readTerminator);
-            Log.i(TAG, "Notify complete, characteristic value is: " + completeNotifyValue);
+                    if (eventCharacteristic != null) {
+                        for (BluetoothGattDescriptor descriptorEvent :
+                                eventCharacteristic.getDescriptors()) {
+                            descriptorsToEnable.offer(descriptorEvent);
+                        }
 
-            // TIME RECORDING - SEND TIMESTAMPS CALLBACK
-            if (txRxTimestamps != null) {
-                TxRxDeviceManager.this.deviceCallback.onReceiveTxRxTimestampsAfterNotifyData(txRxTimestamps);
-                txRxTimestamps = null;
-            }
-        };
+                        enableCharacteristicNotification(eventCharacteristic);
+                    }
 
-        successfulEventTimeoutRunnable = () -> {
-            String completeEventValue = eventAccumulator.toString();
-            TxRxDeviceManager.this.eventAccumulator.setLength(0);
+                    enableIndicationNotificationOnNextDescriptor();
 
-            TxRxDeviceManager.this.deviceCallback.onEventData(completeEventValue + readTerminator);
-            Log.i(TAG,
-                    "event complete, characteristic value is: " + completeEventValue);
-        };
+                    String address = gatt.getDevice().getAddress();
 
-        this.txRxTimeouts = TxRxTimeouts.getDefaultTimeouts();
+                    // a device reconnected after an unexpected disconnection may have been reset
+                    if (isReconnecting && responseCache != null) {
+                        responseCache.invalidate(address);
+                    }
 
-        descriptorsToEnable = new LinkedList<>();
-    }
+                    session.setResponseCache(responseCache, address);
 
-    /**
-     * Create a new {@link TxRxDeviceManager} to handle communication with a device.
-     *
-     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
-     * @param deviceCallback   {@link TxRxDeviceCallback} callback used to notify data and
-     *                         request results
-     * @param txRxTimeouts     {@link TxRxTimeouts} used during device communication
-     */
-    public TxRxDeviceManager(BluetoothAdapter bluetoothAdapter, TxRxDeviceCallback deviceCallback
-            , TxRxTimeouts txRxTimeouts) {
-        this(bluetoothAdapter, deviceCallback);
-        this.txRxTimeouts = txRxTimeouts;
-    }
+                    // the session runs on the tuned profile, the registered one is kept to recognize the device
+                    session.start(applyTuning(address, profile));
 
-    /**
-     * Closes this {@link TxRxDeviceManager} when every communication ends.
-     * <p>
-     * This method should be called as early as possible when there is no need for any further
-     * communication.
-     * <p>
-     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
-     * <p>
-     * <b>The method {@link TxRxDeviceManager#disconnect()} must be called before invoking this
-     * method.</b>
-     *
-     */
-    @SuppressLint("MissingPermission")
-    public synchronized void close() {
-        Log.i(TAG, "Request close");
+                    connectedProfile = profile;
+                    isSessionEstablished = true;
 
-        cleanState();
+                    applyPreferredPhy(profile);
 
-        if (bluetoothGatt != null) {
-            bluetoothGatt.close();
-            bluetoothGatt = null;
-        }
-    }
+                    if (isReconnecting) {
+                        long reconnectTime = handlerWrapper.now() - disconnectionTime;
 
-    /**
-     * Initiate a connection to a device and discover services on successful connection.
-     * <p>
-     * Invoking this method will close any connection previously opened and will stop any pending
-     * request to the device.
-     * <p>
-     * The connection may not be established right away, but will be
-     * completed when the remote device is available.
-     * <p>
-     * A {@link TxRxDeviceCallback#onDeviceConnected()} callback will be
-     * invoked on a successful connection.
-     * <br/>
-     * Otherwise a {@link TxRxDeviceCallback#onConnectionError(int)} callback will be invoked on
-     * connection error
-     * or a {@link TxRxDeviceCallback#onConnectionTimeout()} callback on connection timeout.
-     * <p>
-     * Just after the connection has been established, a service discovery will start in order to
-     * verify that the
-     * connected device supports TxRx services.
-     * <p>
-     * A {@link TxRxDeviceCallback#onTxRxServiceDiscovered()} callback will be
-     * invoked if the device support TxRx services.
-     * <br/>
-     * Otherwise a {@link TxRxDeviceCallback#onTxRxServiceNotFound()} callback will be invoked.
-     * <p>
-     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
-     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
-     *
-     * @param address The device Bluetooth address as a string
-     * @param context The {@link Context} needed to start connection request
-     * @return true if the connect operation was initiated successfully, false otherwise.
-     */
-    @SuppressLint("MissingPermission")
-    public synchronized boolean connect(String address, Context context) {
-        close();
+                        Log.i(TAG, "Reconnected in " + reconnectTime + " ms");
 
-        handlerWrapper.prepare();
+                        isReconnecting = false;
+                        reconnectAttempts = 0;
+                        metrics.onReconnected(reconnectTime);
+                    }
 
-        handlerWrapper.safePostDelayed(connectionTimeoutRunnable, txRxTimeouts.getConnectTimeout());
+                    deviceCallback.onTxRxServiceDiscovered();
 
-        if (bluetoothAdapter == null) {
-            Log.e(TAG, "Invalid BluetoothAdapter");
-            deviceCallback.onConnectionError(ERROR_CONNECT_INVALID_BLUETOOTH_ADAPTER);
+                    return true;
+                }
+            }
+            return false;
+        }
+    };
+
+    private final TxRxTransport gattTransport = new TxRxTransport() {
+        @SuppressLint("MissingPermission")
+        @Override
+        public boolean read() {
+            return bluetoothGatt != null && readCharacteristic != null
+                    && bluetoothGatt.readCharacteristic(readCharacteristic);
+        }
+
+        @Override
+        public boolean write(byte[] value) {
+            return bluetoothGatt != null && writeCharacteristic != null
+                    && writeCharacteristic(writeCharacteristic, value,
+                    tuning != null ? tuning.getWriteType() : TxRxTuning.NOT_TUNED);
+        }
+
+        @Override
+        public boolean writeSetMode(byte[] value) {
+            return bluetoothGatt != null && setModeCharacteristic != null
+                    && writeCharacteristic(setModeCharacteristic, value, TxRxTuning.NOT_TUNED);
+        }
+    };
+
+    private final TxRxSessionCallback sessionCallback = new TxRxSessionCallback() {
+        @Override
+        public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+            deviceCallback.onBulkTransferComplete(transfer);
+        }
+
+        @Override
+        public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+            deviceCallback.onBulkTransferError(transfer, errorCode);
+        }
+
+        @Override
+        public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+            deviceCallback.onBulkTransferProgress(transfer);
+        }
+
+        @Override
+        public void onEventData(String data) {
+            deviceCallback.onEventData(data);
+        }
+
+        @Override
+        public void onEventFrame(byte[] buffer, int offset, int length) {
+            deviceCallback.onEventFrame(buffer, offset, length);
+        }
+
+        @Override
+        public void onInitScriptComplete(List<TxRxInitScript.StepResult> results) {
+            deviceCallback.onInitScriptComplete(results);
+            startSessionWork();
+        }
+
+        @Override
+        public void onInitScriptError(List<TxRxInitScript.StepResult> results, int errorCode) {
+            deviceCallback.onInitScriptError(results, errorCode);
+            startSessionWork();
+        }
+
+        @Override
+        public void onNotifyData(String data) {
+            deviceCallback.onNotifyData(data);
+        }
+
+        @Override
+        public void onNotifyFrame(byte[] buffer, int offset, int length) {
+            deviceCallback.onNotifyFrame(buffer, offset, length);
+        }
+
+        @Override
+        public void onReadData(String data) {
+            deviceCallback.onReadData(data);
+        }
+
+        @Override
+        public void onReadError(int errorCode) {
+            deviceCallback.onReadError(errorCode);
+        }
+
+        @Override
+        public void onReadNotifyTimeout() {
+            deviceCallback.onReadNotifyTimeout();
+        }
+
+        @Override
+        public void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime, long beginNotifyTime,
+                                                       long endNotifyTime) {
+            TxRxTimestamps txRxTimestamps = new TxRxTimestamps();
+            txRxTimestamps.setBeginWriteTime(beginWriteTime);
+            txRxTimestamps.setEndWriteTime(endWriteTime);
+            txRxTimestamps.setBeginNotifyTime(beginNotifyTime);
+            txRxTimestamps.setEndNotifyTime(endNotifyTime);
+
+            deviceCallback.onReceiveTxRxTimestampsAfterNotifyData(txRxTimestamps);
+        }
+
+        @Override
+        public void onSetMode(int mode) {
+            deviceCallback.onSetMode(mode);
+        }
+
+        @Override
+        public void onSetModeError(int errorCode) {
+            deviceCallback.onSetModeError(errorCode);
+        }
+
+        @Override
+        public void onSetModeTimeout() {
+            deviceCallback.onSetModeTimeout();
+        }
+
+        @Override
+        public void onStreamInactive() {
+            deviceCallback.onStreamInactive();
+        }
+
+        @Override
+        public void onWorkload(boolean isNotify) {
+            TxRxDeviceManager.this.onWorkload(isNotify);
+        }
+
+        @Override
+        public void onWriteData(String data) {
+            deviceCallback.onWriteData(data);
+        }
+
+        @Override
+        public void onWriteError(int errorCode) {
+            deviceCallback.onWriteError(errorCode);
+        }
+
+        @Override
+        public void onWriteFinished() {
+            finishQueuedCommand(true);
+            drainCommandQueue();
+        }
+
+        @Override
+        public void onWriteTimeout() {
+            deviceCallback.onWriteTimeout();
+        }
+    };
+
+    /**
+     * Create a new {@link TxRxDeviceManager} to handle communication with a device.
+     * <br>
+     * Use default {@link TxRxTimeouts} during device communication
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param deviceCallback   {@link TxRxDeviceCallback} callback used to notify data and
+     *                         request results
+     */
+    public TxRxDeviceManager(BluetoothAdapter bluetoothAdapter, TxRxDeviceCallback deviceCallback) {
+        this(bluetoothAdapter, deviceCallback, TxRxTimeouts.getDefaultTimeouts(), null);
+    }
+
+    /**
+     * Create a new {@link TxRxDeviceManager} to handle communication with a device.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param deviceCallback   {@link TxRxDeviceCallback} callback used to notify data and
+     *                         request results
+     * @param txRxTimeouts     {@link TxRxTimeouts} used during device communication
+     */
+    public TxRxDeviceManager(BluetoothAdapter bluetoothAdapter, TxRxDeviceCallback deviceCallback
+            , TxRxTimeouts txRxTimeouts) {
+        this(bluetoothAdapter, deviceCallback, txRxTimeouts, null);
+    }
+
+    /**
+     * Create a new {@link TxRxDeviceManager} to handle communication with a device, running its timeouts on the
+     * specified {@link TxRxScheduler}, e.g. a {@link TxRxVirtualScheduler} to simulate long scenarios in virtual
+     * time.
+     * <p>
+     * Timeouts and delayed tasks are run on the scheduler instead of the manager handler thread, and every time
+     * measured by the manager is read from the scheduler clock.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param deviceCallback   {@link TxRxDeviceCallback} callback used to notify data and
+     *                         request results
+     * @param txRxTimeouts     {@link TxRxTimeouts} used during device communication
+     * @param scheduler        {@link TxRxScheduler} running the timeouts, or null to use the manager handler thread
+     */
+    public TxRxDeviceManager(BluetoothAdapter bluetoothAdapter, TxRxDeviceCallback deviceCallback
+            , TxRxTimeouts txRxTimeouts, TxRxScheduler scheduler) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.deviceCallback = deviceCallback;
+
+        handlerWrapper = new HandlerWrapper(scheduler);
+
+        // the session shares the manager lock, so requests, GATT callbacks and timeouts are serialized
+        session = new TxRxSession(gattTransport, handlerWrapper, sessionCallback, this);
+        session.setTxRxTimeouts(txRxTimeouts);
+        this.txRxTimeouts = txRxTimeouts;
+        metrics = session.getMetrics();
+
+        connectionTimeoutRunnable = () -> {
+            synchronized (TxRxDeviceManager.this) {
+                if (!handlerWrapper.isPrepared()) {
+                    // closed or disconnected while waiting for the lock
+                    return;
+                }
+
+                if (isReconnecting) {
+                    Log.w(TAG, "Reconnection attempt failed: timeout!");
+                    scheduleReconnect(BluetoothGatt.GATT_SUCCESS);
+                    return;
+                }
+
+                disconnect();
+                TxRxDeviceManager.this.deviceCallback.onConnectionTimeout();
+                Log.w(TAG, "Connection failed: timeout!");
+            }
+        };
+
+        reconnectRunnable = this::reconnect;
+
+        connectionPriorityQuietRunnable = this::restoreIdleConnectionPriority;
+
+        rssiPollRunnable = this::pollRssi;
+
+        drainCommandQueueRunnable = this::drainCommandQueue;
+
+        this.reconnectPolicy = TxRxReconnectPolicy.getNoReconnectPolicy();
+        this.connectionPriorityPolicy = TxRxConnectionPriorityPolicy.getDefaultConnectionPriorityPolicy();
+        this.connectionPriority = -1;
+        this.txPhy = BluetoothDevice.PHY_LE_1M;
+        this.rxPhy = BluetoothDevice.PHY_LE_1M;
+
+        descriptorsToEnable = new LinkedList<>();
+    }
+
+    /**
+     * Closes this {@link TxRxDeviceManager} when every communication ends.
+     * <p>
+     * This method should be called as early as possible when there is no need for any further
+     * communication.
+     * <p>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     * <p>
+     * <b>The method {@link TxRxDeviceManager#disconnect()} must be called before invoking this
+     * method.</b>
+     *
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized void close() {
+        Log.i(TAG, "Request close");
+
+        cleanState();
+
+        if (bluetoothGatt != null) {
+            bluetoothGatt.close();
+            bluetoothGatt = null;
+        }
+    }
+
+    /**
+     * Initiate a connection to a device and discover services on successful connection.
+     * <p>
+     * Invoking this method will close any connection previously opened and will stop any pending
+     * request to the device.
+     * <p>
+     * The connection may not be established right away, but will be
+     * completed when the remote device is available.
+     * <p>
+     * A {@link TxRxDeviceCallback#onDeviceConnected()} callback will be
+     * invoked on a successful connection.
+     * <br/>
+     * Otherwise a {@link TxRxDeviceCallback#onConnectionError(int)} callback will be invoked on
+     * connection error
+     * or a {@link TxRxDeviceCallback#onConnectionTimeout()} callback on connection timeout.
+     * <p>
+     * Just after the connection has been established, a service discovery will start in order to
+     * verify that the
+     * connected device supports TxRx services.
+     * <p>
+     * A {@link TxRxDeviceCallback#onTxRxServiceDiscovered()} callback will be
+     * invoked if the device support TxRx services.
+     * <br/>
+     * Otherwise a {@link TxRxDeviceCallback#onTxRxServiceNotFound()} callback will be invoked.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param address The device Bluetooth address as a string
+     * @param context The {@link Context} needed to start connection request
+     * @return true if the connect operation was initiated successfully, false otherwise.
+     */
+    public boolean connect(String address, Context context) {
+        return connect(address, context, null);
+    }
+
+    /**
+     * Initiate a connection to a device, as {@link #connect(String, Context)}, initializing it with the specified
+     * {@link TxRxInitScript} at the start of every session, in place of the init script of its profile.
+     * <p>
+     * The script runs as soon as the notifications are enabled, step after step with no round trip through the
+     * application, while the connection priority and the PHY are still being negotiated. Its end is notified
+     * through {@link TxRxDeviceCallback#onInitScriptComplete(List)} or
+     * {@link TxRxDeviceCallback#onInitScriptError(List, int)}; queued commands and a write suspended by a
+     * disconnection are resumed afterwards.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param address    The device Bluetooth address as a string
+     * @param context    The {@link Context} needed to start connection request
+     * @param initScript {@link TxRxInitScript} the script initializing the device, null to use the one of its
+     *                   profile
+     * @return true if the connect operation was initiated successfully, false otherwise.
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized boolean connect(String address, Context context, TxRxInitScript initScript) {
+        close();
+
+        expectedProfile = null;
+        this.initScript = initScript;
+
+        applyTuning(address, null);
+
+        handlerWrapper.prepare();
+
+        handlerWrapper.safePostDelayed(connectionTimeoutRunnable, session.getTxRxTimeouts().getConnectTimeout());
+
+        if (bluetoothAdapter == null) {
+            Log.e(TAG, "Invalid BluetoothAdapter");
+            deviceCallback.onConnectionError(ERROR_CONNECT_INVALID_BLUETOOTH_ADAPTER);
             return false;
         }
 
@@ -731,7 +1006,81 @@ public class TxRxDeviceManager {
             return false;
         }
 
-        bluetoothGatt = device.connectGatt(context, false, gattCallback);
+        reconnectDevice = device;
+        reconnectContext = context;
+        isConnectionRequested = true;
+
+        bluetoothGatt = connectGatt(device, context, false);
+        return true;
+    }
+
+    /**
+     * Connect to the device found by a scan operation. The {@link BluetoothDevice} of the scan result is used
+     * directly, and the {@link TxRxDeviceProfile} matched during scan, if any, is tried first during service
+     * discovery.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param scanResult The {@link TxRxScanResult} of the device
+     * @param context    The {@link Context} needed to start connection request
+     * @return true if the connect operation was initiated successfully, false otherwise.
+     */
+    public boolean connect(TxRxScanResult scanResult, Context context) {
+        return connect(scanResult, context, null);
+    }
+
+    /**
+     * Connect to the device found by a scan operation, as {@link #connect(TxRxScanResult, Context)}, initializing it
+     * with the specified {@link TxRxInitScript} at the start of every session, in place of the init script of its
+     * profile.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param scanResult The {@link TxRxScanResult} of the device
+     * @param context    The {@link Context} needed to start connection request
+     * @param initScript {@link TxRxInitScript} the script initializing the device, null to use the one of its
+     *                   profile
+     * @return true if the connect operation was initiated successfully, false otherwise.
+     * @see #connect(String, Context, TxRxInitScript)
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized boolean connect(TxRxScanResult scanResult, Context context, TxRxInitScript initScript) {
+        close();
+
+        expectedProfile = scanResult.getDeviceProfile();
+        this.initScript = initScript;
+
+        if (scanResult.getBluetoothDevice() != null) {
+            applyTuning(scanResult.getBluetoothDevice().getAddress(), expectedProfile);
+        }
+
+        // the scan RSSI is the first estimation of the link quality, used to choose the PHY
+        session.onRssi(scanResult.getRssi());
+
+        handlerWrapper.prepare();
+
+        handlerWrapper.safePostDelayed(connectionTimeoutRunnable, session.getTxRxTimeouts().getConnectTimeout());
+
+        if (bluetoothAdapter == null) {
+            Log.e(TAG, "Invalid BluetoothAdapter");
+            deviceCallback.onConnectionError(ERROR_CONNECT_INVALID_BLUETOOTH_ADAPTER);
+            return false;
+        }
+
+        BluetoothDevice device = scanResult.getBluetoothDevice();
+        if (device == null) {
+            Log.w(TAG, "Device not found");
+            deviceCallback.onConnectionError(ERROR_CONNECT_DEVICE_NOT_FOUND);
+            return false;
+        }
+
+        reconnectDevice = device;
+        reconnectContext = context;
+        isConnectionRequested = true;
+
+        bluetoothGatt = connectGatt(device, context, false);
         return true;
     }
 
@@ -763,6 +1112,64 @@ public class TxRxDeviceManager {
         bluetoothGatt.disconnect();
     }
 
+    /**
+     * Returns the {@link TxRxCommandQueue} of this manager, if any.
+     *
+     * @return the current command queue, or null if commands are not queued
+     */
+    public synchronized TxRxCommandQueue getCommandQueue() {
+        return commandQueue;
+    }
+
+    /**
+     * Returns the {@link TxRxLinkQuality} of the link with the device, estimated from the write acknowledgements
+     * and, according to the {@link TxRxLinkQualityPolicy}, from the RSSI periodically read from the device.
+     *
+     * @return the link quality, updated live
+     */
+    public TxRxLinkQuality getLinkQuality() {
+        return session.getLinkQuality();
+    }
+
+    /**
+     * Returns the {@link TxRxMetrics} collected by this {@link TxRxDeviceManager}. The returned instance is updated
+     * live.
+     *
+     * @return the metrics of this manager
+     */
+    public TxRxMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the receiver PHY of the current connection, as reported by the last PHY update.
+     *
+     * @return one of {@link BluetoothDevice#PHY_LE_1M}, {@link BluetoothDevice#PHY_LE_2M} or
+     * {@link BluetoothDevice#PHY_LE_CODED}
+     */
+    public synchronized int getRxPhy() {
+        return rxPhy;
+    }
+
+    /**
+     * Returns the {@link TxRxTuning} applied to the current connection, read from the {@link TxRxTuningStore}.
+     *
+     * @return the tuning of the connected device, or null if not tuned
+     */
+    public synchronized TxRxTuning getTuning() {
+        return tuning;
+    }
+
+    /**
+     * Returns the transmitter PHY of the current connection, as reported by the last PHY update.
+     *
+     * @return one of {@link BluetoothDevice#PHY_LE_1M}, {@link BluetoothDevice#PHY_LE_2M} or
+     * {@link BluetoothDevice#PHY_LE_CODED}
+     */
+    public synchronized int getTxPhy() {
+        return txPhy;
+    }
+
     /**
      * Check if the device with the specified <b>address</b> is currently connected
      * <p>
@@ -786,14 +1193,112 @@ public class TxRxDeviceManager {
     }
 
     /**
-     * Check if the connected device is a TxRxAckme device
+     * Returns whether a reconnection to the device is in progress, after an unexpected disconnection.
+     *
+     * @return true if reconnecting, false otherwise.
+     */
+    public synchronized boolean isReconnecting() {
+        return isReconnecting;
+    }
+
+    /**
+     * Returns whether the Tx characteristic of the device is polled.
+     *
+     * @return true if polling, false otherwise.
+     * @see #startReadPolling(long)
+     */
+    public boolean isReadPolling() {
+        return session.isReadPolling();
+    }
+
+    /**
+     * Returns whether the streaming mode is active.
+     *
+     * @return true if streaming, false otherwise.
+     * @see #startStreaming(long)
+     */
+    public boolean isStreaming() {
+        return session.isStreaming();
+    }
+
+    /**
+     * Check if the connected device is a TxRxAckme device
+     * <p>
+     *
+     * @return true if the connected device is a TxRxAckme, false otherwise.
+     */
+
+    public synchronized boolean isTxRxAckme() {
+        return connectedProfile != null
+                && TxRxProfileRegistry.TX_RX_ACKME_SERVICEUUID.equals(connectedProfile.getTxRxServiceUuid());
+    }
+
+    /**
+     * Send a bulk transfer request to device, writing the data of the transfer source in chunks.
+     * <p>
+     * If the transfer has already been partially acknowledged by the device, for instance before a write error or
+     * a disconnection, it is resumed from the last acknowledged chunk.
+     * <p>
+     * {@link TxRxDeviceCallback#onBulkTransferProgress(TxRxBulkTransfer)} callbacks will be invoked while the
+     * transfer is in progress, then a {@link TxRxDeviceCallback#onBulkTransferComplete(TxRxBulkTransfer)} callback
+     * will be invoked when every chunk has been acknowledged by the device.
+     * <p>
+     * Otherwise a {@link TxRxDeviceCallback#onBulkTransferError(TxRxBulkTransfer, int)} callback will be invoked on
+     * transfer error.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param transfer {@link TxRxBulkTransfer} the transfer to start or resume
+     * @return true if the transfer was initiated successfully, false otherwise.
+     */
+    public synchronized boolean requestBulkTransfer(TxRxBulkTransfer transfer) {
+        return session.requestBulkTransfer(transfer);
+    }
+
+    /**
+     * Queue a write request, written as soon as the TxRx services are ready and the previous queued commands have
+     * been written. Commands are accepted while disconnected, and kept in the {@link TxRxCommandQueue} until
+     * written.
+     * <p>
+     * Each queued command is delivered through {@link TxRxDeviceCallback#onWriteData(String)} once written, or
+     * {@link TxRxDeviceCallback#onWriteError(int)} if rejected by the device.
      * <p>
+     * Requires a command queue, see {@link #setCommandQueue(TxRxCommandQueue)}.
      *
-     * @return true if the connected device is a TxRxAckme, false otherwise.
+     * @param data The data to be written
+     * @return true if the command has been queued, false if there is no command queue or the queue is full
+     */
+    public boolean requestQueuedWriteData(String data) {
+        return requestQueuedWriteData(null, data);
+    }
+
+    /**
+     * Queue a write request, replacing the queued command with the same key, if not being written yet. This fits
+     * idempotent configuration commands, of which only the last value matters.
+     *
+     * @param key  String the command key, null if the command has no key
+     * @param data The data to be written
+     * @return true if the command has been queued, false if there is no command queue or the queue is full
+     * @see #requestQueuedWriteData(String)
      */
+    public synchronized boolean requestQueuedWriteData(String key, String data) {
+        TxRxCommandQueue queue = commandQueue;
+
+        if (queue == null) {
+            Log.w(TAG, "Command queue not set");
+            return false;
+        }
+
+        if (!queue.offer(key, data)) {
+            return false;
+        }
 
-    public boolean isTxRxAckme() {
-        return connectedProfile != null && TX_RX_ACKME_SERVICEUUID.equals(connectedProfile.getTxRxServiceUuid());
+        if (handlerWrapper.isPrepared()) {
+            handlerWrapper.safeRemoveCallbacks(drainCommandQueueRunnable);
+            handlerWrapper.safePostDelayed(drainCommandQueueRunnable, 0);
+        }
+        return true;
     }
 
     /**
@@ -812,24 +1317,8 @@ public class TxRxDeviceManager {
      *
      * @return true if the read operation was initiated successfully, false otherwise.
      */
-    @SuppressLint("MissingPermission")
     public synchronized boolean requestReadData() {
-        Log.i(TAG, "Start read request");
-
-        if (readCharacteristic == null) {
-            Log.w(TAG, "Invalid read characteristic");
-            deviceCallback.onReadError(ERROR_READ_INVALID_TX_CHARACTERISTIC);
-            return false;
-        }
-
-        boolean readInitiated = bluetoothGatt.readCharacteristic(readCharacteristic);
-
-        if (!readInitiated) {
-            Log.w(TAG, "Unable to initiate read operation");
-            deviceCallback.onReadError(ERROR_READ_BLE_DEVICE_ERROR);
-        }
-
-        return readInitiated;
+        return session.requestReadData();
     }
 
     /**
@@ -852,39 +1341,7 @@ public class TxRxDeviceManager {
      * otherwise.
      */
     public synchronized boolean requestSetMode(int mode) {
-        Log.i(TAG, "Start setMode request for operation: " + mode);
-
-        if (setModeCharacteristic == null) {
-            Log.w(TAG, "Invalid setMode characteristic");
-            deviceCallback.onSetModeError(ERROR_SET_MODE_INVALID_CHARACTERISTIC);
-            return false;
-        }
-
-        if (isSettingMode) {
-            Log.w(TAG, "SetMode operation already initiated, currently in progress");
-            deviceCallback.onSetModeError(ERROR_SET_MODE_OPERATION_IN_PROGRESS);
-            return false;
-        }
-
-        //mode += writeTerminator;
-
-        settingModeValue = mode;
-
-        byte[] modeByte = {(byte) mode};
-
-        boolean setModeInitiated = writeCharacteristic(setModeCharacteristic, modeByte);
-
-        if (setModeInitiated) {
-            isSettingMode = true;
-
-            handlerWrapper.safePostDelayed(setModeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
-        }
-        else {
-            Log.w(TAG, "Unable to initiate setMode operation");
-            deviceCallback.onSetModeError(ERROR_SET_MODE_BLE_DEVICE_ERROR);
-        }
-
-        return setModeInitiated;
+        return session.requestSetMode(mode);
     }
 
     /**
@@ -906,119 +1363,547 @@ public class TxRxDeviceManager {
      * false otherwise.
      */
     public synchronized boolean requestWriteData(String data) {
-        Log.i(TAG, "Start write request for data: " + data);
+        return session.requestWriteData(data);
+    }
 
-        if (writeCharacteristic == null) {
-            Log.w(TAG, "Invalid write characteristic");
-            deviceCallback.onWriteError(ERROR_WRITE_INVALID_RX_CHARACTERISTIC);
-            return false;
-        }
+    /**
+     * Set the {@link TxRxCommandQueue} keeping the commands requested through
+     * {@link #requestQueuedWriteData(String)}. The same queue can be set again on a new manager for the same device,
+     * to write the commands left by the previous one.
+     *
+     * @param commandQueue the {@link TxRxCommandQueue} of the device, null to disable queued commands
+     */
+    public synchronized void setCommandQueue(TxRxCommandQueue commandQueue) {
+        finishQueuedCommand(false);
+        this.commandQueue = commandQueue;
+    }
 
-        if (isWriting) {
-            Log.w(TAG, "Write operation already initiated, currently in progress");
-            deviceCallback.onWriteError(ERROR_WRITE_OPERATION_IN_PROGRESS);
-            return false;
-        }
+    /**
+     * Set the {@link TxRxConnectionPriorityPolicy} used to change the connection priority according to the workload.
+     * By default, {@link TxRxConnectionPriorityPolicy#getDefaultConnectionPriorityPolicy()} is used.
+     *
+     * @param connectionPriorityPolicy used to change the connection priority, null to never change it
+     */
+    public synchronized void setConnectionPriorityPolicy(TxRxConnectionPriorityPolicy connectionPriorityPolicy) {
+        this.connectionPriorityPolicy = connectionPriorityPolicy;
+    }
 
-        writingData = data;
+    /**
+     * Set the {@link Executor} dispatching the event callbacks, {@link TxRxDeviceCallback#onEventFrame} and
+     * {@link TxRxDeviceCallback#onEventData}, so that alarms and button events are not queued behind the notify
+     * traffic, e.g. the executor of a dedicated high priority thread:
+     * <pre>{@code
+     * HandlerThread eventThread = new HandlerThread("events", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+     * eventThread.start();
+     * manager.setEventExecutor(new Handler(eventThread.getLooper())::post);
+     * }</pre>
+     *
+     * @param eventExecutor the executor of the event callbacks, null to invoke them on the Bluetooth callback thread
+     */
+    public synchronized void setEventExecutor(Executor eventExecutor) {
+        session.setEventExecutor(eventExecutor);
+    }
 
-        data += writeTerminator;
+    /**
+     * Set the {@link TxRxLinkQualityPolicy} used to adapt the chunk size and pacing of bulk transfers and the PHY
+     * to the quality of the link. By default, the write path is not adapted and the RSSI is never read.
+     *
+     * @param linkQualityPolicy used to adapt the write path to the link quality
+     */
+    public synchronized void setLinkQualityPolicy(TxRxLinkQualityPolicy linkQualityPolicy) {
+        session.setLinkQualityPolicy(linkQualityPolicy);
+    }
 
-        initChunksIterator(data.getBytes());
+    /**
+     * Set the PHY preferred for the next connections, overriding the preference of the {@link TxRxDeviceProfile}.
+     * The preference is applied when connecting and just after service discovery; the result is delivered through
+     * {@link TxRxDeviceCallback#onPhyUpdate(int, int, int)}. Requires Android O or later; ignored on earlier
+     * versions.
+     *
+     * @param preferredPhy int a combination of {@link BluetoothDevice#PHY_LE_1M_MASK},
+     *                     {@link BluetoothDevice#PHY_LE_2M_MASK} and {@link BluetoothDevice#PHY_LE_CODED_MASK},
+     *                     0 to use the preference of the profile
+     * @param phyOptions   int the coding preferred when using LE Coded PHY, one of
+     *                     {@link BluetoothDevice#PHY_OPTION_NO_PREFERRED}, {@link BluetoothDevice#PHY_OPTION_S2}
+     *                     or {@link BluetoothDevice#PHY_OPTION_S8}
+     */
+    public synchronized void setPreferredPhy(int preferredPhy, int phyOptions) {
+        this.preferredPhy = preferredPhy;
+        this.phyOptions = phyOptions;
+    }
 
-        currentWriteChunk = chunksIterator.next();
+    /**
+     * Set the {@link TxRxReconnectPolicy} used to reconnect to the device after an unexpected disconnection. By
+     * default, the device is not reconnected.
+     * <p>
+     * While reconnecting, a pending write operation is suspended, and resumed once the TxRx services are discovered
+     * again.
+     *
+     * @param reconnectPolicy used to reconnect to the device
+     */
+    public synchronized void setReconnectPolicy(TxRxReconnectPolicy reconnectPolicy) {
+        this.reconnectPolicy = reconnectPolicy;
+    }
 
-        boolean writeInitiated = writeCharacteristic(writeCharacteristic, currentWriteChunk);
+    /**
+     * Set the {@link TxRxResponseCache} answering the query commands without touching the link, e.g. the firmware
+     * version or serial number requested after every connection. A query command whose response is cached is
+     * answered at once through {@link TxRxDeviceCallback#onWriteData(String)} and
+     * {@link TxRxDeviceCallback#onNotifyData(String)}, without
+     * {@link TxRxDeviceCallback#onReceiveTxRxTimestampsAfterNotifyData(TxRxTimestamps)}.
+     * <p>
+     * The responses of the device are keyed by its address, and invalidated when it is reconnected after an
+     * unexpected disconnection.
+     *
+     * @param responseCache the cache of the responses, shared by the managers of several devices, null to write
+     *                      every command
+     */
+    public synchronized void setResponseCache(TxRxResponseCache responseCache) {
+        this.responseCache = responseCache;
 
-        if (writeInitiated) {
-            // TIME RECORDING - RESET TIMESTAMPS
-            txRxTimestamps = new TxRxTimestamps();
-            // TIME RECORDING - START WRITE COMMAND
-            txRxTimestamps.setBeginWriteTime(System.currentTimeMillis());
+        session.setResponseCache(responseCache, bluetoothGatt != null ? bluetoothGatt.getDevice().getAddress() : null);
+    }
 
-            isWriting = true;
-            handlerWrapper.safePostDelayed(writeTimeoutRunnable, txRxTimeouts.getWriteTimeout());
-            handlerWrapper.safePostDelayed(readTimeoutRunnable, txRxTimeouts.getFirstReadTimeout());
-        }
-        else {
-            Log.w(TAG, "Unable to initiate write operation");
-            deviceCallback.onWriteError(ERROR_WRITE_BLE_DEVICE_ERROR);
-        }
+    /**
+     * Set the {@link TxRxRetryPolicy} used to retry failed write operations, e.g.
+     * {@link TxRxRetryPolicy#getDefaultRetryPolicy()}. By default, a failed write is not retried and reported at
+     * once.
+     *
+     * @param retryPolicy used to retry failed write operations
+     */
+    public synchronized void setRetryPolicy(TxRxRetryPolicy retryPolicy) {
+        session.setRetryPolicy(retryPolicy);
+    }
 
-        return writeInitiated;
+    /**
+     * Set the {@link TxRxTraceRecorder} recording the requests, transport operations, results and connection events
+     * of this manager, to be replayed later on a simulated device. The recorder is not closed by the manager.
+     *
+     * @param traceRecorder the recorder, null to stop recording
+     */
+    public synchronized void setTraceRecorder(TxRxTraceRecorder traceRecorder) {
+        session.setTraceRecorder(traceRecorder);
     }
 
     /**
-     * Set the {@link TxRxTimeouts} used during device communication
+     * Set the {@link TxRxTimeouts} used during device communication. The timeouts of a {@link TxRxTuning}, if any,
+     * take precedence on the connections to the tuned devices.
      *
      * @param txRxTimeouts used during device communication
      */
-    public void setTxRxTimeouts(TxRxTimeouts txRxTimeouts) {
+    public synchronized void setTxRxTimeouts(TxRxTimeouts txRxTimeouts) {
         this.txRxTimeouts = txRxTimeouts;
+
+        if (tuning == null || tuning.getTimeouts() == null) {
+            session.setTxRxTimeouts(txRxTimeouts);
+        }
+    }
+
+    /**
+     * Set the {@link TxRxTuningStore} holding the {@link TxRxTuning} of the devices. The tuning of a device,
+     * completed by the tuning of its profile, is applied at each connection: timeouts, chunk size, write type,
+     * idle connection priority and terminators.
+     *
+     * @param tuningStore the store of the tunings, null to use the values of the profiles and of this manager
+     */
+    public synchronized void setTuningStore(TxRxTuningStore tuningStore) {
+        this.tuningStore = tuningStore;
+    }
+
+    /**
+     * Start polling the Tx characteristic of the device, for sensors exposing their value to reads rather than
+     * notifying it, without polling loops in the application. The characteristic is read every interval, or as fast
+     * as possible with a 0 interval; a tick is skipped while the previous poll read is outstanding or the device is
+     * busy with a write, so that reads are never queued on a slow link. A value longer than the Tx packet size is
+     * read through consecutive reads, and delivered whole.
+     * <p>
+     * A {@link TxRxDeviceCallback#onReadData(String)} callback will be invoked only when the value changed since the
+     * previous poll, the first value after each connection being always delivered. Unanswered and failed poll reads
+     * are reported through {@link TxRxDeviceCallback#onReadNotifyTimeout()} and
+     * {@link TxRxDeviceCallback#onReadError(int)}, and polling goes on. Polling is kept across reconnections, and
+     * {@link #requestReadData()} should not be used meanwhile.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_CONNECT} permission.
+     *
+     * @param interval long the polling interval in milliseconds, 0 to poll as fast as possible
+     */
+    public void startReadPolling(long interval) {
+        session.startReadPolling(interval);
+    }
+
+    /**
+     * Start the streaming mode, for devices streaming values on their own, such as continuous inventories or sensor
+     * streams. Writes and notifications flow independently, without read timeout nor timestamps for each command:
+     * {@link TxRxDeviceCallback#onReadNotifyTimeout()} and
+     * {@link TxRxDeviceCallback#onReceiveTxRxTimestampsAfterNotifyData(TxRxTimestamps)} are not invoked. The
+     * liveness of the stream is tracked by an inactivity watchdog, reported through
+     * {@link TxRxDeviceCallback#onStreamInactive()}. The mode is kept across reconnections.
+     *
+     * @param inactivityTimeout long the time in milliseconds without any value from the device before the stream is
+     *                          reported inactive, 0 to disable the watchdog
+     */
+    public void startStreaming(long inactivityTimeout) {
+        session.startStreaming(inactivityTimeout);
+    }
+
+    /**
+     * Stop polling the Tx characteristic of the device, as started by {@link #startReadPolling(long)}.
+     */
+    public void stopReadPolling() {
+        session.stopReadPolling();
+    }
+
+    /**
+     * Stop the streaming mode started by {@link #startStreaming(long)}, back to request/response timeouts.
+     */
+    public void stopStreaming() {
+        session.stopStreaming();
+    }
+
+    private TxRxDeviceProfile applyTuning(String address, TxRxDeviceProfile profile) {
+        tuning = tuningStore != null ? tuningStore.getTuning(address, profile) : null;
+
+        session.setTxRxTimeouts(tuning != null && tuning.getTimeouts() != null ? tuning.getTimeouts() : txRxTimeouts);
+
+        if (tuning == null || profile == null) {
+            return profile;
+        }
+
+        Log.i(TAG, "Applying tuning of " + address);
+
+        return tuning.applyTo(profile);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void applyPreferredPhy(TxRxDeviceProfile profile) {
+        int phy = choosePreferredPhy(profile);
+        int options = preferredPhy > 0 ? phyOptions : profile.getPhyOptions();
+
+        if (phy > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            Log.i(TAG, "Requesting preferred PHY: " + phy);
+
+            requestedPhy = phy;
+
+            // the result is delivered through onPhyUpdate, only if the PHY changes
+            bluetoothGatt.setPreferredPhy(phy, phy, options);
+        }
+    }
+
+    private boolean canReconnect(int status) {
+        return isConnectionRequested && reconnectPolicy.isEnabled() && reconnectDevice != null
+                && (isSessionEstablished || isReconnecting || status == TxRxReconnectPolicy.STATUS_GATT_ERROR);
     }
 
-    private void accumulateValues(String currentValue, StringBuilder accumulator,
-                                  Runnable successfulCallback) {
-        handlerWrapper.safeRemoveCallbacks(readTimeoutRunnable);
-        handlerWrapper.safeRemoveCallbacks(successfulCallback);
+    @SuppressLint("MissingPermission")
+    private void changeConnectionPriority(int priority) {
+        if (bluetoothGatt == null || connectionPriority < 0 || connectionPriority == priority) {
+            return;
+        }
+
+        if (bluetoothGatt.requestConnectionPriority(priority)) {
+            long now = handlerWrapper.now();
 
-        Log.i(TAG, "Accumulating characteristic values, current is: " + currentValue);
+            Log.i(TAG, "Connection priority changed: " + connectionPriority + " -> " + priority);
 
-        accumulator.append(currentValue);
+            metrics.onConnectionPriorityChanged(connectionPriority == BluetoothGatt.CONNECTION_PRIORITY_HIGH,
+                    now - connectionPriorityTime);
 
-        handlerWrapper.safePostDelayed(successfulCallback, txRxTimeouts.getLaterReadTimeout());
+            connectionPriority = priority;
+            connectionPriorityTime = now;
+        }
+        else {
+            Log.w(TAG, "Unable to change connection priority to " + priority);
+        }
     }
 
-    private void accumulateValuesForEvent(String currentValue, StringBuilder accumulator,
-                                          Runnable successfulCallback) {
-        handlerWrapper.safeRemoveCallbacks(successfulCallback);
+    private int choosePreferredPhy(TxRxDeviceProfile profile) {
+        if (preferredPhy > 0) {
+            return preferredPhy;
+        }
+
+        if (profile != null && profile.getPreferredPhy() > 0) {
+            return profile.getPreferredPhy();
+        }
+
+        // without an explicit preference, the 2M PHY is attempted only on a good link
+        return session.getLinkQualityPolicy().isHighSpeedPhy(session.getLinkQuality().getScore(), false)
+                ? BluetoothDevice.PHY_LE_2M_MASK : 0;
+    }
 
-        Log.i(TAG, "Accumulating characteristic values for event, current is: " + currentValue);
+    @SuppressLint("MissingPermission")
+    private BluetoothGatt connectGatt(BluetoothDevice device, Context context, boolean autoConnect) {
+        int phy = choosePreferredPhy(expectedProfile);
 
-        accumulator.append(currentValue);
+        if (phy > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return device.connectGatt(context, autoConnect, gattCallback, BluetoothDevice.TRANSPORT_LE, phy);
+        }
 
-        handlerWrapper.safePostDelayed(successfulCallback, txRxTimeouts.getLaterReadTimeout());
+        return device.connectGatt(context, autoConnect, gattCallback);
     }
 
     private void cleanState() {
         handlerWrapper.clean();
 
-        isWriting = false;
-        readAccumulator.setLength(0);
-        notifyAccumulator.setLength(0);
-
-        txRxTimestamps = null;
+        session.stop();
 
         connectedProfile = null;
+        descriptorsToEnable.clear();
+
+        isConnectionRequested = false;
+        isSessionEstablished = false;
+        isSessionReady = false;
+        connectionPriority = -1;
+        txPhy = BluetoothDevice.PHY_LE_1M;
+        rxPhy = BluetoothDevice.PHY_LE_1M;
+        requestedPhy = 0;
+
+        finishQueuedCommand(false);
+        isReconnecting = false;
+        reconnectAttempts = 0;
+    }
+
+    private synchronized void drainCommandQueue() {
+        if (commandQueue == null || !isSessionReady || session.isWriting() || session.isServingCachedResponse()
+                || !session.isStarted()
+                || session.isRunningInitScript()) {
+            return;
+        }
+
+        queuedCommand = commandQueue.beginWrite();
+
+        if (queuedCommand != null) {
+            Log.i(TAG, "Writing queued command, " + commandQueue.size() + " queued");
+
+            if (!session.requestWriteData(queuedCommand.getData())) {
+                // kept in the queue, retried on the next drain
+                finishQueuedCommand(false);
+            }
+        }
+    }
+
+    private void finishQueuedCommand(boolean remove) {
+        if (queuedCommand != null) {
+            commandQueue.endWrite(queuedCommand, remove);
+            queuedCommand = null;
+        }
+    }
+
+    private synchronized void notifyReconnectFailed() {
+        Log.w(TAG, "Reconnection failed after " + reconnectAttempts + " attempts");
+
+        isReconnecting = false;
+        reconnectAttempts = 0;
+
+        // kept in the queue for the next connection
+        finishQueuedCommand(false);
+
+        session.cancelWrite(TxRxDeviceManager.ERROR_WRITE);
+
+        deviceCallback.onConnectionError(ERROR_CONNECT_RECONNECT_FAILED);
+    }
+
+    private void onSessionReady() {
+        isSessionReady = true;
+
+        // every connection starts with the balanced priority
+        connectionPriority = BluetoothGatt.CONNECTION_PRIORITY_BALANCED;
+        connectionPriorityTime = handlerWrapper.now();
+
+        if (tuning != null && tuning.getConnectionPriority() != TxRxTuning.NOT_TUNED) {
+            changeConnectionPriority(tuning.getConnectionPriority());
+        }
+
+        if (connectionPriorityPolicy != null
+                && connectionPriorityPolicy.getIdlePriority() != BluetoothGatt.CONNECTION_PRIORITY_BALANCED) {
+            handlerWrapper.safePostDelayed(connectionPriorityQuietRunnable, connectionPriorityPolicy.getQuietPeriod());
+        }
+
+        long rssiPollInterval = session.getLinkQualityPolicy().getRssiPollInterval();
+
+        if (rssiPollInterval > 0) {
+            handlerWrapper.safeRemoveCallbacks(rssiPollRunnable);
+            handlerWrapper.safePostDelayed(rssiPollRunnable, rssiPollInterval);
+        }
+
+        TxRxDeviceProfile profile = session.getProfile();
+        TxRxInitScript script = initScript != null || profile == null ? initScript : profile.getInitScript();
+
+        // the script overlaps the connection priority and PHY negotiations, the queued work waits for its end
+        if (script != null && session.runInitScript(script)) {
+            return;
+        }
+
+        startSessionWork();
+    }
+
+    private void onWorkload(boolean isNotify) {
+        TxRxConnectionPriorityPolicy policy = connectionPriorityPolicy;
+
+        if (policy == null || connectionPriority < 0) {
+            return;
+        }
+
+        if (isNotify) {
+            long now = handlerWrapper.now();
+
+            if (now - notifyRateWindowStart >= 1000) {
+                notifyRateWindowStart = now;
+                notifyRateWindowCount = 0;
+            }
+
+            if (++notifyRateWindowCount < policy.getHeavyNotifyRate()) {
+                return;
+            }
+        }
+
+        changeConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+
+        handlerWrapper.safeRemoveCallbacks(connectionPriorityQuietRunnable);
+        handlerWrapper.safePostDelayed(connectionPriorityQuietRunnable, policy.getQuietPeriod());
+    }
+
+    @SuppressLint("MissingPermission")
+    private synchronized void pollRssi() {
+        if (bluetoothGatt == null || !isSessionReady) {
+            return;
+        }
+
+        // a write in progress already measures the link through its acknowledgements, and the RSSI request would
+        // delay its next chunk
+        if (!session.isWriting() && !session.isSettingMode() && !bluetoothGatt.readRemoteRssi()) {
+            Log.w(TAG, "Unable to read remote RSSI");
+        }
+
+        handlerWrapper.safePostDelayed(rssiPollRunnable, session.getLinkQualityPolicy().getRssiPollInterval());
+    }
+
+    private synchronized void reconnect() {
+        // a disconnection or close may have run meanwhile, the device must not be reconnected behind it
+        if (!isConnectionRequested || !isReconnecting) {
+            return;
+        }
+
+        if (bluetoothGatt != null) {
+            bluetoothGatt.close();
+            bluetoothGatt = null;
+        }
+
+        // the descriptors left to enable belong to the closed client
+        descriptorsToEnable.clear();
+
+        // when the direct attempts are exhausted, the device is reconnected in background as soon as available
+        boolean autoConnect = reconnectAttempts >= reconnectPolicy.getMaxAttempts();
+
+        reconnectAttempts++;
+        metrics.onReconnectAttempt();
+
+        Log.i(TAG, "Reconnection attempt " + reconnectAttempts + (autoConnect ? ", auto connect" : ""));
+
+        if (!autoConnect) {
+            handlerWrapper.safePostDelayed(connectionTimeoutRunnable, session.getTxRxTimeouts().getConnectTimeout());
+        }
+
+        expectedProfile = connectedProfile;
+        bluetoothGatt = connectGatt(reconnectDevice, reconnectContext, autoConnect);
+    }
+
+    private synchronized void restoreIdleConnectionPriority() {
+        if (connectionPriorityPolicy == null) {
+            return;
+        }
+
+        if (session.isWriting()) {
+            handlerWrapper.safePostDelayed(connectionPriorityQuietRunnable, connectionPriorityPolicy.getQuietPeriod());
+        }
+        else if (tuning != null && tuning.getConnectionPriority() != TxRxTuning.NOT_TUNED) {
+            changeConnectionPriority(tuning.getConnectionPriority());
+        }
+        else {
+            changeConnectionPriority(connectionPriorityPolicy.getIdlePriority());
+        }
+    }
+
+    private synchronized void scheduleReconnect(int status) {
+        handlerWrapper.safeRemoveCallbacks(connectionTimeoutRunnable);
+
+        if (!isReconnecting) {
+            isReconnecting = true;
+            disconnectionTime = handlerWrapper.now();
+
+            if (isSessionEstablished) {
+                metrics.onConnectionDrop();
+            }
+            session.suspendWrite();
+        }
+        isSessionEstablished = false;
+        isSessionReady = false;
+        connectionPriority = -1;
+
+        if (reconnectAttempts >= reconnectPolicy.getMaxAttempts() && !reconnectPolicy.isAutoConnect()) {
+            notifyReconnectFailed();
+            return;
+        }
+
+        long delay = reconnectPolicy.getReconnectDelay(reconnectAttempts, status);
+
+        Log.i(TAG, "Reconnecting in " + delay + " ms");
+
+        deviceCallback.onReconnecting(reconnectAttempts + 1, delay);
+
+        handlerWrapper.safePostDelayed(reconnectRunnable, delay);
+    }
+
+    private void startSessionWork() {
+        if (!session.resumeWrite()) {
+            drainCommandQueue();
+        }
     }
 
-    private void initChunksIterator(byte[] dataBytes) {
-        ArrayList<byte[]> chunksArray = new ArrayList<>();
-        int numberOfChunks = (dataBytes.length + writePacketSize - 1) / writePacketSize;
+    @SuppressLint("MissingPermission")
+    private void updateAdaptivePhy() {
+        if (preferredPhy > 0 || connectedProfile == null || connectedProfile.getPreferredPhy() > 0
+                || Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            return;
+        }
+
+        TxRxLinkQualityPolicy linkQualityPolicy = session.getLinkQualityPolicy();
+        int score = session.getLinkQuality().getScore();
+
+        if (score < 0 || linkQualityPolicy.getHighSpeedPhyScore() <= 0) {
+            return;
+        }
 
-        for (int i = 0; i < numberOfChunks; i++) {
-            int start = i * writePacketSize;
-            int limit = start + Math.min(writePacketSize, dataBytes.length - start);
+        boolean isHighSpeedPhy = txPhy == BluetoothDevice.PHY_LE_2M;
+        int phy = linkQualityPolicy.isHighSpeedPhy(score, isHighSpeedPhy)
+                ? BluetoothDevice.PHY_LE_2M_MASK : BluetoothDevice.PHY_LE_1M_MASK;
 
-            chunksArray.add(Arrays.copyOfRange(dataBytes, start, limit));
+        if (phy == requestedPhy || (phy == BluetoothDevice.PHY_LE_1M_MASK && !isHighSpeedPhy)) {
+            return;
         }
 
-        chunksIterator = chunksArray.iterator();
+        Log.i(TAG, "Link quality " + score + ", requesting PHY: " + phy);
 
-        currentWriteChunk = null;
+        requestedPhy = phy;
+        bluetoothGatt.setPreferredPhy(phy, phy, BluetoothDevice.PHY_OPTION_NO_PREFERRED);
     }
 
     @SuppressLint("MissingPermission")
-    private boolean writeCharacteristic(BluetoothGattCharacteristic characteristic, byte[] value) {
+    private boolean writeCharacteristic(BluetoothGattCharacteristic characteristic, byte[] value, int writeType) {
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            int result = bluetoothGatt.writeCharacteristic(characteristic, value, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
+            int result = bluetoothGatt.writeCharacteristic(characteristic, value,
+                    writeType != TxRxTuning.NOT_TUNED ? writeType : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT);
             return result == BluetoothStatusCodes.SUCCESS;
         }
         else{
+            if (writeType != TxRxTuning.NOT_TUNED) {
+                characteristic.setWriteType(writeType);
+            }
+
             return characteristic.setValue(value)
                     && bluetoothGatt.writeCharacteristic(characteristic);
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,29 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import com.tertiumtechnology.txrxlib.scan.TxRxScanResult;
+
+/**
+ * Callback interface used to deliver the result of a {@link TxRxFastConnector}.
+ *
+ * @see TxRxFastConnector
+ */
+public interface TxRxFastConnectCallback {
+
+    /**
+     * Callback when a device has been connected and its TxRx services discovered, just before
+     * {@link TxRxDeviceCallback#onDeviceConnected()} and {@link TxRxDeviceCallback#onTxRxServiceDiscovered()} are
+     * delivered for it.
+     *
+     * @param deviceManager the {@link TxRxDeviceManager} connected to the device, owned by the application from now on
+     * @param scanResult    the scan result of the connected device
+     */
+    void onConnected(TxRxDeviceManager deviceManager, TxRxScanResult scanResult);
+
+    /**
+     * Callback when no device could be connected.
+     *
+     * @param errorCode the error code, one of {@link TxRxFastConnector#ERROR_FAST_CONNECT_NO_DEVICE_FOUND} or
+     *                  {@link TxRxFastConnector#ERROR_FAST_CONNECT_CANDIDATES_FAILED}
+     */
+    void onConnectFailed(int errorCode);
+}
@@ -0,0 +1,546 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import android.bluetooth.BluetoothAdapter;
+import android.content.Context;
+import android.util.Log;
+
+import com.tertiumtechnology.txrxlib.scan.TxRxScanCallback;
+import com.tertiumtechnology.txrxlib.scan.TxRxScanMatcher;
+import com.tertiumtechnology.txrxlib.scan.TxRxScanPreset;
+import com.tertiumtechnology.txrxlib.scan.TxRxScanResult;
+import com.tertiumtechnology.txrxlib.scan.TxRxScanner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * This class connects to the first device matching a {@link TxRxScanMatcher}, as soon as it is seen during scan.
+ * <p>
+ * When a matching device is found, the scan is stopped and the connection is started in the same step, using the
+ * scanned device and the profile matched by the {@link TxRxScanPreset}, so that service discovery does not need to
+ * search for the profile.
+ * <p>
+ * With more than one candidate, the connector keeps scanning and connects to each matching device, up to the
+ * maximum number of candidates: the first candidate whose TxRx services are discovered wins, and the others are
+ * disconnected. The winning {@link TxRxDeviceManager} is delivered through
+ * {@link TxRxFastConnectCallback#onConnected(TxRxDeviceManager, TxRxScanResult)}, and from then on its events are
+ * delivered to the application {@link TxRxDeviceCallback}.
+ * <p>
+ * A connector must be created on a thread with a {@link android.os.Looper}, usually the main thread. The connector
+ * calls neither the application nor the manager of a connecting candidate while holding its own lock, so that it
+ * adds no lock order to the locks of the managers, held by the candidates while delivering their callbacks.
+ * <p>
+ * <b>Note:</b> Most of the methods here require {@link android.Manifest.permission#BLUETOOTH_ADMIN} and
+ * {@link android.Manifest.permission#BLUETOOTH} permissions.
+ */
+public class TxRxFastConnector {
+
+    /**
+     * No device matching the predicate has been found before the scan timeout
+     */
+    public static final int ERROR_FAST_CONNECT_NO_DEVICE_FOUND = 51;
+
+    /**
+     * Every matching device has failed to connect or to discover TxRx services
+     */
+    public static final int ERROR_FAST_CONNECT_CANDIDATES_FAILED = 52;
+
+    /**
+     * Default value for the maximum number of candidates connected at the same time
+     */
+    public static final int MAX_CANDIDATES_DEFAULT_VALUE = 1;
+
+    private static final String TAG = TxRxFastConnector.class.getSimpleName();
+
+    private final BluetoothAdapter bluetoothAdapter;
+    private final Context context;
+    private final TxRxFastConnectCallback callback;
+    private final TxRxScanner scanner;
+
+    private final List<Candidate> candidates;
+    private final HashSet<String> triedAddresses;
+
+    private TxRxScanPreset scanPreset;
+    private TxRxTimeouts txRxTimeouts;
+    private int maxCandidates;
+
+    private TxRxScanMatcher matcher;
+    private TxRxDeviceCallback deviceCallback;
+    private boolean isRunning;
+    private boolean isScanFinished;
+
+    /**
+     * Create a new {@link TxRxFastConnector}.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param context          The {@link Context} needed to start connection requests
+     * @param callback         {@link TxRxFastConnectCallback} callback used to deliver the result
+     */
+    public TxRxFastConnector(BluetoothAdapter bluetoothAdapter, Context context, TxRxFastConnectCallback callback) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.context = context;
+        this.callback = callback;
+
+        this.candidates = new ArrayList<>();
+        this.triedAddresses = new HashSet<>();
+
+        this.scanPreset = TxRxScanPreset.forRegisteredProfiles();
+        this.txRxTimeouts = TxRxTimeouts.getDefaultTimeouts();
+        this.maxCandidates = MAX_CANDIDATES_DEFAULT_VALUE;
+
+        this.scanner = new TxRxScanner(bluetoothAdapter, new TxRxScanCallback() {
+            @Override
+            public void afterStopScan() {
+                onScanStopped();
+            }
+
+            @Override
+            public void onDeviceFound(TxRxScanResult scanResult) {
+                onScanResult(scanResult);
+            }
+        });
+    }
+
+    /**
+     * Stop the scan and close every candidate connection, without delivering any result. A device already delivered
+     * through {@link TxRxFastConnectCallback#onConnected(TxRxDeviceManager, TxRxScanResult)} is not affected.
+     */
+    public void cancel() {
+        List<Candidate> released;
+
+        synchronized (this) {
+            if (!isRunning) {
+                return;
+            }
+
+            Log.i(TAG, "Cancel fast connect");
+
+            isRunning = false;
+            released = new ArrayList<>(candidates);
+            candidates.clear();
+        }
+
+        stopScan();
+        releaseCandidates(released);
+    }
+
+    /**
+     * Returns the maximum number of candidates connected at the same time.
+     *
+     * @return the maximum number of candidates
+     */
+    public int getMaxCandidates() {
+        return maxCandidates;
+    }
+
+    /**
+     * Set the maximum number of candidates connected at the same time. With a single candidate, the first matching
+     * device is connected and the scan stopped; with more candidates, the first device whose TxRx services are
+     * discovered wins.
+     *
+     * @param maxCandidates the maximum number of candidates
+     */
+    public void setMaxCandidates(int maxCandidates) {
+        this.maxCandidates = Math.max(1, maxCandidates);
+    }
+
+    /**
+     * Returns the {@link TxRxScanPreset} used to scan for devices.
+     *
+     * @return the current scan preset
+     */
+    public TxRxScanPreset getScanPreset() {
+        return scanPreset;
+    }
+
+    /**
+     * Set the {@link TxRxScanPreset} used to scan for devices. By default, every registered profile is looked for.
+     *
+     * @param scanPreset the {@link TxRxScanPreset} used to scan for devices
+     */
+    public void setScanPreset(TxRxScanPreset scanPreset) {
+        this.scanPreset = scanPreset;
+    }
+
+    /**
+     * Returns the scan timeout, in milliseconds.
+     *
+     * @return the current scan timeout value, in milliseconds
+     */
+    public long getScanTimeout() {
+        return scanner.getScanTimeout();
+    }
+
+    /**
+     * Set the scan timeout, in milliseconds. A timeout of zero is interpreted as an infinite timeout.
+     *
+     * @param scanTimeout the scan timeout, in milliseconds
+     */
+    public void setScanTimeout(long scanTimeout) {
+        scanner.setScanTimeout(scanTimeout);
+    }
+
+    /**
+     * Set the {@link TxRxTimeouts} used by the {@link TxRxDeviceManager} of the candidates.
+     *
+     * @param txRxTimeouts the {@link TxRxTimeouts} used during device communication
+     */
+    public void setTxRxTimeouts(TxRxTimeouts txRxTimeouts) {
+        this.txRxTimeouts = txRxTimeouts;
+    }
+
+    /**
+     * Returns whether a fast connect is in progress.
+     *
+     * @return true if scanning or connecting to candidates, false otherwise.
+     */
+    public synchronized boolean isRunning() {
+        return isRunning;
+    }
+
+    /**
+     * Start scanning and connect to the first device matching the predicate.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH_ADMIN} and {@link android.Manifest.permission#BLUETOOTH}
+     * permissions.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_SCAN} and
+     * {@link android.Manifest.permission#BLUETOOTH_CONNECT} permissions.
+     *
+     * @param matcher        {@link TxRxScanMatcher} the predicate selecting the device to connect to
+     * @param deviceCallback {@link TxRxDeviceCallback} callback used to notify data and request results of the
+     *                       connected device
+     */
+    public void start(TxRxScanMatcher matcher, TxRxDeviceCallback deviceCallback) {
+        cancel();
+
+        synchronized (this) {
+            Log.i(TAG, "Start fast connect");
+
+            this.matcher = matcher;
+            this.deviceCallback = deviceCallback;
+
+            triedAddresses.clear();
+            isRunning = true;
+            isScanFinished = false;
+        }
+
+        scanner.startScan(scanPreset);
+    }
+
+    private void onCandidateFailed(Candidate candidate) {
+        boolean isFailed;
+
+        synchronized (this) {
+            if (!candidates.remove(candidate)) {
+                return;
+            }
+
+            Log.i(TAG, "Candidate failed: " + candidate.scanResult.getBluetoothDevice().getAddress());
+
+            isFailed = isRunning && candidates.isEmpty() && isScanFinished;
+
+            if (isFailed) {
+                isRunning = false;
+            }
+        }
+
+        candidate.release();
+
+        if (isFailed) {
+            callback.onConnectFailed(ERROR_FAST_CONNECT_CANDIDATES_FAILED);
+        }
+    }
+
+    private void onCandidateReady(Candidate candidate) {
+        List<Candidate> released;
+
+        synchronized (this) {
+            if (!isRunning || !candidates.remove(candidate)) {
+                released = null;
+            }
+            else {
+                Log.i(TAG, "Candidate ready: " + candidate.scanResult.getBluetoothDevice().getAddress());
+
+                isRunning = false;
+                released = new ArrayList<>(candidates);
+                candidates.clear();
+
+                candidate.isWinner = true;
+            }
+        }
+
+        if (released == null) {
+            candidate.release();
+            return;
+        }
+
+        stopScan();
+        releaseCandidates(released);
+
+        callback.onConnected(candidate.deviceManager, candidate.scanResult);
+
+        candidate.deviceCallback.onDeviceConnected();
+        candidate.deviceCallback.onTxRxServiceDiscovered();
+    }
+
+    private synchronized void onScanResult(TxRxScanResult scanResult) {
+        if (!isRunning || scanResult.getBluetoothDevice() == null || !matcher.matches(scanResult)) {
+            return;
+        }
+
+        if (!triedAddresses.add(scanResult.getBluetoothDevice().getAddress())) {
+            return;
+        }
+
+        Candidate candidate = new Candidate(scanResult, deviceCallback);
+        candidates.add(candidate);
+
+        // the scan is stopped before connecting, since many controllers connect slowly while scanning
+        if (triedAddresses.size() >= maxCandidates) {
+            stopScan();
+        }
+
+        Log.i(TAG, "Connect to candidate: " + scanResult.getBluetoothDevice().getAddress());
+
+        // the only manager locked under the connector lock, since no other thread can hold the lock of a new one
+        candidate.deviceManager.connect(scanResult, context);
+    }
+
+    private void onScanStopped() {
+        int errorCode = 0;
+
+        synchronized (this) {
+            isScanFinished = true;
+
+            if (isRunning && candidates.isEmpty()) {
+                isRunning = false;
+                errorCode = triedAddresses.isEmpty()
+                        ? ERROR_FAST_CONNECT_NO_DEVICE_FOUND : ERROR_FAST_CONNECT_CANDIDATES_FAILED;
+            }
+        }
+
+        if (errorCode != 0) {
+            callback.onConnectFailed(errorCode);
+        }
+    }
+
+    private void releaseCandidates(List<Candidate> released) {
+        for (Candidate candidate : released) {
+            candidate.release();
+        }
+    }
+
+    private void stopScan() {
+        if (scanner.isScanning()) {
+            scanner.stopScan();
+        }
+    }
+
+    /**
+     * A device being connected, whose events are delivered to the application only once it has won the race.
+     */
+    private class Candidate implements TxRxDeviceCallback {
+
+        private final TxRxScanResult scanResult;
+        private final TxRxDeviceCallback deviceCallback;
+        private final TxRxDeviceManager deviceManager;
+        private volatile boolean isWinner;
+        private volatile boolean isReleased;
+
+        Candidate(TxRxScanResult scanResult, TxRxDeviceCallback deviceCallback) {
+            this.scanResult = scanResult;
+            this.deviceCallback = deviceCallback;
+            this.deviceManager = new TxRxDeviceManager(bluetoothAdapter, this, txRxTimeouts);
+        }
+
+        @Override
+        public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+            if (isWinner) {
+                deviceCallback.onBulkTransferComplete(transfer);
+            }
+        }
+
+        @Override
+        public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+            if (isWinner) {
+                deviceCallback.onBulkTransferError(transfer, errorCode);
+            }
+        }
+
+        @Override
+        public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+            if (isWinner) {
+                deviceCallback.onBulkTransferProgress(transfer);
+            }
+        }
+
+        @Override
+        public void onConnectionError(int errorCode) {
+            if (isWinner) {
+                deviceCallback.onConnectionError(errorCode);
+            }
+            else if (!isReleased) {
+                onCandidateFailed(this);
+            }
+        }
+
+        @Override
+        public void onConnectionTimeout() {
+            if (isWinner) {
+                deviceCallback.onConnectionTimeout();
+            }
+            else if (!isReleased) {
+                onCandidateFailed(this);
+            }
+        }
+
+        @Override
+        public void onDeviceConnected() {
+            if (isWinner) {
+                deviceCallback.onDeviceConnected();
+            }
+        }
+
+        @Override
+        public void onDeviceDisconnected() {
+            if (isWinner) {
+                deviceCallback.onDeviceDisconnected();
+            }
+            else if (!isReleased) {
+                onCandidateFailed(this);
+            }
+        }
+
+        @Override
+        public void onEventData(String data) {
+            if (isWinner) {
+                deviceCallback.onEventData(data);
+            }
+        }
+
+        @Override
+        public void onNotifyData(String data) {
+            if (isWinner) {
+                deviceCallback.onNotifyData(data);
+            }
+        }
+
+        @Override
+        public void onNotifyFrame(byte[] buffer, int offset, int length) {
+            if (isWinner) {
+                deviceCallback.onNotifyFrame(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void onPhyUpdate(int txPhy, int rxPhy, int status) {
+            if (isWinner) {
+                deviceCallback.onPhyUpdate(txPhy, rxPhy, status);
+            }
+        }
+
+        @Override
+        public void onReadData(String data) {
+            if (isWinner) {
+                deviceCallback.onReadData(data);
+            }
+        }
+
+        @Override
+        public void onReadError(int errorCode) {
+            if (isWinner) {
+                deviceCallback.onReadError(errorCode);
+            }
+        }
+
+        @Override
+        public void onReadNotifyTimeout() {
+            if (isWinner) {
+                deviceCallback.onReadNotifyTimeout();
+            }
+        }
+
+        @Override
+        public void onReceiveTxRxTimestampsAfterNotifyData(TxRxTimestamps txRxTimestamps) {
+            if (isWinner) {
+                deviceCallback.onReceiveTxRxTimestampsAfterNotifyData(txRxTimestamps);
+            }
+        }
+
+        @Override
+        public void onReconnecting(int attempt, long delay) {
+            if (isWinner) {
+                deviceCallback.onReconnecting(attempt, delay);
+            }
+        }
+
+        @Override
+        public void onSetMode(int mode) {
+            if (isWinner) {
+                deviceCallback.onSetMode(mode);
+            }
+        }
+
+        @Override
+        public void onSetModeError(int errorCode) {
+            if (isWinner) {
+                deviceCallback.onSetModeError(errorCode);
+            }
+        }
+
+        @Override
+        public void onSetModeTimeout() {
+            if (isWinner) {
+                deviceCallback.onSetModeTimeout();
+            }
+        }
+
+        @Override
+        public void onTxRxServiceDiscovered() {
+            if (isWinner) {
+                deviceCallback.onTxRxServiceDiscovered();
+            }
+            else if (!isReleased) {
+                onCandidateReady(this);
+            }
+        }
+
+        @Override
+        public void onTxRxServiceNotFound() {
+            if (isWinner) {
+                deviceCallback.onTxRxServiceNotFound();
+            }
+            else if (!isReleased) {
+                onCandidateFailed(this);
+            }
+        }
+
+        @Override
+        public void onWriteData(String data) {
+            if (isWinner) {
+                deviceCallback.onWriteData(data);
+            }
+        }
+
+        @Override
+        public void onWriteError(int errorCode) {
+            if (isWinner) {
+                deviceCallback.onWriteError(errorCode);
+            }
+        }
+
+        @Override
+        public void onWriteTimeout() {
+            if (isWinner) {
+                deviceCallback.onWriteTimeout();
+            }
+        }
+
+        void release() {
+            isReleased = true;
+
+            deviceManager.close();
+        }
+    }
+}
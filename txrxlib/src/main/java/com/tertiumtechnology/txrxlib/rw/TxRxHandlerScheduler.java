@@ -0,0 +1,55 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * This class provides a {@link TxRxScheduler} running the tasks on an Android {@link Handler}, timed on
+ * {@link SystemClock#elapsedRealtime()}.
+ * <p>
+ * It is the default scheduler of the scan classes, bound to the looper of the thread creating them.
+ */
+public class TxRxHandlerScheduler implements TxRxScheduler {
+
+    private final Handler handler;
+
+    /**
+     * Create a new {@link TxRxHandlerScheduler} running the tasks on the specified {@link Handler}.
+     *
+     * @param handler the {@link Handler} running the tasks
+     */
+    public TxRxHandlerScheduler(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the time elapsed since boot, including deep sleep.
+     *
+     * @return the current time in milliseconds
+     */
+    @Override
+    public long now() {
+        return SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Run the specified task on the handler after the specified delay.
+     *
+     * @param task  the task to run
+     * @param delay the delay in milliseconds
+     */
+    @Override
+    public void post(Runnable task, long delay) {
+        handler.postDelayed(task, delay);
+    }
+
+    /**
+     * Remove every pending run of the specified task.
+     *
+     * @param task the task to remove
+     */
+    @Override
+    public void remove(Runnable task) {
+        handler.removeCallbacks(task);
+    }
+}
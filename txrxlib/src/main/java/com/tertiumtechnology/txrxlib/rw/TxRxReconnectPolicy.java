@@ -0,0 +1,188 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This is an utility class for managing the automatic reconnection to a device, after an unexpected disconnection.
+ * <p>
+ * The device is reconnected up to {@link #getMaxAttempts()} times, with an exponential backoff delay randomized by
+ * {@link #getJitter()}, so that many devices dropped together do not reconnect at the same time. The frequent
+ * GATT_ERROR (133) status, usually a transient failure of the Android stack, is retried immediately after
+ * {@link #getFastRetryDelay()}.
+ * <p>
+ * With auto connect enabled, when the attempts are exhausted the device is reconnected in background, through
+ * {@link android.bluetooth.BluetoothDevice#connectGatt(android.content.Context, boolean,
+ * android.bluetooth.BluetoothGattCallback)} with autoConnect set to true, as soon as it is available again.
+ */
+public class TxRxReconnectPolicy {
+
+    /**
+     * Default value for the maximum number of direct reconnection attempts
+     */
+    public static final int MAX_ATTEMPTS_DEFAULT_VALUE = 5;
+
+    /**
+     * Default value for the delay before the first reconnection attempt
+     */
+    public static final long RECONNECT_DELAY_DEFAULT_VALUE = 500;
+
+    /**
+     * Default value for the maximum delay between two reconnection attempts
+     */
+    public static final long MAX_RECONNECT_DELAY_DEFAULT_VALUE = 16000;
+
+    /**
+     * Default value for the delay before retrying a connection failed with GATT_ERROR (133)
+     */
+    public static final long FAST_RETRY_DELAY_DEFAULT_VALUE = 100;
+
+    /**
+     * Default value for the random variation of the reconnection delays, as a fraction of the delay
+     */
+    public static final double JITTER_DEFAULT_VALUE = 0.3;
+
+    /**
+     * GATT_ERROR status, reported by Android for many transient connection failures
+     */
+    static final int STATUS_GATT_ERROR = 133;
+
+    private static final TxRxReconnectPolicy defaultReconnectPolicy = new TxRxReconnectPolicy(
+            MAX_ATTEMPTS_DEFAULT_VALUE,
+            RECONNECT_DELAY_DEFAULT_VALUE,
+            MAX_RECONNECT_DELAY_DEFAULT_VALUE,
+            FAST_RETRY_DELAY_DEFAULT_VALUE,
+            JITTER_DEFAULT_VALUE,
+            false
+    );
+
+    private static final TxRxReconnectPolicy noReconnectPolicy = new TxRxReconnectPolicy(0, 0, 0, 0, 0, false);
+
+    /**
+     * Returns a {@link TxRxReconnectPolicy}, configured with default values, without background auto connect
+     *
+     * @return a TxRxReconnectPolicy with default values
+     */
+    public static TxRxReconnectPolicy getDefaultReconnectPolicy() {
+        return defaultReconnectPolicy;
+    }
+
+    /**
+     * Returns a {@link TxRxReconnectPolicy} which never reconnects. This is the default used by
+     * {@link TxRxDeviceManager}.
+     *
+     * @return a TxRxReconnectPolicy without reconnection
+     */
+    public static TxRxReconnectPolicy getNoReconnectPolicy() {
+        return noReconnectPolicy;
+    }
+
+    private final int maxAttempts;
+    private final long reconnectDelay;
+    private final long maxReconnectDelay;
+    private final long fastRetryDelay;
+    private final double jitter;
+    private final boolean autoConnect;
+
+    /**
+     * Create a new {@link TxRxReconnectPolicy} in order to manage automatic reconnection.
+     *
+     * @param maxAttempts       int the maximum number of direct reconnection attempts
+     * @param reconnectDelay    long the delay before the first reconnection attempt
+     * @param maxReconnectDelay long the maximum delay between two reconnection attempts
+     * @param fastRetryDelay    long the delay before retrying a connection failed with GATT_ERROR (133)
+     * @param jitter            double the random variation of the delays, as a fraction of the delay
+     * @param autoConnect       boolean true to reconnect in background when the attempts are exhausted
+     */
+    public TxRxReconnectPolicy(int maxAttempts, long reconnectDelay, long maxReconnectDelay, long fastRetryDelay,
+                               double jitter, boolean autoConnect) {
+        this.maxAttempts = maxAttempts;
+        this.reconnectDelay = reconnectDelay;
+        this.maxReconnectDelay = maxReconnectDelay;
+        this.fastRetryDelay = fastRetryDelay;
+        this.jitter = jitter;
+        this.autoConnect = autoConnect;
+    }
+
+    /**
+     * Returns the delay before retrying a connection failed with GATT_ERROR (133)
+     *
+     * @return a long representing the fast retry delay
+     */
+    public long getFastRetryDelay() {
+        return fastRetryDelay;
+    }
+
+    /**
+     * Returns the random variation of the reconnection delays
+     *
+     * @return a double representing the jitter, as a fraction of the delay
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Returns the maximum number of direct reconnection attempts
+     *
+     * @return an int representing the maximum number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Returns the maximum delay between two reconnection attempts
+     *
+     * @return a long representing the maximum reconnection delay
+     */
+    public long getMaxReconnectDelay() {
+        return maxReconnectDelay;
+    }
+
+    /**
+     * Returns the delay before the first reconnection attempt
+     *
+     * @return a long representing the reconnection delay
+     */
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    /**
+     * Returns the delay before the specified reconnection attempt: the fast retry delay after a GATT_ERROR (133) on
+     * the first attempt, otherwise an exponential backoff, randomized by the jitter.
+     *
+     * @param attempt int the number of attempts already performed
+     * @param status  int the GATT status of the last failure
+     * @return the delay before the reconnection attempt
+     */
+    public long getReconnectDelay(int attempt, int status) {
+        if (status == STATUS_GATT_ERROR && attempt == 0) {
+            return fastRetryDelay;
+        }
+
+        long delay = attempt >= maxAttempts
+                ? maxReconnectDelay : Math.min(maxReconnectDelay, reconnectDelay << Math.min(attempt, 30));
+        double variation = jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+
+        return Math.max(0, Math.round(delay * (1 + variation)));
+    }
+
+    /**
+     * Returns whether the device is reconnected in background when the direct attempts are exhausted
+     *
+     * @return true if background auto connect is enabled, false otherwise.
+     */
+    public boolean isAutoConnect() {
+        return autoConnect;
+    }
+
+    /**
+     * Returns whether this policy reconnects at all
+     *
+     * @return true if the device is reconnected after an unexpected disconnection, false otherwise.
+     */
+    public boolean isEnabled() {
+        return maxAttempts > 0 || autoConnect;
+    }
+}
@@ -0,0 +1,232 @@
+package com.tertiumtechnology.txrxlib.rw;
+
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCharacteristic;
+
+/**
+ * This class holds the tuning of the communication with a device or a family of devices: timeouts, chunk size,
+ * write type, connection priority and terminators, overriding the values of the {@link TxRxDeviceProfile} and of
+ * the {@link TxRxDeviceManager}.
+ * <p>
+ * Every value is optional: a value not tuned is taken from the profile or the manager. Tunings are kept by a
+ * {@link com.tertiumtechnology.txrxlib.util.TxRxTuningStore} and applied by the {@link TxRxDeviceManager} at each
+ * connection.
+ */
+public class TxRxTuning {
+
+    /**
+     * Value of the int parameters not tuned
+     */
+    public static final int NOT_TUNED = -1;
+
+    private static final TxRxTuning emptyTuning = new TxRxTuning(null, NOT_TUNED, NOT_TUNED, NOT_TUNED, null, null);
+
+    /**
+     * Returns a {@link TxRxTuning} with no value tuned, to be completed through its {@code with} methods.
+     *
+     * @return a TxRxTuning with no value tuned
+     */
+    public static TxRxTuning getEmptyTuning() {
+        return emptyTuning;
+    }
+
+    private final TxRxTimeouts timeouts;
+    private final int chunkSize;
+    private final int writeType;
+    private final int connectionPriority;
+    private final TxRxDeviceProfile.TerminatorType rxTerminatorType;
+    private final TxRxDeviceProfile.TerminatorType txTerminatorType;
+
+    /**
+     * Create a new {@link TxRxTuning}.
+     *
+     * @param timeouts           {@link TxRxTimeouts} used during device communication, null if not tuned
+     * @param chunkSize          int the maximum size of the chunks written to the device, {@link #NOT_TUNED} to use
+     *                           the rx packet size of the profile
+     * @param writeType          int the write type of the chunks,
+     *                           {@link BluetoothGattCharacteristic#WRITE_TYPE_DEFAULT} or
+     *                           {@link BluetoothGattCharacteristic#WRITE_TYPE_NO_RESPONSE}, {@link #NOT_TUNED} to use
+     *                           the write type of the characteristic
+     * @param connectionPriority int the connection priority used when idle, one of the
+     *                           {@code BluetoothGatt.CONNECTION_PRIORITY_} constants, {@link #NOT_TUNED} to use
+     *                           the idle priority of the {@link TxRxConnectionPriorityPolicy}
+     * @param rxTerminatorType   {@link TxRxDeviceProfile.TerminatorType} the terminator type used in write
+     *                           operation, null to use the one of the profile
+     * @param txTerminatorType   {@link TxRxDeviceProfile.TerminatorType} the terminator type used in read
+     *                           operation, null to use the one of the profile
+     */
+    public TxRxTuning(TxRxTimeouts timeouts, int chunkSize, int writeType, int connectionPriority,
+                      TxRxDeviceProfile.TerminatorType rxTerminatorType,
+                      TxRxDeviceProfile.TerminatorType txTerminatorType) {
+        this.timeouts = timeouts;
+        this.chunkSize = chunkSize;
+        this.writeType = writeType;
+        this.connectionPriority = connectionPriority;
+        this.rxTerminatorType = rxTerminatorType;
+        this.txTerminatorType = txTerminatorType;
+    }
+
+    /**
+     * Returns a {@link TxRxDeviceProfile} with the chunk size and terminators of this tuning, if tuned.
+     *
+     * @param profile the {@link TxRxDeviceProfile} to tune
+     * @return the tuned profile, or the specified profile if neither chunk size nor terminators are tuned
+     */
+    public TxRxDeviceProfile applyTo(TxRxDeviceProfile profile) {
+        TxRxDeviceProfile tunedProfile = profile;
+
+        if (chunkSize > 0) {
+            tunedProfile = tunedProfile.withRxPacketSize(chunkSize);
+        }
+
+        if (rxTerminatorType != null || txTerminatorType != null) {
+            tunedProfile = tunedProfile.withTerminatorTypes(
+                    rxTerminatorType != null ? rxTerminatorType : profile.getRxTerminatorType(),
+                    txTerminatorType != null ? txTerminatorType : profile.getTxTerminatorType());
+        }
+
+        return tunedProfile;
+    }
+
+    /**
+     * Returns the maximum size of the chunks written to the device
+     *
+     * @return an int representing the chunk size, {@link #NOT_TUNED} if not tuned
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the connection priority used when idle
+     *
+     * @return an int representing the connection priority, {@link #NOT_TUNED} if not tuned
+     */
+    public int getConnectionPriority() {
+        return connectionPriority;
+    }
+
+    /**
+     * Returns the terminator type used in write operation
+     *
+     * @return the {@link TxRxDeviceProfile.TerminatorType}, null if not tuned
+     */
+    public TxRxDeviceProfile.TerminatorType getRxTerminatorType() {
+        return rxTerminatorType;
+    }
+
+    /**
+     * Returns the {@link TxRxTimeouts} used during device communication
+     *
+     * @return the {@link TxRxTimeouts}, null if not tuned
+     */
+    public TxRxTimeouts getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Returns the terminator type used in read operation
+     *
+     * @return the {@link TxRxDeviceProfile.TerminatorType}, null if not tuned
+     */
+    public TxRxDeviceProfile.TerminatorType getTxTerminatorType() {
+        return txTerminatorType;
+    }
+
+    /**
+     * Returns the write type of the chunks
+     *
+     * @return an int representing the write type, {@link #NOT_TUNED} if not tuned
+     */
+    public int getWriteType() {
+        return writeType;
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, with the specified chunk size, e.g. learned from the MTU
+     * negotiated with the device.
+     *
+     * @param chunkSize int the maximum size of the chunks written to the device, {@link #NOT_TUNED} to use the rx
+     *                  packet size of the profile
+     * @return a new {@link TxRxTuning} with the specified chunk size
+     */
+    public TxRxTuning withChunkSize(int chunkSize) {
+        return new TxRxTuning(timeouts, chunkSize, writeType, connectionPriority, rxTerminatorType,
+                txTerminatorType);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, with the specified idle connection priority.
+     *
+     * @param connectionPriority int one of {@link BluetoothGatt#CONNECTION_PRIORITY_BALANCED},
+     *                           {@link BluetoothGatt#CONNECTION_PRIORITY_HIGH} or
+     *                           {@link BluetoothGatt#CONNECTION_PRIORITY_LOW_POWER}, {@link #NOT_TUNED} to use the
+     *                           idle priority of the {@link TxRxConnectionPriorityPolicy}
+     * @return a new {@link TxRxTuning} with the specified connection priority
+     */
+    public TxRxTuning withConnectionPriority(int connectionPriority) {
+        return new TxRxTuning(timeouts, chunkSize, writeType, connectionPriority, rxTerminatorType,
+                txTerminatorType);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, taking the values not tuned from the specified tuning, e.g. the
+     * tuning of a device completed by the tuning of its profile.
+     *
+     * @param defaults {@link TxRxTuning} holding the default values, may be null
+     * @return a new {@link TxRxTuning} with the values of this tuning and, if not tuned, of the defaults
+     */
+    public TxRxTuning withDefaults(TxRxTuning defaults) {
+        if (defaults == null) {
+            return this;
+        }
+
+        return new TxRxTuning(
+                timeouts != null ? timeouts : defaults.timeouts,
+                chunkSize != NOT_TUNED ? chunkSize : defaults.chunkSize,
+                writeType != NOT_TUNED ? writeType : defaults.writeType,
+                connectionPriority != NOT_TUNED ? connectionPriority : defaults.connectionPriority,
+                rxTerminatorType != null ? rxTerminatorType : defaults.rxTerminatorType,
+                txTerminatorType != null ? txTerminatorType : defaults.txTerminatorType);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, with the specified terminators.
+     *
+     * @param rxTerminatorType {@link TxRxDeviceProfile.TerminatorType} the terminator type used in write
+     *                         operation, null to use the one of the profile
+     * @param txTerminatorType {@link TxRxDeviceProfile.TerminatorType} the terminator type used in read
+     *                         operation, null to use the one of the profile
+     * @return a new {@link TxRxTuning} with the specified terminators
+     */
+    public TxRxTuning withTerminatorTypes(TxRxDeviceProfile.TerminatorType rxTerminatorType,
+                                          TxRxDeviceProfile.TerminatorType txTerminatorType) {
+        return new TxRxTuning(timeouts, chunkSize, writeType, connectionPriority, rxTerminatorType,
+                txTerminatorType);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, with the specified timeouts, e.g. learned from the response times
+     * of the device.
+     *
+     * @param timeouts {@link TxRxTimeouts} used during device communication, null to use the ones of the manager
+     * @return a new {@link TxRxTuning} with the specified timeouts
+     */
+    public TxRxTuning withTimeouts(TxRxTimeouts timeouts) {
+        return new TxRxTuning(timeouts, chunkSize, writeType, connectionPriority, rxTerminatorType,
+                txTerminatorType);
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxTuning}, with the specified write type.
+     *
+     * @param writeType int {@link BluetoothGattCharacteristic#WRITE_TYPE_DEFAULT} or
+     *                  {@link BluetoothGattCharacteristic#WRITE_TYPE_NO_RESPONSE}, {@link #NOT_TUNED} to use the
+     *                  write type of the characteristic
+     * @return a new {@link TxRxTuning} with the specified write type
+     */
+    public TxRxTuning withWriteType(int writeType) {
+        return new TxRxTuning(timeouts, chunkSize, writeType, connectionPriority, rxTerminatorType,
+                txTerminatorType);
+    }
+}
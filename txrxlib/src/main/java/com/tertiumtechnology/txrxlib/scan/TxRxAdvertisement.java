@@ -0,0 +1,488 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * This class represents a lightweight result of a scan operation for BLE Devices.
+ * <p>
+ * Unlike {@link TxRxScanResult}, the advertising data is not decoded up front: the raw scan record is kept as
+ * received and each accessor walks the advertising data structures on demand. Accessors returning primitive values,
+ * and the copy methods writing into a caller buffer, never allocate.
+ * <p>
+ * When the scanner reuses advertisements (see {@link TxRxScanner#RESULT_TYPE_ADVERTISEMENT_REUSED}), the same
+ * instance is updated for every result and is only valid during
+ * {@link TxRxScanCallback#onAdvertisement(TxRxAdvertisement)}: use {@link #copy()} to retain it.
+ */
+public class TxRxAdvertisement {
+
+    /**
+     * AD type of the flags
+     */
+    public static final int AD_TYPE_FLAGS = 0x01;
+
+    /**
+     * AD type of the incomplete list of 16-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL = 0x02;
+
+    /**
+     * AD type of the complete list of 16-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE = 0x03;
+
+    /**
+     * AD type of the incomplete list of 32-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL = 0x04;
+
+    /**
+     * AD type of the complete list of 32-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE = 0x05;
+
+    /**
+     * AD type of the incomplete list of 128-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL = 0x06;
+
+    /**
+     * AD type of the complete list of 128-bit service UUIDs
+     */
+    public static final int AD_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE = 0x07;
+
+    /**
+     * AD type of the shortened local name
+     */
+    public static final int AD_TYPE_LOCAL_NAME_SHORT = 0x08;
+
+    /**
+     * AD type of the complete local name
+     */
+    public static final int AD_TYPE_LOCAL_NAME_COMPLETE = 0x09;
+
+    /**
+     * AD type of the TX power level
+     */
+    public static final int AD_TYPE_TX_POWER_LEVEL = 0x0A;
+
+    /**
+     * AD type of the service data, with a 16-bit service UUID
+     */
+    public static final int AD_TYPE_SERVICE_DATA_16_BIT = 0x16;
+
+    /**
+     * AD type of the service data, with a 32-bit service UUID
+     */
+    public static final int AD_TYPE_SERVICE_DATA_32_BIT = 0x20;
+
+    /**
+     * AD type of the service data, with a 128-bit service UUID
+     */
+    public static final int AD_TYPE_SERVICE_DATA_128_BIT = 0x21;
+
+    /**
+     * AD type of the manufacturer specific data
+     */
+    public static final int AD_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    // Bluetooth base UUID, 0000xxxx-0000-1000-8000-00805F9B34FB
+    private static final long BASE_UUID_MOST_SIGNIFICANT_BITS = 0x0000000000001000L;
+    private static final long BASE_UUID_LEAST_SIGNIFICANT_BITS = 0x800000805F9B34FBL;
+
+    private static final byte[] EMPTY_SCAN_RECORD = new byte[0];
+
+    private BluetoothDevice bluetoothDevice;
+    private int rssi;
+    private long timestampNanos;
+    private byte[] scanRecord;
+    private TxRxDeviceProfile deviceProfile;
+
+    /**
+     * Create a new empty {@link TxRxAdvertisement}, to be filled by
+     * {@link #set(BluetoothDevice, int, byte[], long)}.
+     */
+    public TxRxAdvertisement() {
+        this.scanRecord = EMPTY_SCAN_RECORD;
+    }
+
+    /**
+     * Create a new {@link TxRxAdvertisement} as a result of a scan operation.
+     *
+     * @param bluetoothDevice Identifies the remote LE device.
+     * @param rssi            The received signal strength in dBm for the remote device.
+     * @param scanRecord      The raw content of the scan record offered by the remote device, not copied.
+     * @param timestampNanos  The time the advertisement was received, in nanoseconds since boot.
+     */
+    public TxRxAdvertisement(BluetoothDevice bluetoothDevice, int rssi, byte[] scanRecord, long timestampNanos) {
+        set(bluetoothDevice, rssi, scanRecord, timestampNanos);
+    }
+
+    /**
+     * Copy the data of the first AD structure of the specified type into a buffer.
+     *
+     * @param adType      int the AD type
+     * @param destination byte[] the destination buffer
+     * @param offset      int the offset in the destination buffer
+     * @return the number of bytes copied, or -1 if the AD structure is not present or does not fit the buffer
+     */
+    public int copyAdStructure(int adType, byte[] destination, int offset) {
+        int index = indexOfAdStructure(adType, 0);
+
+        if (index < 0) {
+            return -1;
+        }
+
+        return copyData(index, getAdStructureLength(index), destination, offset);
+    }
+
+    /**
+     * Copy the manufacturer specific data of the specified company into a buffer, without the company identifier.
+     *
+     * @param companyId   int the company identifier assigned by Bluetooth SIG
+     * @param destination byte[] the destination buffer
+     * @param offset      int the offset in the destination buffer
+     * @return the number of bytes copied, or -1 if the data is not present or does not fit the buffer
+     */
+    public int copyManufacturerData(int companyId, byte[] destination, int offset) {
+        int index = indexOfManufacturerData(companyId);
+
+        if (index < 0) {
+            return -1;
+        }
+
+        return copyData(index + 2, getAdStructureLength(index) - 2, destination, offset);
+    }
+
+    /**
+     * Returns an independent copy of this {@link TxRxAdvertisement}, which can be retained after the callback.
+     *
+     * @return a copy of this advertisement
+     */
+    public TxRxAdvertisement copy() {
+        TxRxAdvertisement advertisement = new TxRxAdvertisement(bluetoothDevice, rssi, scanRecord.clone(),
+                timestampNanos);
+        advertisement.deviceProfile = deviceProfile;
+        return advertisement;
+    }
+
+    /**
+     * Returns the length of the data of the AD structure found at the specified index.
+     *
+     * @param index int the index of the AD structure data, as returned by {@link #indexOfAdStructure(int, int)}
+     * @return the length of the AD structure data
+     */
+    public int getAdStructureLength(int index) {
+        return (scanRecord[index - 2] & 0xFF) - 1;
+    }
+
+    /**
+     * Returns the remote LE device.
+     *
+     * @return the remote LE device identified.
+     */
+    public BluetoothDevice getBluetoothDevice() {
+        return bluetoothDevice;
+    }
+
+    /**
+     * Returns the {@link TxRxDeviceProfile} matched by the {@link TxRxScanPreset} of the scan.
+     *
+     * @return the matched device profile, or null if the scan was not started with a preset
+     */
+    public TxRxDeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    /**
+     * Returns the advertised flags.
+     *
+     * @return the advertised flags, or -1 if not present
+     */
+    public int getFlags() {
+        int index = indexOfAdStructure(AD_TYPE_FLAGS, 0);
+        return index >= 0 && getAdStructureLength(index) >= 1 ? scanRecord[index] & 0xFF : -1;
+    }
+
+    /**
+     * Returns the advertised local name, complete or shortened.
+     *
+     * @return the local name, or null if not present
+     */
+    public String getLocalName() {
+        int index = indexOfAdStructure(AD_TYPE_LOCAL_NAME_COMPLETE, 0);
+
+        if (index < 0) {
+            index = indexOfAdStructure(AD_TYPE_LOCAL_NAME_SHORT, 0);
+        }
+
+        return index >= 0 ? new String(scanRecord, index, getAdStructureLength(index), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Returns the manufacturer specific data of the specified company, without the company identifier.
+     *
+     * @param companyId int the company identifier assigned by Bluetooth SIG
+     * @return a new array with the manufacturer specific data, or null if not present
+     */
+    public byte[] getManufacturerData(int companyId) {
+        int index = indexOfManufacturerData(companyId);
+
+        if (index < 0) {
+            return null;
+        }
+
+        return Arrays.copyOfRange(scanRecord, index + 2, index + getAdStructureLength(index));
+    }
+
+    /**
+     * Returns the company identifier of the first manufacturer specific data.
+     *
+     * @return the company identifier, or -1 if no manufacturer specific data is present
+     */
+    public int getManufacturerId() {
+        int index = indexOfAdStructure(AD_TYPE_MANUFACTURER_SPECIFIC_DATA, 0);
+
+        if (index < 0 || getAdStructureLength(index) < 2) {
+            return -1;
+        }
+
+        return (scanRecord[index] & 0xFF) | ((scanRecord[index + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * Returns the received signal strength in dBm for the remote device. The valid range is [-127, 126].
+     *
+     * @return the received signal strength in dBm for the remote device
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Returns the raw content of the scan record offered by the remote device. The array is not copied and must not
+     * be modified.
+     *
+     * @return the content of the scan record offered by the remote device.
+     */
+    public byte[] getScanRecord() {
+        return scanRecord;
+    }
+
+    /**
+     * Returns the service data associated with the specified service UUID, without the UUID.
+     *
+     * @param serviceUuid {@link UUID} the service UUID, 16-bit, 32-bit or 128-bit
+     * @return a new array with the service data, or null if not present
+     */
+    public byte[] getServiceData(UUID serviceUuid) {
+        int[] indexAndUuidSize = new int[2];
+
+        if (!findServiceData(serviceUuid, indexAndUuidSize)) {
+            return null;
+        }
+
+        int index = indexAndUuidSize[0];
+        return Arrays.copyOfRange(scanRecord, index + indexAndUuidSize[1], index + getAdStructureLength(index));
+    }
+
+    /**
+     * Returns the time the advertisement was received, in nanoseconds since boot.
+     *
+     * @return the advertisement timestamp
+     */
+    public long getTimestampNanos() {
+        return timestampNanos;
+    }
+
+    /**
+     * Returns the transmit power in dBm for the remote device. A value of {@link Integer#MIN_VALUE} indicates that
+     * the TX power is not present.
+     *
+     * @return the transmit power in dBm for the remote device.
+     */
+    public int getTxPower() {
+        int index = indexOfAdStructure(AD_TYPE_TX_POWER_LEVEL, 0);
+        return index >= 0 && getAdStructureLength(index) >= 1 ? scanRecord[index] : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns whether the specified service UUID is advertised, in any of the 16-bit, 32-bit or 128-bit service
+     * UUIDs lists.
+     *
+     * @param serviceUuid {@link UUID} the service UUID to look for
+     * @return true if the service UUID is advertised, false otherwise.
+     */
+    public boolean hasServiceUuid(UUID serviceUuid) {
+        return hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE, 16)
+                || hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL, 16)
+                || hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE, 2)
+                || hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL, 2)
+                || hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE, 4)
+                || hasServiceUuid(serviceUuid, AD_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL, 4);
+    }
+
+    /**
+     * Returns the index of the data of the first AD structure of the specified type, starting from the specified
+     * index.
+     *
+     * @param adType    int the AD type
+     * @param fromIndex int the index from which to start the search, 0 to search the whole scan record
+     * @return the index of the AD structure data in {@link #getScanRecord()}, or -1 if not present
+     */
+    public int indexOfAdStructure(int adType, int fromIndex) {
+        int position = 0;
+
+        while (position + 1 < scanRecord.length) {
+            int length = scanRecord[position] & 0xFF;
+
+            if (length == 0 || position + 1 + length > scanRecord.length) {
+                return -1;
+            }
+
+            int dataIndex = position + 2;
+
+            if (dataIndex >= fromIndex && (scanRecord[position + 1] & 0xFF) == adType) {
+                return dataIndex;
+            }
+
+            position += length + 1;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns whether the manufacturer specific data of the specified company starts with the specified prefix,
+     * without allocating.
+     *
+     * @param companyId int the company identifier assigned by Bluetooth SIG
+     * @param prefix    byte[] the expected prefix of the data, following the company identifier
+     * @return true if the data is present and starts with the prefix, false otherwise.
+     */
+    public boolean manufacturerDataStartsWith(int companyId, byte[] prefix) {
+        int index = indexOfManufacturerData(companyId);
+
+        if (index < 0 || getAdStructureLength(index) - 2 < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (scanRecord[index + 2 + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Update this {@link TxRxAdvertisement} with a new scan result, without copying the scan record.
+     *
+     * @param bluetoothDevice Identifies the remote LE device.
+     * @param rssi            The received signal strength in dBm for the remote device.
+     * @param scanRecord      The raw content of the scan record offered by the remote device, not copied.
+     * @param timestampNanos  The time the advertisement was received, in nanoseconds since boot.
+     */
+    public void set(BluetoothDevice bluetoothDevice, int rssi, byte[] scanRecord, long timestampNanos) {
+        this.bluetoothDevice = bluetoothDevice;
+        this.rssi = rssi;
+        this.scanRecord = scanRecord != null ? scanRecord : EMPTY_SCAN_RECORD;
+        this.timestampNanos = timestampNanos;
+        this.deviceProfile = null;
+    }
+
+    void setDeviceProfile(TxRxDeviceProfile deviceProfile) {
+        this.deviceProfile = deviceProfile;
+    }
+
+    private int copyData(int index, int length, byte[] destination, int offset) {
+        if (length < 0 || offset + length > destination.length) {
+            return -1;
+        }
+
+        System.arraycopy(scanRecord, index, destination, offset, length);
+        return length;
+    }
+
+    private boolean findServiceData(UUID serviceUuid, int[] indexAndUuidSize) {
+        int[] adTypes = {AD_TYPE_SERVICE_DATA_16_BIT, AD_TYPE_SERVICE_DATA_32_BIT, AD_TYPE_SERVICE_DATA_128_BIT};
+        int[] uuidSizes = {2, 4, 16};
+
+        for (int i = 0; i < adTypes.length; i++) {
+            int index = indexOfAdStructure(adTypes[i], 0);
+
+            while (index >= 0) {
+                if (getAdStructureLength(index) >= uuidSizes[i] && uuidEquals(index, uuidSizes[i], serviceUuid)) {
+                    indexAndUuidSize[0] = index;
+                    indexAndUuidSize[1] = uuidSizes[i];
+                    return true;
+                }
+
+                index = indexOfAdStructure(adTypes[i], index + 1);
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasServiceUuid(UUID serviceUuid, int adType, int uuidSize) {
+        int index = indexOfAdStructure(adType, 0);
+
+        while (index >= 0) {
+            int end = index + getAdStructureLength(index);
+
+            for (int position = index; position + uuidSize <= end; position += uuidSize) {
+                if (uuidEquals(position, uuidSize, serviceUuid)) {
+                    return true;
+                }
+            }
+
+            index = indexOfAdStructure(adType, index + 1);
+        }
+
+        return false;
+    }
+
+    private int indexOfManufacturerData(int companyId) {
+        int index = indexOfAdStructure(AD_TYPE_MANUFACTURER_SPECIFIC_DATA, 0);
+
+        while (index >= 0) {
+            if (getAdStructureLength(index) >= 2
+                    && ((scanRecord[index] & 0xFF) | ((scanRecord[index + 1] & 0xFF) << 8)) == companyId) {
+                return index;
+            }
+
+            index = indexOfAdStructure(AD_TYPE_MANUFACTURER_SPECIFIC_DATA, index + 1);
+        }
+
+        return -1;
+    }
+
+    private long readLittleEndian(int index, int size) {
+        long value = 0;
+
+        for (int i = size - 1; i >= 0; i--) {
+            value = (value << 8) | (scanRecord[index + i] & 0xFF);
+        }
+
+        return value;
+    }
+
+    // compares a little endian UUID in the scan record, without allocating
+    private boolean uuidEquals(int index, int uuidSize, UUID uuid) {
+        if (uuidSize == 16) {
+            return readLittleEndian(index, 8) == uuid.getLeastSignificantBits()
+                    && readLittleEndian(index + 8, 8) == uuid.getMostSignificantBits();
+        }
+
+        long shortUuid = readLittleEndian(index, uuidSize);
+
+        return uuid.getLeastSignificantBits() == BASE_UUID_LEAST_SIGNIFICANT_BITS
+                && uuid.getMostSignificantBits() == ((shortUuid << 32) | BASE_UUID_MOST_SIGNIFICANT_BITS);
+    }
+}
@@ -0,0 +1,339 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxHandlerScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * This class keeps a table of the devices found during a scan, keyed by address.
+ * <p>
+ * Each advertisement updates the matching {@link TxRxTrackedDevice} in place, smoothing its RSSI through a
+ * {@link TxRxRssiFilter}. Devices not seen for longer than the device timeout are removed, and the changes are
+ * delivered as added/updated/lost deltas through {@link TxRxDeviceTableCallback}, at most once every update
+ * interval.
+ * <p>
+ * Devices are also kept sorted by smoothed RSSI, so that the nearest devices can be retrieved at any time through
+ * {@link #getNearestDevices(int)} without sorting the table.
+ * <p>
+ * A table must be used on the thread delivering the scan results, usually the main thread.
+ *
+ * @see TxRxScanner#setDeviceTable(TxRxDeviceTable)
+ */
+public class TxRxDeviceTable {
+
+    /**
+     * Default minimum interval between two change notifications, in milliseconds
+     */
+    public static final long UPDATE_INTERVAL_DEFAULT_VALUE = 500;
+
+    /**
+     * Default time after which a device not seen is reported as lost, in milliseconds
+     */
+    public static final long DEVICE_TIMEOUT_DEFAULT_VALUE = 10000;
+
+    /**
+     * Default minimum change of the smoothed RSSI reported as an update, in dBm
+     */
+    public static final double RSSI_CHANGE_THRESHOLD_DEFAULT_VALUE = 1.0;
+
+    private static final Comparator<TxRxTrackedDevice> PROXIMITY_COMPARATOR = (first, second) -> {
+        int result = Double.compare(second.getSmoothedRssi(), first.getSmoothedRssi());
+        return result != 0 ? result : first.getAddress().compareTo(second.getAddress());
+    };
+
+    private final TxRxDeviceTableCallback callback;
+    private final TxRxScheduler scheduler;
+    private final Runnable updateRunnable;
+
+    private final HashMap<String, TxRxTrackedDevice> devices;
+    private final TreeSet<TxRxTrackedDevice> proximityIndex;
+
+    private final LinkedHashSet<TxRxTrackedDevice> pendingAdded;
+    private final LinkedHashSet<TxRxTrackedDevice> pendingUpdated;
+
+    private final ArrayList<TxRxTrackedDevice> added;
+    private final ArrayList<TxRxTrackedDevice> updated;
+    private final ArrayList<TxRxTrackedDevice> lost;
+
+    private TxRxRssiFilter.Factory rssiFilterFactory;
+    private long updateInterval;
+    private long deviceTimeout;
+    private double rssiChangeThreshold;
+    private boolean isRunning;
+
+    /**
+     * Create a new {@link TxRxDeviceTable}, smoothing RSSI values through an {@link EwmaRssiFilter}.
+     *
+     * @param callback {@link TxRxDeviceTableCallback} callback used to deliver the table changes
+     */
+    public TxRxDeviceTable(TxRxDeviceTableCallback callback) {
+        this(callback, new TxRxHandlerScheduler(new Handler(Looper.myLooper())));
+    }
+
+    /**
+     * Create a new {@link TxRxDeviceTable}, smoothing RSSI values through an {@link EwmaRssiFilter} and running its
+     * updates on the specified {@link TxRxScheduler}, e.g. a
+     * {@link com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler} to check the device timeouts in virtual time.
+     *
+     * @param callback  {@link TxRxDeviceTableCallback} callback used to deliver the table changes
+     * @param scheduler {@link TxRxScheduler} running the updates and timing the advertisements
+     */
+    public TxRxDeviceTable(TxRxDeviceTableCallback callback, TxRxScheduler scheduler) {
+        this.callback = callback;
+        this.scheduler = scheduler;
+
+        this.devices = new HashMap<>();
+        this.proximityIndex = new TreeSet<>(PROXIMITY_COMPARATOR);
+        this.pendingAdded = new LinkedHashSet<>();
+        this.pendingUpdated = new LinkedHashSet<>();
+        this.added = new ArrayList<>();
+        this.updated = new ArrayList<>();
+        this.lost = new ArrayList<>();
+
+        this.rssiFilterFactory = EwmaRssiFilter.factory(EwmaRssiFilter.ALPHA_DEFAULT_VALUE);
+        this.updateInterval = UPDATE_INTERVAL_DEFAULT_VALUE;
+        this.deviceTimeout = DEVICE_TIMEOUT_DEFAULT_VALUE;
+        this.rssiChangeThreshold = RSSI_CHANGE_THRESHOLD_DEFAULT_VALUE;
+
+        this.updateRunnable = this::onUpdateTimer;
+    }
+
+    /**
+     * Remove every device from the table, without notifying them as lost.
+     */
+    public void clear() {
+        devices.clear();
+        proximityIndex.clear();
+        pendingAdded.clear();
+        pendingUpdated.clear();
+    }
+
+    /**
+     * Returns the tracked device with the specified address.
+     *
+     * @param address The device Bluetooth address as a string
+     * @return the tracked device, or null if the device is not in the table
+     */
+    public TxRxTrackedDevice getDevice(String address) {
+        return devices.get(address);
+    }
+
+    /**
+     * Returns the time after which a device not seen is reported as lost, in milliseconds.
+     *
+     * @return the device timeout
+     */
+    public long getDeviceTimeout() {
+        return deviceTimeout;
+    }
+
+    /**
+     * Set the time after which a device not seen is reported as lost, in milliseconds.
+     *
+     * @param deviceTimeout the device timeout
+     */
+    public void setDeviceTimeout(long deviceTimeout) {
+        this.deviceTimeout = deviceTimeout;
+    }
+
+    /**
+     * Returns every device in the table, sorted by decreasing smoothed RSSI.
+     *
+     * @return a new list of the tracked devices
+     */
+    public List<TxRxTrackedDevice> getDevices() {
+        return new ArrayList<>(proximityIndex);
+    }
+
+    /**
+     * Returns the nearest devices in the table, that is the devices with the highest smoothed RSSI.
+     *
+     * @param count int the maximum number of devices to return
+     * @return a new list of at most <b>count</b> devices, sorted by decreasing smoothed RSSI
+     */
+    public List<TxRxTrackedDevice> getNearestDevices(int count) {
+        ArrayList<TxRxTrackedDevice> nearestDevices = new ArrayList<>(Math.min(count, proximityIndex.size()));
+        Iterator<TxRxTrackedDevice> iterator = proximityIndex.iterator();
+
+        while (nearestDevices.size() < count && iterator.hasNext()) {
+            nearestDevices.add(iterator.next());
+        }
+
+        return nearestDevices;
+    }
+
+    /**
+     * Returns the minimum change of the smoothed RSSI reported as an update, in dBm.
+     *
+     * @return the RSSI change threshold
+     */
+    public double getRssiChangeThreshold() {
+        return rssiChangeThreshold;
+    }
+
+    /**
+     * Set the minimum change of the smoothed RSSI reported as an update, in dBm.
+     *
+     * @param rssiChangeThreshold the RSSI change threshold
+     */
+    public void setRssiChangeThreshold(double rssiChangeThreshold) {
+        this.rssiChangeThreshold = rssiChangeThreshold;
+    }
+
+    /**
+     * Returns the minimum interval between two change notifications, in milliseconds.
+     *
+     * @return the update interval
+     */
+    public long getUpdateInterval() {
+        return updateInterval;
+    }
+
+    /**
+     * Set the minimum interval between two change notifications, in milliseconds.
+     *
+     * @param updateInterval the update interval
+     */
+    public void setUpdateInterval(long updateInterval) {
+        this.updateInterval = updateInterval;
+    }
+
+    /**
+     * Set the {@link TxRxRssiFilter.Factory} used to smooth the RSSI of devices added from now on.
+     *
+     * @param rssiFilterFactory {@link TxRxRssiFilter.Factory} creating the RSSI filter of each device
+     */
+    public void setRssiFilterFactory(TxRxRssiFilter.Factory rssiFilterFactory) {
+        this.rssiFilterFactory = rssiFilterFactory;
+    }
+
+    /**
+     * Returns the number of devices in the table.
+     *
+     * @return the number of tracked devices
+     */
+    public int size() {
+        return devices.size();
+    }
+
+    private void onUpdateTimer() {
+        update(scheduler.now());
+
+        if (isRunning) {
+            scheduler.post(updateRunnable, updateInterval);
+        }
+    }
+
+    void onScanResult(ScanResult scanResult, TxRxDeviceProfile deviceProfile) {
+        ScanRecord scanRecord = scanResult.getScanRecord();
+
+        int txPower = Integer.MIN_VALUE;
+        byte[] scanRecordBytes = null;
+
+        if (scanRecord != null) {
+            txPower = scanRecord.getTxPowerLevel();
+            scanRecordBytes = scanRecord.getBytes();
+        }
+
+        onAdvertisement(scanResult.getDevice(), scanResult.getRssi(), txPower, scanRecordBytes, deviceProfile,
+                scheduler.now());
+    }
+
+    void onAdvertisement(BluetoothDevice bluetoothDevice, int rssi, int txPower, byte[] scanRecord,
+                         TxRxDeviceProfile deviceProfile, long timestamp) {
+        String address = bluetoothDevice.getAddress();
+        TxRxTrackedDevice device = devices.get(address);
+
+        if (device == null) {
+            device = new TxRxTrackedDevice(bluetoothDevice, address, rssiFilterFactory.create(), timestamp);
+            device.update(rssi, txPower, scanRecord, deviceProfile, timestamp);
+
+            devices.put(address, device);
+            proximityIndex.add(device);
+            pendingAdded.add(device);
+            return;
+        }
+
+        // the device position in the index depends on its RSSI, so it is updated by removal and insertion
+        proximityIndex.remove(device);
+        device.update(rssi, txPower, scanRecord, deviceProfile, timestamp);
+        proximityIndex.add(device);
+
+        if (device.isReported() && Math.abs(device.getSmoothedRssi() - device.getReportedRssi())
+                >= rssiChangeThreshold) {
+            pendingUpdated.add(device);
+        }
+    }
+
+    void start() {
+        if (!isRunning) {
+            isRunning = true;
+            scheduler.post(updateRunnable, updateInterval);
+        }
+    }
+
+    void stop() {
+        if (isRunning) {
+            isRunning = false;
+            scheduler.remove(updateRunnable);
+            update(scheduler.now());
+        }
+    }
+
+    void update(long now) {
+        Iterator<TxRxTrackedDevice> iterator = devices.values().iterator();
+
+        while (iterator.hasNext()) {
+            TxRxTrackedDevice device = iterator.next();
+
+            if (now - device.getLastSeenTime() > deviceTimeout) {
+                iterator.remove();
+                proximityIndex.remove(device);
+                pendingUpdated.remove(device);
+
+                // a device found and lost between two notifications is never reported
+                if (!pendingAdded.remove(device)) {
+                    lost.add(device);
+                }
+            }
+        }
+
+        for (TxRxTrackedDevice device : pendingAdded) {
+            device.markReported();
+            added.add(device);
+        }
+
+        for (TxRxTrackedDevice device : pendingUpdated) {
+            device.markReported();
+            updated.add(device);
+        }
+
+        pendingAdded.clear();
+        pendingUpdated.clear();
+
+        if (!added.isEmpty() || !updated.isEmpty() || !lost.isEmpty()) {
+            try {
+                callback.onDeviceTableChanged(added, updated, lost);
+            }
+            finally {
+                added.clear();
+                updated.clear();
+                lost.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import java.util.List;
+
+/**
+ * Callback interface used to deliver the changes of a {@link TxRxDeviceTable}.
+ *
+ * @see TxRxDeviceTable#TxRxDeviceTable(TxRxDeviceTableCallback)
+ */
+public interface TxRxDeviceTableCallback {
+
+    /**
+     * Callback when the device table has changed since the previous notification, at most once every
+     * {@link TxRxDeviceTable#getUpdateInterval()} milliseconds.
+     * <p>
+     * <b>Note:</b> the lists are reused by the table and are only valid during this call.
+     *
+     * @param added   the devices found since the previous notification
+     * @param updated the devices whose smoothed RSSI has changed since the previous notification
+     * @param lost    the devices not seen for longer than {@link TxRxDeviceTable#getDeviceTimeout()}
+     */
+    void onDeviceTableChanged(List<TxRxTrackedDevice> added, List<TxRxTrackedDevice> updated,
+                              List<TxRxTrackedDevice> lost);
+}
@@ -14,10 +14,33 @@ public interface TxRxScanCallback {
      */
     void afterStopScan();
 
+    /**
+     * Callback when a BLE advertisement has been received, if the scanner result type is
+     * {@link TxRxScanner#RESULT_TYPE_ADVERTISEMENT} or {@link TxRxScanner#RESULT_TYPE_ADVERTISEMENT_REUSED}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param advertisement the lightweight result of a scan operation for BLE Devices
+     */
+    default void onAdvertisement(TxRxAdvertisement advertisement) {
+    }
+
     /**
      * Callback when a BLE device has been found.
      *
      * @param scanResult the result of a scan operation for BLE Devices
      */
     void onDeviceFound(TxRxScanResult scanResult);
+
+    /**
+     * Callback when a BLE device is no longer advertising, if the scan settings callback type includes
+     * {@link android.bluetooth.le.ScanSettings#CALLBACK_TYPE_MATCH_LOST}.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param scanResult the last result of a scan operation for the lost BLE Device
+     * @see TxRxScanSettings#getPresenceSettings()
+     */
+    default void onDeviceLost(TxRxScanResult scanResult) {
+    }
 }
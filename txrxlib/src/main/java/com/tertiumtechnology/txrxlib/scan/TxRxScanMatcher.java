@@ -0,0 +1,82 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.os.ParcelUuid;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+
+/**
+ * Predicate selecting scan results, e.g. the device to connect to as soon as it is seen.
+ * <p>
+ * Matchers can be combined through {@link #and(TxRxScanMatcher)}.
+ *
+ * @see com.tertiumtechnology.txrxlib.rw.TxRxFastConnector
+ */
+public interface TxRxScanMatcher {
+
+    /**
+     * Returns a {@link TxRxScanMatcher} selecting the device with the specified address.
+     *
+     * @param address The device Bluetooth address as a string
+     * @return a new TxRxScanMatcher
+     */
+    static TxRxScanMatcher address(String address) {
+        return scanResult -> scanResult.getBluetoothDevice() != null
+                && address.equalsIgnoreCase(scanResult.getBluetoothDevice().getAddress());
+    }
+
+    /**
+     * Returns a {@link TxRxScanMatcher} selecting the devices with the specified manufacturer specific data prefix.
+     *
+     * @param companyId int the company identifier assigned by Bluetooth SIG
+     * @param prefix    byte[] the expected prefix of the data, following the company identifier
+     * @return a new TxRxScanMatcher
+     */
+    static TxRxScanMatcher manufacturerData(int companyId, byte[] prefix) {
+        return scanResult -> new TxRxAdvertisement(scanResult.getBluetoothDevice(), scanResult.getRssi(),
+                scanResult.getScanRecord(), 0).manufacturerDataStartsWith(companyId, prefix);
+    }
+
+    /**
+     * Returns a {@link TxRxScanMatcher} selecting the devices with a received signal strength of at least the
+     * specified threshold.
+     *
+     * @param rssi int the minimum received signal strength, in dBm
+     * @return a new TxRxScanMatcher
+     */
+    static TxRxScanMatcher minRssi(int rssi) {
+        return scanResult -> scanResult.getRssi() >= rssi;
+    }
+
+    /**
+     * Returns a {@link TxRxScanMatcher} selecting the devices of the specified profile, matched by
+     * {@link TxRxScanPreset} or advertising its service UUID.
+     *
+     * @param profile {@link TxRxDeviceProfile} the profile of the device
+     * @return a new TxRxScanMatcher
+     */
+    static TxRxScanMatcher profile(TxRxDeviceProfile profile) {
+        ParcelUuid serviceUuid = ParcelUuid.fromString(profile.getTxRxServiceUuid());
+
+        return scanResult -> scanResult.getDeviceProfile() == profile
+                || (scanResult.getServiceUuids() != null && scanResult.getServiceUuids().contains(serviceUuid));
+    }
+
+    /**
+     * Returns a {@link TxRxScanMatcher} selecting the scan results selected by both this matcher and the specified
+     * one.
+     *
+     * @param other the other {@link TxRxScanMatcher}
+     * @return a new TxRxScanMatcher
+     */
+    default TxRxScanMatcher and(TxRxScanMatcher other) {
+        return scanResult -> matches(scanResult) && other.matches(scanResult);
+    }
+
+    /**
+     * Returns whether the scan result is selected by this matcher.
+     *
+     * @param scanResult the result of a scan operation for BLE Devices
+     * @return true if the scan result is selected, false otherwise.
+     */
+    boolean matches(TxRxScanResult scanResult);
+}
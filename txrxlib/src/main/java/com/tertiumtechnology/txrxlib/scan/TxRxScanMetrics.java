@@ -0,0 +1,127 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class collects counters about the scan callbacks, updated live by {@link TxRxScanner}, in order to measure
+ * the effect of {@link TxRxScanSettings} on the application wake-ups.
+ *
+ * @see TxRxScanner#getMetrics()
+ */
+public class TxRxScanMetrics {
+
+    private final AtomicLong callbacks = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+    private final AtomicLong lostDevices = new AtomicLong();
+    private final AtomicLong scanStarts = new AtomicLong();
+    private final AtomicLong scanTime = new AtomicLong();
+    private volatile long scanStartTime;
+
+    private final TxRxScheduler scheduler;
+
+    TxRxScanMetrics(TxRxScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Returns the number of scan callbacks received from the system, each batch counting as one callback
+     *
+     * @return the number of scan callbacks
+     */
+    public long getCallbacks() {
+        return callbacks.get();
+    }
+
+    /**
+     * Returns the number of scan callbacks per second of radio scan time.
+     *
+     * @return the callback rate, in callbacks per second
+     */
+    public double getCallbackRate() {
+        long time = getScanTime();
+        return time > 0 ? callbacks.get() * 1000.0 / time : 0;
+    }
+
+    /**
+     * Returns the number of devices reported lost by the Bluetooth controller
+     *
+     * @return the number of lost devices
+     */
+    public long getLostDevices() {
+        return lostDevices.get();
+    }
+
+    /**
+     * Returns the number of scan results received from the system, including the results of batches
+     *
+     * @return the number of scan results
+     */
+    public long getResults() {
+        return results.get();
+    }
+
+    /**
+     * Returns the number of scans started on the system, including every burst of a duty-cycled scan
+     *
+     * @return the number of scan starts
+     */
+    public long getScanStarts() {
+        return scanStarts.get();
+    }
+
+    /**
+     * Returns the time the radio has been scanning, excluding the idle windows of a duty-cycled scan
+     *
+     * @return the scan time, in milliseconds
+     */
+    public long getScanTime() {
+        long startTime = scanStartTime;
+        return scanTime.get() + (startTime > 0 ? scheduler.now() - startTime : 0);
+    }
+
+    /**
+     * Reset every counter to zero.
+     */
+    public void reset() {
+        callbacks.set(0);
+        results.set(0);
+        lostDevices.set(0);
+        scanStarts.set(0);
+        scanTime.set(0);
+
+        if (scanStartTime > 0) {
+            scanStartTime = scheduler.now();
+        }
+    }
+
+    void onBatchResults(int count) {
+        callbacks.incrementAndGet();
+        results.addAndGet(count);
+    }
+
+    void onDeviceLost() {
+        callbacks.incrementAndGet();
+        lostDevices.incrementAndGet();
+    }
+
+    void onResult() {
+        callbacks.incrementAndGet();
+        results.incrementAndGet();
+    }
+
+    void onScanStarted() {
+        scanStarts.incrementAndGet();
+        scanStartTime = scheduler.now();
+    }
+
+    void onScanStopped() {
+        long startTime = scanStartTime;
+
+        if (startTime > 0) {
+            scanTime.addAndGet(scheduler.now() - startTime);
+            scanStartTime = 0;
+        }
+    }
+}
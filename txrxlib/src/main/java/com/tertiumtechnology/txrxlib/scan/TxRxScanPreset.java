@@ -0,0 +1,199 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.os.ParcelUuid;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxProfileRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * This class describes which TxRx devices a scan looks for, and builds the matching {@link ScanFilter} so that
+ * filtering is performed by the Bluetooth controller instead of by the application.
+ * <p>
+ * Devices are recognized by the service UUID or the manufacturer identifier of a {@link TxRxDeviceProfile},
+ * optionally restricted to an allow-list of addresses. The matching profile is attached to each scan result, see
+ * {@link TxRxScanResult#getDeviceProfile()}.
+ *
+ * @see TxRxScanner#startScan(TxRxScanPreset)
+ */
+public class TxRxScanPreset {
+
+    private static final byte[] ANY_MANUFACTURER_DATA = new byte[0];
+
+    private final List<TxRxDeviceProfile> profiles;
+    private final List<ParcelUuid> serviceUuids;
+    private final Set<String> addresses;
+
+    private TxRxScanPreset(List<TxRxDeviceProfile> profiles, Set<String> addresses) {
+        this.profiles = profiles;
+        this.addresses = addresses;
+        this.serviceUuids = new ArrayList<>(profiles.size());
+
+        for (TxRxDeviceProfile profile : profiles) {
+            serviceUuids.add(ParcelUuid.fromString(profile.getTxRxServiceUuid()));
+        }
+    }
+
+    /**
+     * Returns a {@link TxRxScanPreset} looking for the devices of the specified profiles.
+     *
+     * @param profiles the {@link TxRxDeviceProfile} of the devices to look for
+     * @return a new {@link TxRxScanPreset}
+     */
+    public static TxRxScanPreset forProfiles(TxRxDeviceProfile... profiles) {
+        return new TxRxScanPreset(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(profiles))),
+                Collections.<String>emptySet());
+    }
+
+    /**
+     * Returns a {@link TxRxScanPreset} looking for the devices of every profile currently registered in
+     * {@link TxRxProfileRegistry}.
+     *
+     * @return a new {@link TxRxScanPreset}
+     */
+    public static TxRxScanPreset forRegisteredProfiles() {
+        return new TxRxScanPreset(Collections.unmodifiableList(new ArrayList<>(TxRxProfileRegistry.getProfiles())),
+                Collections.<String>emptySet());
+    }
+
+    /**
+     * Build the {@link ScanFilter} list for this preset.
+     * <p>
+     * With an address allow-list, a filter is built for each address, and the profile is verified on the results;
+     * otherwise a filter is built for each profile service UUID and manufacturer identifier.
+     *
+     * @return a new list of {@link ScanFilter}
+     */
+    public List<ScanFilter> buildScanFilters() {
+        ArrayList<ScanFilter> filters = new ArrayList<>();
+
+        if (!addresses.isEmpty()) {
+            for (String address : addresses) {
+                filters.add(new ScanFilter.Builder().setDeviceAddress(address).build());
+            }
+            return filters;
+        }
+
+        for (int i = 0; i < profiles.size(); i++) {
+            filters.add(new ScanFilter.Builder().setServiceUuid(serviceUuids.get(i)).build());
+
+            int manufacturerId = profiles.get(i).getManufacturerId();
+
+            if (manufacturerId >= 0) {
+                filters.add(new ScanFilter.Builder().setManufacturerData(manufacturerId, ANY_MANUFACTURER_DATA)
+                        .build());
+            }
+        }
+
+        return filters;
+    }
+
+    /**
+     * Returns the address allow-list of this preset.
+     *
+     * @return an unmodifiable set of upper case addresses, empty if every address is allowed
+     */
+    public Set<String> getAddresses() {
+        return addresses;
+    }
+
+    /**
+     * Returns the profiles of the devices looked for by this preset.
+     *
+     * @return an unmodifiable list of {@link TxRxDeviceProfile}
+     */
+    public List<TxRxDeviceProfile> getProfiles() {
+        return profiles;
+    }
+
+    /**
+     * Returns the profile of this preset matching an advertisement, by service UUID or manufacturer identifier.
+     *
+     * @param address    String the device Bluetooth address
+     * @param scanRecord {@link ScanRecord} the advertisement scan record, may be null
+     * @return the matching {@link TxRxDeviceProfile}, or null if the advertisement does not match this preset
+     */
+    public TxRxDeviceProfile matchProfile(String address, ScanRecord scanRecord) {
+        if (scanRecord == null || !isAddressAllowed(address)) {
+            return null;
+        }
+
+        List<ParcelUuid> advertisedUuids = scanRecord.getServiceUuids();
+
+        for (int i = 0; i < profiles.size(); i++) {
+            TxRxDeviceProfile profile = profiles.get(i);
+
+            if (advertisedUuids != null && advertisedUuids.contains(serviceUuids.get(i))) {
+                return profile;
+            }
+
+            if (profile.getManufacturerId() >= 0
+                    && scanRecord.getManufacturerSpecificData(profile.getManufacturerId()) != null) {
+                return profile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the profile of this preset matching an advertisement, by service UUID or manufacturer identifier,
+     * without allocating.
+     *
+     * @param advertisement {@link TxRxAdvertisement} the advertisement
+     * @return the matching {@link TxRxDeviceProfile}, or null if the advertisement does not match this preset
+     */
+    public TxRxDeviceProfile matchProfile(TxRxAdvertisement advertisement) {
+        if (advertisement.getBluetoothDevice() == null
+                || !isAddressAllowed(advertisement.getBluetoothDevice().getAddress())) {
+            return null;
+        }
+
+        for (int i = 0; i < profiles.size(); i++) {
+            TxRxDeviceProfile profile = profiles.get(i);
+            UUID serviceUuid = serviceUuids.get(i).getUuid();
+
+            if (advertisement.hasServiceUuid(serviceUuid)) {
+                return profile;
+            }
+
+            if (profile.getManufacturerId() >= 0
+                    && advertisement.manufacturerDataStartsWith(profile.getManufacturerId(), ANY_MANUFACTURER_DATA)) {
+                return profile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a copy of this {@link TxRxScanPreset}, restricted to the specified addresses.
+     *
+     * @param addresses the allowed device Bluetooth addresses, empty to allow every address
+     * @return a new {@link TxRxScanPreset} with the specified address allow-list
+     */
+    public TxRxScanPreset withAddresses(Collection<String> addresses) {
+        HashSet<String> allowedAddresses = new HashSet<>();
+
+        for (String address : addresses) {
+            allowedAddresses.add(address.toUpperCase(Locale.US));
+        }
+
+        return new TxRxScanPreset(profiles, Collections.unmodifiableSet(allowedAddresses));
+    }
+
+    private boolean isAddressAllowed(String address) {
+        return addresses.isEmpty() || (address != null && addresses.contains(address));
+    }
+}
@@ -3,6 +3,8 @@ package com.tertiumtechnology.txrxlib.scan;
 import android.bluetooth.BluetoothDevice;
 import android.os.ParcelUuid;
 
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,6 +18,7 @@ public class TxRxScanResult {
     private final int txPower;
     private final byte[] scanRecord;
     private final List<ParcelUuid> serviceUuids;
+    private final TxRxDeviceProfile deviceProfile;
 
     /**
      * Create a new {@link TxRxScanResult} as a result of a scan operation.
@@ -29,11 +32,28 @@ public class TxRxScanResult {
      */
     public TxRxScanResult(BluetoothDevice bluetoothDevice, int rssi, byte[] scanRecord, int txPower,
                           List<ParcelUuid> serviceUuids) {
+        this(bluetoothDevice, rssi, scanRecord, txPower, serviceUuids, null);
+    }
+
+    /**
+     * Create a new {@link TxRxScanResult} as a result of a scan operation.
+     *
+     * @param bluetoothDevice Identifies the remote LE device.
+     * @param rssi            The received signal strength in dBm for the remote device. The valid range is [-127, 126].
+     * @param scanRecord      The content of the scan record offered by the remote device, which is a
+     *                        combination of advertisement and scan response.
+     * @param txPower         The transmit power in dBm for the remote device.
+     * @param serviceUuids    The list of service UUIDs within the advertisement that identify the bluetooth GATT services.
+     * @param deviceProfile   The {@link TxRxDeviceProfile} matched by the advertisement, or null if unknown.
+     */
+    public TxRxScanResult(BluetoothDevice bluetoothDevice, int rssi, byte[] scanRecord, int txPower,
+                          List<ParcelUuid> serviceUuids, TxRxDeviceProfile deviceProfile) {
         this.bluetoothDevice = bluetoothDevice;
         this.rssi = rssi;
         this.scanRecord = scanRecord;
         this.txPower = txPower;
         this.serviceUuids = serviceUuids;
+        this.deviceProfile = deviceProfile;
     }
 
     /**
@@ -52,6 +72,7 @@ public class TxRxScanResult {
         this.scanRecord = scanRecord;
         this.txPower = txPower;
         this.serviceUuids = new ArrayList<>();
+        this.deviceProfile = null;
     }
 
     /**
@@ -68,6 +89,7 @@ public class TxRxScanResult {
         this.scanRecord = scanRecord;
         this.txPower = Integer.MIN_VALUE;
         this.serviceUuids = new ArrayList<>();
+        this.deviceProfile = null;
     }
 
     /**
@@ -79,6 +101,17 @@ public class TxRxScanResult {
         return bluetoothDevice;
     }
 
+    /**
+     * Returns the {@link TxRxDeviceProfile} matched by the advertisement, when the scan was started with a
+     * {@link TxRxScanPreset}. It can be passed to the following connection, to skip the search of the profile
+     * during service discovery.
+     *
+     * @return the matched device profile, or null if unknown
+     */
+    public TxRxDeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
     /**
      * Returns the received signal strength in dBm for the remote device. The valid range is [-127, 126].
      *
@@ -0,0 +1,354 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxHandlerScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class shares a single BLE scan among many subscribers, e.g. the screens and services of an application.
+ * <p>
+ * The filters of every subscriber are merged into one system scan, and each scan result is delivered only to the
+ * subscribers whose {@link TxRxScanPreset} matches it. The system scan is restarted only when the merged filters
+ * change; restarts are debounced, so that subscribers added or removed together cause a single restart.
+ * <p>
+ * Android stops delivering results, without any error, to an application starting more than
+ * {@link #MAX_SCAN_STARTS} scans in {@link #SCAN_START_WINDOW} milliseconds. The session keeps track of its scan
+ * starts and postpones a restart that would exceed the budget, so scan is never throttled silently. Since the
+ * budget is per application, an application should use one session for all its scans.
+ * <p>
+ * A session must be used on the thread delivering the scan results, usually the main thread.
+ * <p>
+ * <b>Note:</b> Most of the methods here require {@link android.Manifest.permission#BLUETOOTH_ADMIN} permission.
+ */
+public class TxRxScanSession {
+
+    /**
+     * Maximum number of scan starts allowed by Android in {@link #SCAN_START_WINDOW}
+     */
+    public static final int MAX_SCAN_STARTS = 5;
+
+    /**
+     * Window of the scan start budget, in milliseconds
+     */
+    public static final long SCAN_START_WINDOW = 30000;
+
+    /**
+     * Default value for the delay coalescing the restarts of the system scan, in milliseconds
+     */
+    public static final long RESTART_DELAY_DEFAULT_VALUE = 500;
+
+    private static final String TAG = TxRxScanSession.class.getSimpleName();
+
+    private final BluetoothAdapter bluetoothAdapter;
+    private final TxRxScheduler scheduler;
+    private final ScanCallback scanCallback;
+    private final Runnable restartRunnable;
+
+    private final LinkedHashMap<TxRxScanCallback, TxRxScanPreset> subscribers;
+    private final ArrayDeque<Long> scanStartTimes;
+    private final TxRxScanMetrics metrics;
+
+    private TxRxScanSettings scanSettings;
+    private long restartDelay;
+    private List<ScanFilter> activeFilters;
+    private boolean isScanning;
+
+    /**
+     * Create a new {@link TxRxScanSession}.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     */
+    public TxRxScanSession(BluetoothAdapter bluetoothAdapter) {
+        this(bluetoothAdapter, new TxRxHandlerScheduler(new Handler(Looper.myLooper())));
+    }
+
+    /**
+     * Create a new {@link TxRxScanSession}, running its restarts on the specified {@link TxRxScheduler}, e.g. a
+     * {@link com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler} to check the scan start budget in virtual time.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param scheduler        {@link TxRxScheduler} running the restarts and timing the scan starts
+     */
+    public TxRxScanSession(BluetoothAdapter bluetoothAdapter, TxRxScheduler scheduler) {
+        this.bluetoothAdapter = bluetoothAdapter;
+        this.scheduler = scheduler;
+
+        this.subscribers = new LinkedHashMap<>();
+        this.scanStartTimes = new ArrayDeque<>();
+        this.metrics = new TxRxScanMetrics(scheduler);
+
+        this.scanSettings = TxRxScanSettings.getLowLatencySettings();
+        this.restartDelay = RESTART_DELAY_DEFAULT_VALUE;
+
+        this.restartRunnable = this::restartScan;
+
+        this.scanCallback = new ScanCallback() {
+            @Override
+            public void onBatchScanResults(List<ScanResult> results) {
+                metrics.onBatchResults(results.size());
+
+                for (ScanResult scanResult : results) {
+                    dispatchScanResult(ScanSettings.CALLBACK_TYPE_ALL_MATCHES, scanResult);
+                }
+            }
+
+            @Override
+            public void onScanFailed(int errorCode) {
+                Log.e(TAG, "Scan Failed with error Code: " + errorCode);
+
+                isScanning = false;
+                activeFilters = null;
+                metrics.onScanStopped();
+            }
+
+            @Override
+            public void onScanResult(int callbackType, ScanResult scanResult) {
+                if (callbackType == ScanSettings.CALLBACK_TYPE_MATCH_LOST) {
+                    metrics.onDeviceLost();
+                }
+                else {
+                    metrics.onResult();
+                }
+
+                dispatchScanResult(callbackType, scanResult);
+            }
+        };
+    }
+
+    /**
+     * Add a subscriber to the session, starting or updating the system scan if needed. The scan results matching
+     * the preset will be delivered through {@link TxRxScanCallback#onDeviceFound(TxRxScanResult)}.
+     * <p>
+     * Adding a subscriber already in the session replaces its preset.
+     *
+     * @param scanCallback {@link TxRxScanCallback} callback used to deliver scan results
+     * @param scanPreset   {@link TxRxScanPreset} the devices to look for, null to receive every scan result
+     */
+    public void addSubscriber(TxRxScanCallback scanCallback, TxRxScanPreset scanPreset) {
+        subscribers.put(scanCallback, scanPreset);
+        scheduleRestart();
+    }
+
+    /**
+     * Returns the {@link TxRxScanMetrics} collected by this {@link TxRxScanSession}. The returned instance is
+     * updated live.
+     *
+     * @return the scan metrics of this session
+     */
+    public TxRxScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the delay coalescing the restarts of the system scan.
+     *
+     * @return the restart delay, in milliseconds
+     */
+    public long getRestartDelay() {
+        return restartDelay;
+    }
+
+    /**
+     * Set the delay coalescing the restarts of the system scan: changes of the subscribers within the delay cause a
+     * single restart.
+     *
+     * @param restartDelay the restart delay, in milliseconds
+     */
+    public void setRestartDelay(long restartDelay) {
+        this.restartDelay = restartDelay;
+    }
+
+    /**
+     * Returns the {@link TxRxScanSettings} used by the system scan.
+     *
+     * @return the current scan settings
+     */
+    public TxRxScanSettings getScanSettings() {
+        return scanSettings;
+    }
+
+    /**
+     * Set the {@link TxRxScanSettings} used by the system scan, applied on the next restart. Duty cycle is not
+     * supported by a shared scan, and is ignored.
+     *
+     * @param scanSettings the {@link TxRxScanSettings} used by the system scan
+     */
+    public void setScanSettings(TxRxScanSettings scanSettings) {
+        this.scanSettings = scanSettings;
+    }
+
+    /**
+     * Returns the number of scans that can be started now without exceeding the Android budget.
+     *
+     * @return the number of scan starts available
+     */
+    public int getAvailableScanStarts() {
+        expireScanStarts(scheduler.now());
+        return MAX_SCAN_STARTS - scanStartTimes.size();
+    }
+
+    /**
+     * Returns whether the system scan is currently running.
+     *
+     * @return true if the system scan is running, false otherwise.
+     */
+    public boolean isScanning() {
+        return isScanning;
+    }
+
+    /**
+     * Remove a subscriber from the session, stopping or updating the system scan if needed. The subscriber is
+     * notified through {@link TxRxScanCallback#afterStopScan()}.
+     *
+     * @param scanCallback {@link TxRxScanCallback} the callback of the subscriber
+     */
+    public void removeSubscriber(TxRxScanCallback scanCallback) {
+        if (subscribers.containsKey(scanCallback)) {
+            subscribers.remove(scanCallback);
+            scanCallback.afterStopScan();
+            scheduleRestart();
+        }
+    }
+
+    /**
+     * Remove every subscriber and stop the system scan immediately.
+     */
+    public void stop() {
+        scheduler.remove(restartRunnable);
+
+        ArrayList<TxRxScanCallback> callbacks = new ArrayList<>(subscribers.keySet());
+        subscribers.clear();
+        stopSystemScan();
+
+        for (TxRxScanCallback callback : callbacks) {
+            callback.afterStopScan();
+        }
+    }
+
+    private List<ScanFilter> buildMergedFilters() {
+        LinkedHashSet<ScanFilter> filters = new LinkedHashSet<>();
+
+        for (TxRxScanPreset scanPreset : subscribers.values()) {
+            if (scanPreset == null) {
+                // an unfiltered subscriber needs an unfiltered scan
+                return new ArrayList<>();
+            }
+            filters.addAll(scanPreset.buildScanFilters());
+        }
+
+        return new ArrayList<>(filters);
+    }
+
+    private void dispatchScanResult(int callbackType, ScanResult scanResult) {
+        ScanRecord scanRecord = scanResult.getScanRecord();
+        String address = scanResult.getDevice().getAddress();
+
+        // iterate over a copy, since a subscriber can be removed by its own callback
+        for (Map.Entry<TxRxScanCallback, TxRxScanPreset> subscriber : new ArrayList<>(subscribers.entrySet())) {
+            TxRxScanPreset scanPreset = subscriber.getValue();
+            TxRxDeviceProfile deviceProfile = null;
+
+            if (scanPreset != null) {
+                deviceProfile = scanPreset.matchProfile(address, scanRecord);
+
+                if (deviceProfile == null) {
+                    continue;
+                }
+            }
+
+            TxRxScanResult txRxScanResult = scanRecord == null
+                    ? new TxRxScanResult(scanResult.getDevice(), scanResult.getRssi(), new byte[0])
+                    : new TxRxScanResult(scanResult.getDevice(), scanResult.getRssi(), scanRecord.getBytes(),
+                    scanRecord.getTxPowerLevel(), scanRecord.getServiceUuids(), deviceProfile);
+
+            if (callbackType == ScanSettings.CALLBACK_TYPE_MATCH_LOST) {
+                subscriber.getKey().onDeviceLost(txRxScanResult);
+            }
+            else {
+                subscriber.getKey().onDeviceFound(txRxScanResult);
+            }
+        }
+    }
+
+    private void expireScanStarts(long now) {
+        while (!scanStartTimes.isEmpty() && now - scanStartTimes.peekFirst() >= SCAN_START_WINDOW) {
+            scanStartTimes.pollFirst();
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void restartScan() {
+        if (subscribers.isEmpty()) {
+            stopSystemScan();
+            return;
+        }
+
+        List<ScanFilter> filters = buildMergedFilters();
+
+        if (isScanning && filters.equals(activeFilters)) {
+            return;
+        }
+
+        long now = scheduler.now();
+        expireScanStarts(now);
+
+        if (scanStartTimes.size() >= MAX_SCAN_STARTS) {
+            long delay = scanStartTimes.peekFirst() + SCAN_START_WINDOW - now;
+
+            Log.i(TAG, "Scan start budget exhausted, restart postponed by " + delay + " ms");
+
+            // the current scan, if any, keeps running with the previous filters until then
+            scheduler.post(restartRunnable, delay);
+            return;
+        }
+
+        stopSystemScan();
+
+        Log.i(TAG, "Start shared scan for " + subscribers.size() + " subscribers");
+
+        scanStartTimes.offerLast(now);
+        activeFilters = filters;
+        isScanning = true;
+        metrics.onScanStarted();
+
+        bluetoothAdapter.getBluetoothLeScanner().startScan(filters, scanSettings.buildScanSettings(), scanCallback);
+    }
+
+    private void scheduleRestart() {
+        scheduler.remove(restartRunnable);
+        scheduler.post(restartRunnable, restartDelay);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void stopSystemScan() {
+        if (!isScanning) {
+            return;
+        }
+
+        Log.i(TAG, "Stop shared scan");
+
+        isScanning = false;
+        activeFilters = null;
+
+        bluetoothAdapter.getBluetoothLeScanner().stopScan(scanCallback);
+        metrics.onScanStopped();
+    }
+}
@@ -0,0 +1,212 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.bluetooth.le.ScanSettings;
+
+/**
+ * This is an utility class for managing the settings used by {@link TxRxScanner}: scan mode, callback type,
+ * controller-side batching and duty cycle.
+ * <p>
+ * A duty-cycled scan alternates bursts of scanning with idle windows, in which the radio is off. Since Android
+ * stops delivering results to apps starting more than 5 scans in 30 seconds, the duty cycle period (burst plus idle
+ * window) is never shorter than {@link #MIN_DUTY_CYCLE_PERIOD}: the bursts start at most 4 scans in 30 seconds,
+ * leaving room for a scan restarted by the application.
+ *
+ * @see TxRxScanner#setScanSettings(TxRxScanSettings)
+ */
+public class TxRxScanSettings {
+
+    /**
+     * Minimum duration of a duty cycle period, burst plus idle window, in milliseconds
+     */
+    public static final long MIN_DUTY_CYCLE_PERIOD = 7500;
+
+    /**
+     * Default value for the controller-side report delay of batched scan, in milliseconds
+     */
+    public static final long BATCH_REPORT_DELAY_DEFAULT_VALUE = 5000;
+
+    /**
+     * Default value for the burst duration of duty-cycled scan, in milliseconds
+     */
+    public static final long BURST_DURATION_DEFAULT_VALUE = 2000;
+
+    /**
+     * Default value for the idle window duration of duty-cycled scan, in milliseconds
+     */
+    public static final long IDLE_DURATION_DEFAULT_VALUE = 8000;
+
+    private static final TxRxScanSettings lowLatencySettings = new TxRxScanSettings(
+            ScanSettings.SCAN_MODE_LOW_LATENCY, ScanSettings.CALLBACK_TYPE_ALL_MATCHES, 0, 0, 0);
+
+    private static final TxRxScanSettings balancedSettings = new TxRxScanSettings(
+            ScanSettings.SCAN_MODE_BALANCED, ScanSettings.CALLBACK_TYPE_ALL_MATCHES, 0, 0, 0);
+
+    private static final TxRxScanSettings lowPowerSettings = new TxRxScanSettings(
+            ScanSettings.SCAN_MODE_LOW_POWER, ScanSettings.CALLBACK_TYPE_ALL_MATCHES, 0, 0, 0);
+
+    private final int scanMode;
+    private final int callbackType;
+    private final long reportDelay;
+    private final long burstDuration;
+    private final long idleDuration;
+
+    /**
+     * Create a new {@link TxRxScanSettings}.
+     *
+     * @param scanMode      int the scan mode, one of {@link ScanSettings#SCAN_MODE_LOW_POWER},
+     *                      {@link ScanSettings#SCAN_MODE_BALANCED} or {@link ScanSettings#SCAN_MODE_LOW_LATENCY}
+     * @param callbackType  int the callback type, {@link ScanSettings#CALLBACK_TYPE_ALL_MATCHES} or a combination of
+     *                      {@link ScanSettings#CALLBACK_TYPE_FIRST_MATCH} and
+     *                      {@link ScanSettings#CALLBACK_TYPE_MATCH_LOST}
+     * @param reportDelay   long the controller-side report delay in milliseconds, zero to deliver results
+     *                      immediately
+     * @param burstDuration long the scan burst duration in milliseconds, zero to scan continuously
+     * @param idleDuration  long the idle window duration in milliseconds, extended if needed to respect
+     *                      {@link #MIN_DUTY_CYCLE_PERIOD}
+     */
+    public TxRxScanSettings(int scanMode, int callbackType, long reportDelay, long burstDuration,
+                            long idleDuration) {
+        this.scanMode = scanMode;
+        this.callbackType = callbackType;
+        this.reportDelay = reportDelay;
+        this.burstDuration = burstDuration;
+        this.idleDuration = burstDuration > 0
+                ? Math.max(idleDuration, MIN_DUTY_CYCLE_PERIOD - burstDuration) : 0;
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} delivering results immediately, with the highest duty cycle. This is the
+     * default used by {@link TxRxScanner}.
+     *
+     * @return a TxRxScanSettings for low latency scan
+     */
+    public static TxRxScanSettings getLowLatencySettings() {
+        return lowLatencySettings;
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} balancing latency and power consumption.
+     *
+     * @return a TxRxScanSettings for balanced scan
+     */
+    public static TxRxScanSettings getBalancedSettings() {
+        return balancedSettings;
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} with the lowest power consumption, suited to background scan.
+     *
+     * @return a TxRxScanSettings for low power scan
+     */
+    public static TxRxScanSettings getLowPowerSettings() {
+        return lowPowerSettings;
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} batching results in the Bluetooth controller, delivered through a single
+     * wake-up every {@link #BATCH_REPORT_DELAY_DEFAULT_VALUE} milliseconds.
+     * <p>
+     * If the controller does not support batching, results are delivered immediately.
+     *
+     * @return a TxRxScanSettings for batched low power scan
+     */
+    public static TxRxScanSettings getBatchedSettings() {
+        return new TxRxScanSettings(ScanSettings.SCAN_MODE_LOW_POWER, ScanSettings.CALLBACK_TYPE_ALL_MATCHES,
+                BATCH_REPORT_DELAY_DEFAULT_VALUE, 0, 0);
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} reporting only the first advertisement of each device, and the loss of
+     * the device through {@link TxRxScanCallback#onDeviceLost(TxRxScanResult)}.
+     * <p>
+     * Presence scan is performed by the Bluetooth controller, and requires the scan to be filtered, e.g. through
+     * {@link TxRxScanner#startScan(TxRxScanPreset)}.
+     *
+     * @return a TxRxScanSettings for presence scan
+     */
+    public static TxRxScanSettings getPresenceSettings() {
+        return new TxRxScanSettings(ScanSettings.SCAN_MODE_LOW_POWER,
+                ScanSettings.CALLBACK_TYPE_FIRST_MATCH | ScanSettings.CALLBACK_TYPE_MATCH_LOST, 0, 0, 0);
+    }
+
+    /**
+     * Returns a {@link TxRxScanSettings} alternating low latency bursts of {@link #BURST_DURATION_DEFAULT_VALUE}
+     * milliseconds with idle windows of {@link #IDLE_DURATION_DEFAULT_VALUE} milliseconds.
+     *
+     * @return a TxRxScanSettings for duty-cycled scan
+     */
+    public static TxRxScanSettings getDutyCycledSettings() {
+        return new TxRxScanSettings(ScanSettings.SCAN_MODE_LOW_LATENCY, ScanSettings.CALLBACK_TYPE_ALL_MATCHES, 0,
+                BURST_DURATION_DEFAULT_VALUE, IDLE_DURATION_DEFAULT_VALUE);
+    }
+
+    /**
+     * Returns the scan burst duration of a duty-cycled scan.
+     *
+     * @return the burst duration in milliseconds, zero if the scan is continuous
+     */
+    public long getBurstDuration() {
+        return burstDuration;
+    }
+
+    /**
+     * Returns the callback type.
+     *
+     * @return the callback type, {@link ScanSettings#CALLBACK_TYPE_ALL_MATCHES} or a combination of
+     * {@link ScanSettings#CALLBACK_TYPE_FIRST_MATCH} and {@link ScanSettings#CALLBACK_TYPE_MATCH_LOST}
+     */
+    public int getCallbackType() {
+        return callbackType;
+    }
+
+    /**
+     * Returns the idle window duration of a duty-cycled scan.
+     *
+     * @return the idle window duration in milliseconds, zero if the scan is continuous
+     */
+    public long getIdleDuration() {
+        return idleDuration;
+    }
+
+    /**
+     * Returns the controller-side report delay.
+     *
+     * @return the report delay in milliseconds, zero if results are delivered immediately
+     */
+    public long getReportDelay() {
+        return reportDelay;
+    }
+
+    /**
+     * Returns the scan mode.
+     *
+     * @return the scan mode, one of {@link ScanSettings#SCAN_MODE_LOW_POWER},
+     * {@link ScanSettings#SCAN_MODE_BALANCED} or {@link ScanSettings#SCAN_MODE_LOW_LATENCY}
+     */
+    public int getScanMode() {
+        return scanMode;
+    }
+
+    /**
+     * Returns whether the scan alternates bursts with idle windows.
+     *
+     * @return true if the scan is duty-cycled, false otherwise.
+     */
+    public boolean isDutyCycled() {
+        return burstDuration > 0;
+    }
+
+    ScanSettings buildScanSettings() {
+        ScanSettings.Builder builder = new ScanSettings.Builder()
+                .setScanMode(scanMode)
+                .setCallbackType(callbackType)
+                .setReportDelay(reportDelay);
+
+        if (callbackType != ScanSettings.CALLBACK_TYPE_ALL_MATCHES) {
+            builder.setMatchMode(ScanSettings.MATCH_MODE_AGGRESSIVE)
+                    .setNumOfMatches(ScanSettings.MATCH_NUM_FEW_ADVERTISEMENT);
+        }
+
+        return builder.build();
+    }
+}
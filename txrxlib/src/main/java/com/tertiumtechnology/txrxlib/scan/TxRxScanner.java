@@ -12,6 +12,10 @@ import android.os.Looper;
 import android.os.ParcelUuid;
 import android.util.Log;
 
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxHandlerScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -25,6 +29,25 @@ import java.util.List;
  * @see TxRxScanCallback
  */
 public class TxRxScanner {
+
+    /**
+     * Scan results are delivered as {@link TxRxScanResult} through
+     * {@link TxRxScanCallback#onDeviceFound(TxRxScanResult)}
+     */
+    public static final int RESULT_TYPE_SCAN_RESULT = 0;
+
+    /**
+     * Scan results are delivered as a new {@link TxRxAdvertisement} through
+     * {@link TxRxScanCallback#onAdvertisement(TxRxAdvertisement)}
+     */
+    public static final int RESULT_TYPE_ADVERTISEMENT = 1;
+
+    /**
+     * Scan results are delivered through {@link TxRxScanCallback#onAdvertisement(TxRxAdvertisement)}, reusing the
+     * same {@link TxRxAdvertisement} instance for every result
+     */
+    public static final int RESULT_TYPE_ADVERTISEMENT_REUSED = 2;
+
     private static final String TAG = TxRxScanner.class.getSimpleName();
 
     private static final long DEFAULT_SCAN_TIMEOUT = 10000;
@@ -32,10 +55,20 @@ public class TxRxScanner {
     private final BluetoothAdapter bluetoothAdapter;
     private final TxRxScanCallback txRxScanCallback;
 
-    private final Handler handler;
+    private final TxRxScheduler scheduler;
     private final ScanCallback scanCallback;
     private boolean isScanning;
     private long scanTimeout;
+    private TxRxDeviceTable deviceTable;
+    private int resultType;
+    private final TxRxAdvertisement reusedAdvertisement;
+    private TxRxScanPreset scanPreset;
+    private TxRxScanSettings scanSettings;
+    private List<ScanFilter> scanFilters;
+    private final TxRxScanMetrics metrics;
+    private final Runnable burstStartRunnable;
+    private final Runnable burstEndRunnable;
+    private final Runnable scanTimeoutRunnable;
 
     /**
      * Create a new {@link TxRxScanner} to perform scan for BLE devices.
@@ -44,17 +77,50 @@ public class TxRxScanner {
      * @param txRxScanCallback {@link TxRxScanCallback} callback used to deliver scan results
      */
     public TxRxScanner(BluetoothAdapter bluetoothAdapter, final TxRxScanCallback txRxScanCallback) {
+        this(bluetoothAdapter, txRxScanCallback, new TxRxHandlerScheduler(new Handler(Looper.myLooper())));
+    }
+
+    /**
+     * Create a new {@link TxRxScanner} to perform scan for BLE devices, running its timeouts on the specified
+     * {@link TxRxScheduler}, e.g. a {@link com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler} to simulate long
+     * scenarios in virtual time.
+     *
+     * @param bluetoothAdapter {@link BluetoothAdapter} used to perform BLE task
+     * @param txRxScanCallback {@link TxRxScanCallback} callback used to deliver scan results
+     * @param scheduler        {@link TxRxScheduler} running the scan timeouts and bursts
+     */
+    public TxRxScanner(BluetoothAdapter bluetoothAdapter, final TxRxScanCallback txRxScanCallback,
+                       TxRxScheduler scheduler) {
         this.bluetoothAdapter = bluetoothAdapter;
         this.txRxScanCallback = txRxScanCallback;
-        this.handler = new Handler(Looper.myLooper());
+        this.scheduler = scheduler;
         isScanning = false;
         scanTimeout = DEFAULT_SCAN_TIMEOUT;
+        resultType = RESULT_TYPE_SCAN_RESULT;
+        reusedAdvertisement = new TxRxAdvertisement();
+        scanSettings = TxRxScanSettings.getLowLatencySettings();
+        metrics = new TxRxScanMetrics(scheduler);
+
+        burstStartRunnable = this::startBurst;
+        burstEndRunnable = () -> {
+            stopLeScan();
+            scheduler.post(burstStartRunnable, scanSettings.getIdleDuration());
+        };
+        scanTimeoutRunnable = () -> {
+            Log.i(TAG, "Stop scanning after " + (scanTimeout / 1000) + " seconds");
+
+            if (isScanning()) {
+                stopScan();
+            }
+        };
 
         scanCallback = new ScanCallback() {
             @Override
             public void onBatchScanResults(List<ScanResult> results) {
+                metrics.onBatchResults(results.size());
+
                 for (ScanResult scanResult : results) {
-                    txRxScanCallback.onDeviceFound(getTxRxScanResult(scanResult));
+                    handleScanResult(ScanSettings.CALLBACK_TYPE_ALL_MATCHES, scanResult);
                 }
             }
 
@@ -65,29 +131,166 @@ public class TxRxScanner {
 
             @Override
             public void onScanResult(int callbackType, ScanResult scanResult) {
-                txRxScanCallback.onDeviceFound(getTxRxScanResult(scanResult));
+                if (callbackType == ScanSettings.CALLBACK_TYPE_MATCH_LOST) {
+                    metrics.onDeviceLost();
+                }
+                else {
+                    metrics.onResult();
+                }
+
+                handleScanResult(callbackType, scanResult);
             }
 
-            private TxRxScanResult getTxRxScanResult(ScanResult scanResult) {
+            private TxRxScanResult getTxRxScanResult(ScanResult scanResult, TxRxDeviceProfile deviceProfile) {
                 ScanRecord scanRecord = scanResult.getScanRecord();
 
-                byte[] scanRecordByte = new byte[0];
-                int txPowerLevel = Integer.MIN_VALUE;
-                List<ParcelUuid> serviceUuids = new ArrayList<>();
-
-                if (scanRecord != null) {
-                    txPowerLevel = scanRecord.getTxPowerLevel();
-                    scanRecordByte = scanRecord.getBytes();
-                    serviceUuids = scanRecord.getServiceUuids();
+                if (scanRecord == null) {
+                    return new TxRxScanResult(scanResult.getDevice(), scanResult.getRssi(), new byte[0]);
                 }
 
                 return new TxRxScanResult(scanResult.getDevice(), scanResult.getRssi(),
-                        scanRecordByte,
-                        txPowerLevel, serviceUuids);
+                        scanRecord.getBytes(),
+                        scanRecord.getTxPowerLevel(), scanRecord.getServiceUuids(), deviceProfile);
             }
+
+            private void handleScanResult(int callbackType, ScanResult scanResult) {
+                if (callbackType == ScanSettings.CALLBACK_TYPE_MATCH_LOST) {
+                    TxRxDeviceProfile deviceProfile = null;
+
+                    if (scanPreset != null) {
+                        deviceProfile = scanPreset.matchProfile(scanResult.getDevice().getAddress(),
+                                scanResult.getScanRecord());
+
+                        if (deviceProfile == null) {
+                            return;
+                        }
+                    }
+
+                    txRxScanCallback.onDeviceLost(getTxRxScanResult(scanResult, deviceProfile));
+                }
+                else if (resultType == RESULT_TYPE_SCAN_RESULT || deviceTable != null) {
+                    TxRxDeviceProfile deviceProfile = null;
+
+                    if (scanPreset != null) {
+                        deviceProfile = scanPreset.matchProfile(scanResult.getDevice().getAddress(),
+                                scanResult.getScanRecord());
+
+                        if (deviceProfile == null) {
+                            return;
+                        }
+                    }
+
+                    if (deviceTable != null) {
+                        deviceTable.onScanResult(scanResult, deviceProfile);
+                    }
+                    else {
+                        txRxScanCallback.onDeviceFound(getTxRxScanResult(scanResult, deviceProfile));
+                    }
+                }
+                else {
+                    ScanRecord scanRecord = scanResult.getScanRecord();
+                    // ScanRecord.getBytes() returns the raw record, without copying it
+                    byte[] scanRecordBytes = scanRecord != null ? scanRecord.getBytes() : null;
+
+                    TxRxAdvertisement advertisement = resultType == RESULT_TYPE_ADVERTISEMENT_REUSED
+                            ? reusedAdvertisement : new TxRxAdvertisement();
+                    advertisement.set(scanResult.getDevice(), scanResult.getRssi(), scanRecordBytes,
+                            scanResult.getTimestampNanos());
+
+                    if (scanPreset != null) {
+                        TxRxDeviceProfile deviceProfile = scanPreset.matchProfile(advertisement);
+
+                        if (deviceProfile == null) {
+                            return;
+                        }
+                        advertisement.setDeviceProfile(deviceProfile);
+                    }
+
+                    txRxScanCallback.onAdvertisement(advertisement);
+                }
+            }
+
         };
     }
 
+    /**
+     * Returns the {@link TxRxDeviceTable} receiving the scan results, if any.
+     *
+     * @return the current device table, or null if scan results are delivered to {@link TxRxScanCallback}
+     */
+    public TxRxDeviceTable getDeviceTable() {
+        return deviceTable;
+    }
+
+    /**
+     * Returns the {@link TxRxScanMetrics} collected by this {@link TxRxScanner}. The returned instance is updated
+     * live.
+     *
+     * @return the scan metrics of this scanner
+     */
+    public TxRxScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set a {@link TxRxDeviceTable} receiving the scan results. While a device table is set, results are
+     * deduplicated by the table and delivered through its {@link TxRxDeviceTableCallback}, instead of through
+     * {@link TxRxScanCallback#onDeviceFound(TxRxScanResult)}.
+     * <p>
+     * The device table must be set before starting the scan.
+     *
+     * @param deviceTable the {@link TxRxDeviceTable} receiving the scan results, null to deliver them to
+     *                    {@link TxRxScanCallback}
+     */
+    public void setDeviceTable(TxRxDeviceTable deviceTable) {
+        this.deviceTable = deviceTable;
+    }
+
+    /**
+     * Returns the type of the delivered scan results.
+     *
+     * @return the result type, one of {@link #RESULT_TYPE_SCAN_RESULT}, {@link #RESULT_TYPE_ADVERTISEMENT} or
+     * {@link #RESULT_TYPE_ADVERTISEMENT_REUSED}
+     */
+    public int getResultType() {
+        return resultType;
+    }
+
+    /**
+     * Set the type of the delivered scan results.
+     * <p>
+     * {@link #RESULT_TYPE_ADVERTISEMENT} and {@link #RESULT_TYPE_ADVERTISEMENT_REUSED} deliver a
+     * {@link TxRxAdvertisement}, which parses the advertising data only on demand; the latter allocates nothing per
+     * scan result, but the advertisement is only valid during the callback.
+     *
+     * @param resultType the result type, one of {@link #RESULT_TYPE_SCAN_RESULT},
+     *                   {@link #RESULT_TYPE_ADVERTISEMENT} or {@link #RESULT_TYPE_ADVERTISEMENT_REUSED}
+     */
+    public void setResultType(int resultType) {
+        this.resultType = resultType;
+    }
+
+    /**
+     * Returns the {@link TxRxScanSettings} used by the next scan.
+     *
+     * @return the current scan settings
+     */
+    public TxRxScanSettings getScanSettings() {
+        return scanSettings;
+    }
+
+    /**
+     * Set the {@link TxRxScanSettings} used by the next scan. By default, scan is performed with
+     * {@link TxRxScanSettings#getLowLatencySettings()}.
+     * <p>
+     * The scan settings must be set before starting the scan.
+     *
+     * @param scanSettings the {@link TxRxScanSettings} used by the next scan
+     */
+    public void setScanSettings(TxRxScanSettings scanSettings) {
+        this.scanSettings = scanSettings;
+    }
+
     /**
      * Retrieve the current scan timeout value, in milliseconds. Zero returns implies an infinite timeout
      *
@@ -128,7 +331,7 @@ public class TxRxScanner {
      * ACCESS_FINE_LOCATION} permission in order to get results.
      */
     public void startScan() {
-        startScan(null);
+        startScan((List<String>) null);
     }
 
     /**
@@ -146,22 +349,7 @@ public class TxRxScanner {
      *
      * @param serviceUuids the service uuids to look for during scan
      */
-    @SuppressLint("MissingPermission")
     public void startScan(List<String> serviceUuids) {
-        Log.i(TAG, "Start scan for device");
-
-        isScanning = true;
-
-        if (scanTimeout > 0) {
-            handler.postDelayed(() -> {
-                Log.i(TAG, "Stop scanning after " + (scanTimeout / 1000) + " seconds");
-
-                if (isScanning()) {
-                    stopScan();
-                }
-            }, scanTimeout);
-        }
-
         ArrayList<ScanFilter> filters = new ArrayList<>();
 
         if (serviceUuids != null && !serviceUuids.isEmpty()) {
@@ -173,10 +361,29 @@ public class TxRxScanner {
             }
         }
 
-        ScanSettings settings = new ScanSettings.Builder().setScanMode(
-                ScanSettings.SCAN_MODE_LOW_LATENCY).build();
+        scanPreset = null;
+        startLeScan(filters);
+    }
 
-        bluetoothAdapter.getBluetoothLeScanner().startScan(filters, settings, scanCallback);
+    /**
+     * Start BLE scan, looking for the TxRx devices described by the preset passed as parameter. Filtering is
+     * performed by the Bluetooth controller, and the scan results will be delivered through
+     * {@link TxRxScanCallback#onDeviceFound(TxRxScanResult)} with the matched profile, see
+     * {@link TxRxScanResult#getDeviceProfile()}.
+     * <p>
+     * Requires {@link android.Manifest.permission#BLUETOOTH_ADMIN} permission.<br/>
+     * An app running on Android S or later requires {@link android.Manifest.permission#BLUETOOTH_SCAN} permission.
+     * <p>
+     * An app must have {@link android.Manifest.permission#ACCESS_COARSE_LOCATION ACCESS_COARSE_LOCATION} permission
+     * in order to get results.
+     * An App targeting Android Q or later must have {@link android.Manifest.permission#ACCESS_FINE_LOCATION
+     * ACCESS_FINE_LOCATION} permission in order to get results.
+     *
+     * @param scanPreset the {@link TxRxScanPreset} describing the devices to look for during scan
+     */
+    public void startScan(TxRxScanPreset scanPreset) {
+        this.scanPreset = scanPreset;
+        startLeScan(scanPreset.buildScanFilters());
     }
 
     /**
@@ -190,10 +397,59 @@ public class TxRxScanner {
         Log.i(TAG, "Stop scan");
 
         isScanning = false;
-        handler.removeCallbacksAndMessages(null);
+        scheduler.remove(scanTimeoutRunnable);
+        scheduler.remove(burstStartRunnable);
+        scheduler.remove(burstEndRunnable);
 
-        bluetoothAdapter.getBluetoothLeScanner().stopScan(scanCallback);
+        stopLeScan();
+
+        if (deviceTable != null) {
+            deviceTable.stop();
+        }
 
         txRxScanCallback.afterStopScan();
     }
+
+    @SuppressLint("MissingPermission")
+    private void startBurst() {
+        metrics.onScanStarted();
+
+        bluetoothAdapter.getBluetoothLeScanner().startScan(scanFilters, scanSettings.buildScanSettings(),
+                scanCallback);
+
+        if (scanSettings.isDutyCycled()) {
+            scheduler.post(burstEndRunnable, scanSettings.getBurstDuration());
+        }
+    }
+
+    @SuppressLint("MissingPermission")
+    private void startLeScan(List<ScanFilter> filters) {
+        Log.i(TAG, "Start scan for device");
+
+        isScanning = true;
+
+        if (scanTimeout > 0) {
+            scheduler.post(scanTimeoutRunnable, scanTimeout);
+        }
+
+        scanFilters = filters;
+
+        if (deviceTable != null) {
+            deviceTable.start();
+        }
+
+        startBurst();
+    }
+
+    @SuppressLint("MissingPermission")
+    private void stopLeScan() {
+        if (scanSettings.getReportDelay() > 0) {
+            // deliver the results batched by the controller before stopping
+            bluetoothAdapter.getBluetoothLeScanner().flushPendingScanResults(scanCallback);
+        }
+
+        bluetoothAdapter.getBluetoothLeScanner().stopScan(scanCallback);
+
+        metrics.onScanStopped();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,163 @@
+package com.tertiumtechnology.txrxlib.scan;
+
+import android.bluetooth.BluetoothDevice;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+
+/**
+ * This class represents a device tracked by a {@link TxRxDeviceTable}, updated in place on each advertisement
+ * received from the device.
+ */
+public class TxRxTrackedDevice {
+
+    private final BluetoothDevice bluetoothDevice;
+    private final String address;
+    private final TxRxRssiFilter rssiFilter;
+    private final long firstSeenTime;
+
+    private int rssi;
+    private double smoothedRssi;
+    private double reportedRssi;
+    private int txPower;
+    private byte[] scanRecord;
+    private TxRxDeviceProfile deviceProfile;
+    private long lastSeenTime;
+    private long advertisementCount;
+    private boolean reported;
+
+    TxRxTrackedDevice(BluetoothDevice bluetoothDevice, String address, TxRxRssiFilter rssiFilter,
+                      long firstSeenTime) {
+        this.bluetoothDevice = bluetoothDevice;
+        this.address = address;
+        this.rssiFilter = rssiFilter;
+        this.firstSeenTime = firstSeenTime;
+    }
+
+    /**
+     * Returns the device Bluetooth address.
+     *
+     * @return the device Bluetooth address as a string
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Returns the number of advertisements received from the device.
+     *
+     * @return the number of advertisements received
+     */
+    public long getAdvertisementCount() {
+        return advertisementCount;
+    }
+
+    /**
+     * Returns the remote LE device.
+     *
+     * @return the remote LE device identified.
+     */
+    public BluetoothDevice getBluetoothDevice() {
+        return bluetoothDevice;
+    }
+
+    /**
+     * Returns the {@link TxRxDeviceProfile} matched by the advertisements of the device, when the scan was started
+     * with a {@link TxRxScanPreset}.
+     *
+     * @return the matched device profile, or null if unknown
+     * @see #toScanResult()
+     */
+    public TxRxDeviceProfile getDeviceProfile() {
+        return deviceProfile;
+    }
+
+    /**
+     * Returns the time the device was first seen, in milliseconds since boot.
+     *
+     * @return the time of the first advertisement received
+     */
+    public long getFirstSeenTime() {
+        return firstSeenTime;
+    }
+
+    /**
+     * Returns the time the device was last seen, in milliseconds since boot.
+     *
+     * @return the time of the last advertisement received
+     */
+    public long getLastSeenTime() {
+        return lastSeenTime;
+    }
+
+    /**
+     * Returns the received signal strength in dBm of the last advertisement. The valid range is [-127, 126].
+     *
+     * @return the received signal strength of the last advertisement
+     */
+    public int getRssi() {
+        return rssi;
+    }
+
+    /**
+     * Returns the content of the last scan record offered by the remote device.
+     *
+     * @return the content of the last scan record
+     */
+    public byte[] getScanRecord() {
+        return scanRecord;
+    }
+
+    /**
+     * Returns the received signal strength in dBm, smoothed by the table {@link TxRxRssiFilter}.
+     *
+     * @return the smoothed received signal strength
+     */
+    public double getSmoothedRssi() {
+        return smoothedRssi;
+    }
+
+    /**
+     * Returns the transmit power in dBm of the last advertisement. A value of {@link Integer#MIN_VALUE} indicates
+     * that the TX power is not present.
+     *
+     * @return the transmit power in dBm for the remote device.
+     */
+    public int getTxPower() {
+        return txPower;
+    }
+
+    /**
+     * Returns a {@link TxRxScanResult} of the last advertisement of the device, carrying its matched
+     * {@link TxRxDeviceProfile}, to be passed to
+     * {@link com.tertiumtechnology.txrxlib.rw.TxRxDeviceManager#connect(TxRxScanResult, android.content.Context)} so
+     * that the search of the profile is skipped during service discovery.
+     *
+     * @return the scan result of the device
+     */
+    public TxRxScanResult toScanResult() {
+        return new TxRxScanResult(bluetoothDevice, rssi, scanRecord, txPower, null, deviceProfile);
+    }
+
+    double getReportedRssi() {
+        return reportedRssi;
+    }
+
+    boolean isReported() {
+        return reported;
+    }
+
+    void markReported() {
+        reported = true;
+        reportedRssi = smoothedRssi;
+    }
+
+    void update(int rssi, int txPower, byte[] scanRecord, TxRxDeviceProfile deviceProfile, long timestamp) {
+        this.rssi = rssi;
+        this.txPower = txPower;
+        this.scanRecord = scanRecord;
+        this.deviceProfile = deviceProfile;
+        this.lastSeenTime = timestamp;
+        this.smoothedRssi = rssiFilter.update(rssi, timestamp);
+        this.advertisementCount++;
+    }
+}
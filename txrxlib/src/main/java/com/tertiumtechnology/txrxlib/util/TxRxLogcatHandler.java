@@ -0,0 +1,79 @@
+package com.tertiumtechnology.txrxlib.util;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * This class forwards the log of the TxRx protocol engine to logcat.
+ * <p>
+ * The engine logs through {@link java.util.logging}, whose FINE records, e.g. the values written and notified, are
+ * dropped on Android by default. The handler is installed at FINE level by {@code TxRxDeviceManager}, so that they
+ * are shown in logcat at info level, tagged with the name of the logging class, as before the engine was split from
+ * the manager. An application can call {@link #install(Level)} again, e.g. with {@link Level#INFO} to skip the log
+ * of every value on a busy link.
+ */
+public class TxRxLogcatHandler extends Handler {
+
+    private static final String[] LOGGER_NAMES = {"TxRxSession", "InitScriptRunner", "TxRxTraceRecorder"};
+
+    // kept referenced, so that the level and the handler are not lost with the loggers
+    private static final List<Logger> loggers = new ArrayList<>();
+
+    /**
+     * Forward the records of the TxRx protocol engine to logcat, from the specified level on, in place of the
+     * default handlers.
+     *
+     * @param level the minimum level of the forwarded records, e.g. {@link Level#FINE} to debug the communication
+     *              with a device
+     */
+    public static synchronized void install(Level level) {
+        if (loggers.isEmpty()) {
+            TxRxLogcatHandler handler = new TxRxLogcatHandler();
+
+            for (String name : LOGGER_NAMES) {
+                Logger logger = Logger.getLogger(name);
+                logger.addHandler(handler);
+                logger.setUseParentHandlers(false);
+                loggers.add(logger);
+            }
+        }
+
+        for (Logger logger : loggers) {
+            logger.setLevel(level);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        String tag = record.getLoggerName();
+        String message = record.getMessage();
+        int level = record.getLevel().intValue();
+
+        if (level >= Level.SEVERE.intValue()) {
+            Log.e(tag, message, record.getThrown());
+        }
+        else if (level >= Level.WARNING.intValue()) {
+            Log.w(tag, message, record.getThrown());
+        }
+        else if (level >= Level.FINE.intValue()) {
+            Log.i(tag, message, record.getThrown());
+        }
+        else {
+            Log.d(tag, message, record.getThrown());
+        }
+    }
+}
@@ -16,13 +16,19 @@ public class TxRxPreferences {
     static final String PREF_LATER_READ_TIMEOUT = "com.tertiumtechnology.txrxlib.PREF_LATER_READ_TIMEOUT";
     static final String PREF_WRITE_TIMEOUT = "com.tertiumtechnology.txrxlib.PREF_WRITE_TIMEOUT";
 
+    private static TxRxTimeouts cachedTimeouts;
+
     /**
-     * Retrieve current {@link TxRxTimeouts} preferences
+     * Retrieve current {@link TxRxTimeouts} preferences. The preferences are read once, and then kept in memory.
      *
      * @param context The {@link Context} needed to retrieve {@link TxRxTimeouts}
      * @return current {@link TxRxTimeouts} preferences
      */
-    public static TxRxTimeouts getTimeouts(Context context) {
+    public static synchronized TxRxTimeouts getTimeouts(Context context) {
+        if (cachedTimeouts != null) {
+            return cachedTimeouts;
+        }
+
         SharedPreferences sharedPreferences = context.getSharedPreferences(context.getString(R.string
                 .txrx_prefs_name), Context.MODE_PRIVATE);
         long connectionTimeout = sharedPreferences.getLong(PREF_CONNECTION_TIMEOUT, TxRxTimeouts
@@ -33,7 +39,9 @@ public class TxRxPreferences {
         long laterReadTimeout = sharedPreferences.getLong(PREF_LATER_READ_TIMEOUT, TxRxTimeouts
                 .LATER_READ_TIMEOUT_DEFAULT_VALUE);
 
-        return new TxRxTimeouts(connectionTimeout, writeTimeout, firstReadTimeout, laterReadTimeout);
+        cachedTimeouts = new TxRxTimeouts(connectionTimeout, writeTimeout, firstReadTimeout, laterReadTimeout);
+
+        return cachedTimeouts;
     }
 
     /**
@@ -41,7 +49,7 @@ public class TxRxPreferences {
      *
      * @param context The {@link Context} needed to save {@link TxRxTimeouts}
      */
-    public static void saveTimeouts(Context context, TxRxTimeouts txRxTimeouts) {
+    public static synchronized void saveTimeouts(Context context, TxRxTimeouts txRxTimeouts) {
         SharedPreferences sharedPreferences = context.getSharedPreferences(context.getString(R.string
                 .txrx_prefs_name), Context.MODE_PRIVATE);
         SharedPreferences.Editor editor = sharedPreferences.edit();
@@ -50,5 +58,7 @@ public class TxRxPreferences {
         editor.putLong(PREF_FIRST_READ_TIMEOUT, txRxTimeouts.getFirstReadTimeout());
         editor.putLong(PREF_LATER_READ_TIMEOUT, txRxTimeouts.getLaterReadTimeout());
         editor.apply();
+
+        cachedTimeouts = txRxTimeouts;
     }
 }
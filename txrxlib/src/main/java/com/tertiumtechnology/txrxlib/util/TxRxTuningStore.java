@@ -0,0 +1,268 @@
+package com.tertiumtechnology.txrxlib.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.tertiumtechnology.txrxlib.R;
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxHandlerScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxTimeouts;
+import com.tertiumtechnology.txrxlib.rw.TxRxTuning;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class stores the {@link TxRxTuning} of devices, keyed by device address, and of device families, keyed by
+ * {@link TxRxDeviceProfile}, so that e.g. a 20 bytes Ackme module and a 240 bytes Tertium reader are driven with
+ * their own timeouts and chunk sizes.
+ * <p>
+ * Tunings are read from the TxRx preferences once, on first use, and then served from memory. Updates, e.g. values
+ * learned at runtime, are applied in memory at once and written back to the preferences after
+ * {@link #WRITE_BEHIND_DELAY}, so that frequent updates cost a single write; {@link #flush()} writes them at once.
+ * <p>
+ * Set the store on a {@code TxRxDeviceManager} through
+ * {@link com.tertiumtechnology.txrxlib.rw.TxRxDeviceManager#setTuningStore(TxRxTuningStore)} to apply the tuning
+ * of a device at each connection.
+ */
+public class TxRxTuningStore {
+
+    /**
+     * Delay in milliseconds after which updated tunings are written to the preferences
+     */
+    public static final long WRITE_BEHIND_DELAY = 1000;
+
+    static final String PREF_DEVICE_TUNING = "com.tertiumtechnology.txrxlib.PREF_DEVICE_TUNING.";
+    static final String PREF_PROFILE_TUNING = "com.tertiumtechnology.txrxlib.PREF_PROFILE_TUNING.";
+
+    private static final String TAG = TxRxTuningStore.class.getSimpleName();
+
+    private static final String SEPARATOR = ";";
+
+    private final SharedPreferences sharedPreferences;
+    private final TxRxScheduler scheduler;
+    private final Runnable flushRunnable;
+    private final Map<String, TxRxTuning> tunings;
+    private final Map<String, TxRxTuning> pendingTunings;
+    private boolean isLoaded;
+
+    /**
+     * Create a new {@link TxRxTuningStore}, writing the updated tunings on the main thread.
+     *
+     * @param context The {@link Context} needed to read and write the preferences
+     */
+    public TxRxTuningStore(Context context) {
+        this(context, new TxRxHandlerScheduler(new Handler(Looper.getMainLooper())));
+    }
+
+    /**
+     * Create a new {@link TxRxTuningStore}, writing the updated tunings on the specified {@link TxRxScheduler}.
+     *
+     * @param context   The {@link Context} needed to read and write the preferences
+     * @param scheduler {@link TxRxScheduler} running the deferred writes
+     */
+    public TxRxTuningStore(Context context, TxRxScheduler scheduler) {
+        this.sharedPreferences = context.getSharedPreferences(context.getString(R.string.txrx_prefs_name),
+                Context.MODE_PRIVATE);
+        this.scheduler = scheduler;
+        this.flushRunnable = this::flush;
+        this.tunings = new HashMap<>();
+        this.pendingTunings = new HashMap<>();
+    }
+
+    /**
+     * Write the pending updates to the preferences at once, e.g. before the application is stopped.
+     */
+    public synchronized void flush() {
+        scheduler.remove(flushRunnable);
+
+        if (pendingTunings.isEmpty()) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+
+        for (Map.Entry<String, TxRxTuning> entry : pendingTunings.entrySet()) {
+            if (entry.getValue() != null) {
+                editor.putString(entry.getKey(), encode(entry.getValue()));
+            }
+            else {
+                editor.remove(entry.getKey());
+            }
+        }
+
+        pendingTunings.clear();
+
+        // the preferences are written to disk in background
+        editor.apply();
+    }
+
+    /**
+     * Returns the {@link TxRxTuning} of the specified device.
+     *
+     * @param address The device Bluetooth address as a string
+     * @return the tuning of the device, or null if the device is not tuned
+     */
+    public synchronized TxRxTuning getDeviceTuning(String address) {
+        return getTuning(deviceKey(address));
+    }
+
+    /**
+     * Returns the {@link TxRxTuning} of the devices of the specified {@link TxRxDeviceProfile}.
+     *
+     * @param profile the {@link TxRxDeviceProfile} of the devices
+     * @return the tuning of the profile, or null if the profile is not tuned
+     */
+    public synchronized TxRxTuning getProfileTuning(TxRxDeviceProfile profile) {
+        return getTuning(profileKey(profile));
+    }
+
+    /**
+     * Returns the {@link TxRxTuning} applied to the specified device: its own tuning, completed by the tuning of
+     * its profile.
+     *
+     * @param address The device Bluetooth address as a string
+     * @param profile the {@link TxRxDeviceProfile} of the device, null if not known yet
+     * @return the tuning of the device, or null if neither the device nor its profile are tuned
+     */
+    public synchronized TxRxTuning getTuning(String address, TxRxDeviceProfile profile) {
+        TxRxTuning deviceTuning = address != null ? getTuning(deviceKey(address)) : null;
+        TxRxTuning profileTuning = profile != null ? getTuning(profileKey(profile)) : null;
+
+        if (deviceTuning == null) {
+            return profileTuning;
+        }
+
+        return deviceTuning.withDefaults(profileTuning);
+    }
+
+    /**
+     * Set the {@link TxRxTuning} of the specified device, overriding the tuning of its profile. The tuning is
+     * applied from the next connection to the device.
+     *
+     * @param address The device Bluetooth address as a string
+     * @param tuning  the tuning of the device, null to remove it
+     */
+    public synchronized void setDeviceTuning(String address, TxRxTuning tuning) {
+        setTuning(deviceKey(address), tuning);
+    }
+
+    /**
+     * Set the {@link TxRxTuning} of the devices of the specified {@link TxRxDeviceProfile}. The tuning is applied
+     * from the next connection to a device of the profile.
+     *
+     * @param profile the {@link TxRxDeviceProfile} of the devices
+     * @param tuning  the tuning of the profile, null to remove it
+     */
+    public synchronized void setProfileTuning(TxRxDeviceProfile profile, TxRxTuning tuning) {
+        setTuning(profileKey(profile), tuning);
+    }
+
+    private static TxRxTuning decode(String value) {
+        String[] fields = value.split(SEPARATOR, -1);
+
+        if (fields.length != 9) {
+            throw new IllegalArgumentException("Invalid tuning: " + value);
+        }
+
+        TxRxTimeouts timeouts = null;
+
+        if (!fields[0].isEmpty()) {
+            timeouts = new TxRxTimeouts(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+        }
+
+        return new TxRxTuning(timeouts, Integer.parseInt(fields[4]), Integer.parseInt(fields[5]),
+                Integer.parseInt(fields[6]), decodeTerminator(fields[7]), decodeTerminator(fields[8]));
+    }
+
+    private static TxRxDeviceProfile.TerminatorType decodeTerminator(String value) {
+        return value.isEmpty() ? null : TxRxDeviceProfile.TerminatorType.valueOf(value);
+    }
+
+    private static String deviceKey(String address) {
+        return PREF_DEVICE_TUNING + address.toUpperCase(Locale.US);
+    }
+
+    private static String encode(TxRxTuning tuning) {
+        StringBuilder builder = new StringBuilder();
+        TxRxTimeouts timeouts = tuning.getTimeouts();
+
+        if (timeouts != null) {
+            builder.append(timeouts.getConnectTimeout()).append(SEPARATOR)
+                    .append(timeouts.getWriteTimeout()).append(SEPARATOR)
+                    .append(timeouts.getFirstReadTimeout()).append(SEPARATOR)
+                    .append(timeouts.getLaterReadTimeout()).append(SEPARATOR);
+        }
+        else {
+            builder.append(SEPARATOR).append(SEPARATOR).append(SEPARATOR).append(SEPARATOR);
+        }
+
+        builder.append(tuning.getChunkSize()).append(SEPARATOR)
+                .append(tuning.getWriteType()).append(SEPARATOR)
+                .append(tuning.getConnectionPriority()).append(SEPARATOR)
+                .append(encodeTerminator(tuning.getRxTerminatorType())).append(SEPARATOR)
+                .append(encodeTerminator(tuning.getTxTerminatorType()));
+
+        return builder.toString();
+    }
+
+    private static String encodeTerminator(TxRxDeviceProfile.TerminatorType terminatorType) {
+        return terminatorType != null ? terminatorType.name() : "";
+    }
+
+    private static String profileKey(TxRxDeviceProfile profile) {
+        return PREF_PROFILE_TUNING + profile.getTxRxServiceUuid().toLowerCase(Locale.US);
+    }
+
+    private TxRxTuning getTuning(String key) {
+        load();
+
+        return tunings.get(key);
+    }
+
+    private void load() {
+        if (isLoaded) {
+            return;
+        }
+
+        for (Map.Entry<String, ?> entry : sharedPreferences.getAll().entrySet()) {
+            String key = entry.getKey();
+
+            if (!key.startsWith(PREF_DEVICE_TUNING) && !key.startsWith(PREF_PROFILE_TUNING)) {
+                continue;
+            }
+
+            try {
+                tunings.put(key, decode((String) entry.getValue()));
+            }
+            catch (RuntimeException e) {
+                Log.w(TAG, "Ignoring invalid tuning " + key, e);
+            }
+        }
+
+        isLoaded = true;
+    }
+
+    private void setTuning(String key, TxRxTuning tuning) {
+        load();
+
+        if (tuning != null) {
+            tunings.put(key, tuning);
+        }
+        else {
+            tunings.remove(key);
+        }
+
+        if (pendingTunings.isEmpty()) {
+            scheduler.post(flushRunnable, WRITE_BEHIND_DELAY);
+        }
+
+        pendingTunings.put(key, tuning);
+    }
+}
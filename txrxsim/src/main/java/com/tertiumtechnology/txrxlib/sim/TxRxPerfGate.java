@@ -0,0 +1,673 @@
+package com.tertiumtechnology.txrxlib.sim;
+
+import com.tertiumtechnology.txrxlib.frame.PacketFrameDecoder;
+import com.tertiumtechnology.txrxlib.frame.SlipFrameDecoder;
+import com.tertiumtechnology.txrxlib.rw.TxRxBulkTransfer;
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxRetryPolicy;
+import com.tertiumtechnology.txrxlib.rw.TxRxSession;
+import com.tertiumtechnology.txrxlib.rw.TxRxSessionCallback;
+import com.tertiumtechnology.txrxlib.rw.TxRxTimeouts;
+import com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class runs a fixed set of performance scenarios on a {@link TxRxSession} over a {@link TxRxSimulatedDevice},
+ * and checks them against a baseline file, failing when a change regresses beyond the tolerance of the baseline:
+ * <ul>
+ * <li>{@code command}: 240-byte commands, each answered by a 240-byte response frame, on 20-byte packets</li>
+ * <li>{@code bulk}: 64 KB bulk transfers on 244-byte packets</li>
+ * <li>{@code stream}: a 10-minute stream of notified frames, 50 per second</li>
+ * <li>{@code reconnect}: commands interrupted by a disconnection, resumed after the reconnection</li>
+ * <li>{@code event}: events dispatched by the event lane, 10 per second, under a saturated notify stream of one
+ * notification per millisecond</li>
+ * <li>{@code phy1m}, {@code phy2m}, {@code phycoded}: the bulk transfers on a link modeling the airtime of each
+ * packet in the connection events of the 1M, 2M and Coded PHY, comparing their effective throughput</li>
+ * </ul>
+ * Every scenario runs on a {@link TxRxVirtualScheduler}, with a seeded link latency, so that its throughput and
+ * latency only change with the behavior of the session, whatever the machine running the build. For each scenario
+ * the gate checks the throughput in bytes per second, the 99th percentile of the latency of an operation in
+ * milliseconds and the bytes allocated per operation, the latter measured on the JVMs supporting it.
+ * <p>
+ * Usage: {@code TxRxPerfGate baseline-file library-version [--update]}; with {@code --update} the measures are
+ * written as the new baseline, keeping its tolerances. The process exits with status 1 if a scenario regresses.
+ */
+public class TxRxPerfGate {
+
+    /**
+     * Version of the baseline file format
+     */
+    public static final int BASELINE_VERSION = 1;
+
+    private static final double DEFAULT_TOLERANCE = 0.10;
+    private static final double DEFAULT_ALLOCATION_TOLERANCE = 0.25;
+
+    // absolute slack, so that a baseline close to zero does not fail on noise
+    private static final double LATENCY_SLACK = 1;
+    private static final double ALLOCATION_SLACK = 256;
+
+    private static final long SEED = 42;
+    private static final long MIN_LATENCY = 8;
+    private static final long MAX_LATENCY = 15;
+
+    private static final byte SLIP_END = (byte) 0xC0;
+
+    private static final int COMMAND_SIZE = 240;
+    private static final int COMMAND_COUNT = 200;
+    private static final int BULK_SIZE = 64 * 1024;
+    private static final int BULK_COUNT = 8;
+    private static final long STREAM_DURATION = 10 * 60 * 1000;
+    private static final long STREAM_INTERVAL = 20;
+    private static final int RECONNECT_COUNT = 50;
+    private static final long DISCONNECTION_DELAY = 30;
+    private static final long RECONNECTION_DELAY = 200;
+    private static final long EVENT_DURATION = 60 * 1000;
+    private static final long EVENT_INTERVAL = 100;
+
+    private static final TxRxDeviceProfile COMMAND_PROFILE = new TxRxDeviceProfile("perf-service", "perf-rx",
+            "perf-tx", "perf-mode", "perf-event", TxRxDeviceProfile.TerminatorType.CR,
+            TxRxDeviceProfile.TerminatorType.NONE, 20, 20, SlipFrameDecoder.factory(512));
+
+    private static final TxRxDeviceProfile BULK_PROFILE = new TxRxDeviceProfile("perf-service", "perf-rx",
+            "perf-tx", "perf-mode", "perf-event", TxRxDeviceProfile.TerminatorType.CR,
+            TxRxDeviceProfile.TerminatorType.NONE, 244, 244, SlipFrameDecoder.factory(512));
+
+    private static final TxRxDeviceProfile EVENT_PROFILE = COMMAND_PROFILE.withEventFrameDecoderFactory(
+            PacketFrameDecoder.factory());
+
+    // kept referenced, so that the level is not lost with the logger
+    private static final Logger SESSION_LOGGER = Logger.getLogger(TxRxSession.class.getSimpleName());
+
+    private interface Scenario {
+        Measure run();
+    }
+
+    private interface FrameHandler {
+        void onFrame(byte[] buffer, int offset, int length);
+    }
+
+    private static final class Measure {
+
+        private final List<Long> latencies = new ArrayList<>();
+        private long bytes;
+        private long elapsed;
+        private double allocation = -1;
+
+        private double getThroughput() {
+            return elapsed > 0 ? bytes * 1000.0 / elapsed : 0;
+        }
+
+        private double getP99() {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted.get((int) Math.max(Math.ceil(0.99 * sorted.size()) - 1, 0));
+        }
+    }
+
+    private static final class Bench {
+
+        private final Object lock = new Object();
+        private final TxRxVirtualScheduler scheduler = new TxRxVirtualScheduler();
+        private final PerfCallback callback = new PerfCallback();
+        private final TxRxDeviceProfile profile;
+        private final TxRxSimulatedDevice device;
+        private final TxRxSession session;
+
+        private Bench(TxRxDeviceProfile profile) {
+            this.profile = profile;
+            this.device = new TxRxSimulatedDevice(profile, scheduler, lock, SEED);
+            this.session = new TxRxSession(device, scheduler, callback, lock);
+
+            device.setLatency(MIN_LATENCY, MAX_LATENCY);
+            device.setSession(session);
+            session.setTxRxTimeouts(TxRxTimeouts.getDefaultTimeouts());
+            session.setRetryPolicy(TxRxRetryPolicy.getDefaultRetryPolicy());
+        }
+
+        private void connect() {
+            synchronized (lock) {
+                session.start(profile);
+                device.setConnected(true);
+            }
+        }
+
+        private boolean runUntil(BooleanSupplier condition, long timeout) {
+            long deadline = scheduler.now() + timeout;
+
+            while (!condition.getAsBoolean()) {
+                long next = scheduler.getNextTaskTime();
+
+                if (next < 0 || next > deadline) {
+                    return false;
+                }
+                scheduler.advanceTo(next);
+            }
+            return true;
+        }
+    }
+
+    private static final class PerfCallback implements TxRxSessionCallback {
+
+        private FrameHandler frameHandler;
+        private FrameHandler eventFrameHandler;
+        private long frames;
+        private long writesFinished;
+        private long errors;
+
+        @Override
+        public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+            errors++;
+        }
+
+        @Override
+        public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onEventData(String data) {
+        }
+
+        @Override
+        public void onEventFrame(byte[] buffer, int offset, int length) {
+            if (eventFrameHandler != null) {
+                eventFrameHandler.onFrame(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void onNotifyData(String data) {
+        }
+
+        @Override
+        public void onNotifyFrame(byte[] buffer, int offset, int length) {
+            frames++;
+
+            if (frameHandler != null) {
+                frameHandler.onFrame(buffer, offset, length);
+            }
+        }
+
+        @Override
+        public void onReadData(String data) {
+        }
+
+        @Override
+        public void onReadError(int errorCode) {
+        }
+
+        @Override
+        public void onReadNotifyTimeout() {
+        }
+
+        @Override
+        public void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime,
+                                                       long beginNotifyTime, long endNotifyTime) {
+        }
+
+        @Override
+        public void onSetMode(int mode) {
+        }
+
+        @Override
+        public void onSetModeError(int errorCode) {
+        }
+
+        @Override
+        public void onSetModeTimeout() {
+        }
+
+        @Override
+        public void onWriteData(String data) {
+        }
+
+        @Override
+        public void onWriteError(int errorCode) {
+            errors++;
+        }
+
+        @Override
+        public void onWriteFinished() {
+            writesFinished++;
+        }
+
+        @Override
+        public void onWriteTimeout() {
+            errors++;
+        }
+    }
+
+    private final File baselineFile;
+    private final String libraryVersion;
+    private final boolean isUpdate;
+
+    /**
+     * Create a new {@link TxRxPerfGate}.
+     *
+     * @param baselineFile   the baseline file
+     * @param libraryVersion the version of the library, recorded in the baseline
+     * @param isUpdate       true to write the measures as the new baseline, false to check them
+     */
+    public TxRxPerfGate(File baselineFile, String libraryVersion, boolean isUpdate) {
+        this.baselineFile = baselineFile;
+        this.libraryVersion = libraryVersion;
+        this.isUpdate = isUpdate;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: TxRxPerfGate baseline-file library-version [--update]");
+        }
+
+        boolean isUpdate = false;
+
+        for (int i = 2; i < args.length; i++) {
+            if ("--update".equals(args[i])) {
+                isUpdate = true;
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SESSION_LOGGER.setLevel(Level.OFF);
+
+        List<String> regressions = new TxRxPerfGate(new File(args[0]), args[1], isUpdate).run();
+
+        System.exit(regressions.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Run the scenarios, printing their report, and check them against the baseline, or write them as the new
+     * baseline.
+     *
+     * @return the regressions found, empty if none
+     * @throws IOException if the baseline file can not be read or written
+     */
+    public List<String> run() throws IOException {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        scenarios.put("command", TxRxPerfGate::runCommand);
+        scenarios.put("bulk", () -> runBulk(TxRxSimulatedDevice.PHY_NONE));
+        scenarios.put("stream", TxRxPerfGate::runStream);
+        scenarios.put("reconnect", TxRxPerfGate::runReconnect);
+        scenarios.put("event", TxRxPerfGate::runEvent);
+        scenarios.put("phy1m", () -> runBulk(TxRxSimulatedDevice.PHY_LE_1M));
+        scenarios.put("phy2m", () -> runBulk(TxRxSimulatedDevice.PHY_LE_2M));
+        scenarios.put("phycoded", () -> runBulk(TxRxSimulatedDevice.PHY_LE_CODED));
+
+        Properties baseline = new Properties();
+
+        if (baselineFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(baselineFile)) {
+                baseline.load(inputStream);
+            }
+        }
+        else if (!isUpdate) {
+            throw new IOException("Missing baseline " + baselineFile + ", record it with --update");
+        }
+
+        if (!isUpdate && !String.valueOf(BASELINE_VERSION).equals(baseline.getProperty("baseline.version"))) {
+            throw new IOException("Unsupported baseline version: " + baseline.getProperty("baseline.version"));
+        }
+
+        double tolerance = Double.parseDouble(baseline.getProperty("tolerance",
+                String.valueOf(DEFAULT_TOLERANCE)));
+        double allocationTolerance = Double.parseDouble(baseline.getProperty("tolerance.allocation",
+                String.valueOf(DEFAULT_ALLOCATION_TOLERANCE)));
+
+        Map<String, Measure> measures = new LinkedHashMap<>();
+
+        for (Map.Entry<String, Scenario> scenario : scenarios.entrySet()) {
+            // a first run warms up the code, so that the allocations measured exclude the interpreter
+            scenario.getValue().run();
+            measures.put(scenario.getKey(), measure(scenario.getValue()));
+        }
+
+        System.out.println("TxRx performance gate, library " + libraryVersion + ", baseline "
+                + baseline.getProperty("library.version", "none"));
+        System.out.println(String.format(Locale.ROOT, "%-10s %14s %10s %14s", "scenario", "throughput B/s",
+                "p99 ms", "alloc B/op"));
+
+        List<String> regressions = new ArrayList<>();
+
+        for (Map.Entry<String, Measure> entry : measures.entrySet()) {
+            String name = entry.getKey();
+            Measure measure = entry.getValue();
+
+            System.out.println(String.format(Locale.ROOT, "%-10s %14.1f %10.1f %14.1f", name,
+                    measure.getThroughput(), measure.getP99(), measure.allocation));
+
+            if (isUpdate) {
+                continue;
+            }
+
+            String throughput = baseline.getProperty(name + ".throughput");
+            String p99 = baseline.getProperty(name + ".p99");
+            String allocation = baseline.getProperty(name + ".allocation");
+
+            if (throughput == null || p99 == null || allocation == null) {
+                regressions.add(name + ": missing from the baseline");
+                continue;
+            }
+
+            if (measure.getThroughput() < Double.parseDouble(throughput) * (1 - tolerance)) {
+                regressions.add(name + ": throughput " + format(measure.getThroughput()) + " B/s, baseline "
+                        + throughput);
+            }
+            if (measure.getP99() > Double.parseDouble(p99) * (1 + tolerance) + LATENCY_SLACK) {
+                regressions.add(name + ": p99 latency " + format(measure.getP99()) + " ms, baseline " + p99);
+            }
+            if (measure.allocation >= 0 && Double.parseDouble(allocation) >= 0 && measure.allocation
+                    > Double.parseDouble(allocation) * (1 + allocationTolerance) + ALLOCATION_SLACK) {
+                regressions.add(name + ": allocation " + format(measure.allocation) + " B/op, baseline "
+                        + allocation);
+            }
+        }
+
+        if (isUpdate) {
+            writeBaseline(measures, tolerance, allocationTolerance);
+            System.out.println("Result: baseline written to " + baselineFile);
+        }
+        else {
+            System.out.println(regressions.isEmpty() ? "Result: OK" : "Result: REGRESSED " + regressions);
+        }
+
+        return regressions;
+    }
+
+    private static byte[] frame(byte[] payload) {
+        byte[] frame = new byte[payload.length + 2];
+
+        frame[0] = SLIP_END;
+        System.arraycopy(payload, 0, frame, 1, payload.length);
+        frame[frame.length - 1] = SLIP_END;
+        return frame;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+
+            if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+                return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static Measure measure(Scenario scenario) {
+        long allocatedBefore = getAllocatedBytes();
+        Measure measure = scenario.run();
+        long allocatedAfter = getAllocatedBytes();
+
+        if (allocatedBefore >= 0 && allocatedAfter >= 0 && !measure.latencies.isEmpty()) {
+            measure.allocation = (double) (allocatedAfter - allocatedBefore) / measure.latencies.size();
+        }
+        return measure;
+    }
+
+    private static Measure runBulk(int phy) {
+        Bench bench = new Bench(BULK_PROFILE);
+        Measure measure = new Measure();
+        ByteBuffer data = ByteBuffer.wrap(new byte[BULK_SIZE]);
+
+        bench.device.setPhy(phy);
+        bench.connect();
+        long startTime = bench.scheduler.now();
+
+        for (int i = 0; i < BULK_COUNT; i++) {
+            long requestTime = bench.scheduler.now();
+            long writesFinished = bench.callback.writesFinished;
+
+            data.clear();
+            bench.session.requestBulkTransfer(TxRxBulkTransfer.fromByteBuffer(data));
+
+            if (!bench.runUntil(() -> bench.callback.writesFinished > writesFinished, 60000)) {
+                throw new IllegalStateException("Bulk transfer not finished");
+            }
+
+            measure.latencies.add(bench.scheduler.now() - requestTime);
+            measure.bytes += BULK_SIZE;
+        }
+
+        measure.elapsed = bench.scheduler.now() - startTime;
+        checkErrors(bench, "bulk");
+        return measure;
+    }
+
+    private static Measure runCommand() {
+        Bench bench = new Bench(COMMAND_PROFILE);
+        Measure measure = new Measure();
+        String command = newCommand();
+        byte[] response = newResponse();
+
+        bench.device.setResponder(value -> response);
+        bench.connect();
+        long startTime = bench.scheduler.now();
+
+        for (int i = 0; i < COMMAND_COUNT; i++) {
+            long requestTime = bench.scheduler.now();
+            long frames = bench.callback.frames;
+
+            bench.session.requestWriteData(command);
+
+            if (!bench.runUntil(() -> bench.callback.frames > frames && !bench.session.isWriting(), 10000)) {
+                throw new IllegalStateException("Command not answered");
+            }
+
+            measure.latencies.add(bench.scheduler.now() - requestTime);
+            measure.bytes += 2 * COMMAND_SIZE;
+        }
+
+        measure.elapsed = bench.scheduler.now() - startTime;
+        checkErrors(bench, "command");
+        return measure;
+    }
+
+    private static Measure runEvent() {
+        Bench bench = new Bench(EVENT_PROFILE);
+        Measure measure = new Measure();
+        int count = (int) (EVENT_DURATION / EVENT_INTERVAL);
+        long[] sendTimes = new long[count];
+        byte[] packet = frame(new byte[18]);
+
+        bench.callback.eventFrameHandler = (buffer, offset, length) -> {
+            int sequence = ((buffer[offset] & 0xFF) << 8) | (buffer[offset + 1] & 0xFF);
+
+            measure.latencies.add(bench.scheduler.now() - sendTimes[sequence]);
+            measure.bytes += length;
+        };
+        bench.connect();
+        long startTime = bench.scheduler.now();
+
+        // the stream saturates the link, a notification per millisecond, posted one at a time so that the queue of
+        // the scheduler stays short
+        Runnable stream = new Runnable() {
+            @Override
+            public void run() {
+                bench.device.notify(packet);
+
+                if (bench.scheduler.now() - startTime < EVENT_DURATION) {
+                    bench.scheduler.post(this, 1);
+                }
+            }
+        };
+        bench.scheduler.post(stream, 0);
+
+        for (int i = 0; i < count; i++) {
+            int sequence = i;
+
+            bench.scheduler.post(() -> {
+                sendTimes[sequence] = bench.scheduler.now();
+                bench.device.notifyEvent(new byte[]{(byte) (sequence >> 8), (byte) sequence});
+            }, i * EVENT_INTERVAL);
+        }
+
+        if (!bench.runUntil(() -> measure.latencies.size() == count, EVENT_DURATION + 10000)) {
+            throw new IllegalStateException("Events lost: " + (count - measure.latencies.size()));
+        }
+
+        measure.elapsed = bench.scheduler.now() - startTime;
+        return measure;
+    }
+
+    private static Measure runReconnect() {
+        Bench bench = new Bench(COMMAND_PROFILE);
+        Measure measure = new Measure();
+        String command = newCommand();
+        byte[] response = newResponse();
+
+        bench.device.setResponder(value -> response);
+        bench.connect();
+        long startTime = bench.scheduler.now();
+
+        Runnable disconnection = () -> {
+            synchronized (bench.lock) {
+                bench.device.setConnected(false);
+                bench.session.suspendWrite();
+            }
+        };
+
+        Runnable reconnection = () -> {
+            synchronized (bench.lock) {
+                bench.session.start(bench.profile);
+                bench.device.setConnected(true);
+                bench.session.resumeWrite();
+            }
+        };
+
+        for (int i = 0; i < RECONNECT_COUNT; i++) {
+            long requestTime = bench.scheduler.now();
+            long frames = bench.callback.frames;
+
+            bench.session.requestWriteData(command);
+            bench.scheduler.post(disconnection, DISCONNECTION_DELAY);
+            bench.scheduler.post(reconnection, DISCONNECTION_DELAY + RECONNECTION_DELAY);
+
+            if (!bench.runUntil(() -> bench.callback.frames > frames && !bench.session.isWriting()
+                    && bench.device.isConnected(), 10000)) {
+                throw new IllegalStateException("Command not answered after reconnection");
+            }
+
+            measure.latencies.add(bench.scheduler.now() - requestTime);
+            measure.bytes += 2 * COMMAND_SIZE;
+        }
+
+        measure.elapsed = bench.scheduler.now() - startTime;
+        checkErrors(bench, "reconnect");
+        return measure;
+    }
+
+    private static Measure runStream() {
+        Bench bench = new Bench(COMMAND_PROFILE);
+        Measure measure = new Measure();
+        int count = (int) (STREAM_DURATION / STREAM_INTERVAL);
+        long[] sendTimes = new long[count];
+        // a sequence number on 7-bit bytes, never taken for SLIP bytes, then padding up to a 20-byte notification
+        byte[] payload = new byte[18];
+
+        bench.callback.frameHandler = (buffer, offset, length) -> {
+            int sequence = 0;
+
+            for (int i = 0; i < 4; i++) {
+                sequence = (sequence << 7) | buffer[offset + i];
+            }
+
+            measure.latencies.add(bench.scheduler.now() - sendTimes[sequence]);
+            measure.bytes += length;
+        };
+        bench.connect();
+        long startTime = bench.scheduler.now();
+
+        for (int i = 0; i < count; i++) {
+            int sequence = i;
+
+            bench.scheduler.post(() -> {
+                for (int j = 0; j < 4; j++) {
+                    payload[j] = (byte) ((sequence >> (7 * (3 - j))) & 0x7F);
+                }
+                sendTimes[sequence] = bench.scheduler.now();
+                bench.device.notify(frame(payload));
+            }, i * STREAM_INTERVAL);
+        }
+
+        if (!bench.runUntil(() -> bench.callback.frames == count, STREAM_DURATION + 10000)) {
+            throw new IllegalStateException("Stream frames lost: " + (count - bench.callback.frames));
+        }
+
+        measure.elapsed = bench.scheduler.now() - startTime;
+        return measure;
+    }
+
+    private static void checkErrors(Bench bench, String scenario) {
+        if (bench.callback.errors > 0) {
+            throw new IllegalStateException("Scenario " + scenario + " failed " + bench.callback.errors
+                    + " operations");
+        }
+    }
+
+    private static String newCommand() {
+        char[] command = new char[COMMAND_SIZE];
+        Arrays.fill(command, 'C');
+        return new String(command);
+    }
+
+    private static byte[] newResponse() {
+        byte[] payload = new byte[COMMAND_SIZE];
+        Arrays.fill(payload, (byte) 'R');
+        return frame(payload);
+    }
+
+    private void writeBaseline(Map<String, Measure> measures, double tolerance, double allocationTolerance)
+            throws IOException {
+        try (PrintWriter writer = new PrintWriter(baselineFile, "UTF-8")) {
+            writer.println("# TxRx performance baseline, checked by the perfGate task of txrxlib.");
+            writer.println("# Throughput in bytes per second, p99 latency in milliseconds of virtual time,");
+            writer.println("# allocation in bytes per operation (-1 if not measured).");
+            writer.println("# Record it again with: ./gradlew :txrxlib:perfGate -PperfUpdate");
+            writer.println("baseline.version=" + BASELINE_VERSION);
+            writer.println("library.version=" + libraryVersion);
+            writer.println("tolerance=" + tolerance);
+            writer.println("tolerance.allocation=" + allocationTolerance);
+
+            for (Map.Entry<String, Measure> entry : measures.entrySet()) {
+                Measure measure = entry.getValue();
+
+                writer.println(entry.getKey() + ".throughput=" + format(measure.getThroughput()));
+                writer.println(entry.getKey() + ".p99=" + format(measure.getP99()));
+                writer.println(entry.getKey() + ".allocation=" + format(measure.allocation));
+            }
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package com.tertiumtechnology.txrxlib.sim;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxSession;
+import com.tertiumtechnology.txrxlib.rw.TxRxTransport;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class simulates a device which offers TxRx services, as the {@link TxRxTransport} of a {@link TxRxSession}.
+ * <p>
+ * Every result is delivered to the session by the radio {@link TxRxScheduler}, after a random latency: the
+ * acknowledgement of each write, the notifications of the responses and the notifications pushed through
+ * {@link #notify(byte[])} and {@link #notifyEvent(byte[])}. As on Android, where GATT callbacks come from a single binder thread, a radio scheduler
+ * running on its own thread delivers the results one at a time, concurrently with the requests; a
+ * {@link com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler} shared with the session delivers them in virtual
+ * time instead.
+ * <p>
+ * Once a whole command has been written, up to the Rx terminator of the profile, the device notifies the response
+ * built by its {@link Responder}, split in notifications of at most the Tx packet size of the profile. While
+ * disconnected, the device refuses new writes and drops the results not delivered yet.
+ * <p>
+ * With a PHY set through {@link #setPhy(int)}, the results of the packets are timed by the link in place of the random
+ * latency, so that the effective throughput of 1M, 2M and Coded PHY can be compared. The airtime of each packet is
+ * modeled from the symbol rate of the PHY, followed by the empty packet of the peer, each after the inter frame space,
+ * and the packets are sent in connection events, as many as fit in the connection interval. As on Android, the
+ * acknowledgement of a write comes once the controller has buffered the packet, so that a few writes are in flight
+ * and the link is kept busy, while a notification or a read is delivered once its packet has been received.
+ */
+public class TxRxSimulatedDevice implements TxRxTransport {
+
+    /**
+     * Builds the response of the device to a command.
+     */
+    public interface Responder {
+
+        /**
+         * Returns the response to the specified command.
+         *
+         * @param command the command written, without terminator
+         * @return the value to notify, or null for no response
+         */
+        byte[] respond(byte[] command);
+    }
+
+    /**
+     * Listener of the values delivered to the session.
+     */
+    public interface DeliveryListener {
+
+        /**
+         * Called under the lock of the session, right after a notification has been delivered to it.
+         *
+         * @param value the notified value
+         */
+        void onNotificationDelivered(byte[] value);
+    }
+
+    /**
+     * Status of a write failed on the link, as reported by Android for a generic GATT error
+     */
+    public static final int STATUS_GATT_ERROR = 133;
+
+    /**
+     * No PHY model: the latency of a result does not depend on its size
+     */
+    public static final int PHY_NONE = 0;
+
+    /**
+     * LE 1M PHY, 1 Mbit/s, as {@code BluetoothDevice.PHY_LE_1M}
+     */
+    public static final int PHY_LE_1M = 1;
+
+    /**
+     * LE 2M PHY, 2 Mbit/s, as {@code BluetoothDevice.PHY_LE_2M}
+     */
+    public static final int PHY_LE_2M = 2;
+
+    /**
+     * LE Coded PHY with S=8 coding, 125 kbit/s, as {@code BluetoothDevice.PHY_LE_CODED}
+     */
+    public static final int PHY_LE_CODED = 3;
+
+    // header, L2CAP and ATT headers and CRC of a data packet, and header and CRC of an empty packet, in bytes
+    private static final int PACKET_OVERHEAD = 12;
+    private static final int EMPTY_PACKET_SIZE = 5;
+
+    // preamble and access address, in bytes on the uncoded PHYs and in microseconds on the Coded PHY, which also
+    // codes the coding indicator and the terminations at S=2
+    private static final int PREAMBLE_1M = 5;
+    private static final int PREAMBLE_2M = 6;
+    private static final int PREAMBLE_CODED = 376;
+    private static final int TERMINATION_CODED = 24;
+
+    // all times of the link in microseconds
+    private static final long INTER_FRAME_SPACE = 150;
+    private static final long CONNECTION_INTERVAL = 11250;
+
+    // packets written and not sent yet, buffered by the controller before the acknowledgement is held back
+    private static final int CONTROLLER_BUFFER = 4;
+
+    private final TxRxDeviceProfile profile;
+    private final TxRxScheduler radio;
+    private final Object lock;
+    private final Random random;
+
+    private final byte[] terminator;
+    private final ByteArrayOutputStream command;
+
+    private TxRxSession session;
+    private Responder responder;
+    private DeliveryListener deliveryListener;
+
+    private volatile boolean isConnected;
+    private long minLatency;
+    private long maxLatency;
+    private double failureRate;
+    private byte[] readValue;
+    private int phy;
+    private long linkFreeTime;
+    private final ArrayDeque<Long> bufferedPackets = new ArrayDeque<>();
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+    private final AtomicLong droppedResults = new AtomicLong();
+
+    /**
+     * Create a new {@link TxRxSimulatedDevice}, echoing every command, with a latency of 1 ms and no failure.
+     *
+     * @param profile {@link TxRxDeviceProfile} of the simulated device
+     * @param radio   {@link TxRxScheduler} delivering the results to the session
+     * @param lock    the lock of the session, held while delivering a result
+     * @param seed    the seed of the random latencies and failures, to reproduce a run in virtual time
+     */
+    public TxRxSimulatedDevice(TxRxDeviceProfile profile, TxRxScheduler radio, Object lock, long seed) {
+        this.profile = profile;
+        this.radio = radio;
+        this.lock = lock;
+        this.random = new Random(seed);
+
+        this.terminator = profile.getRxTerminatorType().getValue().getBytes();
+        this.command = new ByteArrayOutputStream();
+
+        this.responder = value -> value;
+        this.minLatency = 1;
+        this.maxLatency = 1;
+        this.readValue = new byte[0];
+    }
+
+    /**
+     * Returns the number of results dropped because the device was disconnected before their delivery.
+     *
+     * @return the number of dropped results
+     */
+    public long getDroppedResults() {
+        return droppedResults.get();
+    }
+
+    /**
+     * Returns the number of writes acknowledged with an error.
+     *
+     * @return the number of failed writes
+     */
+    public long getFailedWrites() {
+        return failedWrites.get();
+    }
+
+    /**
+     * Returns the number of notifications delivered to the session.
+     *
+     * @return the number of delivered notifications
+     */
+    public long getNotifications() {
+        return notifications.get();
+    }
+
+    /**
+     * Returns the number of writes initiated on the device, including the failed ones.
+     *
+     * @return the number of writes
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * Returns whether the device is connected.
+     *
+     * @return true if connected, false otherwise.
+     */
+    public boolean isConnected() {
+        return isConnected;
+    }
+
+    /**
+     * Set the connection state of the device. Must be called under the lock of the session, together with starting
+     * or stopping the session, so that no result is delivered to a stopped session.
+     *
+     * @param isConnected true to connect the device, false to disconnect it
+     */
+    public void setConnected(boolean isConnected) {
+        this.isConnected = isConnected;
+
+        if (!isConnected) {
+            command.reset();
+        }
+    }
+
+    /**
+     * Set the listener of the values delivered to the session.
+     *
+     * @param deliveryListener the listener, null for none
+     */
+    public void setDeliveryListener(DeliveryListener deliveryListener) {
+        this.deliveryListener = deliveryListener;
+    }
+
+    /**
+     * Set the probability of a write to be acknowledged with {@link #STATUS_GATT_ERROR}.
+     *
+     * @param failureRate the failure probability, between 0 and 1
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Set the range of the latency of every result, drawn uniformly for each of them.
+     *
+     * @param minLatency the minimum latency in milliseconds
+     * @param maxLatency the maximum latency in milliseconds
+     */
+    public void setLatency(long minLatency, long maxLatency) {
+        this.minLatency = minLatency;
+        this.maxLatency = Math.max(minLatency, maxLatency);
+    }
+
+    /**
+     * Set the value returned by the reads of the Tx characteristic.
+     *
+     * @param readValue the value read
+     */
+    public void setReadValue(byte[] readValue) {
+        this.readValue = readValue;
+    }
+
+    /**
+     * Set the PHY of the link, which times the results of the packets by their airtime in the connection events, in
+     * place of the random latency.
+     *
+     * @param phy the PHY, one of {@link #PHY_NONE}, {@link #PHY_LE_1M}, {@link #PHY_LE_2M} or
+     *            {@link #PHY_LE_CODED}
+     */
+    public synchronized void setPhy(int phy) {
+        if (phy < PHY_NONE || phy > PHY_LE_CODED) {
+            throw new IllegalArgumentException("Invalid PHY: " + phy);
+        }
+
+        this.phy = phy;
+        this.linkFreeTime = 0;
+        this.bufferedPackets.clear();
+    }
+
+    /**
+     * Set the {@link Responder} building the response to each command. By default, each command is echoed.
+     *
+     * @param responder the responder
+     */
+    public void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    /**
+     * Set the session the results are delivered to.
+     *
+     * @param session {@link TxRxSession} using this device as transport
+     */
+    public void setSession(TxRxSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Notify the specified value to the session, after the latency of the link. The value is delivered in a single
+     * notification, whatever its size.
+     *
+     * @param value the value to notify
+     */
+    public void notify(byte[] value) {
+        radio.post(() -> deliverNotification(value), receiveDelay(value.length, 1));
+    }
+
+    /**
+     * Notify the specified value on the event characteristic, after the latency of the link. The value is delivered
+     * in a single notification, whatever its size.
+     *
+     * @param value the event value to notify
+     */
+    public void notifyEvent(byte[] value) {
+        radio.post(() -> {
+            synchronized (lock) {
+                if (!isConnected) {
+                    droppedResults.incrementAndGet();
+                    return;
+                }
+
+                notifications.incrementAndGet();
+                session.onEvent(value);
+            }
+        }, receiveDelay(value.length, 1));
+    }
+
+    @Override
+    public boolean read() {
+        if (!isConnected) {
+            return false;
+        }
+
+        byte[] value = readValue;
+
+        radio.post(() -> {
+            synchronized (lock) {
+                if (!isConnected) {
+                    droppedResults.incrementAndGet();
+                    return;
+                }
+
+                session.onRead(value, STATUS_SUCCESS);
+            }
+        }, receiveDelay(value.length, 1));
+        return true;
+    }
+
+    @Override
+    public boolean write(byte[] value) {
+        if (!isConnected) {
+            return false;
+        }
+
+        writes.incrementAndGet();
+
+        // the session reuses its chunk buffer
+        byte[] chunk = value.clone();
+        boolean isFailed = random.nextDouble() < failureRate;
+
+        radio.post(() -> onWriteDelivered(chunk, isFailed), writeDelay(chunk.length));
+        return true;
+    }
+
+    @Override
+    public boolean writeSetMode(byte[] value) {
+        if (!isConnected) {
+            return false;
+        }
+
+        radio.post(() -> {
+            synchronized (lock) {
+                if (!isConnected) {
+                    droppedResults.incrementAndGet();
+                    return;
+                }
+
+                session.onSetModeWrite(STATUS_SUCCESS);
+            }
+        }, nextLatency());
+        return true;
+    }
+
+    private long airtime(int length) {
+        long micros;
+
+        switch (phy) {
+            case PHY_LE_2M:
+                micros = 8L * (PREAMBLE_2M + length) / 2;
+                break;
+            case PHY_LE_CODED:
+                micros = PREAMBLE_CODED + 8L * length * 8 + TERMINATION_CODED;
+                break;
+            default:
+                micros = 8L * (PREAMBLE_1M + length);
+                break;
+        }
+
+        return micros;
+    }
+
+    private void deliverNotification(byte[] value) {
+        synchronized (lock) {
+            if (!isConnected) {
+                droppedResults.incrementAndGet();
+                return;
+            }
+
+            notifications.incrementAndGet();
+            session.onNotify(value);
+
+            if (deliveryListener != null) {
+                deliveryListener.onNotificationDelivered(value);
+            }
+        }
+    }
+
+    private long nextLatency() {
+        if (maxLatency == minLatency) {
+            return minLatency;
+        }
+
+        return minLatency + (long) (random.nextDouble() * (maxLatency - minLatency + 1));
+    }
+
+    private synchronized long receiveDelay(int length, int packets) {
+        if (phy == PHY_NONE) {
+            return nextLatency();
+        }
+
+        long now = radio.now() * 1000;
+        long end = now;
+
+        for (int i = 0; i < packets; i++) {
+            end = transmit(now, (length + i) / packets);
+        }
+
+        return toDelay(end, now);
+    }
+
+    private long toDelay(long time, long now) {
+        return (time + 999) / 1000 - now / 1000;
+    }
+
+    // returns when the packet of the specified length, queued at the specified time, has been sent
+    private long transmit(long time, int length) {
+        long duration = airtime(PACKET_OVERHEAD + length) + INTER_FRAME_SPACE + airtime(EMPTY_PACKET_SIZE)
+                + INTER_FRAME_SPACE;
+        long start;
+
+        if (time > linkFreeTime) {
+            // the last connection event is closed, the packet waits for the next one
+            start = (time + CONNECTION_INTERVAL - 1) / CONNECTION_INTERVAL * CONNECTION_INTERVAL;
+        }
+        else {
+            start = linkFreeTime;
+
+            // a packet not fitting in the rest of the connection event is sent in the next one
+            if (start % CONNECTION_INTERVAL != 0 && start % CONNECTION_INTERVAL + duration > CONNECTION_INTERVAL) {
+                start = (start / CONNECTION_INTERVAL + 1) * CONNECTION_INTERVAL;
+            }
+        }
+
+        linkFreeTime = start + duration;
+        return linkFreeTime;
+    }
+
+    private synchronized long writeDelay(int length) {
+        if (phy == PHY_NONE) {
+            return nextLatency();
+        }
+
+        long now = radio.now() * 1000;
+
+        while (!bufferedPackets.isEmpty() && bufferedPackets.peekFirst() <= now) {
+            bufferedPackets.pollFirst();
+        }
+
+        bufferedPackets.addLast(transmit(now, length));
+
+        // with the buffer of the controller full, the write is acknowledged once its oldest packet has been sent
+        long accepted = now;
+
+        while (bufferedPackets.size() > CONTROLLER_BUFFER) {
+            accepted = bufferedPackets.pollFirst();
+        }
+
+        return toDelay(accepted, now);
+    }
+
+    private void onWriteDelivered(byte[] chunk, boolean isFailed) {
+        byte[] response = null;
+
+        synchronized (lock) {
+            if (!isConnected) {
+                droppedResults.incrementAndGet();
+                return;
+            }
+
+            if (isFailed) {
+                failedWrites.incrementAndGet();
+                session.onWrite(STATUS_GATT_ERROR);
+                return;
+            }
+
+            command.write(chunk, 0, chunk.length);
+
+            // the command is only copied once whole, as long bulk writes would be copied at every chunk
+            if (endsWithTerminator(chunk.length >= terminator.length ? chunk : command.toByteArray())) {
+                byte[] written = command.toByteArray();
+                command.reset();
+                response = responder.respond(Arrays.copyOf(written, written.length - terminator.length));
+            }
+
+            session.onWrite(STATUS_SUCCESS);
+        }
+
+        if (response != null) {
+            byte[] value = response;
+            int packetSize = Math.max(profile.getTxPacketSize(), 1);
+            int packets = Math.max((value.length + packetSize - 1) / packetSize, 1);
+
+            // the packets of a response are delivered together, in order
+            radio.post(() -> {
+                for (int offset = 0; offset < value.length; offset += packetSize) {
+                    deliverNotification(Arrays.copyOfRange(value, offset,
+                            Math.min(offset + packetSize, value.length)));
+                }
+            }, receiveDelay(value.length, packets));
+        }
+    }
+
+    private boolean endsWithTerminator(byte[] written) {
+        if (written.length < terminator.length) {
+            return false;
+        }
+
+        for (int i = 0; i < terminator.length; i++) {
+            if (written[written.length - terminator.length + i] != terminator[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
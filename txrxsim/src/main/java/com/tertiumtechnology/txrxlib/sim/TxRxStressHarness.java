@@ -0,0 +1,471 @@
+package com.tertiumtechnology.txrxlib.sim;
+
+import com.tertiumtechnology.txrxlib.frame.SlipFrameDecoder;
+import com.tertiumtechnology.txrxlib.rw.TxRxBulkTransfer;
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxExecutorScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxRetryPolicy;
+import com.tertiumtechnology.txrxlib.rw.TxRxSession;
+import com.tertiumtechnology.txrxlib.rw.TxRxSessionCallback;
+import com.tertiumtechnology.txrxlib.rw.TxRxTimeouts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class hammers a {@link TxRxSession} from many threads at once, over a {@link TxRxSimulatedDevice} delivering
+ * write acknowledgements and notifications on its own radio thread, as the GATT callbacks on Android, while the
+ * timeouts run on a third thread:
+ * <ul>
+ * <li>writer threads request data writes, each command being answered by the device with a response frame</li>
+ * <li>a thread requests setMode operations</li>
+ * <li>a thread pushes a stream of notification frames</li>
+ * <li>a thread cycles reconnections, suspending and resuming the write in progress, and disconnections</li>
+ * </ul>
+ * Every notified frame is numbered, so that the harness reports the frames delivered to the session and never
+ * received, or received more than once. It also checks that every write and setMode operation started has ended
+ * exactly once and that no operation is left in progress, and reports the throughput of the run. The process exits
+ * with status 1 if a check fails.
+ * <p>
+ * Usage: {@code TxRxStressHarness [--duration seconds] [--writers count] [--seed seed] [--failure-rate rate]}
+ */
+public class TxRxStressHarness {
+
+    private static final byte SLIP_END = (byte) 0xC0;
+
+    private static final TxRxDeviceProfile PROFILE = new TxRxDeviceProfile("sim-service", "sim-rx", "sim-tx",
+            "sim-mode", "sim-event", TxRxDeviceProfile.TerminatorType.CR, TxRxDeviceProfile.TerminatorType.NONE, 20,
+            20, SlipFrameDecoder.factory(64));
+
+    private static final TxRxTimeouts TIMEOUTS = new TxRxTimeouts(1000, 100, 100, 20);
+
+    // kept referenced, so that the level is not lost with the logger
+    private static final Logger SESSION_LOGGER = Logger.getLogger(TxRxSession.class.getSimpleName());
+
+    private final long duration;
+    private final int writers;
+    private final long seed;
+
+    private final Object lock = new Object();
+    private final TxRxExecutorScheduler timeoutScheduler;
+    private final TxRxExecutorScheduler radioScheduler;
+    private final TxRxSimulatedDevice device;
+    private final TxRxSession session;
+
+    private final Map<String, AtomicInteger> deliveredFrames = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> receivedFrames = new ConcurrentHashMap<>();
+
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final AtomicLong writesCompleted = new AtomicLong();
+    private final AtomicLong writesFailed = new AtomicLong();
+    private final AtomicLong writesTimedOut = new AtomicLong();
+    private final AtomicLong writesFinished = new AtomicLong();
+    private final AtomicLong writesAborted = new AtomicLong();
+    private final AtomicLong writesRejected = new AtomicLong();
+
+    private final AtomicLong setModesStarted = new AtomicLong();
+    private final AtomicLong setModesEnded = new AtomicLong();
+    private final AtomicLong setModesAborted = new AtomicLong();
+    private final AtomicLong setModesRejected = new AtomicLong();
+
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong disconnections = new AtomicLong();
+
+    private volatile boolean isRunning;
+
+    /**
+     * Create a new {@link TxRxStressHarness}.
+     *
+     * @param duration    the duration of the run, in milliseconds
+     * @param writers     the number of writer threads
+     * @param seed        the seed of the random choices of the run
+     * @param failureRate the probability of a write to fail on the link
+     */
+    public TxRxStressHarness(long duration, int writers, long seed, double failureRate) {
+        this.duration = duration;
+        this.writers = writers;
+        this.seed = seed;
+
+        timeoutScheduler = new TxRxExecutorScheduler("StressTimeouts");
+        radioScheduler = new TxRxExecutorScheduler("StressRadio");
+
+        device = new TxRxSimulatedDevice(PROFILE, radioScheduler, lock, seed);
+        device.setLatency(0, 8);
+        device.setFailureRate(failureRate);
+        device.setResponder(command -> command.length > 0 ? frame("R" + new String(command, 1, command.length - 1))
+                : null);
+        device.setDeliveryListener(value -> count(deliveredFrames, new String(value, 1, value.length - 2)));
+
+        session = new TxRxSession(device, timeoutScheduler, new StressCallback(), lock);
+        session.setTxRxTimeouts(TIMEOUTS);
+        session.setRetryPolicy(TxRxRetryPolicy.getDefaultRetryPolicy());
+        device.setSession(session);
+    }
+
+    /**
+     * Run the harness with the specified arguments.
+     *
+     * @param args {@code [--duration seconds] [--writers count] [--seed seed] [--failure-rate rate]}
+     */
+    public static void main(String[] args) {
+        long duration = 10;
+        int writers = 4;
+        long seed = System.nanoTime();
+        double failureRate = 0.02;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--duration":
+                    duration = Long.parseLong(args[i + 1]);
+                    break;
+                case "--writers":
+                    writers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--failure-rate":
+                    failureRate = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        SESSION_LOGGER.setLevel(Level.OFF);
+
+        List<String> failures = new TxRxStressHarness(TimeUnit.SECONDS.toMillis(duration), writers, seed,
+                failureRate).run();
+
+        System.exit(failures.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Run the harness, printing its report.
+     *
+     * @return the failed checks, empty if the run is correct
+     */
+    public List<String> run() {
+        synchronized (lock) {
+            session.start(PROFILE);
+            device.setConnected(true);
+        }
+
+        isRunning = true;
+
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < writers; i++) {
+            int writer = i;
+            threads.add(new Thread(() -> runWriter(writer), "StressWriter" + i));
+        }
+        threads.add(new Thread(this::runSetMode, "StressSetMode"));
+        threads.add(new Thread(this::runStream, "StressStream"));
+        threads.add(new Thread(this::runReconnect, "StressReconnect"));
+
+        long startTime = System.currentTimeMillis();
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        pause(duration);
+        isRunning = false;
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        // let the operations in progress end, at worst through their timeouts and retries
+        long quiesceDeadline = System.currentTimeMillis() + 5000;
+
+        while (System.currentTimeMillis() < quiesceDeadline && (session.isWriting() || session.isSettingMode())) {
+            pause(10);
+        }
+        pause(2 * TIMEOUTS.getWriteTimeout());
+
+        timeoutScheduler.shutdown();
+        radioScheduler.shutdown();
+
+        return report(elapsed);
+    }
+
+    private static void count(Map<String, AtomicInteger> counters, String key) {
+        counters.computeIfAbsent(key, value -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static byte[] frame(String payload) {
+        byte[] data = payload.getBytes();
+        byte[] frame = new byte[data.length + 2];
+
+        frame[0] = SLIP_END;
+        System.arraycopy(data, 0, frame, 1, data.length);
+        frame[frame.length - 1] = SLIP_END;
+        return frame;
+    }
+
+    private static void pause(long millis) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static double rate(long count, long elapsed) {
+        return elapsed > 0 ? count * 1000.0 / elapsed : 0;
+    }
+
+    private List<String> report(long elapsed) {
+        List<String> failures = new ArrayList<>();
+
+        long lostFrames = 0;
+        long duplicatedFrames = 0;
+
+        for (Map.Entry<String, AtomicInteger> delivered : deliveredFrames.entrySet()) {
+            AtomicInteger received = receivedFrames.get(delivered.getKey());
+            int receivedCount = received != null ? received.get() : 0;
+
+            if (receivedCount < delivered.getValue().get()) {
+                lostFrames += delivered.getValue().get() - receivedCount;
+            }
+            else if (receivedCount > delivered.getValue().get()) {
+                duplicatedFrames += receivedCount - delivered.getValue().get();
+            }
+        }
+
+        for (Map.Entry<String, AtomicInteger> received : receivedFrames.entrySet()) {
+            if (!deliveredFrames.containsKey(received.getKey())) {
+                duplicatedFrames += received.getValue().get();
+            }
+        }
+
+        if (lostFrames > 0) {
+            failures.add(lostFrames + " frames lost");
+        }
+
+        if (duplicatedFrames > 0) {
+            failures.add(duplicatedFrames + " frames duplicated or corrupted");
+        }
+
+        long writesEnded = writesFinished.get() + writesAborted.get();
+
+        if (writesEnded != writesStarted.get()) {
+            failures.add(writesStarted.get() + " writes started, " + writesEnded + " ended");
+        }
+
+        if (writesCompleted.get() + writesFailed.get() + writesTimedOut.get() != writesFinished.get()) {
+            failures.add(writesFinished.get() + " writes finished, " + (writesCompleted.get() + writesFailed.get()
+                    + writesTimedOut.get()) + " results notified");
+        }
+
+        long setModesDone = setModesEnded.get() + setModesAborted.get();
+
+        if (setModesDone != setModesStarted.get()) {
+            failures.add(setModesStarted.get() + " setMode started, " + setModesDone + " ended");
+        }
+
+        if (session.isWriting()) {
+            failures.add("write operation stuck in progress");
+        }
+
+        if (session.isSettingMode()) {
+            failures.add("setMode operation stuck in progress");
+        }
+
+        System.out.println("TxRx stress run: " + (elapsed / 1000.0) + " s, " + writers + " writers, seed " + seed);
+        System.out.printf("Writes:  %d started, %d completed (%.1f/s), %d failed, %d timed out, %d aborted, "
+                        + "%d rejected%n", writesStarted.get(), writesCompleted.get(),
+                rate(writesCompleted.get(), elapsed), writesFailed.get(), writesTimedOut.get(),
+                writesAborted.get(), writesRejected.get());
+        System.out.printf("SetMode: %d started, %d ended, %d aborted, %d rejected%n", setModesStarted.get(),
+                setModesEnded.get(), setModesAborted.get(), setModesRejected.get());
+        System.out.printf("Frames:  %d delivered, %d received (%.1f/s), %d lost, %d duplicated%n",
+                deliveredFrames.values().stream().mapToLong(AtomicInteger::get).sum(),
+                receivedFrames.values().stream().mapToLong(AtomicInteger::get).sum(),
+                rate(receivedFrames.size(), elapsed), lostFrames, duplicatedFrames);
+        System.out.printf("Link:    %d chunks written (%.1f/s), %d failed, %d results dropped, %d reconnects, "
+                        + "%d disconnections%n", device.getWrites(), rate(device.getWrites(), elapsed),
+                device.getFailedWrites(), device.getDroppedResults(), reconnects.get(), disconnections.get());
+        System.out.println(failures.isEmpty() ? "Result:  OK" : "Result:  FAILED " + failures);
+
+        return failures;
+    }
+
+    private void runReconnect() {
+        Random random = new Random(seed + 1);
+
+        while (isRunning) {
+            pause(20 + random.nextInt(40));
+
+            boolean isDisconnection = random.nextInt(5) == 0;
+
+            synchronized (lock) {
+                device.setConnected(false);
+
+                if (isDisconnection) {
+                    // the operations in progress are discarded without result, as on a disconnection
+                    if (session.isWriting()) {
+                        writesAborted.incrementAndGet();
+                    }
+                    if (session.isSettingMode()) {
+                        setModesAborted.incrementAndGet();
+                    }
+                    session.stop();
+                }
+                else {
+                    session.suspendWrite();
+                }
+            }
+
+            pause(random.nextInt(10));
+
+            synchronized (lock) {
+                session.start(PROFILE);
+                device.setConnected(true);
+
+                if (isDisconnection) {
+                    disconnections.incrementAndGet();
+                }
+                else {
+                    reconnects.incrementAndGet();
+                    session.resumeWrite();
+                }
+            }
+        }
+    }
+
+    private void runSetMode() {
+        Random random = new Random(seed + 2);
+
+        while (isRunning) {
+            if (session.requestSetMode(random.nextInt(4))) {
+                setModesStarted.incrementAndGet();
+            }
+            pause(1 + random.nextInt(5));
+        }
+    }
+
+    private void runStream() {
+        long sequence = 0;
+
+        while (isRunning) {
+            device.notify(frame("S" + sequence++));
+            LockSupport.parkNanos(200_000);
+        }
+    }
+
+    private void runWriter(int writer) {
+        Random random = new Random(seed + 10 + writer);
+        long sequence = 0;
+
+        while (isRunning) {
+            if (session.requestWriteData("C" + writer + "-" + sequence++)) {
+                writesStarted.incrementAndGet();
+            }
+            LockSupport.parkNanos(random.nextInt(500_000));
+        }
+    }
+
+    private class StressCallback implements TxRxSessionCallback {
+
+        @Override
+        public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+        }
+
+        @Override
+        public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onEventData(String data) {
+        }
+
+        @Override
+        public void onNotifyData(String data) {
+        }
+
+        @Override
+        public void onNotifyFrame(byte[] buffer, int offset, int length) {
+            count(receivedFrames, new String(buffer, offset, length));
+        }
+
+        @Override
+        public void onReadData(String data) {
+        }
+
+        @Override
+        public void onReadError(int errorCode) {
+        }
+
+        @Override
+        public void onReadNotifyTimeout() {
+        }
+
+        @Override
+        public void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime, long beginNotifyTime,
+                                                       long endNotifyTime) {
+        }
+
+        @Override
+        public void onSetMode(int mode) {
+            setModesEnded.incrementAndGet();
+        }
+
+        @Override
+        public void onSetModeError(int errorCode) {
+            if (errorCode == TxRxSession.ERROR_SET_MODE) {
+                setModesEnded.incrementAndGet();
+            }
+            else {
+                setModesRejected.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onSetModeTimeout() {
+            setModesEnded.incrementAndGet();
+        }
+
+        @Override
+        public void onWriteData(String data) {
+            writesCompleted.incrementAndGet();
+        }
+
+        @Override
+        public void onWriteError(int errorCode) {
+            if (errorCode == TxRxSession.ERROR_WRITE) {
+                writesFailed.incrementAndGet();
+            }
+            else {
+                writesRejected.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void onWriteFinished() {
+            writesFinished.incrementAndGet();
+        }
+
+        @Override
+        public void onWriteTimeout() {
+            writesTimedOut.incrementAndGet();
+        }
+    }
+}
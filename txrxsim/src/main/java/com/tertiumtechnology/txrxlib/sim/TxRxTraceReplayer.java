@@ -0,0 +1,654 @@
+package com.tertiumtechnology.txrxlib.sim;
+
+import com.tertiumtechnology.txrxlib.rw.TxRxBulkTransfer;
+import com.tertiumtechnology.txrxlib.rw.TxRxDeviceProfile;
+import com.tertiumtechnology.txrxlib.rw.TxRxExecutorScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxScheduler;
+import com.tertiumtechnology.txrxlib.rw.TxRxSession;
+import com.tertiumtechnology.txrxlib.rw.TxRxSessionCallback;
+import com.tertiumtechnology.txrxlib.rw.TxRxTimeouts;
+import com.tertiumtechnology.txrxlib.rw.TxRxTrace;
+import com.tertiumtechnology.txrxlib.rw.TxRxTraceRecorder;
+import com.tertiumtechnology.txrxlib.rw.TxRxTransport;
+import com.tertiumtechnology.txrxlib.rw.TxRxVirtualScheduler;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class replays a {@link TxRxTrace}, recorded by a {@link TxRxTraceRecorder} e.g. on a field device, on a
+ * {@link TxRxSession} over a simulated transport, without hardware.
+ * <p>
+ * The requests of the application, the connection events and the notifications of the device are replayed at the
+ * time they were recorded. The transport answers the n-th write, read and setMode of the replay with the status,
+ * value and latency of the n-th one recorded, and never answers the operations whose result was lost on a
+ * disconnection. The replay runs either with the original timing, on the system clock, or as fast as possible, on
+ * a {@link TxRxVirtualScheduler}, keeping the recorded timing in virtual time.
+ * <p>
+ * The replayer reports the write operations completed and failed, with their latency and throughput, both as
+ * recorded and as replayed, so that a slow path seen in the field can be reproduced and checked against a change of
+ * the session. The process exits with status 1 if the outcome of the replay differs from the recording.
+ * <p>
+ * Usage: {@code TxRxTraceReplayer trace-file [--realtime]}
+ */
+public class TxRxTraceReplayer {
+
+    // time left to the session after the last event of the trace, to end the operations in progress
+    private static final long SETTLE_TIME = 10000;
+
+    // kept referenced, so that the level is not lost with the logger
+    private static final Logger SESSION_LOGGER = Logger.getLogger(TxRxSession.class.getSimpleName());
+
+    private static final class Outcome {
+
+        private static final Outcome DROPPED = new Outcome(Integer.MIN_VALUE, 0, null);
+
+        private final int status;
+        private final long latency;
+        private final byte[] value;
+
+        private Outcome(int status, long latency, byte[] value) {
+            this.status = status;
+            this.latency = latency;
+            this.value = value;
+        }
+    }
+
+    private static final class Statistics {
+
+        private final List<Double> latencies = new ArrayList<>();
+        private long completed;
+        private long failed;
+        private long chunks;
+        private long failedChunks;
+        private long bytes;
+
+        private void onOperationEnd(int errorCode, double latency) {
+            if (errorCode == 0) {
+                completed++;
+            }
+            else {
+                failed++;
+            }
+            latencies.add(latency);
+        }
+
+        private void onChunkResult(int status, int length) {
+            chunks++;
+
+            if (status == TxRxTransport.STATUS_SUCCESS) {
+                bytes += length;
+            }
+            else {
+                failedChunks++;
+            }
+        }
+
+        private double getPercentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+
+            List<Double> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            return sorted.get((int) Math.max(Math.ceil(percentile * sorted.size()) - 1, 0));
+        }
+
+        private String format(long duration) {
+            return String.format("%d completed, %d failed, latency p50 %.1f ms, p99 %.1f ms; %d chunks, %d failed, "
+                            + "%.1f B/s", completed, failed, getPercentile(0.5), getPercentile(0.99), chunks,
+                    failedChunks, duration > 0 ? bytes * 1000.0 / duration : 0);
+        }
+    }
+
+    private final TxRxTrace trace;
+    private final TxRxDeviceProfile profile;
+    private final boolean isRealtime;
+
+    private final List<Outcome> writeOutcomes = new ArrayList<>();
+    private final List<Outcome> readOutcomes = new ArrayList<>();
+    private final List<Outcome> setModeOutcomes = new ArrayList<>();
+    private final Statistics recorded = new Statistics();
+    private final Statistics replayed = new Statistics();
+
+    // write requests recorded while no write was in progress, and those waiting for the replayed one to end
+    private final Set<TxRxTrace.Event> idleRequests = new HashSet<>();
+    private final ArrayDeque<TxRxTrace.Event> deferredRequests = new ArrayDeque<>();
+
+    private final Object lock = new Object();
+    private TxRxScheduler scheduler;
+    private TxRxSession session;
+
+    private int nextEvent;
+    private long replayStartTime;
+    private long operationStartTime;
+    private int operationErrorCode;
+    private int writeCount;
+    private int readCount;
+    private int setModeCount;
+    private TxRxTimeouts txRxTimeouts;
+
+    /**
+     * Create a new {@link TxRxTraceReplayer}.
+     *
+     * @param trace      the trace to replay
+     * @param profile    {@link TxRxDeviceProfile} of the recorded device, or null to rebuild it from the start
+     *                   events of the trace, without frame decoder
+     * @param isRealtime true to replay with the original timing, false to replay as fast as possible
+     */
+    public TxRxTraceReplayer(TxRxTrace trace, TxRxDeviceProfile profile, boolean isRealtime) {
+        this.trace = trace;
+        this.profile = profile;
+        this.isRealtime = isRealtime;
+        this.txRxTimeouts = TxRxTimeouts.getDefaultTimeouts();
+
+        analyzeTrace();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("Usage: TxRxTraceReplayer trace-file [--realtime]");
+        }
+
+        boolean isRealtime = false;
+
+        for (int i = 1; i < args.length; i++) {
+            if ("--realtime".equals(args[i])) {
+                isRealtime = true;
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        TxRxTrace trace;
+
+        try (InputStream inputStream = new FileInputStream(args[0])) {
+            trace = TxRxTrace.read(inputStream);
+        }
+
+        SESSION_LOGGER.setLevel(Level.OFF);
+
+        List<String> differences = new TxRxTraceReplayer(trace, null, isRealtime).run();
+
+        System.exit(differences.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Set the {@link TxRxTimeouts} of the replayed session. They should match the timeouts used while recording.
+     *
+     * @param txRxTimeouts the timeouts of the session
+     */
+    public void setTxRxTimeouts(TxRxTimeouts txRxTimeouts) {
+        this.txRxTimeouts = txRxTimeouts;
+    }
+
+    /**
+     * Replay the trace, printing its report.
+     *
+     * @return the differences between the outcome of the replay and the recording, empty if they match
+     */
+    public List<String> run() {
+        TxRxVirtualScheduler virtualScheduler = null;
+        TxRxExecutorScheduler executorScheduler = null;
+
+        if (isRealtime) {
+            scheduler = executorScheduler = new TxRxExecutorScheduler("txrx-replay");
+        }
+        else {
+            scheduler = virtualScheduler = new TxRxVirtualScheduler();
+        }
+
+        session = new TxRxSession(new ReplayTransport(), scheduler, new ReplayCallback(), lock);
+        session.setTxRxTimeouts(txRxTimeouts);
+
+        long wallStartTime = System.currentTimeMillis();
+
+        synchronized (lock) {
+            replayStartTime = scheduler.now();
+
+            if (profile != null && !hasStartEvent()) {
+                session.start(profile);
+            }
+
+            scheduler.post(this::replayNextEvents, 0);
+        }
+
+        long endTime = replayStartTime + toMillis(trace.getDuration());
+        long settleTime = endTime + SETTLE_TIME;
+
+        while (scheduler.now() < settleTime && (scheduler.now() < endTime || isSessionBusy())) {
+            if (virtualScheduler != null) {
+                virtualScheduler.advance(1);
+            }
+            else {
+                LockSupport.parkNanos(1000000);
+            }
+        }
+
+        if (executorScheduler != null) {
+            executorScheduler.shutdown();
+        }
+
+        synchronized (lock) {
+            return report(System.currentTimeMillis() - wallStartTime);
+        }
+    }
+
+    private static long toMillis(long micros) {
+        return (micros + 500) / 1000;
+    }
+
+    private void analyzeTrace() {
+        ArrayDeque<Integer> pendingWrites = new ArrayDeque<>();
+        ArrayDeque<Integer> pendingReads = new ArrayDeque<>();
+        ArrayDeque<Integer> pendingSetModes = new ArrayDeque<>();
+        List<TxRxTrace.Event> writes = new ArrayList<>();
+        List<TxRxTrace.Event> reads = new ArrayList<>();
+        List<TxRxTrace.Event> setModes = new ArrayList<>();
+
+        long requestTime = -1;
+        long startTime = -1;
+        int operationChunks = 0;
+
+        for (TxRxTrace.Event event : trace.getEvents()) {
+            switch (event.getType()) {
+                case TxRxTrace.EVENT_REQUEST_WRITE:
+                case TxRxTrace.EVENT_REQUEST_BULK_TRANSFER:
+                    requestTime = event.getTime();
+
+                    if (startTime < 0) {
+                        idleRequests.add(event);
+                    }
+                    break;
+                case TxRxTrace.EVENT_WRITE:
+                    if (startTime < 0) {
+                        // the first chunk of an operation follows the request accepted
+                        startTime = requestTime;
+                        operationChunks = 0;
+                    }
+                    operationChunks++;
+                    pendingWrites.add(writeOutcomes.size());
+                    writes.add(event);
+                    writeOutcomes.add(Outcome.DROPPED);
+                    break;
+                case TxRxTrace.EVENT_WRITE_RESULT:
+                    Integer write = pendingWrites.poll();
+
+                    if (write != null) {
+                        TxRxTrace.Event chunk = writes.get(write);
+                        writeOutcomes.set(write, new Outcome((int) event.getArgument(),
+                                event.getTime() - chunk.getTime(), null));
+
+                        if (event.getArgument() != TxRxTrace.STATUS_NOT_INITIATED) {
+                            recorded.onChunkResult((int) event.getArgument(), chunk.getValue().length);
+                        }
+                        else if (operationChunks == 1) {
+                            // the operation has not been started
+                            startTime = -1;
+                        }
+                    }
+                    break;
+                case TxRxTrace.EVENT_WRITE_END:
+                    if (startTime >= 0) {
+                        recorded.onOperationEnd((int) event.getArgument(), (event.getTime() - startTime) / 1000.0);
+                    }
+                    startTime = -1;
+                    break;
+                case TxRxTrace.EVENT_READ:
+                    pendingReads.add(readOutcomes.size());
+                    reads.add(event);
+                    readOutcomes.add(Outcome.DROPPED);
+                    break;
+                case TxRxTrace.EVENT_READ_RESULT:
+                    Integer read = pendingReads.poll();
+
+                    if (read != null) {
+                        readOutcomes.set(read, new Outcome((int) event.getArgument(),
+                                event.getTime() - reads.get(read).getTime(), event.getValue()));
+                    }
+                    break;
+                case TxRxTrace.EVENT_SET_MODE_WRITE:
+                    pendingSetModes.add(setModeOutcomes.size());
+                    setModes.add(event);
+                    setModeOutcomes.add(Outcome.DROPPED);
+                    break;
+                case TxRxTrace.EVENT_SET_MODE_RESULT:
+                    Integer setMode = pendingSetModes.poll();
+
+                    if (setMode != null) {
+                        setModeOutcomes.set(setMode, new Outcome((int) event.getArgument(),
+                                event.getTime() - setModes.get(setMode).getTime(), null));
+                    }
+                    break;
+                case TxRxTrace.EVENT_STOP:
+                    // the results not delivered yet are lost with the connection
+                    pendingWrites.clear();
+                    pendingReads.clear();
+                    pendingSetModes.clear();
+                    // the operation in progress is discarded, without ending
+                    startTime = -1;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private boolean hasStartEvent() {
+        for (TxRxTrace.Event event : trace.getEvents()) {
+            if (event.getType() == TxRxTrace.EVENT_START) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSessionBusy() {
+        return session.isWriting() || session.isSettingMode();
+    }
+
+    private void replayEvent(TxRxTrace.Event event) {
+        switch (event.getType()) {
+            case TxRxTrace.EVENT_START:
+                session.start(profile != null ? profile : rebuildProfile(event));
+                break;
+            case TxRxTrace.EVENT_STOP:
+                deferredRequests.clear();
+                session.stop();
+                break;
+            case TxRxTrace.EVENT_SUSPEND:
+                session.suspendWrite();
+                break;
+            case TxRxTrace.EVENT_RESUME:
+                session.resumeWrite();
+                break;
+            case TxRxTrace.EVENT_STREAMING:
+                if (event.getArgument() >= 0) {
+                    session.startStreaming(event.getArgument());
+                }
+                else {
+                    session.stopStreaming();
+                }
+                break;
+            case TxRxTrace.EVENT_READ_POLLING:
+                if (event.getArgument() >= 0) {
+                    session.startReadPolling(event.getArgument());
+                }
+                else {
+                    session.stopReadPolling();
+                }
+                break;
+            case TxRxTrace.EVENT_REQUEST_WRITE:
+                requestWrite(event, () -> session.requestWriteData(new String(event.getValue())));
+                break;
+            case TxRxTrace.EVENT_REQUEST_BULK_TRANSFER:
+                long totalBytes = Math.max(event.getArgument(), 0);
+
+                requestWrite(event, () -> session.requestBulkTransfer(TxRxBulkTransfer.fromInputStream(
+                        new ByteArrayInputStream(new byte[(int) totalBytes]), totalBytes)));
+                break;
+            case TxRxTrace.EVENT_REQUEST_READ:
+                session.requestReadData();
+                break;
+            case TxRxTrace.EVENT_REQUEST_SET_MODE:
+                session.requestSetMode((int) event.getArgument());
+                break;
+            case TxRxTrace.EVENT_NOTIFY:
+                session.onNotify(event.getValue());
+                break;
+            case TxRxTrace.EVENT_EVENT:
+                session.onEvent(event.getValue());
+                break;
+            case TxRxTrace.EVENT_RSSI:
+                session.onRssi((int) event.getArgument());
+                break;
+            default:
+                // the transport operations are replayed by the session itself
+                break;
+        }
+    }
+
+    private void replayNextEvents() {
+        synchronized (lock) {
+            List<TxRxTrace.Event> events = trace.getEvents();
+
+            while (nextEvent < events.size()) {
+                TxRxTrace.Event event = events.get(nextEvent);
+                long delay = replayStartTime + toMillis(event.getTime()) - scheduler.now();
+
+                if (delay > 0) {
+                    scheduler.post(this::replayNextEvents, delay);
+                    return;
+                }
+
+                nextEvent++;
+                replayEvent(event);
+            }
+        }
+    }
+
+    private void replayDeferredRequest() {
+        synchronized (lock) {
+            TxRxTrace.Event event = deferredRequests.poll();
+
+            if (event != null) {
+                replayEvent(event);
+            }
+        }
+    }
+
+    private void requestWrite(TxRxTrace.Event event, Runnable request) {
+        if (session.isWriting() && idleRequests.contains(event)) {
+            // requested after the end of the previous write, which takes longer to end in the replay
+            deferredRequests.add(event);
+            return;
+        }
+
+        if (session.isWriting()) {
+            // rejected, the error must not be taken for the one of the operation in progress
+            int errorCode = operationErrorCode;
+            request.run();
+            operationErrorCode = errorCode;
+            return;
+        }
+
+        operationStartTime = scheduler.now();
+        operationErrorCode = 0;
+        request.run();
+    }
+
+    private TxRxDeviceProfile rebuildProfile(TxRxTrace.Event event) {
+        TxRxDeviceProfile.TerminatorType[] terminatorTypes = TxRxDeviceProfile.TerminatorType.values();
+        byte[] value = event.getValue();
+        int packetSize = (int) event.getArgument();
+
+        return new TxRxDeviceProfile("replay-service", "replay-rx", "replay-tx", "replay-mode", "replay-event",
+                terminatorTypes[value[0]], terminatorTypes[value[1]], packetSize, packetSize);
+    }
+
+    private List<String> report(long elapsed) {
+        List<String> differences = new ArrayList<>();
+        long duration = toMillis(trace.getDuration());
+
+        if (recorded.completed != replayed.completed) {
+            differences.add("completed " + recorded.completed + " != " + replayed.completed);
+        }
+        if (recorded.failed != replayed.failed) {
+            differences.add("failed " + recorded.failed + " != " + replayed.failed);
+        }
+        if (recorded.bytes != replayed.bytes) {
+            differences.add("bytes " + recorded.bytes + " != " + replayed.bytes);
+        }
+
+        System.out.println("TxRx trace replay: " + trace.getEvents().size() + " events, " + (duration / 1000.0)
+                + " s recorded, " + (elapsed / 1000.0) + " s replayed" + (isRealtime ? " in real time" : ""));
+        System.out.println("Recorded: " + recorded.format(duration));
+        System.out.println("Replayed: " + replayed.format(duration));
+        System.out.println(differences.isEmpty() ? "Result:   MATCHED" : "Result:   DIVERGED " + differences);
+
+        return differences;
+    }
+
+    private final class ReplayCallback implements TxRxSessionCallback {
+
+        @Override
+        public void onBulkTransferComplete(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onBulkTransferError(TxRxBulkTransfer transfer, int errorCode) {
+            operationErrorCode = errorCode;
+        }
+
+        @Override
+        public void onBulkTransferProgress(TxRxBulkTransfer transfer) {
+        }
+
+        @Override
+        public void onEventData(String data) {
+        }
+
+        @Override
+        public void onNotifyData(String data) {
+        }
+
+        @Override
+        public void onNotifyFrame(byte[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void onReadData(String data) {
+        }
+
+        @Override
+        public void onReadError(int errorCode) {
+        }
+
+        @Override
+        public void onReadNotifyTimeout() {
+        }
+
+        @Override
+        public void onReceiveTimestampsAfterNotifyData(long beginWriteTime, long endWriteTime,
+                                                       long beginNotifyTime, long endNotifyTime) {
+        }
+
+        @Override
+        public void onSetMode(int mode) {
+        }
+
+        @Override
+        public void onSetModeError(int errorCode) {
+        }
+
+        @Override
+        public void onSetModeTimeout() {
+        }
+
+        @Override
+        public void onWriteData(String data) {
+        }
+
+        @Override
+        public void onWriteError(int errorCode) {
+            operationErrorCode = errorCode;
+        }
+
+        @Override
+        public void onWriteFinished() {
+            replayed.onOperationEnd(operationErrorCode, scheduler.now() - operationStartTime);
+
+            if (!deferredRequests.isEmpty()) {
+                scheduler.post(TxRxTraceReplayer.this::replayDeferredRequest, 0);
+            }
+        }
+
+        @Override
+        public void onWriteTimeout() {
+            operationErrorCode = TxRxSession.ERROR_WRITE_TIMEOUT;
+        }
+    }
+
+    private final class ReplayTransport implements TxRxTransport {
+
+        @Override
+        public boolean read() {
+            Outcome outcome = nextOutcome(readOutcomes, readCount++);
+
+            if (outcome == Outcome.DROPPED) {
+                // lost with the connection while recording
+                return true;
+            }
+
+            if (outcome.status == TxRxTrace.STATUS_NOT_INITIATED) {
+                return false;
+            }
+
+            scheduler.post(() -> session.onRead(outcome.value, outcome.status), toMillis(outcome.latency));
+            return true;
+        }
+
+        @Override
+        public boolean write(byte[] value) {
+            Outcome outcome = nextOutcome(writeOutcomes, writeCount++);
+
+            if (outcome == Outcome.DROPPED) {
+                // lost with the connection while recording
+                return true;
+            }
+
+            if (outcome.status == TxRxTrace.STATUS_NOT_INITIATED) {
+                return false;
+            }
+
+            int length = value.length;
+
+            scheduler.post(() -> {
+                synchronized (lock) {
+                    replayed.onChunkResult(outcome.status, length);
+                    session.onWrite(outcome.status);
+                }
+            }, toMillis(outcome.latency));
+            return true;
+        }
+
+        @Override
+        public boolean writeSetMode(byte[] value) {
+            Outcome outcome = nextOutcome(setModeOutcomes, setModeCount++);
+
+            if (outcome == Outcome.DROPPED) {
+                // lost with the connection while recording
+                return true;
+            }
+
+            if (outcome.status == TxRxTrace.STATUS_NOT_INITIATED) {
+                return false;
+            }
+
+            scheduler.post(() -> session.onSetModeWrite(outcome.status), toMillis(outcome.latency));
+            return true;
+        }
+
+        private Outcome nextOutcome(List<Outcome> outcomes, int index) {
+            if (index < outcomes.size()) {
+                return outcomes.get(index);
+            }
+
+            // the replay diverged from the recording: answer as the last operation recorded, successfully
+            long latency = outcomes.isEmpty() ? 1000 : outcomes.get(outcomes.size() - 1).latency;
+            return new Outcome(TxRxTransport.STATUS_SUCCESS, latency, new byte[0]);
+        }
+    }
+}